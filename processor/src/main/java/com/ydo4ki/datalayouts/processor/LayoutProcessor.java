@@ -0,0 +1,515 @@
+package com.ydo4ki.datalayouts.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.*;
+
+/**
+ * Annotation processor that generates {@code Layout.Of} implementations for classes annotated with
+ * {@code @GenerateLayout}.
+ *
+ * <p>For every annotated class {@code Foo} a class {@code Foo_Layout} is generated in the same package.
+ * It writes fields directly (so every access is a plain field access the JIT can inline), creates objects
+ * through a constructor, and computes string and array layouts from the annotations at compile time.
+ * The generated classes are listed in {@code META-INF/services/com.ydo4ki.datalayouts.LayoutBinder},
+ * so the library binds them with {@code Layout.bindTo} when it's initialized.</p>
+ *
+ * <p>Fields with runtime annotations the processor doesn't know about (custom annotation pragmas)
+ * still get their layouts from {@code Layout.of} at runtime, so the data format never differs from
+ * the one of the reflective layout.</p>
+ *
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+public final class LayoutProcessor extends AbstractProcessor {
+	private static final String PACKAGE = "com.ydo4ki.datalayouts";
+	private static final String GENERATE_LAYOUT = PACKAGE + ".annotation.GenerateLayout";
+	private static final String ENCODING = PACKAGE + ".annotation.Encoding";
+	private static final String LENGTH = PACKAGE + ".annotation.Length";
+	private static final String NULL_TERMINATED = PACKAGE + ".annotation.NullTerminated";
+	private static final String UNSIGNED_BYTE = PACKAGE + ".annotation.UnsignedByte";
+	private static final String UNSIGNED_SHORT = PACKAGE + ".annotation.UnsignedShort";
+	private static final String VAR_INT = PACKAGE + ".annotation.VarInt";
+	private static final String ZIG_ZAG = PACKAGE + ".annotation.ZigZag";
+	
+	private static final String LAYOUT = PACKAGE + ".Layout";
+	private static final String BINDER = PACKAGE + ".LayoutBinder";
+	
+	/**
+	 * Array types the {@code @Length} annotation pragma is registered for,
+	 * the one for {@code Object[]} applies to all arrays of objects as it does at runtime
+	 */
+	private static final Set<String> LENGTH_ARRAYS = new HashSet<>(Arrays.asList(
+			"java.lang.Object[]", "byte[]", "boolean[]", "short[]", "char[]", "int[]", "float[]", "long[]", "double[]"
+	));
+	
+	private Elements elements;
+	private Types types;
+	private Filer filer;
+	private Messager messager;
+	private final Set<String> binders = new TreeSet<>();
+	
+	@Override
+	public synchronized void init(ProcessingEnvironment processingEnv) {
+		super.init(processingEnv);
+		this.elements = processingEnv.getElementUtils();
+		this.types = processingEnv.getTypeUtils();
+		this.filer = processingEnv.getFiler();
+		this.messager = processingEnv.getMessager();
+	}
+	
+	@Override
+	public Set<String> getSupportedAnnotationTypes() {
+		return Collections.singleton(GENERATE_LAYOUT);
+	}
+	
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+	
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		for (TypeElement annotation : annotations) {
+			for (TypeElement type : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(annotation))) {
+				try {
+					binders.add(generate(type));
+				} catch (InvalidElementException e) {
+					messager.printMessage(Diagnostic.Kind.ERROR, e.getMessage(), e.element);
+				} catch (IOException e) {
+					messager.printMessage(Diagnostic.Kind.ERROR, "Unable to write layout: " + e, type);
+				}
+			}
+		}
+		if (roundEnv.processingOver() && !binders.isEmpty()) {
+			writeServices();
+		}
+		return true;
+	}
+	
+	private void writeServices() {
+		try {
+			FileObject file = filer.createResource(StandardLocation.CLASS_OUTPUT, "", "META-INF/services/" + BINDER);
+			try (Writer writer = file.openWriter()) {
+				for (String binder : binders) {
+					writer.write(binder);
+					writer.write('\n');
+				}
+			}
+		} catch (IOException e) {
+			messager.printMessage(Diagnostic.Kind.ERROR, "Unable to write " + BINDER + " services: " + e);
+		}
+	}
+	
+	/**
+	 * Generates the layout class for an annotated class.
+	 *
+	 * @return The binary name of the generated class
+	 */
+	private String generate(TypeElement type) throws IOException {
+		if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT))
+			throw new InvalidElementException(type, "@GenerateLayout is only applicable to non-abstract classes");
+		if (type.getNestingKind().isNested() && !type.getModifiers().contains(Modifier.STATIC))
+			throw new InvalidElementException(type, "@GenerateLayout is not applicable to inner classes");
+		for (Element e = type; e instanceof TypeElement; e = e.getEnclosingElement()) {
+			if (e.getModifiers().contains(Modifier.PRIVATE))
+				throw new InvalidElementException(type, "@GenerateLayout is not applicable to private classes");
+		}
+		
+		PackageElement pkg = elements.getPackageOf(type);
+		String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+		String simpleName = layoutName(type);
+		String typeName = types.erasure(type.asType()).toString();
+		
+		List<FieldCode> fields = new ArrayList<>();
+		for (VariableElement field : collectFields(type)) {
+			fields.add(fieldCode(fields.size(), field, pkg));
+		}
+		ExecutableElement constructor = findConstructor(type, fields);
+		
+		StringBuilder src = new StringBuilder();
+		if (!packageName.isEmpty()) src.append("package ").append(packageName).append(";\n\n");
+		src.append("/**\n")
+				.append(" * Layout of {@link ").append(typeName).append("}.\n")
+				.append(" * Generated by the DataStreamLayouts annotation processor, do not edit.\n")
+				.append(" */\n")
+				.append("@SuppressWarnings({\"rawtypes\", \"unchecked\"})\n")
+				.append("public final class ").append(simpleName)
+				.append(" implements ").append(LAYOUT).append(".Of<").append(typeName).append(">, ").append(BINDER).append(" {\n");
+		for (FieldCode field : fields) {
+			if (field.constant != null) {
+				src.append("\tprivate static final ").append(LAYOUT).append(".Of ").append(field.layout)
+						.append(" = ").append(field.constant).append(";\n");
+			}
+		}
+		src.append("\t\n")
+				.append("\tpublic static final ").append(simpleName).append(" INSTANCE = new ").append(simpleName).append("();\n")
+				.append("\t\n")
+				.append("\t/** Used by the service loader, use {@link #INSTANCE} instead */\n")
+				.append("\tpublic ").append(simpleName).append("() {\n")
+				.append("\t}\n")
+				.append("\t\n")
+				.append("\t@Override\n")
+				.append("\tpublic void bindLayouts() {\n")
+				.append("\t\t").append(LAYOUT).append(".bindTo(").append(typeName).append(".class, INSTANCE);\n")
+				.append("\t}\n")
+				.append("\t\n");
+		
+		generateReadWrite(src, typeName, fields, constructor, "java.io.DataOutput out", "java.io.DataInput in", " throws java.io.IOException");
+		generateReadWrite(src, typeName, fields, constructor, "java.nio.ByteBuffer out", "java.nio.ByteBuffer in", "");
+		
+		src.append("\t@Override\n")
+				.append("\tpublic java.util.OptionalInt size() {\n")
+				.append("\t\tint size = 0;\n")
+				.append("\t\tfor (").append(LAYOUT).append(" layout : new ").append(LAYOUT).append("[]{");
+		for (FieldCode field : fields) {
+			if (field.index != 0) src.append(", ");
+			src.append(field.layout);
+		}
+		src.append("}) {\n")
+				.append("\t\t\tjava.util.OptionalInt fieldSize = layout.size();\n")
+				.append("\t\t\tif (!fieldSize.isPresent()) return java.util.OptionalInt.empty();\n")
+				.append("\t\t\tsize += fieldSize.getAsInt();\n")
+				.append("\t\t}\n")
+				.append("\t\treturn java.util.OptionalInt.of(size);\n")
+				.append("\t}\n");
+		
+		if (fields.stream().anyMatch(field -> field.reflective)) {
+			src.append("\t\n")
+					.append("\tprivate static java.lang.annotation.Annotation[] annotations(Class<?> owner, String field) {\n")
+					.append("\t\ttry {\n")
+					.append("\t\t\treturn owner.getDeclaredField(field).getAnnotations();\n")
+					.append("\t\t} catch (NoSuchFieldException e) {\n")
+					.append("\t\t\tthrow new IllegalStateException(e);\n")
+					.append("\t\t}\n")
+					.append("\t}\n");
+		}
+		src.append("}\n");
+		
+		String qualifiedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+		JavaFileObject file = filer.createSourceFile(qualifiedName, type);
+		try (Writer writer = file.openWriter()) {
+			writer.write(src.toString());
+		}
+		return qualifiedName;
+	}
+	
+	/** Name of the generated layout class: {@code Outer_Inner_Layout} for {@code Outer.Inner} */
+	private String layoutName(TypeElement type) {
+		StringBuilder name = new StringBuilder(type.getSimpleName());
+		for (Element e = type.getEnclosingElement(); e instanceof TypeElement; e = e.getEnclosingElement()) {
+			name.insert(0, e.getSimpleName() + "_");
+		}
+		return name.append("_Layout").toString();
+	}
+	
+	/**
+	 * Collects non-static fields in the same order as the reflective layout does:
+	 * fields of the class itself first, then fields of its superclasses.
+	 */
+	private List<VariableElement> collectFields(TypeElement type) {
+		List<VariableElement> fields = new ArrayList<>();
+		while (type != null && !type.getQualifiedName().contentEquals("java.lang.Object")) {
+			for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+				if (!field.getModifiers().contains(Modifier.STATIC)) fields.add(field);
+			}
+			TypeMirror superclass = type.getSuperclass();
+			type = superclass.getKind() == TypeKind.DECLARED ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+		}
+		return fields;
+	}
+	
+	/**
+	 * Finds a non-private constructor taking all fields in their order with the same names,
+	 * or returns null if the object can be created with a no-args constructor and filled field by field.
+	 */
+	private ExecutableElement findConstructor(TypeElement type, List<FieldCode> fields) {
+		boolean noArgs = false;
+		for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+			if (constructor.getModifiers().contains(Modifier.PRIVATE)) continue;
+			List<? extends VariableElement> params = constructor.getParameters();
+			if (params.isEmpty()) noArgs = true;
+			if (params.size() != fields.size()) continue;
+			boolean matches = true;
+			for (int i = 0; i < params.size() && matches; i++) {
+				VariableElement field = fields.get(i).field;
+				matches = params.get(i).getSimpleName().contentEquals(field.getSimpleName())
+						&& types.isSameType(types.erasure(params.get(i).asType()), types.erasure(field.asType()));
+			}
+			if (matches) return constructor;
+		}
+		if (!noArgs)
+			throw new InvalidElementException(type, "@GenerateLayout class needs either a constructor taking all fields " +
+					"in their order (with the same names) or a non-private no-args constructor");
+		for (FieldCode field : fields) {
+			if (field.field.getModifiers().contains(Modifier.FINAL))
+				throw new InvalidElementException(field.field, "final field can only be initialized by a constructor " +
+						"taking all fields in their order (with the same names)");
+		}
+		return null;
+	}
+	
+	private FieldCode fieldCode(int index, VariableElement field, PackageElement pkg) {
+		Set<Modifier> modifiers = field.getModifiers();
+		TypeElement owner = (TypeElement) field.getEnclosingElement();
+		if (modifiers.contains(Modifier.PRIVATE))
+			throw new InvalidElementException(field, "private fields are not supported by @GenerateLayout");
+		if (!modifiers.contains(Modifier.PUBLIC) && !elements.getPackageOf(owner).equals(pkg))
+			throw new InvalidElementException(field, "field is not accessible from package " + pkg);
+		
+		TypeMirror fieldType = types.erasure(field.asType());
+		String type = fieldType.toString();
+		String ownerName = types.erasure(owner.asType()).toString();
+		FieldCode code = new FieldCode(index, field, type, ownerName);
+		
+		boolean unknownAnnotations = false;
+		for (AnnotationMirror annotation : field.getAnnotationMirrors()) {
+			String name = ((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().toString();
+			if (!isKnown(name) && isRuntimeRetained(annotation)) unknownAnnotations = true;
+		}
+		if (unknownAnnotations) {
+			// custom annotation pragmas are only known at runtime
+			code.reflective = true;
+			code.constant = LAYOUT + ".of(" + type + ".class, annotations(" + ownerName + ".class, \"" + field.getSimpleName() + "\")).asObjectLayout()";
+			return code;
+		}
+		
+		if (fieldType.getKind().isPrimitive()) {
+			String layout = LAYOUT + ".of" + capitalize(type);
+			for (AnnotationMirror annotation : field.getAnnotationMirrors()) {
+				String name = ((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().toString();
+				if (name.equals(UNSIGNED_BYTE) || name.equals(UNSIGNED_SHORT)) {
+					if (fieldType.getKind() != TypeKind.INT)
+						throw new InvalidElementException(field, "@" + simpleName(name) + " is only applicable to int fields");
+					layout = LAYOUT + (name.equals(UNSIGNED_BYTE) ? ".ofUnsignedByte" : ".ofUnsignedShort");
+				} else if (name.equals(VAR_INT) || name.equals(ZIG_ZAG)) {
+					if (fieldType.getKind() != TypeKind.INT && fieldType.getKind() != TypeKind.LONG)
+						throw new InvalidElementException(field, "@" + simpleName(name) + " is only applicable to int and long fields");
+					layout = LAYOUT + (name.equals(VAR_INT) ? ".ofVar" : ".ofZigZag") + capitalize(type);
+				} else if (isKnown(name)) {
+					throw new InvalidElementException(field, "@" + simpleName(name) + " is not applicable to " + type + " fields");
+				}
+			}
+			code.layout = layout;
+			code.primitive = true;
+		} else if (type.equals("java.lang.String")) {
+			code.constant = stringLayout(field);
+		} else if (fieldType.getKind() == TypeKind.ARRAY) {
+			code.constant = LAYOUT + ".of(" + type + ".class, java.lang.invoke.MethodHandles.lookup())";
+			for (AnnotationMirror annotation : field.getAnnotationMirrors()) {
+				String name = ((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().toString();
+				if (name.equals(LENGTH) && (LENGTH_ARRAYS.contains(type) || !((ArrayType) fieldType).getComponentType().getKind().isPrimitive())) {
+					code.constant = LAYOUT + ".array(" + type + ".class, " + value(annotation) + ")";
+				} else if (isKnown(name)) {
+					throw new InvalidElementException(field, "@" + simpleName(name) + " is not applicable to " + type + " fields");
+				}
+			}
+		} else {
+			for (AnnotationMirror annotation : field.getAnnotationMirrors()) {
+				String name = ((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().toString();
+				if (isKnown(name))
+					throw new InvalidElementException(field, "@" + simpleName(name) + " is not applicable to " + type + " fields");
+			}
+			Element typeElement = types.asElement(fieldType);
+			if (typeElement instanceof TypeElement && hasAnnotation(typeElement, GENERATE_LAYOUT)) {
+				// referenced at call time, so classes referring to each other don't see each other uninitialized
+				PackageElement typePackage = elements.getPackageOf(typeElement);
+				code.layout = (typePackage.isUnnamed() ? "" : typePackage.getQualifiedName() + ".") + layoutName((TypeElement) typeElement) + ".INSTANCE";
+			} else {
+				code.constant = LAYOUT + ".of(" + type + ".class, java.lang.invoke.MethodHandles.lookup())";
+			}
+		}
+		return code;
+	}
+	
+	/** Computes the string layout the same way annotation pragmas do it at runtime */
+	private String stringLayout(VariableElement field) {
+		String encoding = "utf-16";
+		boolean nullTerminated = false;
+		int length = -1;
+		for (AnnotationMirror annotation : field.getAnnotationMirrors()) {
+			String name = ((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().toString();
+			switch (name) {
+				case ENCODING:
+					encoding = (String) value(annotation);
+					break;
+				case NULL_TERMINATED:
+					if (length != -1)
+						throw new InvalidElementException(field, "@NullTerminated is not applicable to strings with @Length");
+					Object value = value(annotation);
+					nullTerminated = value == null || (Boolean) value;
+					break;
+				case LENGTH:
+					if (nullTerminated)
+						throw new InvalidElementException(field, "@Length is not applicable to null-terminated strings");
+					length = (Integer) value(annotation);
+					break;
+				case UNSIGNED_BYTE:
+				case UNSIGNED_SHORT:
+				case VAR_INT:
+				case ZIG_ZAG:
+					throw new InvalidElementException(field, "@" + simpleName(name) + " is not applicable to String fields");
+			}
+		}
+		String quoted = "\"" + encoding.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+		return LAYOUT + ".string(" + quoted + ", " + (length != -1 ? String.valueOf(length) : String.valueOf(nullTerminated)) + ")";
+	}
+	
+	private static Object value(AnnotationMirror annotation) {
+		for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> e : annotation.getElementValues().entrySet()) {
+			if (e.getKey().getSimpleName().contentEquals("value")) return e.getValue().getValue();
+		}
+		return null; // default value
+	}
+	
+	private static boolean isKnown(String annotation) {
+		return annotation.equals(ENCODING) || annotation.equals(LENGTH) || annotation.equals(NULL_TERMINATED)
+				|| annotation.equals(UNSIGNED_BYTE) || annotation.equals(UNSIGNED_SHORT)
+				|| annotation.equals(VAR_INT) || annotation.equals(ZIG_ZAG);
+	}
+	
+	private static boolean isRuntimeRetained(AnnotationMirror annotation) {
+		Retention retention = annotation.getAnnotationType().asElement().getAnnotation(Retention.class);
+		return retention != null && retention.value() == RetentionPolicy.RUNTIME;
+	}
+	
+	private static boolean hasAnnotation(Element element, String annotation) {
+		for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+			if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotation)) return true;
+		}
+		return false;
+	}
+	
+	private static String simpleName(String qualifiedName) {
+		return qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1);
+	}
+	
+	/**
+	 * Generates the {@code write} and {@code read} methods for one kind of sink and source.
+	 * The sink and the source have to be named {@code out} and {@code in}.
+	 */
+	private static void generateReadWrite(StringBuilder src, String typeName, List<FieldCode> fields, ExecutableElement constructor,
+			String sink, String source, String exceptions) {
+		src.append("\t@Override\n")
+				.append("\tpublic void write(").append(typeName).append(" x, ").append(sink).append(")").append(exceptions).append(" {\n");
+		for (FieldCode field : fields) {
+			src.append("\t\t").append(field.layout).append(".write(").append(field.access("x")).append(", out);\n");
+		}
+		src.append("\t}\n")
+				.append("\t\n");
+		
+		src.append("\t@Override\n")
+				.append("\tpublic ").append(typeName).append(" read(").append(source).append(")").append(exceptions).append(" {\n");
+		if (constructor != null) {
+			for (FieldCode field : fields) {
+				src.append("\t\t").append(field.type).append(" f").append(field.index).append(" = ").append(field.read()).append(";\n");
+			}
+			src.append("\t\treturn new ").append(typeName).append("(");
+			for (FieldCode field : fields) {
+				if (field.index != 0) src.append(", ");
+				src.append("f").append(field.index);
+			}
+			src.append(");\n");
+		} else {
+			src.append("\t\t").append(typeName).append(" x = new ").append(typeName).append("();\n");
+			for (FieldCode field : fields) {
+				src.append("\t\t").append(field.access("x")).append(" = ").append(field.read()).append(";\n");
+			}
+			src.append("\t\treturn x;\n");
+		}
+		src.append("\t}\n")
+				.append("\t\n");
+	}
+	
+	private static String capitalize(String s) {
+		return Character.toUpperCase(s.charAt(0)) + s.substring(1);
+	}
+	
+	/**
+	 * Generated code of a single field.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final class FieldCode {
+		final int index;
+		final VariableElement field;
+		/** Source name of the (erased) field type */
+		final String type;
+		/** Source name of the class that declares the field */
+		final String owner;
+		/** Expression of the field layout */
+		String layout;
+		/** Initializer of the static field holding the layout, or null if the layout is referenced directly */
+		String constant;
+		/** Whether the layout is a primitive layout with primitive read/write methods */
+		boolean primitive;
+		/** Whether the layout needs field annotations at runtime */
+		boolean reflective;
+		
+		FieldCode(int index, VariableElement field, String type, String owner) {
+			this.index = index;
+			this.field = field;
+			this.type = type;
+			this.owner = owner;
+			this.layout = "layout" + index;
+		}
+		
+		String access(String x) {
+			// the field may be hidden by a field of a subclass
+			return "((" + owner + ") " + x + ")." + field.getSimpleName();
+		}
+		
+		String read() {
+			if (primitive || type.equals("java.lang.Object")) return layout + ".read(in)";
+			return "(" + boxed() + ") " + layout + ".read(in)";
+		}
+		
+		private String boxed() {
+			switch (type) {
+				case "boolean": return "java.lang.Boolean";
+				case "byte":    return "java.lang.Byte";
+				case "short":   return "java.lang.Short";
+				case "char":    return "java.lang.Character";
+				case "int":     return "java.lang.Integer";
+				case "float":   return "java.lang.Float";
+				case "long":    return "java.lang.Long";
+				case "double":  return "java.lang.Double";
+				default:        return type;
+			}
+		}
+	}
+	
+	/**
+	 * Thrown when an annotated class can't have a generated layout.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final class InvalidElementException extends RuntimeException {
+		final transient Element element;
+		
+		InvalidElementException(Element element, String message) {
+			super(message);
+			this.element = element;
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package com.ydo4ki.datalayouts;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Writes and reads runs of objects of one layout.
+ *
+ * <p>Objects with a static size are encoded to and decoded from a per-thread buffer, a run at a time,
+ * so the stream is called once per run instead of once per field.
+ * {@link ByteArrayDataOutput} and {@link ByteArrayDataInput} are accessed directly, without the buffer.
+ * Other objects are written and read one by one.</p>
+ *
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+final class Batches {
+	private Batches() throws InstantiationException {
+		throw new InstantiationException();
+	}
+	
+	private static final int BUFFER_SIZE = 8192;
+	/** The buffer of the current thread, or null while a batch of the thread uses it */
+	private static final ThreadLocal<byte[]> buffer = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+	
+	/**
+	 * Returns the size of the objects of a layout if they are worth batching, or 0 otherwise.
+	 */
+	private static int batchSize(Layout.Of<?> layout) {
+		int size = layout.size().orElse(0);
+		return size <= BUFFER_SIZE / 2 ? size : 0;
+	}
+	
+	/**
+	 * Takes the buffer of the current thread, to be given back with {@link #release(byte[])}.
+	 * Batches started while it is taken (from a consumer, for example) get a new one.
+	 */
+	private static byte[] take() {
+		byte[] buf = buffer.get();
+		if (buf == null) return new byte[BUFFER_SIZE];
+		buffer.set(null);
+		return buf;
+	}
+	
+	private static void release(byte[] buf) {
+		buffer.set(buf);
+	}
+	
+	static <T> void writeAll(Layout.Of<T> layout, List<? extends T> xs, DataOutput out) throws IOException {
+		int count = xs.size();
+		int size = batchSize(layout);
+		if (size == 0) {
+			for (int i = 0; i < count; i++) {
+				layout.write(xs.get(i), out);
+			}
+			return;
+		}
+		if (out instanceof ByteArrayDataOutput) {
+			ByteArrayDataOutput output = (ByteArrayDataOutput) out;
+			int len = Math.multiplyExact(count, size);
+			int pos = output.reserve(len); // may replace the array
+			ByteBuffer buffer = ByteBuffer.wrap(output.array(), pos, len);
+			for (int i = 0; i < count; i++) {
+				layout.write(xs.get(i), buffer);
+			}
+			return;
+		}
+		byte[] buf = take();
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(buf);
+			int run = buf.length / size;
+			for (int i = 0; i < count; ) {
+				buffer.clear();
+				for (int end = Math.min(count, i + run); i < end; i++) {
+					layout.write(xs.get(i), buffer);
+				}
+				out.write(buf, 0, buffer.position());
+			}
+		} finally {
+			release(buf);
+		}
+	}
+	
+	static <T> void readAll(Layout.Of<T> layout, int count, DataInput in, ObjIntConsumer<? super T> action) throws IOException {
+		if (count < 0) throw new IllegalArgumentException("Negative count: " + count);
+		int size = batchSize(layout);
+		if (size == 0) {
+			for (int i = 0; i < count; i++) {
+				action.accept(layout.read(in), i);
+			}
+			return;
+		}
+		if (in instanceof ByteArrayDataInput) {
+			ByteArrayDataInput input = (ByteArrayDataInput) in;
+			int len = Math.multiplyExact(count, size);
+			ByteBuffer buffer = ByteBuffer.wrap(input.array(), input.take(len), len);
+			for (int i = 0; i < count; i++) {
+				action.accept(layout.read(buffer), i);
+			}
+			return;
+		}
+		byte[] buf = take();
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(buf);
+			int run = buf.length / size;
+			for (int i = 0; i < count; ) {
+				int end = Math.min(count, i + run);
+				in.readFully(buf, 0, (end - i) * size);
+				buffer.clear();
+				for (; i < end; i++) {
+					action.accept(layout.read(buffer), i);
+				}
+			}
+		} finally {
+			release(buf);
+		}
+	}
+}
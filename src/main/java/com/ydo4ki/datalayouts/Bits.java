@@ -0,0 +1,70 @@
+package com.ydo4ki.datalayouts;
+
+/**
+ * Big-endian primitive access to byte arrays, in the format of {@link java.io.DataOutput}.
+ * This version assembles values byte by byte;
+ * the multi-release jar contains a Java 9 version of this class that uses byte array view {@code VarHandle}s.
+ *
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+final class Bits {
+	private Bits() throws InstantiationException {
+		throw new InstantiationException();
+	}
+	
+	static short getShort(byte[] b, int off) {
+		return (short) ((b[off] << 8) | (b[off + 1] & 0xFF));
+	}
+	
+	static char getChar(byte[] b, int off) {
+		return (char) ((b[off] << 8) | (b[off + 1] & 0xFF));
+	}
+	
+	static int getInt(byte[] b, int off) {
+		return (b[off] << 24) | ((b[off + 1] & 0xFF) << 16) | ((b[off + 2] & 0xFF) << 8) | (b[off + 3] & 0xFF);
+	}
+	
+	static long getLong(byte[] b, int off) {
+		return ((long) getInt(b, off) << 32) | (getInt(b, off + 4) & 0xFFFFFFFFL);
+	}
+	
+	static float getFloat(byte[] b, int off) {
+		return Float.intBitsToFloat(getInt(b, off));
+	}
+	
+	static double getDouble(byte[] b, int off) {
+		return Double.longBitsToDouble(getLong(b, off));
+	}
+	
+	static void putShort(byte[] b, int off, short x) {
+		b[off] = (byte) (x >> 8);
+		b[off + 1] = (byte) x;
+	}
+	
+	static void putChar(byte[] b, int off, char x) {
+		b[off] = (byte) (x >> 8);
+		b[off + 1] = (byte) x;
+	}
+	
+	static void putInt(byte[] b, int off, int x) {
+		b[off] = (byte) (x >> 24);
+		b[off + 1] = (byte) (x >> 16);
+		b[off + 2] = (byte) (x >> 8);
+		b[off + 3] = (byte) x;
+	}
+	
+	static void putLong(byte[] b, int off, long x) {
+		putInt(b, off, (int) (x >> 32));
+		putInt(b, off + 4, (int) x);
+	}
+	
+	// same as DataOutputStream: NaNs are collapsed
+	static void putFloat(byte[] b, int off, float x) {
+		putInt(b, off, Float.floatToIntBits(x));
+	}
+	
+	static void putDouble(byte[] b, int off, double x) {
+		putLong(b, off, Double.doubleToLongBits(x));
+	}
+}
@@ -0,0 +1,189 @@
+package com.ydo4ki.datalayouts;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+
+/**
+ * A {@link DataInput} that reads from a byte array.
+ * Reads the same format as a {@link DataInputStream} over a {@link java.io.ByteArrayInputStream},
+ * but every primitive is loaded from the array directly (through a byte array view {@code VarHandle} on Java 9+).
+ *
+ * <p>The array is not copied. This class is not thread-safe.</p>
+ *
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+public final class ByteArrayDataInput implements DataInput {
+	private final byte[] buf;
+	private int pos;
+	private final int limit;
+	
+	/**
+	 * Creates a new input reading the whole array.
+	 *
+	 * @param buf The array to read from
+	 * @since 1.3.0
+	 */
+	public ByteArrayDataInput(byte[] buf) {
+		this(buf, 0, buf.length);
+	}
+	
+	/**
+	 * Creates a new input reading a range of the array.
+	 *
+	 * @param buf The array to read from
+	 * @param off The index of the first byte to read
+	 * @param len The number of bytes that can be read
+	 * @throws IndexOutOfBoundsException If the range is out of the array bounds
+	 * @since 1.3.0
+	 */
+	public ByteArrayDataInput(byte[] buf, int off, int len) {
+		if ((off | len) < 0 || len > buf.length - off) throw new IndexOutOfBoundsException();
+		this.buf = buf;
+		this.pos = off;
+		this.limit = off + len;
+	}
+	
+	/**
+	 * Makes sure that the specified number of bytes can be read.
+	 *
+	 * @param bytes The number of bytes about to be read
+	 * @return The position to read at
+	 * @throws StreamCorruptedException If the number of bytes is negative, a corrupted length
+	 * @throws EOFException If there are not enough bytes left
+	 */
+	int take(int bytes) throws IOException {
+		int p = pos;
+		if (bytes < 0) throw new StreamCorruptedException("Negative length: " + bytes);
+		if (bytes > limit - p) throw new EOFException();
+		pos = p + bytes;
+		return p;
+	}
+	
+	/**
+	 * Returns the array this input reads from, for reading right after {@link #take(int)}.
+	 *
+	 * @return The array this input reads from
+	 */
+	byte[] array() {
+		return buf;
+	}
+	
+	/**
+	 * Returns the index of the next byte to read in the array.
+	 *
+	 * @return The current position
+	 * @since 1.3.0
+	 */
+	public int position() {
+		return pos;
+	}
+	
+	/**
+	 * Returns the number of bytes that can still be read.
+	 *
+	 * @return The number of remaining bytes
+	 * @since 1.3.0
+	 */
+	public int remaining() {
+		return limit - pos;
+	}
+	
+	@Override
+	public void readFully(byte[] b) throws IOException {
+		readFully(b, 0, b.length);
+	}
+	
+	@Override
+	public void readFully(byte[] b, int off, int len) throws IOException {
+		if ((off | len) < 0 || len > b.length - off) throw new IndexOutOfBoundsException();
+		System.arraycopy(buf, take(len), b, off, len);
+	}
+	
+	@Override
+	public int skipBytes(int n) {
+		int skipped = Math.max(0, Math.min(n, limit - pos));
+		pos += skipped;
+		return skipped;
+	}
+	
+	@Override
+	public boolean readBoolean() throws IOException {
+		return buf[take(1)] != 0;
+	}
+	
+	@Override
+	public byte readByte() throws IOException {
+		return buf[take(1)];
+	}
+	
+	@Override
+	public int readUnsignedByte() throws IOException {
+		return buf[take(1)] & 0xFF;
+	}
+	
+	@Override
+	public short readShort() throws IOException {
+		return Bits.getShort(buf, take(2));
+	}
+	
+	@Override
+	public int readUnsignedShort() throws IOException {
+		return Bits.getChar(buf, take(2));
+	}
+	
+	@Override
+	public char readChar() throws IOException {
+		return Bits.getChar(buf, take(2));
+	}
+	
+	@Override
+	public int readInt() throws IOException {
+		return Bits.getInt(buf, take(4));
+	}
+	
+	@Override
+	public long readLong() throws IOException {
+		return Bits.getLong(buf, take(8));
+	}
+	
+	@Override
+	public float readFloat() throws IOException {
+		return Bits.getFloat(buf, take(4));
+	}
+	
+	@Override
+	public double readDouble() throws IOException {
+		return Bits.getDouble(buf, take(8));
+	}
+	
+	/**
+	 * Reads a line of text, like {@link DataInputStream#readLine()}.
+	 *
+	 * @return The next line, or null if there are no bytes left
+	 * @since 1.3.0
+	 */
+	@Override
+	public String readLine() {
+		if (pos >= limit) return null;
+		StringBuilder line = new StringBuilder();
+		while (pos < limit) {
+			int c = buf[pos++] & 0xFF;
+			if (c == '\n') break;
+			if (c == '\r') {
+				if (pos < limit && buf[pos] == '\n') pos++;
+				break;
+			}
+			line.append((char) c);
+		}
+		return line.toString();
+	}
+	
+	@Override
+	public String readUTF() throws IOException {
+		return DataInputStream.readUTF(this);
+	}
+}
@@ -0,0 +1,232 @@
+package com.ydo4ki.datalayouts;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UTFDataFormatException;
+import java.util.Arrays;
+
+/**
+ * A {@link DataOutput} that writes to a growable byte array.
+ * Produces the same bytes as a {@link java.io.DataOutputStream} over a {@link java.io.ByteArrayOutputStream},
+ * but without the stream chain and its synchronization: every primitive is stored into the array directly
+ * (through a byte array view {@code VarHandle} on Java 9+).
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+public final class ByteArrayDataOutput implements DataOutput {
+	private byte[] buf;
+	private int count;
+	
+	/**
+	 * Creates a new output with the default initial capacity.
+	 *
+	 * @since 1.3.0
+	 */
+	public ByteArrayDataOutput() {
+		this(64);
+	}
+	
+	/**
+	 * Creates a new output with the specified initial capacity.
+	 *
+	 * @param initialCapacity The initial capacity in bytes
+	 * @throws IllegalArgumentException If the capacity is negative
+	 * @since 1.3.0
+	 */
+	public ByteArrayDataOutput(int initialCapacity) {
+		if (initialCapacity < 0) throw new IllegalArgumentException("Negative initial capacity: " + initialCapacity);
+		this.buf = new byte[initialCapacity];
+	}
+	
+	/**
+	 * Makes sure that the specified number of bytes can be written without growing the array.
+	 *
+	 * @param bytes The number of bytes about to be written
+	 * @return The position to write at, read {@link #buf} only after this call as it may be replaced
+	 * @throws IllegalArgumentException If the number of bytes is negative
+	 * @throws OutOfMemoryError If the array would grow past the maximum array size
+	 */
+	int reserve(int bytes) {
+		int pos = count;
+		if (bytes < 0) throw new IllegalArgumentException("Negative number of bytes: " + bytes);
+		if (bytes > Integer.MAX_VALUE - pos) throw new OutOfMemoryError("Byte array is too large");
+		int newCount = pos + bytes;
+		if (newCount > buf.length) {
+			buf = Arrays.copyOf(buf, Math.max(newCount, (int) Math.min(Integer.MAX_VALUE, Math.max((long) buf.length << 1, 16))));
+		}
+		count = newCount;
+		return pos;
+	}
+	
+	/**
+	 * Returns the current array, for writing right after {@link #reserve(int)}.
+	 *
+	 * @return The array this output writes to
+	 */
+	byte[] array() {
+		return buf;
+	}
+	
+	/**
+	 * Returns the number of bytes written so far.
+	 *
+	 * @return The number of bytes written
+	 * @since 1.3.0
+	 */
+	public int size() {
+		return count;
+	}
+	
+	/**
+	 * Discards everything written so far, keeping the allocated array.
+	 *
+	 * @since 1.3.0
+	 */
+	public void reset() {
+		count = 0;
+	}
+	
+	/**
+	 * Returns a copy of the bytes written so far.
+	 *
+	 * @return The written bytes
+	 * @since 1.3.0
+	 */
+	public byte[] toByteArray() {
+		return Arrays.copyOf(buf, count);
+	}
+	
+	/**
+	 * Writes the bytes written so far to an output stream.
+	 *
+	 * @param out The output stream to write to
+	 * @throws IOException If an I/O error occurs
+	 * @since 1.3.0
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		out.write(buf, 0, count);
+	}
+	
+	@Override
+	public void write(int b) {
+		int pos = reserve(1);
+		buf[pos] = (byte) b;
+	}
+	
+	@Override
+	public void write(byte[] b) {
+		write(b, 0, b.length);
+	}
+	
+	@Override
+	public void write(byte[] b, int off, int len) {
+		if ((off | len) < 0 || len > b.length - off) throw new IndexOutOfBoundsException();
+		int pos = reserve(len);
+		System.arraycopy(b, off, buf, pos, len);
+	}
+	
+	@Override
+	public void writeBoolean(boolean v) {
+		int pos = reserve(1);
+		buf[pos] = (byte) (v ? 1 : 0);
+	}
+	
+	@Override
+	public void writeByte(int v) {
+		int pos = reserve(1);
+		buf[pos] = (byte) v;
+	}
+	
+	@Override
+	public void writeShort(int v) {
+		int pos = reserve(2);
+		Bits.putShort(buf, pos, (short) v);
+	}
+	
+	@Override
+	public void writeChar(int v) {
+		int pos = reserve(2);
+		Bits.putChar(buf, pos, (char) v);
+	}
+	
+	@Override
+	public void writeInt(int v) {
+		int pos = reserve(4);
+		Bits.putInt(buf, pos, v);
+	}
+	
+	@Override
+	public void writeLong(long v) {
+		int pos = reserve(8);
+		Bits.putLong(buf, pos, v);
+	}
+	
+	@Override
+	public void writeFloat(float v) {
+		int pos = reserve(4);
+		Bits.putFloat(buf, pos, v);
+	}
+	
+	@Override
+	public void writeDouble(double v) {
+		int pos = reserve(8);
+		Bits.putDouble(buf, pos, v);
+	}
+	
+	@Override
+	public void writeBytes(String s) {
+		int len = s.length();
+		int pos = reserve(len);
+		for (int i = 0; i < len; i++) {
+			buf[pos + i] = (byte) s.charAt(i);
+		}
+	}
+	
+	@Override
+	public void writeChars(String s) {
+		int len = s.length();
+		int pos = reserve(len << 1);
+		for (int i = 0; i < len; i++) {
+			Bits.putChar(buf, pos + (i << 1), s.charAt(i));
+		}
+	}
+	
+	/**
+	 * Writes a string in modified UTF-8, exactly like {@link java.io.DataOutputStream#writeUTF(String)}.
+	 *
+	 * @param s The string to write
+	 * @throws UTFDataFormatException If the encoded string is longer than 65535 bytes
+	 * @since 1.3.0
+	 */
+	@Override
+	public void writeUTF(String s) throws UTFDataFormatException {
+		int len = s.length();
+		int utfLen = 0;
+		for (int i = 0; i < len; i++) {
+			char c = s.charAt(i);
+			utfLen += c >= 0x0001 && c <= 0x007F ? 1 : c <= 0x07FF ? 2 : 3;
+		}
+		if (utfLen > 0xFFFF) throw new UTFDataFormatException("encoded string too long: " + utfLen + " bytes");
+		
+		int pos = reserve(2 + utfLen);
+		Bits.putShort(buf, pos, (short) utfLen);
+		pos += 2;
+		for (int i = 0; i < len; i++) {
+			char c = s.charAt(i);
+			if (c >= 0x0001 && c <= 0x007F) {
+				buf[pos++] = (byte) c;
+			} else if (c <= 0x07FF) {
+				buf[pos++] = (byte) (0xC0 | (c >> 6));
+				buf[pos++] = (byte) (0x80 | (c & 0x3F));
+			} else {
+				buf[pos++] = (byte) (0xE0 | (c >> 12));
+				buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				buf[pos++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+	}
+}
@@ -0,0 +1,247 @@
+package com.ydo4ki.datalayouts;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link DataInput} and {@link DataOutput} adapters over a {@link ByteBuffer}.
+ * They are used by the default {@code ByteBuffer} methods of {@link Layout.Of} for layouts that only
+ * implement the stream methods. Values are read and written at the position of the buffer and in its byte order;
+ * if the buffer is exhausted, {@link java.nio.BufferUnderflowException} or
+ * {@link java.nio.BufferOverflowException} is thrown.
+ *
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+final class ByteBufferData {
+	private ByteBufferData() throws InstantiationException {
+		throw new InstantiationException();
+	}
+	
+	/**
+	 * Returns a view of a buffer positioned at the specified index, for absolute reads and writes.
+	 * The position of the buffer itself is not changed.
+	 *
+	 * @param buffer The buffer
+	 * @param index The index the view starts at
+	 * @return A view of the buffer with the same byte order
+	 * @throws IndexOutOfBoundsException If the index is negative or greater than the limit of the buffer
+	 * @since 1.3.0
+	 */
+	static ByteBuffer at(ByteBuffer buffer, int index) {
+		if (index < 0 || index > buffer.limit()) throw new IndexOutOfBoundsException("index " + index + ", limit " + buffer.limit());
+		ByteBuffer view = buffer.duplicate().order(buffer.order());
+		view.position(index);
+		return view;
+	}
+	
+	/**
+	 * Advances the position of a buffer.
+	 *
+	 * @param buffer The buffer
+	 * @param bytes The number of bytes to skip
+	 * @throws java.nio.BufferUnderflowException If there are less bytes remaining
+	 * @since 1.3.0
+	 */
+	static void skip(ByteBuffer buffer, int bytes) {
+		if (bytes > buffer.remaining()) throw new BufferUnderflowException();
+		buffer.position(buffer.position() + bytes);
+	}
+	
+	/**
+	 * A data output that writes to a byte buffer.
+	 *
+	 * @since 1.3.0
+	 */
+	static final class Output implements DataOutput {
+		private final ByteBuffer buffer;
+		
+		Output(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+		
+		@Override
+		public void write(int b) {
+			buffer.put((byte) b);
+		}
+		
+		@Override
+		public void write(byte[] b) {
+			buffer.put(b);
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) {
+			buffer.put(b, off, len);
+		}
+		
+		@Override
+		public void writeBoolean(boolean v) {
+			buffer.put((byte) (v ? 1 : 0));
+		}
+		
+		@Override
+		public void writeByte(int v) {
+			buffer.put((byte) v);
+		}
+		
+		@Override
+		public void writeShort(int v) {
+			buffer.putShort((short) v);
+		}
+		
+		@Override
+		public void writeChar(int v) {
+			buffer.putChar((char) v);
+		}
+		
+		@Override
+		public void writeInt(int v) {
+			buffer.putInt(v);
+		}
+		
+		@Override
+		public void writeLong(long v) {
+			buffer.putLong(v);
+		}
+		
+		@Override
+		public void writeFloat(float v) {
+			buffer.putFloat(v);
+		}
+		
+		@Override
+		public void writeDouble(double v) {
+			buffer.putDouble(v);
+		}
+		
+		@Override
+		public void writeBytes(String s) {
+			for (int i = 0, Len = s.length(); i < Len; i++) {
+				buffer.put((byte) s.charAt(i));
+			}
+		}
+		
+		@Override
+		public void writeChars(String s) {
+			for (int i = 0, Len = s.length(); i < Len; i++) {
+				buffer.putChar(s.charAt(i));
+			}
+		}
+		
+		@Override
+		public void writeUTF(String s) throws UTFDataFormatException {
+			ByteArrayDataOutput utf = new ByteArrayDataOutput(s.length() + 2);
+			utf.writeUTF(s);
+			// the length is written in the byte order of the buffer, so that readUTF reads it back
+			buffer.putShort((short) (utf.size() - 2));
+			buffer.put(utf.array(), 2, utf.size() - 2);
+		}
+	}
+	
+	/**
+	 * A data input that reads from a byte buffer.
+	 *
+	 * @since 1.3.0
+	 */
+	static final class Input implements DataInput {
+		private final ByteBuffer buffer;
+		
+		Input(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+		
+		@Override
+		public void readFully(byte[] b) {
+			buffer.get(b);
+		}
+		
+		@Override
+		public void readFully(byte[] b, int off, int len) {
+			buffer.get(b, off, len);
+		}
+		
+		@Override
+		public int skipBytes(int n) {
+			int skipped = Math.max(0, Math.min(n, buffer.remaining()));
+			buffer.position(buffer.position() + skipped);
+			return skipped;
+		}
+		
+		@Override
+		public boolean readBoolean() {
+			return buffer.get() != 0;
+		}
+		
+		@Override
+		public byte readByte() {
+			return buffer.get();
+		}
+		
+		@Override
+		public int readUnsignedByte() {
+			return buffer.get() & 0xFF;
+		}
+		
+		@Override
+		public short readShort() {
+			return buffer.getShort();
+		}
+		
+		@Override
+		public int readUnsignedShort() {
+			return buffer.getShort() & 0xFFFF;
+		}
+		
+		@Override
+		public char readChar() {
+			return buffer.getChar();
+		}
+		
+		@Override
+		public int readInt() {
+			return buffer.getInt();
+		}
+		
+		@Override
+		public long readLong() {
+			return buffer.getLong();
+		}
+		
+		@Override
+		public float readFloat() {
+			return buffer.getFloat();
+		}
+		
+		@Override
+		public double readDouble() {
+			return buffer.getDouble();
+		}
+		
+		@Override
+		public String readLine() {
+			if (!buffer.hasRemaining()) return null;
+			StringBuilder line = new StringBuilder();
+			while (buffer.hasRemaining()) {
+				int c = buffer.get() & 0xFF;
+				if (c == '\n') break;
+				if (c == '\r') {
+					if (buffer.hasRemaining() && buffer.get(buffer.position()) == '\n') buffer.get();
+					break;
+				}
+				line.append((char) c);
+			}
+			return line.toString();
+		}
+		
+		@Override
+		public String readUTF() throws IOException {
+			return DataInputStream.readUTF(this);
+		}
+	}
+}
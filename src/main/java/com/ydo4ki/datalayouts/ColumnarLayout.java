@@ -0,0 +1,388 @@
+package com.ydo4ki.datalayouts;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.util.OptionalInt;
+
+/**
+ * A layout for arrays of objects that writes them column by column (as a structure of arrays).
+ * The length of the array is written first as an integer, followed by one column per field of the elements:
+ * the values of the first field of all elements, then the values of the second field, and so on.
+ * Columns of primitives are written and read in bulk, the same way as arrays of primitives.
+ *
+ * <p>When reading, the elements are created again from the columns.
+ * The columns can also be read without creating any element, with {@link #readColumns(DataInput)}.</p>
+ *
+ * @param <E> The type of the elements
+ * @see com.ydo4ki.datalayouts.annotation.Columnar
+ * @see Layout#columnar(Layout.Of)
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+public final class ColumnarLayout<E> implements ArrayLayout<E[]> {
+	private final Layout.Of<E> elementLayout;
+	private final ObjectLayout<E> layout;
+	private final Class<E> elementType;
+	private final Column[] columns;
+	/** The instantiator of the element layout spread over an {@code Object[]}, or null if fields are set after creation */
+	private final MethodHandle spreadInstantiator;
+	
+	/**
+	 * A field of the elements.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final class Column {
+		final String name;
+		/** The type of the column, an array of the type of the field */
+		final Class<?> arrayType;
+		final Layout.Of<Object> layout;
+		final OptionalInt size;
+		/** Bulk reader and writer of the column, or null if the field is not a default primitive */
+		final PrimitiveArrayCodec codec;
+		/** {@code (Object element)Object}, the value of the field */
+		final MethodHandle getter;
+		/** {@code (Object column, int row, Object element)void}, stores the field of an element into the column */
+		final MethodHandle gather;
+		/** {@code (Object element, Object column, int row)void}, sets the field of an element, or null if there are no setters */
+		final MethodHandle scatter;
+		
+		@SuppressWarnings("unchecked")
+		Column(ObjectLayout<?> layout, int i) throws ReflectiveOperationException {
+			FieldTable table = layout.fieldTable();
+			Class<?> type = table.type(i);
+			this.name = table.name(i);
+			this.arrayType = Array.newInstance(type, 0).getClass();
+			this.layout = (Layout.Of<Object>) layout.fieldLayout(i).asObjectLayout();
+			this.size = layout.fieldLayout(i).size();
+			this.codec = PrimitiveArrayCodec.of(type, layout.fieldLayout(i));
+			MethodHandle getter = layout.getter(i);
+			this.getter = getter.asType(MethodType.methodType(Object.class, Object.class));
+			this.gather = MethodHandles.filterArguments(MethodHandles.arrayElementSetter(arrayType), 2,
+							getter.asType(MethodType.methodType(type, Object.class)))
+					.asType(MethodType.methodType(void.class, Object.class, int.class, Object.class));
+			this.scatter = layout.constructs() ? null : MethodHandles.collectArguments(
+							layout.setter(i).asType(MethodType.methodType(void.class, Object.class, type)),
+							1, MethodHandles.arrayElementGetter(arrayType))
+					.asType(MethodType.methodType(void.class, Object.class, Object.class, int.class));
+		}
+	}
+	
+	/**
+	 * Creates a new columnar layout for arrays with the elements of the specified class layout.
+	 *
+	 * @param elementLayout The layout of the elements
+	 * @throws IllegalArgumentException If the layout of the elements is not a class layout
+	 * @since 1.3.0
+	 */
+	ColumnarLayout(Layout.Of<E> elementLayout) {
+		this.elementLayout = elementLayout;
+		this.layout = ObjectLayout.of(elementLayout);
+		if (layout == null) throw new IllegalArgumentException("Not a class layout: " + elementLayout);
+		this.elementType = layout.type();
+		this.columns = new Column[layout.fieldsCount()];
+		try {
+			for (int i = 0; i < columns.length; i++) {
+				columns[i] = new Column(layout, i);
+			}
+		} catch (ReflectiveOperationException e) {
+			throw new RuntimeException(e);
+		}
+		this.spreadInstantiator = layout.constructs() ? layout.instantiator().asSpreader(Object[].class, columns.length) : null;
+	}
+	
+	/**
+	 * Writes an array to a data output stream.
+	 * This method first writes the length of the array as an integer, then writes the columns.
+	 *
+	 * @param array The array to write
+	 * @param out The data output stream to write to
+	 * @throws IOException If an I/O error occurs
+	 * @since 1.3.0
+	 */
+	@Override
+	public void write(E[] array, DataOutput out) throws IOException {
+		int length = array.length;
+		out.writeInt(length);
+		try {
+			for (Column c : columns) {
+				if (c.codec != null) {
+					Object column = Array.newInstance(c.arrayType.getComponentType(), length);
+					for (int row = 0; row < length; row++) {
+						c.gather.invokeExact(column, row, (Object) array[row]);
+					}
+					c.codec.write(column, length, out);
+				} else {
+					for (int row = 0; row < length; row++) {
+						c.layout.write((Object) c.getter.invokeExact((Object) array[row]), out);
+					}
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Reads an array from a data input stream.
+	 * This method reads the columns, then creates the elements from them.
+	 *
+	 * @param in The data input stream to read from
+	 * @return The read array
+	 * @throws IOException If an I/O error occurs
+	 * @since 1.3.0
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public E[] read(DataInput in) throws IOException {
+		Columns columns = readColumns(in);
+		int length = columns.length();
+		E[] array = (E[]) Array.newInstance(elementType, length);
+		try {
+			if (spreadInstantiator != null) {
+				for (int row = 0; row < length; row++) {
+					Object[] values = new Object[this.columns.length];
+					for (int i = 0; i < values.length; i++) {
+						values[i] = Array.get(columns.column(i), row);
+					}
+					array[row] = (E) spreadInstantiator.invoke(values);
+				}
+			} else {
+				MethodHandle instantiator = layout.instantiator();
+				for (int row = 0; row < length; row++) {
+					Object element = instantiator.invoke();
+					for (int i = 0; i < this.columns.length; i++) {
+						this.columns[i].scatter.invokeExact(element, columns.column(i), row);
+					}
+					array[row] = (E) element;
+				}
+			}
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new RuntimeException(e);
+		}
+		return array;
+	}
+	
+	/**
+	 * Reads the columns of an array from a data input stream, without creating the elements.
+	 * Consumes the same bytes as {@link #read(DataInput)}.
+	 *
+	 * @param in The data input stream to read from
+	 * @return The columns of the array
+	 * @throws IOException If an I/O error occurs
+	 * @since 1.3.0
+	 */
+	public Columns readColumns(DataInput in) throws IOException {
+		int length = LengthPrefixes.readLength(Layout.ofInt, in);
+		String[] names = new String[columns.length];
+		Object[] arrays = new Object[columns.length];
+		for (int i = 0; i < columns.length; i++) {
+			Column c = columns[i];
+			Object column = Array.newInstance(c.arrayType.getComponentType(), length);
+			if (c.codec != null) {
+				c.codec.read(column, length, in);
+			} else {
+				for (int row = 0; row < length; row++) {
+					Array.set(column, row, c.layout.read(in));
+				}
+			}
+			names[i] = c.name;
+			arrays[i] = column;
+		}
+		return new Columns(length, names, arrays);
+	}
+	
+	/**
+	 * Returns the number of bytes an array is written as: the length prefix and the columns.
+	 * Columns of fields with a static size are computed from the length of the array only.
+	 *
+	 * @param array The array to measure
+	 * @return The number of bytes the array is written as
+	 * @since 1.3.0
+	 */
+	@Override
+	public int sizeOf(E[] array) {
+		int sizeOf = 4;
+		try {
+			for (Column c : columns) {
+				if (c.size.isPresent()) {
+					sizeOf = Math.addExact(sizeOf, Math.multiplyExact(array.length, c.size.getAsInt()));
+					continue;
+				}
+				for (E element : array) {
+					sizeOf = Math.addExact(sizeOf, c.layout.sizeOf((Object) c.getter.invokeExact((Object) element)));
+				}
+			}
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new RuntimeException(e);
+		}
+		return sizeOf;
+	}
+	
+	/**
+	 * Skips an array in a data input stream without creating it.
+	 * Columns of fields with a static size are skipped at once.
+	 *
+	 * @param in The data input stream to skip the array in
+	 * @throws IOException If an I/O error occurs
+	 * @since 1.3.0
+	 */
+	@Override
+	public void skip(DataInput in) throws IOException {
+		int length = LengthPrefixes.readLength(Layout.ofInt, in);
+		for (Column c : columns) {
+			if (c.size.isPresent()) {
+				Layouts.skipBytes(in, (long) length * c.size.getAsInt());
+				continue;
+			}
+			for (int row = 0; row < length; row++) {
+				c.layout.skip(in);
+			}
+		}
+	}
+	
+	/**
+	 * Copies an array from a data input stream to a data output stream without creating it.
+	 * Columns of fields with a static size are copied as single runs of bytes.
+	 *
+	 * @param in The data input stream to read the array from
+	 * @param out The data output stream to write the array to
+	 * @throws IOException If an I/O error occurs
+	 * @since 1.3.0
+	 */
+	@Override
+	public void copy(DataInput in, DataOutput out) throws IOException {
+		int length = LengthPrefixes.readLength(Layout.ofInt, in);
+		out.writeInt(length);
+		for (Column c : columns) {
+			if (c.size.isPresent()) {
+				Layouts.transfer(in, out, (long) length * c.size.getAsInt());
+				continue;
+			}
+			for (int row = 0; row < length; row++) {
+				c.layout.copy(in, out);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the size of this layout in bytes, or empty if the size is dynamic.
+	 * Since the length of the array is determined at runtime, this layout has a dynamic size.
+	 *
+	 * @return empty, indicating a dynamic size
+	 * @since 1.3.0
+	 */
+	@Override
+	public OptionalInt size() {
+		return OptionalInt.empty();
+	}
+	
+	/**
+	 * Returns the layout for the array elements.
+	 *
+	 * @return The layout for the array elements
+	 * @since 1.3.0
+	 */
+	@Override
+	public Layout<?> elementLayout() {
+		return elementLayout;
+	}
+	
+	@Override
+	public String toString() {
+		return "ColumnarLayout{" +
+				"elementType=" + elementType +
+				", columns=" + columns.length +
+				'}';
+	}
+	
+	/**
+	 * The columns of an array read by {@link #readColumns(DataInput)}: one array per field of the elements,
+	 * in the order the fields are written. Columns of primitive fields are arrays of primitives.
+	 *
+	 * @since 1.3.0
+	 * @author Sulphuris
+	 */
+	public static final class Columns {
+		private final int length;
+		private final String[] names;
+		private final Object[] columns;
+		
+		Columns(int length, String[] names, Object[] columns) {
+			this.length = length;
+			this.names = names;
+			this.columns = columns;
+		}
+		
+		/**
+		 * Returns the number of elements, which is the length of every column.
+		 *
+		 * @return The number of elements
+		 * @since 1.3.0
+		 */
+		public int length() {
+			return length;
+		}
+		
+		/**
+		 * Returns the number of columns.
+		 *
+		 * @return The number of fields of the elements
+		 * @since 1.3.0
+		 */
+		public int columnsCount() {
+			return columns.length;
+		}
+		
+		/**
+		 * Returns the name of the field of the column at the specified index.
+		 *
+		 * @param i The index of the column
+		 * @return The name of the field
+		 * @since 1.3.0
+		 */
+		public String name(int i) {
+			return names[i];
+		}
+		
+		/**
+		 * Returns the column at the specified index.
+		 *
+		 * @param i The index of the column
+		 * @return The array of the values of the field, such as an {@code int[]} for an {@code int} field
+		 * @since 1.3.0
+		 */
+		public Object column(int i) {
+			return columns[i];
+		}
+		
+		/**
+		 * Returns the column of the field with the specified name.
+		 *
+		 * @param <A> The type of the column
+		 * @param name The name of the field
+		 * @param arrayType The type of the column, such as {@code int[].class} for an {@code int} field
+		 * @return The array of the values of the field
+		 * @throws IllegalArgumentException If there is no field with the specified name
+		 * @throws ClassCastException If the column is not of the specified type
+		 * @since 1.3.0
+		 */
+		public <A> A column(String name, Class<A> arrayType) {
+			for (int i = 0; i < names.length; i++) {
+				if (names[i].equals(name)) return arrayType.cast(columns[i]);
+			}
+			throw new IllegalArgumentException("No field " + name);
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package com.ydo4ki.datalayouts;
+
+import java.io.DataInput;
+import java.io.IOException;
+
+/**
+ * A {@link DataInput} that reads from another one and keeps the string dictionary of a connection.
+ * Fields annotated with {@link com.ydo4ki.datalayouts.annotation.Interned} are read from the dictionary
+ * if they were written as an index, so the same instance is returned every time, or in full otherwise.
+ * Everything else is read from the underlying input as is.
+ *
+ * <p>Use one input per connection, for all the objects read from it, with the same capacity
+ * as the {@link DictionaryDataOutput} that wrote them. This class is not thread-safe.</p>
+ *
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+public final class DictionaryDataInput implements DataInput {
+	private final DataInput in;
+	final StringDictionary dictionary;
+	
+	/**
+	 * Creates a new input with a dictionary of the specified capacity.
+	 *
+	 * @param in The input to read from
+	 * @param capacity The greatest number of strings the dictionary holds
+	 * @throws IllegalArgumentException If the capacity is not positive
+	 * @since 1.3.0
+	 */
+	public DictionaryDataInput(DataInput in, int capacity) {
+		this.in = in;
+		this.dictionary = new StringDictionary(capacity, false);
+	}
+	
+	/**
+	 * Forgets all the strings of the dictionary, at the same point the output writing to this input was reset.
+	 *
+	 * @since 1.3.0
+	 */
+	public void reset() {
+		dictionary.clear();
+	}
+	
+	@Override
+	public void readFully(byte[] b) throws IOException {
+		in.readFully(b);
+	}
+	
+	@Override
+	public void readFully(byte[] b, int off, int len) throws IOException {
+		in.readFully(b, off, len);
+	}
+	
+	@Override
+	public int skipBytes(int n) throws IOException {
+		return in.skipBytes(n);
+	}
+	
+	@Override
+	public boolean readBoolean() throws IOException {
+		return in.readBoolean();
+	}
+	
+	@Override
+	public byte readByte() throws IOException {
+		return in.readByte();
+	}
+	
+	@Override
+	public int readUnsignedByte() throws IOException {
+		return in.readUnsignedByte();
+	}
+	
+	@Override
+	public short readShort() throws IOException {
+		return in.readShort();
+	}
+	
+	@Override
+	public int readUnsignedShort() throws IOException {
+		return in.readUnsignedShort();
+	}
+	
+	@Override
+	public char readChar() throws IOException {
+		return in.readChar();
+	}
+	
+	@Override
+	public int readInt() throws IOException {
+		return in.readInt();
+	}
+	
+	@Override
+	public long readLong() throws IOException {
+		return in.readLong();
+	}
+	
+	@Override
+	public float readFloat() throws IOException {
+		return in.readFloat();
+	}
+	
+	@Override
+	public double readDouble() throws IOException {
+		return in.readDouble();
+	}
+	
+	@Override
+	@SuppressWarnings("deprecation")
+	public String readLine() throws IOException {
+		return in.readLine();
+	}
+	
+	@Override
+	public String readUTF() throws IOException {
+		return in.readUTF();
+	}
+}
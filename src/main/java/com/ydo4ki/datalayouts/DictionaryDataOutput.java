@@ -0,0 +1,113 @@
+package com.ydo4ki.datalayouts;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A {@link DataOutput} that writes to another one and keeps the string dictionary of a connection.
+ * Fields annotated with {@link com.ydo4ki.datalayouts.annotation.Interned} are written as the index
+ * of the string in the dictionary if it is there, or in full otherwise.
+ * Everything else is passed to the underlying output as is.
+ *
+ * <p>Use one output per connection, for all the objects written to it, and read them
+ * with a {@link DictionaryDataInput} of the same capacity. This class is not thread-safe.</p>
+ *
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+public final class DictionaryDataOutput implements DataOutput {
+	private final DataOutput out;
+	final StringDictionary dictionary;
+	
+	/**
+	 * Creates a new output with a dictionary of the specified capacity.
+	 *
+	 * @param out The output to write to
+	 * @param capacity The greatest number of strings the dictionary holds
+	 * @throws IllegalArgumentException If the capacity is not positive
+	 * @since 1.3.0
+	 */
+	public DictionaryDataOutput(DataOutput out, int capacity) {
+		this.out = out;
+		this.dictionary = new StringDictionary(capacity, true);
+	}
+	
+	/**
+	 * Forgets all the strings of the dictionary, the input reading from this output has to be reset at the same point.
+	 *
+	 * @since 1.3.0
+	 */
+	public void reset() {
+		dictionary.clear();
+	}
+	
+	@Override
+	public void write(int b) throws IOException {
+		out.write(b);
+	}
+	
+	@Override
+	public void write(byte[] b) throws IOException {
+		out.write(b);
+	}
+	
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		out.write(b, off, len);
+	}
+	
+	@Override
+	public void writeBoolean(boolean v) throws IOException {
+		out.writeBoolean(v);
+	}
+	
+	@Override
+	public void writeByte(int v) throws IOException {
+		out.writeByte(v);
+	}
+	
+	@Override
+	public void writeShort(int v) throws IOException {
+		out.writeShort(v);
+	}
+	
+	@Override
+	public void writeChar(int v) throws IOException {
+		out.writeChar(v);
+	}
+	
+	@Override
+	public void writeInt(int v) throws IOException {
+		out.writeInt(v);
+	}
+	
+	@Override
+	public void writeLong(long v) throws IOException {
+		out.writeLong(v);
+	}
+	
+	@Override
+	public void writeFloat(float v) throws IOException {
+		out.writeFloat(v);
+	}
+	
+	@Override
+	public void writeDouble(double v) throws IOException {
+		out.writeDouble(v);
+	}
+	
+	@Override
+	public void writeBytes(String s) throws IOException {
+		out.writeBytes(s);
+	}
+	
+	@Override
+	public void writeChars(String s) throws IOException {
+		out.writeChars(s);
+	}
+	
+	@Override
+	public void writeUTF(String s) throws IOException {
+		out.writeUTF(s);
+	}
+}
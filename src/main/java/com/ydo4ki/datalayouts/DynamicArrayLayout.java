@@ -4,12 +4,13 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
 import java.util.OptionalInt;
 
 /**
  * A layout implementation for arrays with dynamic length.
  * This class provides serialization and deserialization support for arrays where the length
- * is determined at runtime. When writing an array, the length is written first as an integer,
+ * is determined at runtime. When writing an array, the length is written first (as an integer by default),
  * followed by each element serialized using its layout.
  *
  * @param <T> The array type
@@ -22,6 +23,12 @@ class DynamicArrayLayout<T> implements ArrayLayout<T> {
 	protected final Class<T> arrayType;
 	/** The layout for the array elements */
 	protected final Layout elementLayout;
+	/** Bulk reader and writer of the elements, or null if they are not default primitives */
+	protected final PrimitiveArrayCodec codec;
+	/** The layout the length of arrays is written with */
+	protected final Layout.OfInt lengthPrefix;
+	/** The greatest length the prefix can hold */
+	private final int maxLength;
 	
 	/**
 	 * Creates a new dynamic array layout with the specified element layout.
@@ -32,9 +39,46 @@ class DynamicArrayLayout<T> implements ArrayLayout<T> {
 	 * @since 1.0.0
 	 */
 	DynamicArrayLayout(Class<T> arrayType, Layout elementLayout) {
+		this(arrayType, elementLayout, Layout.ofInt);
+	}
+	
+	/**
+	 * Creates a new dynamic array layout with the specified element layout and length prefix.
+	 *
+	 * @param arrayType The class of the array
+	 * @param elementLayout The layout for the array elements
+	 * @param lengthPrefix The layout to write the length of arrays with
+	 * @throws UnpureClassException If the provided class is not an array
+	 * @since 1.3.0
+	 */
+	DynamicArrayLayout(Class<T> arrayType, Layout elementLayout, Layout.OfInt lengthPrefix) {
 		if (!arrayType.isArray()) throw new UnpureClassException(arrayType, "array expected");
 		this.arrayType = arrayType;
 		this.elementLayout = elementLayout;
+		this.codec = PrimitiveArrayCodec.of(arrayType.getComponentType(), elementLayout);
+		this.lengthPrefix = lengthPrefix;
+		this.maxLength = LengthPrefixes.maxLength(lengthPrefix);
+	}
+	
+	/**
+	 * Creates a dynamic array layout with the same elements that writes the length with the specified layout.
+	 *
+	 * @param lengthPrefix The layout to write the length of arrays with
+	 * @return A dynamic array layout with the specified length prefix
+	 * @since 1.3.0
+	 */
+	public DynamicArrayLayout<T> withLengthPrefix(Layout.OfInt lengthPrefix) {
+		return new DynamicArrayLayout<>(arrayType, elementLayout, lengthPrefix);
+	}
+	
+	/**
+	 * Returns the layout the length of arrays is written with.
+	 *
+	 * @return The layout of the length prefix
+	 * @since 1.3.0
+	 */
+	Layout.OfInt lengthPrefix() {
+		return lengthPrefix;
 	}
 	
 	/**
@@ -50,8 +94,9 @@ class DynamicArrayLayout<T> implements ArrayLayout<T> {
 	
 	/**
 	 * Writes an array to a data output stream.
-	 * This method first writes the length of the array as an integer,
+	 * This method first writes the length of the array with the length prefix (an integer by default),
 	 * then writes each element using its layout.
+	 * Arrays of primitives are written in bulk.
 	 *
 	 * @param array The array to write
 	 * @param out The data output stream to write to
@@ -60,15 +105,21 @@ class DynamicArrayLayout<T> implements ArrayLayout<T> {
 	 */
 	@Override
 	public void write(T array, DataOutput out) throws IOException {
-		out.writeInt(Array.getLength(array));
-		for (int i = 0, Len = Array.getLength(array); i < Len; i++) {
-			elementLayout.asObjectLayout().write(Array.get(array, i), out);
+		int length = Array.getLength(array);
+		lengthPrefix.write(LengthPrefixes.checkLength(length, maxLength), out);
+		if (codec != null) {
+			codec.write(array, length, out);
+			return;
+		}
+		Layout.Of element = elementLayout.asObjectLayout();
+		for (int i = 0; i < length; i++) {
+			element.write(Array.get(array, i), out);
 		}
 	}
 	
 	/**
 	 * Reads an array from a data input stream.
-	 * This method first reads the length of the array as an integer,
+	 * This method first reads the length of the array with the length prefix,
 	 * then reads each element using its layout.
 	 *
 	 * @param in The data input stream to read from
@@ -78,13 +129,14 @@ class DynamicArrayLayout<T> implements ArrayLayout<T> {
 	 */
 	@Override
 	public T read(DataInput in) throws IOException {
-		return readArray(in, in.readInt());
+		return readArray(in, LengthPrefixes.readLength(lengthPrefix, in));
 	}
 	
 	/**
 	 * Reads an array of a specified length from a data input stream.
 	 * This method creates a new array of the specified length and reads
 	 * each element using its layout.
+	 * Arrays of primitives are read in bulk.
 	 *
 	 * @param in The data input stream to read from
 	 * @param length The length of the array to read
@@ -94,8 +146,170 @@ class DynamicArrayLayout<T> implements ArrayLayout<T> {
 	 */
 	protected final T readArray(DataInput in, int length) throws IOException {
 		T array = (T) Array.newInstance(arrayType.getComponentType(), length);
+		if (codec != null) {
+			codec.read(array, length, in);
+			return array;
+		}
+		Layout.Of element = elementLayout.asObjectLayout();
+		for (int i = 0; i < length; i++) {
+			Array.set(array, i, element.read(in));
+		}
+		return array;
+	}
+	
+	/**
+	 * Returns the number of bytes an array is written as: the length prefix and the elements.
+	 * If the elements have a static size, this is computed from the length of the array only.
+	 *
+	 * @param array The array to measure
+	 * @return The number of bytes the array is written as
+	 * @since 1.3.0
+	 */
+	@Override
+	public int sizeOf(T array) {
+		int length = Array.getLength(array);
+		return Math.addExact(lengthPrefix.sizeOf(length), sizeOfElements(array, length));
+	}
+	
+	/**
+	 * Returns the number of bytes the first elements of an array are written as.
+	 *
+	 * @param array The array to measure
+	 * @param count The number of elements to measure
+	 * @return The number of bytes the elements are written as
+	 * @since 1.3.0
+	 */
+	protected final int sizeOfElements(T array, int count) {
+		OptionalInt elementSize = elementLayout.size();
+		if (elementSize.isPresent()) return Math.multiplyExact(count, elementSize.getAsInt());
+		Layout.Of element = elementLayout.asObjectLayout();
+		int sizeOf = 0;
+		for (int i = 0; i < count; i++) {
+			sizeOf = Math.addExact(sizeOf, element.sizeOf(Array.get(array, i)));
+		}
+		return sizeOf;
+	}
+	
+	/**
+	 * Skips an array in a data input stream without creating it.
+	 * If the elements have a static size, the whole array is skipped at once.
+	 *
+	 * @param in The data input stream to skip the array in
+	 * @throws IOException If an I/O error occurs
+	 * @since 1.3.0
+	 */
+	@Override
+	public void skip(DataInput in) throws IOException {
+		skipElements(in, LengthPrefixes.readLength(lengthPrefix, in));
+	}
+	
+	/**
+	 * Copies an array from a data input stream to a data output stream without creating it.
+	 * If the elements have a static size, the whole array is copied as a single run of bytes.
+	 *
+	 * @param in The data input stream to read the array from
+	 * @param out The data output stream to write the array to
+	 * @throws IOException If an I/O error occurs
+	 * @since 1.3.0
+	 */
+	@Override
+	public void copy(DataInput in, DataOutput out) throws IOException {
+		int length = LengthPrefixes.readLength(lengthPrefix, in);
+		lengthPrefix.write(length, out);
+		copyElements(in, out, length);
+	}
+	
+	/**
+	 * Skips a specified number of elements in a data input stream.
+	 *
+	 * @param in The data input stream to skip the elements in
+	 * @param length The number of elements to skip
+	 * @throws IOException If an I/O error occurs
+	 * @since 1.3.0
+	 */
+	protected final void skipElements(DataInput in, int length) throws IOException {
+		OptionalInt elementSize = elementLayout.size();
+		if (elementSize.isPresent()) {
+			Layouts.skipBytes(in, (long) length * elementSize.getAsInt());
+			return;
+		}
+		Layout.Of element = elementLayout.asObjectLayout();
+		for (int i = 0; i < length; i++) {
+			element.skip(in);
+		}
+	}
+	
+	/**
+	 * Copies a specified number of elements from a data input stream to a data output stream.
+	 *
+	 * @param in The data input stream to read the elements from
+	 * @param out The data output stream to write the elements to
+	 * @param length The number of elements to copy
+	 * @throws IOException If an I/O error occurs
+	 * @since 1.3.0
+	 */
+	protected final void copyElements(DataInput in, DataOutput out, int length) throws IOException {
+		OptionalInt elementSize = elementLayout.size();
+		if (elementSize.isPresent()) {
+			Layouts.transfer(in, out, (long) length * elementSize.getAsInt());
+			return;
+		}
+		Layout.Of element = elementLayout.asObjectLayout();
+		for (int i = 0; i < length; i++) {
+			element.copy(in, out);
+		}
+	}
+	
+	/**
+	 * Writes an array to a byte buffer, the same way as {@link #write(Object, DataOutput)}.
+	 *
+	 * @param array The array to write
+	 * @param buffer The buffer to write to
+	 * @since 1.3.0
+	 */
+	@Override
+	public void write(T array, ByteBuffer buffer) {
+		int length = Array.getLength(array);
+		lengthPrefix.write(LengthPrefixes.checkLength(length, maxLength), buffer);
+		if (codec != null) {
+			codec.write(array, length, buffer);
+			return;
+		}
+		Layout.Of element = elementLayout.asObjectLayout();
+		for (int i = 0; i < length; i++) {
+			element.write(Array.get(array, i), buffer);
+		}
+	}
+	
+	/**
+	 * Reads an array from a byte buffer, the same way as {@link #read(DataInput)}.
+	 *
+	 * @param buffer The buffer to read from
+	 * @return The read array
+	 * @since 1.3.0
+	 */
+	@Override
+	public T read(ByteBuffer buffer) {
+		return readArray(buffer, LengthPrefixes.readLength(lengthPrefix, buffer));
+	}
+	
+	/**
+	 * Reads an array of a specified length from a byte buffer.
+	 *
+	 * @param buffer The buffer to read from
+	 * @param length The length of the array to read
+	 * @return The read array
+	 * @since 1.3.0
+	 */
+	protected final T readArray(ByteBuffer buffer, int length) {
+		T array = (T) Array.newInstance(arrayType.getComponentType(), length);
+		if (codec != null) {
+			codec.read(array, length, buffer);
+			return array;
+		}
+		Layout.Of element = elementLayout.asObjectLayout();
 		for (int i = 0; i < length; i++) {
-			Array.set(array, i, elementLayout.asObjectLayout().read(in));
+			Array.set(array, i, element.read(buffer));
 		}
 		return array;
 	}
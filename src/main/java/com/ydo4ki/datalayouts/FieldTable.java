@@ -0,0 +1,131 @@
+package com.ydo4ki.datalayouts;
+
+import java.lang.reflect.Field;
+import java.util.OptionalInt;
+
+/**
+ * The fields of a class layout in the order they are written, with their offsets.
+ * Offsets are exact for all fields up to and including the first field with a dynamic size;
+ * the fields after it can only be reached by skipping the fields before them.
+ *
+ * @see Layout#fieldTable(Layout.Of)
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+public final class FieldTable {
+	private final Field[] fields;
+	private final Layout<?>[] layouts;
+	/** Offsets of the fields, -1 after the first dynamic one */
+	private final int[] offsets;
+	/** The number of leading fields with a static size */
+	private final int staticPrefix;
+	
+	FieldTable(Field[] fields, Layout<?>[] layouts) {
+		this.fields = fields;
+		this.layouts = layouts;
+		this.offsets = new int[fields.length];
+		int offset = 0, prefix = fields.length;
+		for (int i = 0; i < fields.length; i++) {
+			offsets[i] = offset;
+			if (offset == -1) continue;
+			OptionalInt size = layouts[i].size();
+			if (size.isPresent()) {
+				offset += size.getAsInt();
+			} else {
+				offset = -1;
+				prefix = i;
+			}
+		}
+		this.staticPrefix = prefix;
+	}
+	
+	/**
+	 * Returns the number of fields.
+	 *
+	 * @return The number of fields
+	 * @since 1.3.0
+	 */
+	public int fieldsCount() {
+		return fields.length;
+	}
+	
+	/**
+	 * Returns the name of the field at the specified index.
+	 *
+	 * @param i The index of the field
+	 * @return The name of the field
+	 * @since 1.3.0
+	 */
+	public String name(int i) {
+		return fields[i].getName();
+	}
+	
+	/**
+	 * Returns the type of the field at the specified index.
+	 *
+	 * @param i The index of the field
+	 * @return The type of the field
+	 * @since 1.3.0
+	 */
+	public Class<?> type(int i) {
+		return fields[i].getType();
+	}
+	
+	/**
+	 * Returns the layout of the field at the specified index.
+	 *
+	 * @param i The index of the field
+	 * @return The layout of the field
+	 * @since 1.3.0
+	 */
+	public Layout<?> layout(int i) {
+		return layouts[i];
+	}
+	
+	/**
+	 * Returns the offset of the field at the specified index from the start of the object.
+	 *
+	 * @param i The index of the field
+	 * @return The offset in bytes, or empty if a field before it has a dynamic size
+	 * @since 1.3.0
+	 */
+	public OptionalInt offset(int i) {
+		return offsets[i] == -1 ? OptionalInt.empty() : OptionalInt.of(offsets[i]);
+	}
+	
+	/**
+	 * Returns the number of leading fields with a static size.
+	 * If all fields have a static size, this is the number of fields.
+	 *
+	 * @return The number of leading fields with a static size
+	 * @since 1.3.0
+	 */
+	public int staticPrefix() {
+		return staticPrefix;
+	}
+	
+	/**
+	 * Finds a field by its name.
+	 * If a subclass hides a field of its superclass, the field of the subclass is found.
+	 *
+	 * @param name The name of the field
+	 * @return The index of the field, or -1 if there is no such field
+	 * @since 1.3.0
+	 */
+	public int indexOf(String name) {
+		for (int i = 0; i < fields.length; i++) {
+			if (fields[i].getName().equals(name)) return i;
+		}
+		return -1;
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("FieldTable{");
+		for (int i = 0; i < fields.length; i++) {
+			if (i != 0) builder.append(", ");
+			builder.append(name(i)).append('@').append(offsets[i] == -1 ? "?" : String.valueOf(offsets[i]));
+		}
+		return builder.append('}').toString();
+	}
+}
@@ -0,0 +1,86 @@
+package com.ydo4ki.datalayouts;
+
+import java.nio.ByteBuffer;
+import java.util.function.Supplier;
+
+/**
+ * A view of a static-size object stored in a byte buffer, which reads and writes its fields in place
+ * without creating the object.
+ * 
+ * <p>Views are declared as public interfaces extending this one, with a getter and optionally a setter
+ * for each field they need:</p>
+ * <pre>{@code
+ * public interface OrderView extends Flyweight {
+ *     long price();            // or getPrice()
+ *     void price(long price);  // or setPrice(long)
+ *     int quantity();
+ * }
+ *
+ * OrderView view = Flyweight.factory(OrderView.class, Layout.of(Order.class, MethodHandles.lookup())).get();
+ * for (int offset = 0; offset < buffer.limit(); offset += view.size()) {
+ *     view.wrap(buffer, offset);
+ *     total += view.price() * view.quantity();
+ * }
+ * }</pre>
+ *
+ * <p>The implementations are generated: every accessor is a single absolute access to the buffer at
+ * the offset of the field, computed from the field order of the class layout and the sizes of its field layouts.
+ * Values are read and written in the byte order of the buffer.
+ * A single view can be moved over any number of objects with {@link #wrap(ByteBuffer, int)}.</p>
+ *
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+public interface Flyweight {
+	
+	/**
+	 * Creates a factory of views for a class layout.
+	 * The view implementation is generated once for each view and layout, and every call to the factory
+	 * creates a new unwrapped view.
+	 *
+	 * @param <V> The view type
+	 * @param view The view interface, must be public
+	 * @param layout The layout of the objects, must be a class layout with a static size
+	 * @return A factory of views
+	 * @throws IllegalArgumentException If the layout has no static size, is not a class layout,
+	 * or a method of the view does not match any field
+	 * @since 1.3.0
+	 */
+	static <V extends Flyweight> Supplier<V> factory(Class<V> view, Layout.Of<?> layout) {
+		return FlyweightCompiler.compile(view, layout);
+	}
+	
+	/**
+	 * Moves this view to the object at the specified index of a buffer.
+	 *
+	 * @param buffer The buffer containing the object
+	 * @param offset The index of the first byte of the object
+	 * @throws IndexOutOfBoundsException If the object does not fit between the offset and the limit of the buffer
+	 * @since 1.3.0
+	 */
+	void wrap(ByteBuffer buffer, int offset);
+	
+	/**
+	 * Returns the buffer this view is wrapped over.
+	 *
+	 * @return The buffer, or null if the view was never wrapped
+	 * @since 1.3.0
+	 */
+	ByteBuffer buffer();
+	
+	/**
+	 * Returns the index of the object in the buffer.
+	 *
+	 * @return The index of the first byte of the object
+	 * @since 1.3.0
+	 */
+	int offset();
+	
+	/**
+	 * Returns the size of the object in bytes.
+	 *
+	 * @return The size of the object
+	 * @since 1.3.0
+	 */
+	int size();
+}
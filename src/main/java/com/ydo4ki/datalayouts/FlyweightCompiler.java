@@ -0,0 +1,322 @@
+package com.ydo4ki.datalayouts;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Generates {@link Flyweight} implementations for view interfaces.
+ * Every accessor of a view is compiled to a single absolute {@link ByteBuffer} access at the offset of its field;
+ * fields whose layouts are not the primitive ones are accessed through the absolute {@code ByteBuffer}
+ * methods of their layouts.
+ *
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+final class FlyweightCompiler {
+	private FlyweightCompiler() throws InstantiationException {
+		throw new InstantiationException();
+	}
+	
+	private static final String GENERATED_FLYWEIGHT = Type.getInternalName(GeneratedFlyweight.class);
+	private static final String LAYOUT_OF = Type.getInternalName(Layout.Of.class);
+	private static final String BYTE_BUFFER = Type.getInternalName(ByteBuffer.class);
+	
+	/** The factories of the views of each view interface, by class layout; dropped with the view interface */
+	private static final ClassValue<Map<Layout.Of<?>, Supplier<?>>> factories = new ClassValue<Map<Layout.Of<?>, Supplier<?>>>() {
+		@Override
+		protected Map<Layout.Of<?>, Supplier<?>> computeValue(Class<?> type) {
+			return new ConcurrentHashMap<>();
+		}
+	};
+	
+	/** How a field is stored in the buffer */
+	private enum Kind {
+		BOOLEAN("", "B"), BYTE("", "B"), SHORT("Short", "S"), CHAR("Char", "C"),
+		INT("Int", "I"), FLOAT("Float", "F"), LONG("Long", "J"), DOUBLE("Double", "D"),
+		UNSIGNED_BYTE("", "B"), UNSIGNED_SHORT("Short", "S"),
+		/** Through the layout of the field */
+		LAYOUT(null, null);
+		
+		/** Suffix of the {@code ByteBuffer} get/put methods */
+		final String suffix;
+		/** Descriptor of the value in the buffer */
+		final String descriptor;
+		
+		Kind(String suffix, String descriptor) {
+			this.suffix = suffix;
+			this.descriptor = descriptor;
+		}
+		
+		static Kind of(Class<?> fieldType, Layout<?> layout) {
+			// subclasses of the primitive layouts may change the format, so only the exact classes are inlined
+			Class<?> type = layout.getClass();
+			if (fieldType == boolean.class && type == Layout.OfBoolean.class) return BOOLEAN;
+			if (fieldType == byte.class    && type == Layout.OfByte.class)    return BYTE;
+			if (fieldType == short.class   && type == Layout.OfShort.class)   return SHORT;
+			if (fieldType == char.class    && type == Layout.OfChar.class)    return CHAR;
+			if (fieldType == int.class     && type == Layout.OfInt.class)     return INT;
+			if (fieldType == float.class   && type == Layout.OfFloat.class)   return FLOAT;
+			if (fieldType == long.class    && type == Layout.OfLong.class)    return LONG;
+			if (fieldType == double.class  && type == Layout.OfDouble.class)  return DOUBLE;
+			if (layout == Layout.ofUnsignedByte)  return UNSIGNED_BYTE;
+			if (layout == Layout.ofUnsignedShort) return UNSIGNED_SHORT;
+			return LAYOUT;
+		}
+	}
+	
+	/**
+	 * Returns the factory of views for a class layout, generating the view implementation on the first call
+	 * for the view and the layout.
+	 *
+	 * @param view The view interface
+	 * @param layout The class layout
+	 * @param <V> The view type
+	 * @return A factory of new views
+	 * @throws IllegalArgumentException If the view can't be implemented for the layout
+	 * @since 1.3.0
+	 */
+	@SuppressWarnings("unchecked")
+	static <V extends Flyweight> Supplier<V> compile(Class<V> view, Layout.Of<?> layout) {
+		if (!view.isInterface() || !isPublic(view))
+			throw new IllegalArgumentException("View must be a public interface: " + view);
+		if (layout instanceof GeneratedLayout) layout = ((GeneratedLayout<?>) layout).fallback();
+		if (!(layout instanceof ObjectLayout))
+			throw new IllegalArgumentException("Views can only be created for class layouts: " + layout);
+		if (!layout.size().isPresent())
+			throw new IllegalArgumentException("Views can only be created for static-size layouts: " + layout);
+		return (Supplier<V>) factories.get(view).computeIfAbsent(layout, l -> generate(view, (ObjectLayout<?>) l));
+	}
+	
+	private static <V extends Flyweight> Supplier<V> generate(Class<V> view, ObjectLayout<?> layout) {
+		Generator generator = new Generator(view, layout);
+		byte[] bytes = generator.generate();
+		Class<?> generated = new LayoutCompiler.DefiningClassLoader(view.getClassLoader())
+				.define(generator.className.replace('/', '.'), bytes);
+		MethodHandle constructor;
+		try {
+			constructor = MethodHandles.publicLookup().findConstructor(generated,
+					MethodType.methodType(void.class, int.class, Layout.Of[].class));
+		} catch (ReflectiveOperationException e) {
+			throw new AssertionError(e);
+		}
+		MethodHandle newView = MethodHandles.insertArguments(constructor, 0, layout.size().getAsInt(), generator.layouts)
+				.asType(MethodType.methodType(Object.class));
+		return () -> {
+			try {
+				return view.cast(newView.invokeExact());
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new RuntimeException(e);
+			}
+		};
+	}
+	
+	private static boolean isPublic(Class<?> clazz) {
+		for (; clazz != null; clazz = clazz.getEnclosingClass()) {
+			if (!Modifier.isPublic(clazz.getModifiers())) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Generates a view class for a single view and layout.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final class Generator {
+		private final Class<?> view;
+		private final ObjectLayout<?> layout;
+		private final String className;
+		private final int[] offsets;
+		/** Layouts of the fields, as object layouts */
+		private final Layout.Of<?>[] layouts;
+		
+		Generator(Class<?> view, ObjectLayout<?> layout) {
+			this.view = view;
+			this.layout = layout;
+			String packageName = LayoutCompiler.packageName(view);
+			this.className = (packageName.isEmpty() ? "" : packageName.replace('.', '/') + "/")
+					+ view.getSimpleName() + "$$Flyweight";
+			int count = layout.fieldsCount();
+			this.offsets = new int[count];
+			this.layouts = new Layout.Of<?>[count];
+			for (int i = 0, offset = 0; i < count; i++) {
+				offsets[i] = offset;
+				layouts[i] = layout.fieldLayout(i).asObjectLayout();
+				offset += layout.fieldLayout(i).size().getAsInt();
+			}
+		}
+		
+		byte[] generate() {
+			ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS); // no branches, so no frames
+			cw.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, className, null, GENERATED_FLYWEIGHT,
+					new String[]{Type.getInternalName(view)});
+			cw.visitField(ACC_PRIVATE | ACC_FINAL, "layouts", "[L" + LAYOUT_OF + ";", null, null).visitEnd();
+			generateConstructor(cw);
+			
+			Set<String> generated = new HashSet<>();
+			for (Method method : view.getMethods()) {
+				if (method.getDeclaringClass() == Flyweight.class || method.isDefault() || Modifier.isStatic(method.getModifiers()))
+					continue;
+				if (!generated.add(method.getName() + Type.getMethodDescriptor(method))) continue;
+				if (method.getParameterCount() == 0 && method.getReturnType() != void.class) {
+					generateGetter(cw, method, field(method, method.getReturnType(), "get", "is"));
+				} else if (method.getParameterCount() == 1 && method.getReturnType() == void.class) {
+					generateSetter(cw, method, field(method, method.getParameterTypes()[0], "set"));
+				} else {
+					throw new IllegalArgumentException(method + " is neither a getter nor a setter");
+				}
+			}
+			cw.visitEnd();
+			return cw.toByteArray();
+		}
+		
+		/** Finds the field of an accessor by its name, with or without one of the prefixes */
+		private int field(Method method, Class<?> type, String... prefixes) {
+			String name = method.getName();
+			int i = field(name);
+			for (String prefix : prefixes) {
+				if (i != -1) break;
+				if (name.length() > prefix.length() && name.startsWith(prefix) && Character.isUpperCase(name.charAt(prefix.length())))
+					i = field(Character.toLowerCase(name.charAt(prefix.length())) + name.substring(prefix.length() + 1));
+			}
+			if (i == -1)
+				throw new IllegalArgumentException("No field for " + method + " in " + layout.type());
+			if (layout.field(i).getType() != type)
+				throw new IllegalArgumentException(method + " does not match the type of " + layout.field(i));
+			return i;
+		}
+		
+		private int field(String name) {
+			for (int i = 0, Len = layout.fieldsCount(); i < Len; i++) {
+				if (layout.field(i).getName().equals(name)) return i;
+			}
+			return -1;
+		}
+		
+		private void generateConstructor(ClassWriter cw) {
+			MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "(I[L" + LAYOUT_OF + ";)V", null, null);
+			mv.visitCode();
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitVarInsn(ILOAD, 1);
+			mv.visitMethodInsn(INVOKESPECIAL, GENERATED_FLYWEIGHT, "<init>", "(I)V", false);
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitVarInsn(ALOAD, 2);
+			mv.visitFieldInsn(PUTFIELD, className, "layouts", "[L" + LAYOUT_OF + ";");
+			mv.visitInsn(RETURN);
+			mv.visitMaxs(0, 0);
+			mv.visitEnd();
+		}
+		
+		private void generateGetter(ClassWriter cw, Method method, int i) {
+			Class<?> type = layout.field(i).getType();
+			Kind kind = Kind.of(type, layout.fieldLayout(i));
+			MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, method.getName(), Type.getMethodDescriptor(method), null, null);
+			mv.visitCode();
+			if (kind == Kind.LAYOUT) {
+				loadLayout(mv, i);
+				loadIndex(mv, i);
+				mv.visitMethodInsn(INVOKEINTERFACE, LAYOUT_OF, "read", "(L" + BYTE_BUFFER + ";I)Ljava/lang/Object;", true);
+				if (type.isPrimitive()) LayoutCompiler.unbox(mv, type);
+				else mv.visitTypeInsn(CHECKCAST, Type.getInternalName(type));
+			} else {
+				loadIndex(mv, i);
+				mv.visitMethodInsn(INVOKEVIRTUAL, BYTE_BUFFER, "get" + kind.suffix, "(I)" + kind.descriptor, false);
+				switch (kind) {
+					case BOOLEAN:
+						// (b | -b) >>> 31, which is b != 0 without a branch
+						mv.visitInsn(DUP);
+						mv.visitInsn(INEG);
+						mv.visitInsn(IOR);
+						mv.visitIntInsn(BIPUSH, 31);
+						mv.visitInsn(IUSHR);
+						break;
+					case UNSIGNED_BYTE:
+						mv.visitIntInsn(SIPUSH, 0xFF);
+						mv.visitInsn(IAND);
+						break;
+					case UNSIGNED_SHORT:
+						mv.visitLdcInsn(0xFFFF);
+						mv.visitInsn(IAND);
+						break;
+					default:
+						break;
+				}
+			}
+			mv.visitInsn(Type.getType(type).getOpcode(IRETURN));
+			mv.visitMaxs(0, 0);
+			mv.visitEnd();
+		}
+		
+		private void generateSetter(ClassWriter cw, Method method, int i) {
+			Class<?> type = layout.field(i).getType();
+			Kind kind = Kind.of(type, layout.fieldLayout(i));
+			MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, method.getName(), Type.getMethodDescriptor(method), null, null);
+			mv.visitCode();
+			if (kind == Kind.LAYOUT) {
+				loadLayout(mv, i);
+				mv.visitVarInsn(Type.getType(type).getOpcode(ILOAD), 1);
+				if (type.isPrimitive()) LayoutCompiler.box(mv, type);
+				mv.visitVarInsn(ALOAD, 0);
+				mv.visitFieldInsn(GETFIELD, GENERATED_FLYWEIGHT, "buffer", "L" + BYTE_BUFFER + ";");
+				loadOffset(mv, i);
+				mv.visitMethodInsn(INVOKEINTERFACE, LAYOUT_OF, "write", "(Ljava/lang/Object;L" + BYTE_BUFFER + ";I)V", true);
+			} else {
+				loadIndex(mv, i);
+				// booleans are 0 or 1, unsigned values are truncated to the size of the field
+				mv.visitVarInsn(Type.getType(type).getOpcode(ILOAD), 1);
+				if (kind == Kind.UNSIGNED_BYTE) mv.visitInsn(I2B);
+				else if (kind == Kind.UNSIGNED_SHORT) mv.visitInsn(I2S);
+				mv.visitMethodInsn(INVOKEVIRTUAL, BYTE_BUFFER, "put" + kind.suffix, "(I" + kind.descriptor + ")L" + BYTE_BUFFER + ";", false);
+				mv.visitInsn(POP);
+			}
+			mv.visitInsn(RETURN);
+			mv.visitMaxs(0, 0);
+			mv.visitEnd();
+		}
+		
+		private void loadLayout(MethodVisitor mv, int i) {
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitFieldInsn(GETFIELD, className, "layouts", "[L" + LAYOUT_OF + ";");
+			pushInt(mv, i);
+			mv.visitInsn(AALOAD);
+		}
+		
+		/** Pushes the buffer and the index of the field in it */
+		private void loadIndex(MethodVisitor mv, int i) {
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitFieldInsn(GETFIELD, GENERATED_FLYWEIGHT, "buffer", "L" + BYTE_BUFFER + ";");
+			loadOffset(mv, i);
+		}
+		
+		private void loadOffset(MethodVisitor mv, int i) {
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitFieldInsn(GETFIELD, GENERATED_FLYWEIGHT, "offset", "I");
+			if (offsets[i] != 0) {
+				pushInt(mv, offsets[i]);
+				mv.visitInsn(IADD);
+			}
+		}
+	}
+	
+	private static void pushInt(MethodVisitor mv, int value) {
+		if (value <= Short.MAX_VALUE) LayoutCompiler.pushInt(mv, value);
+		else mv.visitLdcInsn(value);
+	}
+}
@@ -0,0 +1,337 @@
+package com.ydo4ki.datalayouts;
+
+import com.ydo4ki.datalayouts.annotation.LengthPrefix;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Writes objects of a layout as frames, each prefixed with its length in bytes, and reads them back.
+ * Frames are written to and read from channels in big-endian byte order, like {@link java.io.DataOutput}.
+ *
+ * <p>With blocking channels, {@link #write(Object, WritableByteChannel)} and {@link #read(ReadableByteChannel)}
+ * write and read one frame at a time through a per-thread direct buffer
+ * (bigger frames get a buffer of their own). With selector-based channels,
+ * objects are encoded into the outgoing buffer of the connection with {@link #encode(Object, ByteBuffer)},
+ * and complete frames are taken from its incoming buffer with {@link #nextFrame(ByteBuffer)} or
+ * {@link #decodeAll(ByteBuffer, Consumer)}, without copying them.</p>
+ *
+ * <p>Frame codecs are immutable, every {@code with} method returns a new codec.
+ * Frames are 4-byte length prefixed and limited to 16 MiB by default.</p>
+ *
+ * <pre>
+ * FrameCodec&lt;Packet&gt; frames = Layout.frames(packetLayout)
+ *         .withLengthPrefix(LengthPrefix.Type.VARINT)
+ *         .withMaxFrameSize(64 * 1024);
+ * frames.write(packet, socketChannel);
+ * Packet reply = frames.read(socketChannel);
+ * </pre>
+ *
+ * @param <T> The type of object the layout represents
+ * @see Layout#frames(Layout.Of)
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+public final class FrameCodec<T> {
+	private static final int DEFAULT_MAX_FRAME_SIZE = 16 << 20;
+	/** The capacity of new per-thread buffers */
+	private static final int BUFFER_SIZE = 8192;
+	/** The buffer of the current thread, or null while a frame of the thread uses it */
+	private static final ThreadLocal<ByteBuffer> buffer = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+	
+	private final Layout.Of<T> layout;
+	private final LengthPrefix.Type lengthPrefix;
+	private final Layout.OfInt prefixLayout;
+	/** The size of {@link #prefixLayout}, or 0 if it's dynamic */
+	private final int prefixSize;
+	private final int maxFrameSize;
+	
+	FrameCodec(Layout.Of<T> layout) {
+		this(layout, LengthPrefix.Type.INT, DEFAULT_MAX_FRAME_SIZE);
+	}
+	
+	private FrameCodec(Layout.Of<T> layout, LengthPrefix.Type lengthPrefix, int maxFrameSize) {
+		this.layout = Objects.requireNonNull(layout);
+		this.lengthPrefix = Objects.requireNonNull(lengthPrefix);
+		this.prefixLayout = LengthPrefixes.of(lengthPrefix);
+		this.prefixSize = prefixLayout.size().orElse(0);
+		this.maxFrameSize = maxFrameSize;
+	}
+	
+	/**
+	 * Creates a new codec with the same layout and maximum frame size, prefixing frames with their length
+	 * written the specified way.
+	 *
+	 * @param lengthPrefix The way to write the length of frames
+	 * @return A new codec with the specified length prefix
+	 * @since 1.3.0
+	 */
+	public FrameCodec<T> withLengthPrefix(LengthPrefix.Type lengthPrefix) {
+		return new FrameCodec<>(layout, lengthPrefix, maxFrameSize);
+	}
+	
+	/**
+	 * Creates a new codec with the same layout and length prefix, limiting the size of frames.
+	 * Bigger frames are neither written nor read.
+	 *
+	 * @param maxFrameSize The greatest number of bytes of an object, not including the length prefix
+	 * @return A new codec with the specified maximum frame size
+	 * @throws IllegalArgumentException If the size is negative
+	 * @since 1.3.0
+	 */
+	public FrameCodec<T> withMaxFrameSize(int maxFrameSize) {
+		if (maxFrameSize < 0) throw new IllegalArgumentException("Negative frame size: " + maxFrameSize);
+		return new FrameCodec<>(layout, lengthPrefix, maxFrameSize);
+	}
+	
+	/**
+	 * Returns the greatest number of bytes of an object in a frame, the smaller of the configured maximum
+	 * and the greatest length the length prefix can hold.
+	 *
+	 * @return The maximum frame size, not including the length prefix
+	 * @since 1.3.0
+	 */
+	public int maxFrameSize() {
+		return Math.min(maxFrameSize, LengthPrefixes.maxLength(prefixLayout));
+	}
+	
+	private int checkFrameSize(int length) {
+		if (length < 0 || length > maxFrameSize())
+			throw new IllegalArgumentException("Frame of " + (length & 0xFFFFFFFFL) + " bytes, the maximum is " + maxFrameSize());
+		return length;
+	}
+	
+	/**
+	 * Writes a frame to a byte buffer, at its position and in its byte order.
+	 * If the length prefix has a static size, the object is written right after the space for the prefix,
+	 * which is filled in afterwards; otherwise the object is measured first.
+	 *
+	 * @param x The object to write
+	 * @param buffer The buffer to write to
+	 * @return The number of bytes written, including the length prefix
+	 * @throws BufferOverflowException If there is not enough space remaining in the buffer,
+	 * the position of the buffer is not changed then
+	 * @throws IllegalArgumentException If the object is bigger than the maximum frame size,
+	 * or if it can't be written to a byte buffer or measured, see {@link Layout.Of#sizeOf(Object)}
+	 * @since 1.3.0
+	 */
+	public int encode(T x, ByteBuffer buffer) {
+		int start = buffer.position();
+		try {
+			if (prefixSize != 0) {
+				if (buffer.remaining() < prefixSize) throw new BufferOverflowException();
+				buffer.position(start + prefixSize);
+				layout.write(x, buffer);
+				prefixLayout.write(checkFrameSize(buffer.position() - start - prefixSize), buffer, start);
+			} else {
+				prefixLayout.write(checkFrameSize(layout.sizeOf(x)), buffer);
+				layout.write(x, buffer);
+			}
+		} catch (RuntimeException e) {
+			buffer.position(start);
+			throw e;
+		}
+		return buffer.position() - start;
+	}
+	
+	/**
+	 * Writes a frame to a blocking channel.
+	 * The frame is encoded into a buffer of the current thread, which is reused for the next frames.
+	 *
+	 * @param x The object to write
+	 * @param channel The channel to write to
+	 * @throws IllegalArgumentException If the object is bigger than the maximum frame size,
+	 * or if it can't be written to a byte buffer or measured, see {@link Layout.Of#sizeOf(Object)}
+	 * @throws IOException If an I/O error occurs
+	 * @since 1.3.0
+	 */
+	public void write(T x, WritableByteChannel channel) throws IOException {
+		ByteBuffer pooled = take();
+		try {
+			ByteBuffer buf = pooled;
+			buf.clear();
+			try {
+				encode(x, buf);
+			} catch (BufferOverflowException e) {
+				int length = checkFrameSize(layout.sizeOf(x));
+				buf = ByteBuffer.allocateDirect(length + 5); // any prefix takes at most 5 bytes
+				encode(x, buf);
+			}
+			buf.flip();
+			while (buf.hasRemaining()) {
+				channel.write(buf);
+			}
+		} finally {
+			release(pooled);
+		}
+	}
+	
+	/**
+	 * Reads a frame from a blocking channel.
+	 * The frame is read into a buffer of the current thread, which is reused for the next frames.
+	 *
+	 * @param channel The channel to read from
+	 * @return The read object
+	 * @throws EOFException If the channel ends before the end of the frame
+	 * @throws IllegalArgumentException If the frame is bigger than the maximum frame size,
+	 * or if the object doesn't take the whole frame
+	 * @throws IOException If an I/O error occurs
+	 * @since 1.3.0
+	 */
+	public T read(ReadableByteChannel channel) throws IOException {
+		ByteBuffer pooled = take();
+		try {
+			ByteBuffer buf = pooled;
+			buf.clear();
+			int length;
+			if (prefixSize != 0) {
+				buf.limit(prefixSize);
+				readFully(channel, buf);
+				length = prefixLayout.read(buf, 0);
+			} else {
+				length = readPrefix(channel, buf);
+			}
+			checkFrameSize(length);
+			if (length > buf.capacity()) buf = ByteBuffer.allocateDirect(length);
+			buf.clear().limit(length);
+			readFully(channel, buf);
+			buf.flip();
+			return decode(buf);
+		} finally {
+			release(pooled);
+		}
+	}
+	
+	/**
+	 * Reads a length prefix of a dynamic size from a channel, a byte at a time.
+	 */
+	private int readPrefix(ReadableByteChannel channel, ByteBuffer buf) throws IOException {
+		for (int i = 0; ; i++) {
+			buf.limit(i + 1);
+			readFully(channel, buf);
+			try {
+				return prefixLayout.read(buf, 0);
+			} catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+				// not complete yet
+			}
+		}
+	}
+	
+	private static void readFully(ReadableByteChannel channel, ByteBuffer buf) throws IOException {
+		while (buf.hasRemaining()) {
+			if (channel.read(buf) < 0) throw new EOFException();
+		}
+	}
+	
+	/**
+	 * Takes a complete frame from a byte buffer that data is received into.
+	 * If the buffer holds a complete frame at its position, the position is advanced past it,
+	 * otherwise the buffer is not changed and more data must be received first.
+	 *
+	 * <pre>
+	 * channel.read(in);
+	 * in.flip();
+	 * for (ByteBuffer frame; (frame = frames.nextFrame(in)) != null; ) handle(frame);
+	 * in.compact();
+	 * </pre>
+	 *
+	 * @param buffer The buffer holding the received bytes, from its position to its limit
+	 * @return The bytes of the object in the frame, sharing the content of the buffer, or null if the frame is not complete
+	 * @throws IllegalArgumentException If the frame is bigger than the maximum frame size,
+	 * or if it couldn't fit in the buffer even after compacting it
+	 * @since 1.3.0
+	 */
+	public ByteBuffer nextFrame(ByteBuffer buffer) {
+		int start = buffer.position();
+		int length;
+		int prefix;
+		if (prefixSize != 0) {
+			if (buffer.remaining() < prefixSize) return null;
+			length = prefixLayout.read(buffer, start);
+			prefix = prefixSize;
+		} else {
+			ByteBuffer view = buffer.duplicate();
+			try {
+				length = prefixLayout.read(view);
+			} catch (BufferUnderflowException e) {
+				return null;
+			}
+			prefix = view.position() - start;
+		}
+		checkFrameSize(length);
+		if (prefix + length > buffer.capacity())
+			throw new IllegalArgumentException("Frame of " + length + " bytes doesn't fit in a buffer of " + buffer.capacity() + " bytes");
+		if (buffer.remaining() < prefix + length) return null;
+		ByteBuffer frame = ByteBufferData.at(buffer, start + prefix);
+		frame.limit(start + prefix + length);
+		buffer.position(start + prefix + length);
+		return frame.slice().order(buffer.order());
+	}
+	
+	/**
+	 * Decodes all complete frames of a byte buffer that data is received into.
+	 * The position of the buffer is advanced past the last complete frame; the bytes of an incomplete frame
+	 * stay in the buffer, to be compacted before more data is received.
+	 *
+	 * @param buffer The buffer holding the received bytes, from its position to its limit
+	 * @param action The consumer of the decoded objects
+	 * @return The number of decoded objects
+	 * @throws IllegalArgumentException If a frame is bigger than the maximum frame size, if it couldn't fit in
+	 * the buffer, or if its object doesn't take the whole frame
+	 * @since 1.3.0
+	 */
+	public int decodeAll(ByteBuffer buffer, Consumer<? super T> action) {
+		int count = 0;
+		for (ByteBuffer frame; (frame = nextFrame(buffer)) != null; count++) {
+			action.accept(decode(frame));
+		}
+		return count;
+	}
+	
+	/**
+	 * Decodes the object of a frame, checking that it takes the whole frame.
+	 *
+	 * @param frame The bytes of the object, as returned by {@link #nextFrame(ByteBuffer)}
+	 * @return The decoded object
+	 * @throws IllegalArgumentException If the object doesn't take the whole frame
+	 * @throws BufferUnderflowException If the object is longer than the frame
+	 * @since 1.3.0
+	 */
+	public T decode(ByteBuffer frame) {
+		T x = layout.read(frame);
+		if (frame.hasRemaining())
+			throw new IllegalArgumentException(frame.remaining() + " bytes left in the frame after " + layout);
+		return x;
+	}
+	
+	/**
+	 * Takes the buffer of the current thread, to be given back with {@link #release(ByteBuffer)}.
+	 * Frames written or read while it is taken (from another codec, for example) get a new one.
+	 */
+	private static ByteBuffer take() {
+		ByteBuffer buf = buffer.get();
+		if (buf == null) return ByteBuffer.allocateDirect(BUFFER_SIZE);
+		buffer.set(null);
+		return buf;
+	}
+	
+	private static void release(ByteBuffer buf) {
+		buffer.set(buf);
+	}
+	
+	@Override
+	public String toString() {
+		return "FrameCodec{" +
+				"layout=" + layout +
+				", lengthPrefix=" + lengthPrefix +
+				", maxFrameSize=" + maxFrameSize() +
+				'}';
+	}
+}
@@ -0,0 +1,64 @@
+package com.ydo4ki.datalayouts;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Base class for generated {@link Flyweight} implementations.
+ * Generated subclasses only add the accessors of the view, which access {@link #buffer} at {@link #offset}
+ * plus the offset of the field.
+ *
+ * <p>This class is public only because generated classes are defined next to the views they implement;
+ * it is not intended to be extended manually.</p>
+ *
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+public abstract class GeneratedFlyweight implements Flyweight {
+	/** The size of the object */
+	private final int size;
+	/** The buffer the view is wrapped over */
+	protected ByteBuffer buffer;
+	/** The index of the object in the buffer */
+	protected int offset;
+	
+	/**
+	 * Creates a new unwrapped view.
+	 *
+	 * @param size The size of the object
+	 * @since 1.3.0
+	 */
+	protected GeneratedFlyweight(int size) {
+		this.size = size;
+	}
+	
+	@Override
+	public final void wrap(ByteBuffer buffer, int offset) {
+		if (offset < 0 || offset > buffer.limit() - size)
+			throw new IndexOutOfBoundsException("offset " + offset + ", size " + size + ", limit " + buffer.limit());
+		this.buffer = buffer;
+		this.offset = offset;
+	}
+	
+	@Override
+	public final ByteBuffer buffer() {
+		return buffer;
+	}
+	
+	@Override
+	public final int offset() {
+		return offset;
+	}
+	
+	@Override
+	public final int size() {
+		return size;
+	}
+	
+	@Override
+	public String toString() {
+		return getClass().getInterfaces()[0].getSimpleName() + "{" +
+				"offset=" + offset +
+				", size=" + size +
+				'}';
+	}
+}
@@ -0,0 +1,106 @@
+package com.ydo4ki.datalayouts;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.OptionalInt;
+
+/**
+ * Base class for layouts produced by the layout compiler.
+ * A generated layout contains straight-line {@code write} and {@code read} methods (for streams and for byte buffers),
+ * with direct field access and direct calls to the primitive layouts, instead of the generic
+ * field loop of the reflective object layout.
+ *
+ * <p>Everything that is not on the hot path (size calculation, string representation and so on)
+ * is delegated to the reflective layout the generated one was compiled from.</p>
+ *
+ * <p>This class is public only because generated classes are defined next to the classes they
+ * serialize; it is not intended to be extended manually.</p>
+ *
+ * @param <T> The type of object this layout represents
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+public abstract class GeneratedLayout<T> implements Layout.Of<T> {
+	/** The reflective layout this layout was compiled from */
+	private final Layout.Of<T> fallback;
+	
+	/**
+	 * Creates a new generated layout.
+	 *
+	 * @param fallback The reflective layout this layout was compiled from
+	 * @since 1.3.0
+	 */
+	protected GeneratedLayout(Layout.Of<T> fallback) {
+		this.fallback = fallback;
+	}
+	
+	/**
+	 * Returns the reflective layout this layout was compiled from.
+	 *
+	 * @return The reflective layout
+	 * @since 1.3.0
+	 */
+	Layout.Of<T> fallback() {
+		return fallback;
+	}
+	
+	/**
+	 * Returns the size of this layout in bytes, or empty if the size is dynamic.
+	 *
+	 * @return The size in bytes, or empty if the size is dynamic
+	 * @since 1.3.0
+	 */
+	@Override
+	public OptionalInt size() {
+		return fallback.size();
+	}
+	
+	/**
+	 * Returns the number of bytes an object is written as, the same way as the reflective layout.
+	 *
+	 * @param x The object to measure
+	 * @return The number of bytes the object is written as
+	 * @since 1.3.0
+	 */
+	@Override
+	public int sizeOf(T x) {
+		return fallback.sizeOf(x);
+	}
+	
+	/**
+	 * Skips an object in a data input stream, the same way as the reflective layout.
+	 *
+	 * @param in The data input stream to skip the object in
+	 * @throws IOException If an I/O error occurs
+	 * @since 1.3.0
+	 */
+	@Override
+	public void skip(DataInput in) throws IOException {
+		fallback.skip(in);
+	}
+	
+	/**
+	 * Copies an object from a data input stream to a data output stream, the same way as the reflective layout.
+	 *
+	 * @param in The data input stream to read the object from
+	 * @param out The data output stream to write the object to
+	 * @throws IOException If an I/O error occurs
+	 * @since 1.3.0
+	 */
+	@Override
+	public void copy(DataInput in, DataOutput out) throws IOException {
+		fallback.copy(in, out);
+	}
+	
+	/**
+	 * Returns a string representation of this layout.
+	 *
+	 * @return A string representation of this layout
+	 * @since 1.3.0
+	 */
+	@Override
+	public String toString() {
+		return "Generated" + fallback;
+	}
+}
@@ -0,0 +1,49 @@
+package com.ydo4ki.datalayouts;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+
+/**
+ * Strategy for creating objects when a class layout reads them.
+ * For every class, the registered strategies are asked in order until one of them is applicable,
+ * so the fastest strategy that works for the class is used. Strategies registered with
+ * {@link Layout#registerInstantiationStrategy} are asked before the built-in ones.
+ * 
+ * <p>A strategy returns a method handle of one of two forms:</p>
+ * <ul>
+ *   <li>{@code (F0, F1, ..., Fn)T} - takes the values of all fields in their layout order and creates the object,
+ *   so no field has to be set afterwards (final fields stay trusted by the JIT)</li>
+ *   <li>{@code ()T} - creates an empty object, whose fields are then set one by one</li>
+ * </ul>
+ *
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+@FunctionalInterface
+public interface InstantiationStrategy {
+	/**
+	 * Finds a method handle that creates objects of the specified class.
+	 *
+	 * @param clazz The class to create objects of
+	 * @param fields The fields of the class in their layout order
+	 * @param lookup The lookup the layout is created with
+	 * @return A method handle creating objects, or null if this strategy is not applicable to the class
+	 * @throws ReflectiveOperationException If the strategy is applicable but the handle can't be created
+	 * @since 1.3.0
+	 */
+	MethodHandle instantiator(Class<?> clazz, Field[] fields, MethodHandles.Lookup lookup) throws ReflectiveOperationException;
+	
+	/** Creates records through their canonical constructor */
+	InstantiationStrategy CANONICAL_CONSTRUCTOR = Instantiators::canonicalConstructor;
+	/**
+	 * Creates objects through a constructor taking all fields in their layout order.
+	 * The constructor must either be annotated with {@link com.ydo4ki.datalayouts.annotation.LayoutConstructor},
+	 * or have parameters with the same names as the fields (the class has to be compiled with {@code -parameters})
+	 */
+	InstantiationStrategy ALL_ARGS_CONSTRUCTOR = Instantiators::allArgsConstructor;
+	/** Creates objects of public classes without final fields through their public no-args constructor */
+	InstantiationStrategy NO_ARGS_CONSTRUCTOR = Instantiators::noArgsConstructor;
+	/** Creates objects without calling any constructor through a cached Objenesis instantiator, applicable to any class */
+	InstantiationStrategy OBJENESIS = Instantiators::objenesis;
+}
@@ -0,0 +1,85 @@
+package com.ydo4ki.datalayouts;
+
+import com.ydo4ki.datalayouts.annotation.LayoutConstructor;
+import org.objenesis.Objenesis;
+import org.objenesis.ObjenesisStd;
+import org.objenesis.instantiator.ObjectInstantiator;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+
+/**
+ * Built-in {@link InstantiationStrategy} implementations.
+ *
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+final class Instantiators {
+	private Instantiators() throws InstantiationException {
+		throw new InstantiationException();
+	}
+	
+	/** Shared between all layouts, caches instantiators per class */
+	private static final Objenesis objenesis = new ObjenesisStd(true);
+	
+	private static final MethodHandle newInstance;
+	
+	static {
+		try {
+			newInstance = MethodHandles.publicLookup().findVirtual(ObjectInstantiator.class, "newInstance", MethodType.methodType(Object.class));
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+	
+	static MethodHandle canonicalConstructor(Class<?> clazz, Field[] fields, MethodHandles.Lookup lookup) throws ReflectiveOperationException {
+		return Records.canonicalConstructor(clazz, lookup);
+	}
+	
+	static MethodHandle allArgsConstructor(Class<?> clazz, Field[] fields, MethodHandles.Lookup lookup) throws ReflectiveOperationException {
+		if (fields.length == 0) return null; // that's what no-args constructor is for
+		Class<?>[] types = new Class<?>[fields.length];
+		for (int i = 0; i < fields.length; i++) {
+			types[i] = fields[i].getType();
+		}
+		Constructor<?> constructor;
+		try {
+			constructor = clazz.getDeclaredConstructor(types);
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+		if (!constructor.isAnnotationPresent(LayoutConstructor.class)) {
+			// types alone don't tell which parameter goes to which field
+			Parameter[] parameters = constructor.getParameters();
+			for (int i = 0; i < parameters.length; i++) {
+				if (!parameters[i].isNamePresent() || !parameters[i].getName().equals(fields[i].getName()))
+					return null;
+			}
+		}
+		constructor.setAccessible(true);
+		return lookup.unreflectConstructor(constructor);
+	}
+	
+	static MethodHandle noArgsConstructor(Class<?> clazz, Field[] fields, MethodHandles.Lookup lookup) throws ReflectiveOperationException {
+		if (!Modifier.isPublic(clazz.getModifiers())) return null;
+		for (Field field : fields) {
+			if (Modifier.isFinal(field.getModifiers())) return null; // would still have to be set through reflection
+		}
+		Constructor<?> constructor;
+		try {
+			constructor = clazz.getConstructor();
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+		return lookup.unreflectConstructor(constructor);
+	}
+	
+	static MethodHandle objenesis(Class<?> clazz, Field[] fields, MethodHandles.Lookup lookup) {
+		return newInstance.bindTo(objenesis.getInstantiatorOf(clazz));
+	}
+}
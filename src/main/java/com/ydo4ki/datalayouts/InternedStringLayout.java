@@ -0,0 +1,102 @@
+package com.ydo4ki.datalayouts;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.OptionalInt;
+
+/**
+ * Layout for strings sent through the dictionary of a connection.
+ * The strings are written as a varint, followed by the string in the format of another layout if the varint is 0.
+ *
+ * <p>How a string is written depends on the dictionary of the output, so it has no size of its own,
+ * and byte buffers, which have no dictionary, can't hold interned strings.</p>
+ *
+ * @see com.ydo4ki.datalayouts.annotation.Interned
+ * @see DictionaryDataOutput
+ * @see DictionaryDataInput
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+final class InternedStringLayout implements Layout.Of<String> {
+	/** The layout of the strings written in full */
+	private final Layout.Of<String> literal;
+	
+	InternedStringLayout(Layout.Of<String> literal) {
+		this.literal = literal;
+	}
+	
+	@Override
+	public OptionalInt size() {
+		return OptionalInt.empty();
+	}
+	
+	@Override
+	public void write(String x, DataOutput out) throws IOException {
+		StringDictionary dictionary = dictionary(out);
+		int index = dictionary.indexOf(x);
+		if (index != -1) {
+			VarInts.write(index + 1, out);
+		} else {
+			out.writeByte(0);
+			literal.write(x, out);
+			dictionary.add(x);
+		}
+	}
+	
+	@Override
+	public String read(DataInput in) throws IOException {
+		StringDictionary dictionary = dictionary(in);
+		int ref = VarInts.readInt(in);
+		if (ref != 0) return dictionary.get(ref - 1);
+		String x = literal.read(in);
+		dictionary.add(x);
+		return x;
+	}
+	
+	/**
+	 * Not supported: a string is written either as an index or in full, depending on the dictionary of the output.
+	 *
+	 * @throws IllegalArgumentException Always
+	 */
+	@Override
+	public int sizeOf(String x) {
+		throw new IllegalArgumentException("The size of interned strings depends on the dictionary of the output");
+	}
+	
+	/**
+	 * Not supported: byte buffers have no dictionary.
+	 *
+	 * @throws IllegalArgumentException Always
+	 */
+	@Override
+	public void write(String x, ByteBuffer buffer) {
+		throw new IllegalArgumentException("Interned strings can only be written to a DictionaryDataOutput, not to byte buffers");
+	}
+	
+	/**
+	 * Not supported: byte buffers have no dictionary.
+	 *
+	 * @throws IllegalArgumentException Always
+	 */
+	@Override
+	public String read(ByteBuffer buffer) {
+		throw new IllegalArgumentException("Interned strings can only be read from a DictionaryDataInput, not from byte buffers");
+	}
+	
+	private static StringDictionary dictionary(DataOutput out) {
+		if (out instanceof DictionaryDataOutput) return ((DictionaryDataOutput) out).dictionary;
+		throw new IllegalArgumentException("Interned strings can only be written to a DictionaryDataOutput");
+	}
+	
+	private static StringDictionary dictionary(DataInput in) {
+		if (in instanceof DictionaryDataInput) return ((DictionaryDataInput) in).dictionary;
+		throw new IllegalArgumentException("Interned strings can only be read from a DictionaryDataInput");
+	}
+	
+	@Override
+	public String toString() {
+		return "InternedStringLayout{" + literal + "}";
+	}
+}
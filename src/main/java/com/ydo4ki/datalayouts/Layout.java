@@ -2,11 +2,16 @@ package com.ydo4ki.datalayouts;
 
 import java.io.DataInput;
 import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.annotation.Annotation;
 import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.List;
 import java.util.OptionalInt;
+import java.util.function.Consumer;
 
 /**
  * The core interface for defining data layouts that can be serialized to and deserialized from binary streams.
@@ -39,9 +44,7 @@ public interface Layout<T> {
 	 * @since 1.0.0
 	 */
 	static <T> Of<T> of(Class<T> clazz, MethodHandles.Lookup lookup, Annotation... annotations) {
-		if (clazz.isPrimitive()) // so it's not null
-			throw new UnpureClassException(clazz, "Use ::of(Class) instead");
-		return Layouts.applyAnnotations(Layouts.get(clazz, lookup), annotations, clazz).asObjectLayout(); // wow
+		return LayoutRegistry.global().of(clazz, lookup, annotations); // wow
 	}
 	
 	/**
@@ -55,12 +58,8 @@ public interface Layout<T> {
 	 * @return A layout for the specified class
 	 * @since 1.0.0
 	 */
-	@SuppressWarnings("unchecked")
 	static <T> Layout<T> of(Class<T> clazz, Annotation... annotations) {
-		if (clazz.isPrimitive()) {
-			return Layouts.applyAnnotations((Layout<T>)Layouts.primitiveLayout(clazz), annotations, clazz);
-		}
-		return of(clazz, MethodHandles.publicLookup(), annotations);
+		return LayoutRegistry.global().of(clazz, annotations);
 	}
 	
 	/**
@@ -114,6 +113,38 @@ public interface Layout<T> {
 				}
 				return obj;
 			}
+			
+			@Override
+			public int sizeOf(RawObject x) {
+				if (size.isPresent()) return size.getAsInt();
+				int sizeOf = 0;
+				for (int i = 0, Len = params.length; i < Len; i++) {
+					sizeOf = Math.addExact(sizeOf, ((Layout.Of<Object>)params[i].asObjectLayout()).sizeOf(x.get(i)));
+				}
+				return sizeOf;
+			}
+			
+			@Override
+			public void skip(DataInput in) throws IOException {
+				if (size.isPresent()) {
+					Layouts.skipBytes(in, size.getAsInt());
+					return;
+				}
+				for (Layout<?> param : params) {
+					param.asObjectLayout().skip(in);
+				}
+			}
+			
+			@Override
+			public void copy(DataInput in, DataOutput out) throws IOException {
+				if (size.isPresent()) {
+					Layouts.transfer(in, out, size.getAsInt());
+					return;
+				}
+				for (Layout<?> param : params) {
+					param.asObjectLayout().copy(in, out);
+				}
+			}
 		};
 	}
 	
@@ -128,7 +159,7 @@ public interface Layout<T> {
 	 * @since 1.0.0
 	 */
 	static <T> void bindTo(Class<T> clazz, Layout.Of<T> layout) {
-		Layouts.bind(clazz, layout);
+		LayoutRegistry.global().bindTo(clazz, layout);
 	}
 	
 	/**
@@ -141,7 +172,7 @@ public interface Layout<T> {
 	 * @since 1.0.0
 	 */
 	static <T> void bindToVirtual(Class<T> clazz, Layout.Of<T> layout) {
-		Layouts.bindVirtual(clazz, layout); // jk
+		LayoutRegistry.global().bindToVirtual(clazz, layout); // jk
 	}
 	
 	/**
@@ -157,7 +188,19 @@ public interface Layout<T> {
 	 * @since 1.0.0
 	 */
 	static <A extends Annotation, T, L extends Layout<T>> void bindAnnotationPragma(Class<A> annotationType, Class<T> applicableTo, AnnotationPragma<A, T, L> pragma) {
-		Layouts.registerAnnotation(annotationType, applicableTo, pragma);
+		LayoutRegistry.global().bindAnnotationPragma(annotationType, applicableTo, pragma);
+	}
+	
+	/**
+	 * Registers a strategy for creating objects when class layouts read them.
+	 * Registered strategies are asked before the built-in ones, in the order of registration.
+	 * Only layouts created after the registration are affected.
+	 *
+	 * @param strategy The instantiation strategy to register
+	 * @since 1.3.0
+	 */
+	static void registerInstantiationStrategy(InstantiationStrategy strategy) {
+		Layouts.registerInstantiationStrategy(strategy);
 	}
 	
 	/** Layout for byte values */
@@ -180,6 +223,184 @@ public interface Layout<T> {
 	/** Layout for String values using UTF-16 encoding */
 	Layout.Of<String>ofString  = new StringLayout.DynamicStringLayout(StringEncoding.get(StringEncoding.UTF16), false);
 	
+	/**
+	 * Layout for int values stored as a single unsigned byte (0-255)
+	 * @see com.ydo4ki.datalayouts.annotation.UnsignedByte
+	 */
+	Layout.OfInt ofUnsignedByte = new OfInt() {
+		@Override
+		public int read(DataInput in) throws IOException {
+			return in.readUnsignedByte();
+		}
+		
+		@Override
+		public void write(int x, DataOutput out) throws IOException {
+			out.writeByte(x);
+		}
+		
+		@Override
+		public OptionalInt size() {
+			return OptionalInt.of(1);
+		}
+		
+		@Override
+		public void write(int x, ByteBuffer buffer) {
+			buffer.put((byte) x);
+		}
+		
+		@Override
+		public int read(ByteBuffer buffer) {
+			return buffer.get() & 0xFF;
+		}
+		
+		@Override
+		public void write(int x, ByteBuffer buffer, int index) {
+			buffer.put(index, (byte) x);
+		}
+		
+		@Override
+		public int read(ByteBuffer buffer, int index) {
+			return buffer.get(index) & 0xFF;
+		}
+	};
+	/**
+	 * Layout for int values stored as two unsigned bytes (0-65535)
+	 * @see com.ydo4ki.datalayouts.annotation.UnsignedShort
+	 */
+	Layout.OfInt ofUnsignedShort = new OfInt() {
+		@Override
+		public int read(DataInput in) throws IOException {
+			return in.readUnsignedShort();
+		}
+		
+		@Override
+		public void write(int x, DataOutput out) throws IOException {
+			out.writeShort(x);
+		}
+		
+		@Override
+		public OptionalInt size() {
+			return OptionalInt.of(2);
+		}
+		
+		@Override
+		public void write(int x, ByteBuffer buffer) {
+			buffer.putShort((short) x);
+		}
+		
+		@Override
+		public int read(ByteBuffer buffer) {
+			return buffer.getShort() & 0xFFFF;
+		}
+		
+		@Override
+		public void write(int x, ByteBuffer buffer, int index) {
+			buffer.putShort(index, (short) x);
+		}
+		
+		@Override
+		public int read(ByteBuffer buffer, int index) {
+			return buffer.getShort(index) & 0xFFFF;
+		}
+	};
+	
+	/**
+	 * Layout for int values stored as varints: 7 bits per byte, 1 to 5 bytes, small non-negative values take less.
+	 * @see com.ydo4ki.datalayouts.annotation.VarInt
+	 */
+	Layout.OfInt ofVarInt = new VarInts.OfInt(false);
+	/**
+	 * Layout for int values stored as ZigZag-encoded varints, small values of both signs take fewer bytes.
+	 * @see com.ydo4ki.datalayouts.annotation.ZigZag
+	 */
+	Layout.OfInt ofZigZagInt = new VarInts.OfInt(true);
+	/**
+	 * Layout for long values stored as varints: 7 bits per byte, 1 to 10 bytes, small non-negative values take less.
+	 * @see com.ydo4ki.datalayouts.annotation.VarInt
+	 */
+	Layout.OfLong ofVarLong = new VarInts.OfLong(false);
+	/**
+	 * Layout for long values stored as ZigZag-encoded varints, small values of both signs take fewer bytes.
+	 * @see com.ydo4ki.datalayouts.annotation.ZigZag
+	 */
+	Layout.OfLong ofZigZagLong = new VarInts.OfLong(true);
+	
+	/**
+	 * Creates a layout for strings with dynamic length.
+	 * This is the same layout that is used for string fields annotated with
+	 * {@link com.ydo4ki.datalayouts.annotation.Encoding} and {@link com.ydo4ki.datalayouts.annotation.NullTerminated}.
+	 *
+	 * @param encoding The name of a registered string encoding
+	 * @param nullTerminated Whether the string is null-terminated instead of length-prefixed
+	 * @return A layout for strings with dynamic length
+	 * @throws IllegalArgumentException If no encoding with the specified name is registered
+	 * @since 1.3.0
+	 */
+	static Layout.Of<String> string(String encoding, boolean nullTerminated) {
+		return new StringLayout.DynamicStringLayout(Layouts.encoding(encoding), nullTerminated);
+	}
+	
+	/**
+	 * Creates a layout for strings with a fixed length.
+	 * This is the same layout that is used for string fields annotated with
+	 * {@link com.ydo4ki.datalayouts.annotation.Length}.
+	 *
+	 * @param encoding The name of a registered string encoding
+	 * @param length The fixed length of the string
+	 * @return A layout for strings with a fixed length
+	 * @throws IllegalArgumentException If no encoding with the specified name is registered
+	 * @since 1.3.0
+	 */
+	static Layout.Of<String> string(String encoding, int length) {
+		return new StringLayout.StaticStringLayout(Layouts.encoding(encoding), length);
+	}
+	
+	/**
+	 * Creates a layout for arrays with a fixed length.
+	 * This is the same layout that is used for array fields annotated with
+	 * {@link com.ydo4ki.datalayouts.annotation.Length}.
+	 *
+	 * @param <T> The array type
+	 * @param arrayType The class of the array
+	 * @param length The fixed length of the array
+	 * @return A layout for arrays with a fixed length
+	 * @throws UnpureClassException If the provided class is not an array
+	 * @since 1.3.0
+	 */
+	static <T> ArrayLayout<T> array(Class<T> arrayType, int length) {
+		if (!arrayType.isArray()) throw new UnpureClassException(arrayType, "array expected");
+		return new StaticArrayLayout<>(arrayType, Layout.of(arrayType.getComponentType()), length);
+	}
+	
+	/**
+	 * Creates a layout for arrays of objects that writes them column by column:
+	 * the length of the array, then the values of each field of all elements, one field after another.
+	 * This is the same layout that is used for array fields annotated with
+	 * {@link com.ydo4ki.datalayouts.annotation.Columnar}.
+	 *
+	 * @param <E> The type of the elements
+	 * @param elementLayout A layout created by {@link #of(Class, MethodHandles.Lookup, Annotation...)}
+	 * @return A columnar layout for arrays of the elements
+	 * @throws IllegalArgumentException If the layout is not a class layout
+	 * @since 1.3.0
+	 */
+	static <E> ColumnarLayout<E> columnar(Layout.Of<E> elementLayout) {
+		return new ColumnarLayout<>(elementLayout);
+	}
+	
+	/**
+	 * Creates a layout for a class hierarchy that writes the tag of the subtype of each object, then the object.
+	 * Subtypes are added with {@link UnionLayout#with(int, Class, MethodHandles.Lookup)}.
+	 *
+	 * @param <T> The base type of the hierarchy
+	 * @param baseType The base type, usually an interface or an abstract class
+	 * @return A union layout without subtypes, with varint tags
+	 * @since 1.3.0
+	 */
+	static <T> UnionLayout<T> union(Class<T> baseType) {
+		return new UnionLayout<>(baseType);
+	}
+	
 	/**
 	 * Creates a layout that skips a specified number of bytes.
 	 * This is useful for padding or skipping over unused data in a binary format.
@@ -192,6 +413,62 @@ public interface Layout<T> {
 		return new SkipLayout(bytes);
 	}
 	
+	/**
+	 * Returns the fields of a class layout in the order they are written, with their offsets.
+	 *
+	 * @param layout A layout created by {@link #of(Class, MethodHandles.Lookup, Annotation...)}
+	 * @return The field table of the layout
+	 * @throws IllegalArgumentException If the layout is not a class layout
+	 * @since 1.3.0
+	 */
+	static FieldTable fieldTable(Layout.Of<?> layout) {
+		ObjectLayout<?> objectLayout = ObjectLayout.of(layout);
+		if (objectLayout == null) throw new IllegalArgumentException("Not a class layout: " + layout);
+		return objectLayout.fieldTable();
+	}
+	
+	/**
+	 * Creates a decoder that reads only the specified fields of a class layout and skips the others.
+	 *
+	 * @param <T> The type of object the layout represents
+	 * @param layout A layout created by {@link #of(Class, MethodHandles.Lookup, Annotation...)}
+	 * @param fields The names of the fields to read
+	 * @return A projection of the layout
+	 * @throws IllegalArgumentException If the layout is not a class layout, or has no field with one of the names
+	 * @since 1.3.0
+	 */
+	static <T> Projection<T> projection(Layout.Of<T> layout, String... fields) {
+		ObjectLayout<T> objectLayout = ObjectLayout.of(layout);
+		if (objectLayout == null) throw new IllegalArgumentException("Not a class layout: " + layout);
+		return objectLayout.projection(fields);
+	}
+	
+	/**
+	 * Creates a decoder that reads objects of a layout from chunks of bytes as they arrive,
+	 * without waiting for a whole object. Objects of class layouts are resumed field by field.
+	 *
+	 * @param <T> The type of object the layout represents
+	 * @param layout The layout of the objects
+	 * @return A new decoder for one stream of objects
+	 * @since 1.3.0
+	 */
+	static <T> ResumableDecoder<T> decoder(Layout.Of<T> layout) {
+		return new ResumableDecoder<>(layout);
+	}
+	
+	/**
+	 * Creates a codec that writes objects of a layout as frames prefixed with their length, and reads them back
+	 * from blocking channels or from the buffers of selector-based channels.
+	 *
+	 * @param <T> The type of object the layout represents
+	 * @param layout The layout of the objects
+	 * @return A codec with 4-byte length prefixes and frames of up to 16 MiB
+	 * @since 1.3.0
+	 */
+	static <T> FrameCodec<T> frames(Layout.Of<T> layout) {
+		return new FrameCodec<>(layout);
+	}
+	
 	
 	/**
 	 * Returns the size of this layout in bytes, or null if the size is dynamic.
@@ -262,6 +539,201 @@ public interface Layout<T> {
 		 */
 		T read(DataInput in) throws IOException;
 		
+		/**
+		 * Writes an object to a byte buffer, at its position and in its byte order.
+		 * The position of the buffer is advanced by the number of bytes written.
+		 *
+		 * <p>The default implementation writes through a {@link DataOutput} view of the buffer.</p>
+		 *
+		 * @param x The object to write
+		 * @param buffer The buffer to write to
+		 * @throws java.nio.BufferOverflowException If there is not enough space remaining in the buffer
+		 * @throws UncheckedIOException If {@link #write(Object, DataOutput)} throws an I/O exception
+		 * @since 1.3.0
+		 */
+		default void write(T x, ByteBuffer buffer) {
+			try {
+				write(x, new ByteBufferData.Output(buffer));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		/**
+		 * Reads an object from a byte buffer, at its position and in its byte order.
+		 * The position of the buffer is advanced by the number of bytes read.
+		 *
+		 * <p>The default implementation reads through a {@link DataInput} view of the buffer.</p>
+		 *
+		 * @param buffer The buffer to read from
+		 * @return The read object
+		 * @throws java.nio.BufferUnderflowException If there are not enough bytes remaining in the buffer
+		 * @throws UncheckedIOException If {@link #read(DataInput)} throws an I/O exception
+		 * @since 1.3.0
+		 */
+		default T read(ByteBuffer buffer) {
+			try {
+				return read(new ByteBufferData.Input(buffer));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		/**
+		 * Writes an object to a byte buffer starting at the specified index, in its byte order.
+		 * The position of the buffer is not changed.
+		 *
+		 * @param x The object to write
+		 * @param buffer The buffer to write to
+		 * @param index The index to start writing at
+		 * @throws java.nio.BufferOverflowException If the object does not fit between the index and the limit of the buffer
+		 * @throws IndexOutOfBoundsException If the index is negative or greater than the limit of the buffer
+		 * @since 1.3.0
+		 */
+		default void write(T x, ByteBuffer buffer, int index) {
+			write(x, ByteBufferData.at(buffer, index));
+		}
+		
+		/**
+		 * Reads an object from a byte buffer starting at the specified index, in its byte order.
+		 * The position of the buffer is not changed.
+		 *
+		 * @param buffer The buffer to read from
+		 * @param index The index to start reading at
+		 * @return The read object
+		 * @throws java.nio.BufferUnderflowException If the object does not fit between the index and the limit of the buffer
+		 * @throws IndexOutOfBoundsException If the index is negative or greater than the limit of the buffer
+		 * @since 1.3.0
+		 */
+		default T read(ByteBuffer buffer, int index) {
+			return read(ByteBufferData.at(buffer, index));
+		}
+		
+		/**
+		 * Writes objects to a data output stream, one after another.
+		 * Produces the same bytes as calling {@link #write(Object, DataOutput)} for each object.
+		 *
+		 * <p>If the size of the layout is static, runs of objects are encoded into a buffer first
+		 * and written to the stream at once.</p>
+		 *
+		 * @param xs The objects to write
+		 * @param out The data output stream to write to
+		 * @throws IOException If an I/O error occurs
+		 * @since 1.3.0
+		 */
+		default void writeAll(T[] xs, DataOutput out) throws IOException {
+			Batches.writeAll(this, Arrays.asList(xs), out);
+		}
+		
+		/**
+		 * Writes objects to a data output stream, one after another,
+		 * the same way as {@link #writeAll(Object[], DataOutput)}.
+		 *
+		 * @param xs The objects to write
+		 * @param out The data output stream to write to
+		 * @throws IOException If an I/O error occurs
+		 * @since 1.3.0
+		 */
+		default void writeAll(List<? extends T> xs, DataOutput out) throws IOException {
+			Batches.writeAll(this, xs, out);
+		}
+		
+		/**
+		 * Reads objects from a data input stream into the beginning of an array.
+		 * Consumes the same bytes as calling {@link #read(DataInput)} for each object.
+		 *
+		 * <p>If the size of the layout is static, runs of objects are read from the stream at once
+		 * and decoded from a buffer.</p>
+		 *
+		 * @param count The number of objects to read
+		 * @param in The data input stream to read from
+		 * @param array The array to store the objects in
+		 * @throws IndexOutOfBoundsException If the count is negative or greater than the length of the array
+		 * @throws IOException If an I/O error occurs
+		 * @since 1.3.0
+		 */
+		default void readAll(int count, DataInput in, T[] array) throws IOException {
+			if (count < 0 || count > array.length) throw new IndexOutOfBoundsException("count " + count + ", length " + array.length);
+			Batches.readAll(this, count, in, (x, i) -> array[i] = x);
+		}
+		
+		/**
+		 * Reads objects from a data input stream and passes them to an action in order,
+		 * the same way as {@link #readAll(int, DataInput, Object[])}.
+		 *
+		 * @param count The number of objects to read
+		 * @param in The data input stream to read from
+		 * @param action The action to pass each object to
+		 * @throws IllegalArgumentException If the count is negative
+		 * @throws IOException If an I/O error occurs
+		 * @since 1.3.0
+		 */
+		default void readAll(int count, DataInput in, Consumer<? super T> action) throws IOException {
+			Batches.readAll(this, count, in, (x, i) -> action.accept(x));
+		}
+		
+		/**
+		 * Returns the exact number of bytes the specified object is written as,
+		 * so that a buffer of the right size can be allocated, or a length prefix written, before writing it.
+		 *
+		 * <p>The default implementation returns {@link #size()} if the size is static,
+		 * and counts the bytes written by {@link #write(Object, DataOutput)} otherwise, without storing them.</p>
+		 *
+		 * @param x The object to measure
+		 * @return The number of bytes the object is written as
+		 * @throws UncheckedIOException If {@link #write(Object, DataOutput)} throws an I/O exception
+		 * @throws IllegalArgumentException If the size of the object depends on the output it is written to,
+		 * like the size of {@linkplain com.ydo4ki.datalayouts.annotation.Interned interned} strings
+		 * @since 1.3.0
+		 */
+		default int sizeOf(T x) {
+			OptionalInt size = size();
+			if (size.isPresent()) return size.getAsInt();
+			DataOutputStream counter = Layouts.sizeCounter();
+			try {
+				write(x, counter);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return counter.size();
+		}
+		
+		/**
+		 * Skips an object in a data input stream without creating it.
+		 *
+		 * <p>The default implementation skips {@link #size()} bytes if the size is static,
+		 * and reads the object and discards it otherwise.</p>
+		 *
+		 * @param in The data input stream to skip the object in
+		 * @throws java.io.EOFException If the stream ends before the end of the object
+		 * @throws IOException If an I/O error occurs
+		 * @since 1.3.0
+		 */
+		default void skip(DataInput in) throws IOException {
+			OptionalInt size = size();
+			if (size.isPresent()) Layouts.skipBytes(in, size.getAsInt());
+			else read(in);
+		}
+		
+		/**
+		 * Copies an object from a data input stream to a data output stream without creating it,
+		 * so that the output receives exactly the bytes of the object in the input.
+		 *
+		 * <p>The default implementation transfers {@link #size()} bytes if the size is static,
+		 * and reads the object and writes it back otherwise.</p>
+		 *
+		 * @param in The data input stream to read the object from
+		 * @param out The data output stream to write the object to
+		 * @throws java.io.EOFException If the stream ends before the end of the object
+		 * @throws IOException If an I/O error occurs
+		 * @since 1.3.0
+		 */
+		default void copy(DataInput in, DataOutput out) throws IOException {
+			OptionalInt size = size();
+			if (size.isPresent()) Layouts.transfer(in, out, size.getAsInt());
+			else write(read(in), out);
+		}
+		
 		@Override
 		default Of<T> asObjectLayout() {
 			return this;
@@ -302,7 +774,27 @@ public interface Layout<T> {
 			
 			@Override
 			public OptionalInt size() {
-				return OptionalInt.of(1);
+				return OfByte.this.size();
+			}
+			
+			@Override
+			public void write(Byte x, ByteBuffer buffer) {
+				OfByte.this.write(x, buffer);
+			}
+			
+			@Override
+			public Byte read(ByteBuffer buffer) {
+				return OfByte.this.read(buffer);
+			}
+			
+			@Override
+			public void write(Byte x, ByteBuffer buffer, int index) {
+				OfByte.this.write(x, buffer, index);
+			}
+			
+			@Override
+			public Byte read(ByteBuffer buffer, int index) {
+				return OfByte.this.read(buffer, index);
 			}
 		};
 		
@@ -339,6 +831,73 @@ public interface Layout<T> {
 		public byte read(DataInput in) throws IOException {
 			return in.readByte();
 		}
+		
+		/**
+		 * Writes a byte value to a byte buffer, at its position and in its byte order.
+		 *
+		 * @param x The byte value to write
+		 * @param buffer The buffer to write to
+		 * @throws java.nio.BufferOverflowException If there is not enough space remaining in the buffer
+		 * @since 1.3.0
+		 */
+		public void write(byte x, ByteBuffer buffer) {
+			if (getClass() == OfByte.class) {
+				buffer.put(x);
+				return;
+			}
+			// subclasses may only override the stream methods
+			try {
+				write(x, new ByteBufferData.Output(buffer));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		/**
+		 * Reads a byte value from a byte buffer, at its position and in its byte order.
+		 *
+		 * @param buffer The buffer to read from
+		 * @return The read byte value
+		 * @throws java.nio.BufferUnderflowException If there are not enough bytes remaining in the buffer
+		 * @since 1.3.0
+		 */
+		public byte read(ByteBuffer buffer) {
+			if (getClass() == OfByte.class) return buffer.get();
+			try {
+				return read(new ByteBufferData.Input(buffer));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		/**
+		 * Writes a byte value to a byte buffer at the specified index, in its byte order.
+		 * The position of the buffer is not changed.
+		 *
+		 * @param x The byte value to write
+		 * @param buffer The buffer to write to
+		 * @param index The index to write at
+		 * @throws IndexOutOfBoundsException If the value does not fit in the buffer at the index
+		 * @since 1.3.0
+		 */
+		public void write(byte x, ByteBuffer buffer, int index) {
+			if (getClass() == OfByte.class) buffer.put(index, x);
+			else write(x, ByteBufferData.at(buffer, index));
+		}
+		
+		/**
+		 * Reads a byte value from a byte buffer at the specified index, in its byte order.
+		 * The position of the buffer is not changed.
+		 *
+		 * @param buffer The buffer to read from
+		 * @param index The index to read at
+		 * @return The read byte value
+		 * @throws IndexOutOfBoundsException If the value does not fit in the buffer at the index
+		 * @since 1.3.0
+		 */
+		public byte read(ByteBuffer buffer, int index) {
+			return getClass() == OfByte.class ? buffer.get(index) : read(ByteBufferData.at(buffer, index));
+		}
 	}
 	
 	/**
@@ -369,7 +928,27 @@ public interface Layout<T> {
 			
 			@Override
 			public OptionalInt size() {
-				return OptionalInt.of(1);
+				return OfBoolean.this.size();
+			}
+			
+			@Override
+			public void write(Boolean x, ByteBuffer buffer) {
+				OfBoolean.this.write(x, buffer);
+			}
+			
+			@Override
+			public Boolean read(ByteBuffer buffer) {
+				return OfBoolean.this.read(buffer);
+			}
+			
+			@Override
+			public void write(Boolean x, ByteBuffer buffer, int index) {
+				OfBoolean.this.write(x, buffer, index);
+			}
+			
+			@Override
+			public Boolean read(ByteBuffer buffer, int index) {
+				return OfBoolean.this.read(buffer, index);
 			}
 		};
 		
@@ -401,11 +980,78 @@ public interface Layout<T> {
 		 *
 		 * @param in The data input stream to read from
 		 * @return The read boolean value
-		 * @throws IOException If an I/O error occurs
-		 * @since 1.0.0
+		 * @throws IOException If an I/O error occurs
+		 * @since 1.0.0
+		 */
+		public boolean read(DataInput in) throws IOException {
+			return in.readBoolean();
+		}
+		
+		/**
+		 * Writes a boolean value to a byte buffer, at its position and in its byte order.
+		 *
+		 * @param x The boolean value to write
+		 * @param buffer The buffer to write to
+		 * @throws java.nio.BufferOverflowException If there is not enough space remaining in the buffer
+		 * @since 1.3.0
+		 */
+		public void write(boolean x, ByteBuffer buffer) {
+			if (getClass() == OfBoolean.class) {
+				buffer.put((byte) (x ? 1 : 0));
+				return;
+			}
+			// subclasses may only override the stream methods
+			try {
+				write(x, new ByteBufferData.Output(buffer));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		/**
+		 * Reads a boolean value from a byte buffer, at its position and in its byte order.
+		 *
+		 * @param buffer The buffer to read from
+		 * @return The read boolean value
+		 * @throws java.nio.BufferUnderflowException If there are not enough bytes remaining in the buffer
+		 * @since 1.3.0
+		 */
+		public boolean read(ByteBuffer buffer) {
+			if (getClass() == OfBoolean.class) return buffer.get() != 0;
+			try {
+				return read(new ByteBufferData.Input(buffer));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		/**
+		 * Writes a boolean value to a byte buffer at the specified index, in its byte order.
+		 * The position of the buffer is not changed.
+		 *
+		 * @param x The boolean value to write
+		 * @param buffer The buffer to write to
+		 * @param index The index to write at
+		 * @throws IndexOutOfBoundsException If the value does not fit in the buffer at the index
+		 * @since 1.3.0
+		 */
+		public void write(boolean x, ByteBuffer buffer, int index) {
+			if (getClass() == OfBoolean.class) buffer.put(index, (byte) (x ? 1 : 0));
+			else write(x, ByteBufferData.at(buffer, index));
+		}
+		
+		/**
+		 * Reads a boolean value from a byte buffer at the specified index, in its byte order.
+		 * The position of the buffer is not changed.
+		 *
+		 * @param buffer The buffer to read from
+		 * @param index The index to read at
+		 * @return The read boolean value
+		 * @throws IndexOutOfBoundsException If the value does not fit in the buffer at the index
+		 * @since 1.3.0
 		 */
-		public boolean read(DataInput in) throws IOException {
-			return in.readBoolean();
+		public boolean read(ByteBuffer buffer, int index) {
+			return getClass() == OfBoolean.class ? buffer.get(index) != 0 : read(ByteBufferData.at(buffer, index));
 		}
 	}
 	
@@ -437,7 +1083,27 @@ public interface Layout<T> {
 			
 			@Override
 			public OptionalInt size() {
-				return OptionalInt.of(2);
+				return OfShort.this.size();
+			}
+			
+			@Override
+			public void write(Short x, ByteBuffer buffer) {
+				OfShort.this.write(x, buffer);
+			}
+			
+			@Override
+			public Short read(ByteBuffer buffer) {
+				return OfShort.this.read(buffer);
+			}
+			
+			@Override
+			public void write(Short x, ByteBuffer buffer, int index) {
+				OfShort.this.write(x, buffer, index);
+			}
+			
+			@Override
+			public Short read(ByteBuffer buffer, int index) {
+				return OfShort.this.read(buffer, index);
 			}
 		};
 		
@@ -474,6 +1140,73 @@ public interface Layout<T> {
 		public short read(DataInput in) throws IOException {
 			return in.readShort();
 		}
+		
+		/**
+		 * Writes a short value to a byte buffer, at its position and in its byte order.
+		 *
+		 * @param x The short value to write
+		 * @param buffer The buffer to write to
+		 * @throws java.nio.BufferOverflowException If there is not enough space remaining in the buffer
+		 * @since 1.3.0
+		 */
+		public void write(short x, ByteBuffer buffer) {
+			if (getClass() == OfShort.class) {
+				buffer.putShort(x);
+				return;
+			}
+			// subclasses may only override the stream methods
+			try {
+				write(x, new ByteBufferData.Output(buffer));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		/**
+		 * Reads a short value from a byte buffer, at its position and in its byte order.
+		 *
+		 * @param buffer The buffer to read from
+		 * @return The read short value
+		 * @throws java.nio.BufferUnderflowException If there are not enough bytes remaining in the buffer
+		 * @since 1.3.0
+		 */
+		public short read(ByteBuffer buffer) {
+			if (getClass() == OfShort.class) return buffer.getShort();
+			try {
+				return read(new ByteBufferData.Input(buffer));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		/**
+		 * Writes a short value to a byte buffer at the specified index, in its byte order.
+		 * The position of the buffer is not changed.
+		 *
+		 * @param x The short value to write
+		 * @param buffer The buffer to write to
+		 * @param index The index to write at
+		 * @throws IndexOutOfBoundsException If the value does not fit in the buffer at the index
+		 * @since 1.3.0
+		 */
+		public void write(short x, ByteBuffer buffer, int index) {
+			if (getClass() == OfShort.class) buffer.putShort(index, x);
+			else write(x, ByteBufferData.at(buffer, index));
+		}
+		
+		/**
+		 * Reads a short value from a byte buffer at the specified index, in its byte order.
+		 * The position of the buffer is not changed.
+		 *
+		 * @param buffer The buffer to read from
+		 * @param index The index to read at
+		 * @return The read short value
+		 * @throws IndexOutOfBoundsException If the value does not fit in the buffer at the index
+		 * @since 1.3.0
+		 */
+		public short read(ByteBuffer buffer, int index) {
+			return getClass() == OfShort.class ? buffer.getShort(index) : read(ByteBufferData.at(buffer, index));
+		}
 	}
 	
 	/**
@@ -504,7 +1237,27 @@ public interface Layout<T> {
 			
 			@Override
 			public OptionalInt size() {
-				return OptionalInt.of(2);
+				return OfChar.this.size();
+			}
+			
+			@Override
+			public void write(Character x, ByteBuffer buffer) {
+				OfChar.this.write(x, buffer);
+			}
+			
+			@Override
+			public Character read(ByteBuffer buffer) {
+				return OfChar.this.read(buffer);
+			}
+			
+			@Override
+			public void write(Character x, ByteBuffer buffer, int index) {
+				OfChar.this.write(x, buffer, index);
+			}
+			
+			@Override
+			public Character read(ByteBuffer buffer, int index) {
+				return OfChar.this.read(buffer, index);
 			}
 		};
 		
@@ -541,6 +1294,73 @@ public interface Layout<T> {
 		public char read(DataInput in) throws IOException {
 			return in.readChar();
 		}
+		
+		/**
+		 * Writes a char value to a byte buffer, at its position and in its byte order.
+		 *
+		 * @param x The char value to write
+		 * @param buffer The buffer to write to
+		 * @throws java.nio.BufferOverflowException If there is not enough space remaining in the buffer
+		 * @since 1.3.0
+		 */
+		public void write(char x, ByteBuffer buffer) {
+			if (getClass() == OfChar.class) {
+				buffer.putChar(x);
+				return;
+			}
+			// subclasses may only override the stream methods
+			try {
+				write(x, new ByteBufferData.Output(buffer));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		/**
+		 * Reads a char value from a byte buffer, at its position and in its byte order.
+		 *
+		 * @param buffer The buffer to read from
+		 * @return The read char value
+		 * @throws java.nio.BufferUnderflowException If there are not enough bytes remaining in the buffer
+		 * @since 1.3.0
+		 */
+		public char read(ByteBuffer buffer) {
+			if (getClass() == OfChar.class) return buffer.getChar();
+			try {
+				return read(new ByteBufferData.Input(buffer));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		/**
+		 * Writes a char value to a byte buffer at the specified index, in its byte order.
+		 * The position of the buffer is not changed.
+		 *
+		 * @param x The char value to write
+		 * @param buffer The buffer to write to
+		 * @param index The index to write at
+		 * @throws IndexOutOfBoundsException If the value does not fit in the buffer at the index
+		 * @since 1.3.0
+		 */
+		public void write(char x, ByteBuffer buffer, int index) {
+			if (getClass() == OfChar.class) buffer.putChar(index, x);
+			else write(x, ByteBufferData.at(buffer, index));
+		}
+		
+		/**
+		 * Reads a char value from a byte buffer at the specified index, in its byte order.
+		 * The position of the buffer is not changed.
+		 *
+		 * @param buffer The buffer to read from
+		 * @param index The index to read at
+		 * @return The read char value
+		 * @throws IndexOutOfBoundsException If the value does not fit in the buffer at the index
+		 * @since 1.3.0
+		 */
+		public char read(ByteBuffer buffer, int index) {
+			return getClass() == OfChar.class ? buffer.getChar(index) : read(ByteBufferData.at(buffer, index));
+		}
 	}
 	
 	/**
@@ -571,7 +1391,32 @@ public interface Layout<T> {
 			
 			@Override
 			public OptionalInt size() {
-				return OptionalInt.of(4);
+				return OfInt.this.size();
+			}
+			
+			@Override
+			public void write(Integer x, ByteBuffer buffer) {
+				OfInt.this.write(x, buffer);
+			}
+			
+			@Override
+			public Integer read(ByteBuffer buffer) {
+				return OfInt.this.read(buffer);
+			}
+			
+			@Override
+			public void write(Integer x, ByteBuffer buffer, int index) {
+				OfInt.this.write(x, buffer, index);
+			}
+			
+			@Override
+			public Integer read(ByteBuffer buffer, int index) {
+				return OfInt.this.read(buffer, index);
+			}
+			
+			@Override
+			public int sizeOf(Integer x) {
+				return OfInt.this.sizeOf(x);
 			}
 		};
 		
@@ -585,6 +1430,27 @@ public interface Layout<T> {
 			return null;
 		}
 		
+		/**
+		 * Returns the number of bytes an int value is written as.
+		 * The default implementation returns {@link #size()} if the size is static,
+		 * and counts the bytes written by {@link #write(int, DataOutput)} otherwise.
+		 *
+		 * @param x The int value to measure
+		 * @return The number of bytes the value is written as
+		 * @since 1.3.0
+		 */
+		public int sizeOf(int x) {
+			OptionalInt size = size();
+			if (size.isPresent()) return size.getAsInt();
+			DataOutputStream counter = Layouts.sizeCounter();
+			try {
+				write(x, counter);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return counter.size();
+		}
+		
 		/**
 		 * Writes an int value to a data output stream.
 		 *
@@ -608,6 +1474,73 @@ public interface Layout<T> {
 		public int read(DataInput in) throws IOException {
 			return in.readInt();
 		}
+		
+		/**
+		 * Writes an int value to a byte buffer, at its position and in its byte order.
+		 *
+		 * @param x The int value to write
+		 * @param buffer The buffer to write to
+		 * @throws java.nio.BufferOverflowException If there is not enough space remaining in the buffer
+		 * @since 1.3.0
+		 */
+		public void write(int x, ByteBuffer buffer) {
+			if (getClass() == OfInt.class) {
+				buffer.putInt(x);
+				return;
+			}
+			// subclasses may only override the stream methods
+			try {
+				write(x, new ByteBufferData.Output(buffer));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		/**
+		 * Reads an int value from a byte buffer, at its position and in its byte order.
+		 *
+		 * @param buffer The buffer to read from
+		 * @return The read int value
+		 * @throws java.nio.BufferUnderflowException If there are not enough bytes remaining in the buffer
+		 * @since 1.3.0
+		 */
+		public int read(ByteBuffer buffer) {
+			if (getClass() == OfInt.class) return buffer.getInt();
+			try {
+				return read(new ByteBufferData.Input(buffer));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		/**
+		 * Writes an int value to a byte buffer at the specified index, in its byte order.
+		 * The position of the buffer is not changed.
+		 *
+		 * @param x The int value to write
+		 * @param buffer The buffer to write to
+		 * @param index The index to write at
+		 * @throws IndexOutOfBoundsException If the value does not fit in the buffer at the index
+		 * @since 1.3.0
+		 */
+		public void write(int x, ByteBuffer buffer, int index) {
+			if (getClass() == OfInt.class) buffer.putInt(index, x);
+			else write(x, ByteBufferData.at(buffer, index));
+		}
+		
+		/**
+		 * Reads an int value from a byte buffer at the specified index, in its byte order.
+		 * The position of the buffer is not changed.
+		 *
+		 * @param buffer The buffer to read from
+		 * @param index The index to read at
+		 * @return The read int value
+		 * @throws IndexOutOfBoundsException If the value does not fit in the buffer at the index
+		 * @since 1.3.0
+		 */
+		public int read(ByteBuffer buffer, int index) {
+			return getClass() == OfInt.class ? buffer.getInt(index) : read(ByteBufferData.at(buffer, index));
+		}
 	}
 	
 	/**
@@ -638,7 +1571,27 @@ public interface Layout<T> {
 			
 			@Override
 			public OptionalInt size() {
-				return OptionalInt.of(4);
+				return OfFloat.this.size();
+			}
+			
+			@Override
+			public void write(Float x, ByteBuffer buffer) {
+				OfFloat.this.write(x, buffer);
+			}
+			
+			@Override
+			public Float read(ByteBuffer buffer) {
+				return OfFloat.this.read(buffer);
+			}
+			
+			@Override
+			public void write(Float x, ByteBuffer buffer, int index) {
+				OfFloat.this.write(x, buffer, index);
+			}
+			
+			@Override
+			public Float read(ByteBuffer buffer, int index) {
+				return OfFloat.this.read(buffer, index);
 			}
 		};
 		
@@ -676,6 +1629,73 @@ public interface Layout<T> {
 		public float read(DataInput in) throws IOException {
 			return in.readFloat();
 		}
+		
+		/**
+		 * Writes a float value to a byte buffer, at its position and in its byte order.
+		 *
+		 * @param x The float value to write
+		 * @param buffer The buffer to write to
+		 * @throws java.nio.BufferOverflowException If there is not enough space remaining in the buffer
+		 * @since 1.3.0
+		 */
+		public void write(float x, ByteBuffer buffer) {
+			if (getClass() == OfFloat.class) {
+				buffer.putFloat(x);
+				return;
+			}
+			// subclasses may only override the stream methods
+			try {
+				write(x, new ByteBufferData.Output(buffer));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		/**
+		 * Reads a float value from a byte buffer, at its position and in its byte order.
+		 *
+		 * @param buffer The buffer to read from
+		 * @return The read float value
+		 * @throws java.nio.BufferUnderflowException If there are not enough bytes remaining in the buffer
+		 * @since 1.3.0
+		 */
+		public float read(ByteBuffer buffer) {
+			if (getClass() == OfFloat.class) return buffer.getFloat();
+			try {
+				return read(new ByteBufferData.Input(buffer));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		/**
+		 * Writes a float value to a byte buffer at the specified index, in its byte order.
+		 * The position of the buffer is not changed.
+		 *
+		 * @param x The float value to write
+		 * @param buffer The buffer to write to
+		 * @param index The index to write at
+		 * @throws IndexOutOfBoundsException If the value does not fit in the buffer at the index
+		 * @since 1.3.0
+		 */
+		public void write(float x, ByteBuffer buffer, int index) {
+			if (getClass() == OfFloat.class) buffer.putFloat(index, x);
+			else write(x, ByteBufferData.at(buffer, index));
+		}
+		
+		/**
+		 * Reads a float value from a byte buffer at the specified index, in its byte order.
+		 * The position of the buffer is not changed.
+		 *
+		 * @param buffer The buffer to read from
+		 * @param index The index to read at
+		 * @return The read float value
+		 * @throws IndexOutOfBoundsException If the value does not fit in the buffer at the index
+		 * @since 1.3.0
+		 */
+		public float read(ByteBuffer buffer, int index) {
+			return getClass() == OfFloat.class ? buffer.getFloat(index) : read(ByteBufferData.at(buffer, index));
+		}
 	}
 	
 	/**
@@ -706,7 +1726,32 @@ public interface Layout<T> {
 			
 			@Override
 			public OptionalInt size() {
-				return OptionalInt.of(8);
+				return OfLong.this.size();
+			}
+			
+			@Override
+			public void write(Long x, ByteBuffer buffer) {
+				OfLong.this.write(x, buffer);
+			}
+			
+			@Override
+			public Long read(ByteBuffer buffer) {
+				return OfLong.this.read(buffer);
+			}
+			
+			@Override
+			public void write(Long x, ByteBuffer buffer, int index) {
+				OfLong.this.write(x, buffer, index);
+			}
+			
+			@Override
+			public Long read(ByteBuffer buffer, int index) {
+				return OfLong.this.read(buffer, index);
+			}
+			
+			@Override
+			public int sizeOf(Long x) {
+				return OfLong.this.sizeOf(x);
 			}
 		};
 		
@@ -721,6 +1766,27 @@ public interface Layout<T> {
 			return null;
 		}
 		
+		/**
+		 * Returns the number of bytes a long value is written as.
+		 * The default implementation returns {@link #size()} if the size is static,
+		 * and counts the bytes written by {@link #write(long, DataOutput)} otherwise.
+		 *
+		 * @param x The long value to measure
+		 * @return The number of bytes the value is written as
+		 * @since 1.3.0
+		 */
+		public int sizeOf(long x) {
+			OptionalInt size = size();
+			if (size.isPresent()) return size.getAsInt();
+			DataOutputStream counter = Layouts.sizeCounter();
+			try {
+				write(x, counter);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return counter.size();
+		}
+		
 		/**
 		 * Writes a long value to a data output stream.
 		 *
@@ -744,6 +1810,73 @@ public interface Layout<T> {
 		public long read(DataInput in) throws IOException {
 			return in.readLong();
 		}
+		
+		/**
+		 * Writes a long value to a byte buffer, at its position and in its byte order.
+		 *
+		 * @param x The long value to write
+		 * @param buffer The buffer to write to
+		 * @throws java.nio.BufferOverflowException If there is not enough space remaining in the buffer
+		 * @since 1.3.0
+		 */
+		public void write(long x, ByteBuffer buffer) {
+			if (getClass() == OfLong.class) {
+				buffer.putLong(x);
+				return;
+			}
+			// subclasses may only override the stream methods
+			try {
+				write(x, new ByteBufferData.Output(buffer));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		/**
+		 * Reads a long value from a byte buffer, at its position and in its byte order.
+		 *
+		 * @param buffer The buffer to read from
+		 * @return The read long value
+		 * @throws java.nio.BufferUnderflowException If there are not enough bytes remaining in the buffer
+		 * @since 1.3.0
+		 */
+		public long read(ByteBuffer buffer) {
+			if (getClass() == OfLong.class) return buffer.getLong();
+			try {
+				return read(new ByteBufferData.Input(buffer));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		/**
+		 * Writes a long value to a byte buffer at the specified index, in its byte order.
+		 * The position of the buffer is not changed.
+		 *
+		 * @param x The long value to write
+		 * @param buffer The buffer to write to
+		 * @param index The index to write at
+		 * @throws IndexOutOfBoundsException If the value does not fit in the buffer at the index
+		 * @since 1.3.0
+		 */
+		public void write(long x, ByteBuffer buffer, int index) {
+			if (getClass() == OfLong.class) buffer.putLong(index, x);
+			else write(x, ByteBufferData.at(buffer, index));
+		}
+		
+		/**
+		 * Reads a long value from a byte buffer at the specified index, in its byte order.
+		 * The position of the buffer is not changed.
+		 *
+		 * @param buffer The buffer to read from
+		 * @param index The index to read at
+		 * @return The read long value
+		 * @throws IndexOutOfBoundsException If the value does not fit in the buffer at the index
+		 * @since 1.3.0
+		 */
+		public long read(ByteBuffer buffer, int index) {
+			return getClass() == OfLong.class ? buffer.getLong(index) : read(ByteBufferData.at(buffer, index));
+		}
 	}
 	
 	/**
@@ -774,7 +1907,27 @@ public interface Layout<T> {
 			
 			@Override
 			public OptionalInt size() {
-				return OptionalInt.of(8);
+				return OfDouble.this.size();
+			}
+			
+			@Override
+			public void write(Double x, ByteBuffer buffer) {
+				OfDouble.this.write(x, buffer);
+			}
+			
+			@Override
+			public Double read(ByteBuffer buffer) {
+				return OfDouble.this.read(buffer);
+			}
+			
+			@Override
+			public void write(Double x, ByteBuffer buffer, int index) {
+				OfDouble.this.write(x, buffer, index);
+			}
+			
+			@Override
+			public Double read(ByteBuffer buffer, int index) {
+				return OfDouble.this.read(buffer, index);
 			}
 		};
 		
@@ -811,6 +1964,73 @@ public interface Layout<T> {
 		public double read(DataInput in) throws IOException {
 			return in.readDouble();
 		}
+		
+		/**
+		 * Writes a double value to a byte buffer, at its position and in its byte order.
+		 *
+		 * @param x The double value to write
+		 * @param buffer The buffer to write to
+		 * @throws java.nio.BufferOverflowException If there is not enough space remaining in the buffer
+		 * @since 1.3.0
+		 */
+		public void write(double x, ByteBuffer buffer) {
+			if (getClass() == OfDouble.class) {
+				buffer.putDouble(x);
+				return;
+			}
+			// subclasses may only override the stream methods
+			try {
+				write(x, new ByteBufferData.Output(buffer));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		/**
+		 * Reads a double value from a byte buffer, at its position and in its byte order.
+		 *
+		 * @param buffer The buffer to read from
+		 * @return The read double value
+		 * @throws java.nio.BufferUnderflowException If there are not enough bytes remaining in the buffer
+		 * @since 1.3.0
+		 */
+		public double read(ByteBuffer buffer) {
+			if (getClass() == OfDouble.class) return buffer.getDouble();
+			try {
+				return read(new ByteBufferData.Input(buffer));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		/**
+		 * Writes a double value to a byte buffer at the specified index, in its byte order.
+		 * The position of the buffer is not changed.
+		 *
+		 * @param x The double value to write
+		 * @param buffer The buffer to write to
+		 * @param index The index to write at
+		 * @throws IndexOutOfBoundsException If the value does not fit in the buffer at the index
+		 * @since 1.3.0
+		 */
+		public void write(double x, ByteBuffer buffer, int index) {
+			if (getClass() == OfDouble.class) buffer.putDouble(index, x);
+			else write(x, ByteBufferData.at(buffer, index));
+		}
+		
+		/**
+		 * Reads a double value from a byte buffer at the specified index, in its byte order.
+		 * The position of the buffer is not changed.
+		 *
+		 * @param buffer The buffer to read from
+		 * @param index The index to read at
+		 * @return The read double value
+		 * @throws IndexOutOfBoundsException If the value does not fit in the buffer at the index
+		 * @since 1.3.0
+		 */
+		public double read(ByteBuffer buffer, int index) {
+			return getClass() == OfDouble.class ? buffer.getDouble(index) : read(ByteBufferData.at(buffer, index));
+		}
 	}
 	
 	Layouts.Local __local();
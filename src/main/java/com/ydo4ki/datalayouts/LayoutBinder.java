@@ -0,0 +1,22 @@
+package com.ydo4ki.datalayouts;
+
+/**
+ * Service interface for layouts generated at compile time.
+ * Implementations are discovered with {@link java.util.ServiceLoader} when the layout registry is initialized,
+ * and bind their layouts with {@link Layout#bindTo}, so the classes they describe never have their layouts
+ * built through reflection.
+ * 
+ * <p>Implementations are normally generated by the {@code DataStreamLayouts-processor} annotation processor
+ * for classes annotated with {@link com.ydo4ki.datalayouts.annotation.GenerateLayout}.</p>
+ *
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+public interface LayoutBinder {
+	/**
+	 * Binds the layouts provided by this binder.
+	 *
+	 * @since 1.3.0
+	 */
+	void bindLayouts();
+}
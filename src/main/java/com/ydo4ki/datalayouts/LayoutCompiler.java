@@ -0,0 +1,450 @@
+package com.ydo4ki.datalayouts;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Compiles {@link ObjectLayout}s into {@link GeneratedLayout}s.
+ * For every class a new class is generated with straight-line {@code write} and {@code read} methods
+ * (for streams and for byte buffers),
+ * which access fields directly when it is allowed to and call the primitive layouts without boxing.
+ * Fields that can't be accessed directly are accessed through method handles stored in final fields
+ * of the generated class.
+ *
+ * <p>On runtimes with hidden classes (Java 15+) and a lookup with full privilege access, the generated class
+ * is defined as a hidden nestmate of the lookup class. Otherwise, it is defined by its own class loader,
+ * in which case only public fields of public classes are accessed directly.</p>
+ *
+ * <p>Compilation can be disabled with the {@code com.ydo4ki.datalayouts.codegen} system property,
+ * in which case the reflective layouts are used as is.</p>
+ *
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+final class LayoutCompiler {
+	private LayoutCompiler() throws InstantiationException {
+		throw new InstantiationException();
+	}
+	
+	private static final boolean enabled = Boolean.parseBoolean(System.getProperty("com.ydo4ki.datalayouts.codegen", "true"));
+	
+	private static final String GENERATED_LAYOUT = Type.getInternalName(GeneratedLayout.class);
+	private static final String LAYOUT_OF = Type.getInternalName(Layout.Of.class);
+	private static final String METHOD_HANDLE = Type.getInternalName(MethodHandle.class);
+	private static final String DATA_OUTPUT = Type.getInternalName(DataOutput.class);
+	private static final String DATA_INPUT = Type.getInternalName(DataInput.class);
+	private static final String BYTE_BUFFER = Type.getInternalName(ByteBuffer.class);
+	private static final String[] IO_EXCEPTION = {"java/io/IOException"};
+	
+	/** {@code Lookup::defineHiddenClass} bound to the {@code NESTMATE} option, or null on runtimes without hidden classes */
+	private static final MethodHandle defineHiddenClass = findDefineHiddenClass();
+	
+	private static MethodHandle findDefineHiddenClass() {
+		try {
+			Class<?> option = Class.forName("java.lang.invoke.MethodHandles$Lookup$ClassOption");
+			Object options = Array.newInstance(option, 1);
+			Array.set(options, 0, option.getField("NESTMATE").get(null));
+			MethodHandle define = MethodHandles.publicLookup().findVirtual(MethodHandles.Lookup.class, "defineHiddenClass",
+					MethodType.methodType(MethodHandles.Lookup.class, byte[].class, boolean.class, options.getClass()));
+			return MethodHandles.insertArguments(define, 2, true, options);
+		} catch (ReflectiveOperationException e) {
+			return null; // java 8-14
+		}
+	}
+	
+	/**
+	 * Compiles an object layout.
+	 * If the layout can't be compiled for any reason, the object layout itself is returned.
+	 *
+	 * @param layout The object layout to compile
+	 * @param lookup The lookup the object layout was created with
+	 * @param <T> The type of object the layout represents
+	 * @return The compiled layout, or the object layout itself
+	 * @since 1.3.0
+	 */
+	static <T> Layout.Of<T> compile(ObjectLayout<T> layout, MethodHandles.Lookup lookup) {
+		if (!enabled) return layout;
+		try {
+			if (defineHiddenClass != null && (lookup.lookupModes() & MethodHandles.Lookup.PRIVATE) != 0) {
+				try {
+					return new Generator<>(layout, lookup.lookupClass()).defineHidden(lookup);
+				} catch (IllegalAccessException ignored) {
+					// the lookup has no full privilege access, so fall through to the class loader
+				}
+			}
+			return new Generator<>(layout, null).defineInLoader();
+		} catch (Throwable e) {
+			return layout; // the reflective layout is always there
+		}
+	}
+	
+	/**
+	 * Generates a layout class for a single object layout.
+	 *
+	 * @param <T> The type of object the layout represents
+	 * @since 1.3.0
+	 */
+	private static final class Generator<T> {
+		private final ObjectLayout<T> layout;
+		/** The class the generated class is a nestmate of, or null if it is defined by its own class loader */
+		private final Class<?> host;
+		private final String className;
+		/** Constructor arguments of the generated class, in the order they are stored to its fields */
+		private final List<Object> constants = new ArrayList<>();
+		private final List<String> constantDescriptors = new ArrayList<>();
+		
+		private final String[] layoutFields;
+		private final String[] getterFields;
+		private final String[] setterFields;
+		private String instantiatorField;
+		
+		Generator(ObjectLayout<T> layout, Class<?> host) {
+			this.layout = layout;
+			this.host = host;
+			String packageName = host != null ? packageName(host) : packageName(layout.type());
+			this.className = (packageName.isEmpty() ? "" : packageName.replace('.', '/') + "/")
+					+ layout.type().getSimpleName() + "$$Layout";
+			int count = layout.fieldsCount();
+			this.layoutFields = new String[count];
+			this.getterFields = new String[count];
+			this.setterFields = new String[count];
+		}
+		
+		@SuppressWarnings("unchecked")
+		Layout.Of<T> defineHidden(MethodHandles.Lookup lookup) throws Throwable {
+			byte[] bytes = generate();
+			MethodHandles.Lookup hidden = (MethodHandles.Lookup) defineHiddenClass.invoke(lookup, bytes);
+			MethodHandle constructor = hidden.findConstructor(hidden.lookupClass(), MethodType.methodType(void.class, Layout.Of.class, Object[].class));
+			return (Layout.Of<T>) constructor.invoke(layout, constants.toArray());
+		}
+		
+		@SuppressWarnings("unchecked")
+		Layout.Of<T> defineInLoader() throws Throwable {
+			byte[] bytes = generate();
+			Class<?> generated = new DefiningClassLoader(layout.type().getClassLoader()).define(className.replace('/', '.'), bytes);
+			return (Layout.Of<T>) generated.getConstructor(Layout.Of.class, Object[].class).newInstance(layout, constants.toArray());
+		}
+		
+		private byte[] generate() {
+			ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS); // no branches, so no frames
+			cw.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, className, null, GENERATED_LAYOUT, null);
+			
+			int count = layout.fieldsCount();
+			for (int i = 0; i < count; i++) {
+				Field field = layout.field(i);
+				Layout<?> fieldLayout = layout.fieldLayout(i);
+				Class<?> primitiveLayout = primitiveLayoutClass(field.getType(), fieldLayout);
+				if (primitiveLayout != null) {
+					layoutFields[i] = constant(cw, "layout" + i, primitiveLayout, fieldLayout);
+				} else {
+					layoutFields[i] = constant(cw, "layout" + i, Layout.Of.class, fieldLayout.asObjectLayout());
+				}
+				if (!canRead(field)) {
+					getterFields[i] = constant(cw, "getter" + i, MethodHandle.class,
+							layout.getter(i).asType(MethodType.methodType(erase(field.getType()), Object.class)));
+				}
+				if (!layout.constructs() && !canWrite(field)) {
+					setterFields[i] = constant(cw, "setter" + i, MethodHandle.class,
+							layout.setter(i).asType(MethodType.methodType(void.class, Object.class, erase(field.getType()))));
+				}
+			}
+			MethodHandle instantiator = layout.instantiator();
+			instantiatorField = constant(cw, "instantiator", MethodHandle.class, instantiator.asType(eraseParameters(instantiator.type())));
+			
+			generateConstructor(cw);
+			generateWrite(cw, DATA_OUTPUT, IO_EXCEPTION);
+			generateRead(cw, DATA_INPUT, IO_EXCEPTION);
+			generateWrite(cw, BYTE_BUFFER, null);
+			generateRead(cw, BYTE_BUFFER, null);
+			cw.visitEnd();
+			return cw.toByteArray();
+		}
+		
+		private String constant(ClassWriter cw, String name, Class<?> type, Object value) {
+			String descriptor = Type.getDescriptor(type);
+			cw.visitField(ACC_PRIVATE | ACC_FINAL, name, descriptor, null, null).visitEnd();
+			constants.add(value);
+			constantDescriptors.add(name + ":" + descriptor);
+			return name;
+		}
+		
+		private void generateConstructor(ClassWriter cw) {
+			MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "(L" + LAYOUT_OF + ";[Ljava/lang/Object;)V", null, null);
+			mv.visitCode();
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitVarInsn(ALOAD, 1);
+			mv.visitMethodInsn(INVOKESPECIAL, GENERATED_LAYOUT, "<init>", "(L" + LAYOUT_OF + ";)V", false);
+			for (int i = 0; i < constantDescriptors.size(); i++) {
+				String[] field = constantDescriptors.get(i).split(":", 2);
+				mv.visitVarInsn(ALOAD, 0);
+				mv.visitVarInsn(ALOAD, 2);
+				pushInt(mv, i);
+				mv.visitInsn(AALOAD);
+				mv.visitTypeInsn(CHECKCAST, Type.getType(field[1]).getInternalName());
+				mv.visitFieldInsn(PUTFIELD, className, field[0], field[1]);
+			}
+			mv.visitInsn(RETURN);
+			mv.visitMaxs(0, 0);
+			mv.visitEnd();
+		}
+		
+		// write(Object x, DataOutput out) or write(Object x, ByteBuffer buffer)
+		private void generateWrite(ClassWriter cw, String sink, String[] exceptions) {
+			MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "write", "(Ljava/lang/Object;L" + sink + ";)V", null, exceptions);
+			mv.visitCode();
+			final int self = 3;
+			mv.visitVarInsn(ALOAD, 1);
+			if (directAccessForWrite()) mv.visitTypeInsn(CHECKCAST, Type.getInternalName(layout.type()));
+			mv.visitVarInsn(ASTORE, self);
+			
+			for (int i = 0, Len = layout.fieldsCount(); i < Len; i++) {
+				Field field = layout.field(i);
+				Class<?> type = field.getType();
+				Class<?> primitiveLayout = primitiveLayoutClass(type, layout.fieldLayout(i));
+				
+				mv.visitVarInsn(ALOAD, 0);
+				mv.visitFieldInsn(GETFIELD, className, layoutFields[i],
+						Type.getDescriptor(primitiveLayout != null ? primitiveLayout : Layout.Of.class));
+				
+				if (getterFields[i] == null) {
+					mv.visitVarInsn(ALOAD, self);
+					mv.visitFieldInsn(GETFIELD, Type.getInternalName(field.getDeclaringClass()), field.getName(), Type.getDescriptor(type));
+				} else {
+					mv.visitVarInsn(ALOAD, 0);
+					mv.visitFieldInsn(GETFIELD, className, getterFields[i], "L" + METHOD_HANDLE + ";");
+					mv.visitVarInsn(ALOAD, self);
+					mv.visitMethodInsn(INVOKEVIRTUAL, METHOD_HANDLE, "invokeExact",
+							"(Ljava/lang/Object;)" + Type.getDescriptor(erase(type)), false);
+				}
+				
+				if (primitiveLayout != null) {
+					mv.visitVarInsn(ALOAD, 2);
+					mv.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(primitiveLayout), "write",
+							"(" + Type.getDescriptor(type) + "L" + sink + ";)V", false);
+				} else {
+					if (type.isPrimitive()) box(mv, type);
+					mv.visitVarInsn(ALOAD, 2);
+					mv.visitMethodInsn(INVOKEINTERFACE, LAYOUT_OF, "write", "(Ljava/lang/Object;L" + sink + ";)V", true);
+				}
+			}
+			mv.visitInsn(RETURN);
+			mv.visitMaxs(0, 0);
+			mv.visitEnd();
+		}
+		
+		// Object read(DataInput in) or Object read(ByteBuffer buffer)
+		private void generateRead(ClassWriter cw, String source, String[] exceptions) {
+			MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "read", "(L" + source + ";)Ljava/lang/Object;", null, exceptions);
+			mv.visitCode();
+			mv.visitVarInsn(ALOAD, 0);
+			mv.visitFieldInsn(GETFIELD, className, instantiatorField, "L" + METHOD_HANDLE + ";");
+			
+			if (layout.constructs()) {
+				// all values go straight to the constructor
+				StringBuilder descriptor = new StringBuilder("(");
+				for (int i = 0, Len = layout.fieldsCount(); i < Len; i++) {
+					Class<?> type = layout.field(i).getType();
+					readValue(mv, i, false, source);
+					descriptor.append(Type.getDescriptor(erase(type)));
+				}
+				mv.visitMethodInsn(INVOKEVIRTUAL, METHOD_HANDLE, "invokeExact", descriptor.append(")Ljava/lang/Object;").toString(), false);
+				mv.visitInsn(ARETURN);
+				mv.visitMaxs(0, 0);
+				mv.visitEnd();
+				return;
+			}
+			
+			final int self = 2;
+			mv.visitMethodInsn(INVOKEVIRTUAL, METHOD_HANDLE, "invokeExact", "()Ljava/lang/Object;", false);
+			if (directAccessForRead()) mv.visitTypeInsn(CHECKCAST, Type.getInternalName(layout.type()));
+			mv.visitVarInsn(ASTORE, self);
+			
+			for (int i = 0, Len = layout.fieldsCount(); i < Len; i++) {
+				Field field = layout.field(i);
+				Class<?> type = field.getType();
+				
+				if (setterFields[i] == null) {
+					mv.visitVarInsn(ALOAD, self);
+					readValue(mv, i, true, source);
+					mv.visitFieldInsn(PUTFIELD, Type.getInternalName(field.getDeclaringClass()), field.getName(), Type.getDescriptor(type));
+				} else {
+					mv.visitVarInsn(ALOAD, 0);
+					mv.visitFieldInsn(GETFIELD, className, setterFields[i], "L" + METHOD_HANDLE + ";");
+					mv.visitVarInsn(ALOAD, self);
+					readValue(mv, i, false, source);
+					mv.visitMethodInsn(INVOKEVIRTUAL, METHOD_HANDLE, "invokeExact",
+							"(Ljava/lang/Object;" + Type.getDescriptor(erase(type)) + ")V", false);
+				}
+			}
+			mv.visitVarInsn(ALOAD, self);
+			mv.visitInsn(ARETURN);
+			mv.visitMaxs(0, 0);
+			mv.visitEnd();
+		}
+		
+		/** Reads the value of a field and leaves it on the stack, primitive or (unless cast) erased to Object */
+		private void readValue(MethodVisitor mv, int i, boolean cast, String source) {
+			Class<?> type = layout.field(i).getType();
+			Class<?> primitiveLayout = primitiveLayoutClass(type, layout.fieldLayout(i));
+			mv.visitVarInsn(ALOAD, 0);
+			if (primitiveLayout != null) {
+				mv.visitFieldInsn(GETFIELD, className, layoutFields[i], Type.getDescriptor(primitiveLayout));
+				mv.visitVarInsn(ALOAD, 1);
+				mv.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(primitiveLayout), "read",
+						"(L" + source + ";)" + Type.getDescriptor(type), false);
+			} else {
+				mv.visitFieldInsn(GETFIELD, className, layoutFields[i], "L" + LAYOUT_OF + ";");
+				mv.visitVarInsn(ALOAD, 1);
+				mv.visitMethodInsn(INVOKEINTERFACE, LAYOUT_OF, "read", "(L" + source + ";)Ljava/lang/Object;", true);
+				if (type.isPrimitive()) {
+					unbox(mv, type);
+				} else if (cast) {
+					mv.visitTypeInsn(CHECKCAST, Type.getInternalName(type));
+				}
+			}
+		}
+		
+		private boolean directAccessForWrite() {
+			for (String getter : getterFields) {
+				if (getter == null) return true;
+			}
+			return false;
+		}
+		
+		private boolean directAccessForRead() {
+			for (String setter : setterFields) {
+				if (setter == null) return true;
+			}
+			return false;
+		}
+		
+		private boolean canRead(Field field) {
+			if (!canAccess(layout.type()) || !canAccess(field.getDeclaringClass())) return false;
+			int modifiers = field.getModifiers();
+			if (Modifier.isPublic(modifiers)) return true;
+			if (host == null) return false;
+			if (Modifier.isPrivate(modifiers)) return field.getDeclaringClass() == host;
+			return samePackage(field.getDeclaringClass(), host);
+		}
+		
+		private boolean canWrite(Field field) {
+			// final fields can only be assigned by their own class, even with nestmate access
+			return !Modifier.isFinal(field.getModifiers()) && canRead(field) && canAccess(field.getType());
+		}
+		
+		private boolean canAccess(Class<?> clazz) {
+			while (clazz.isArray()) clazz = clazz.getComponentType();
+			if (clazz.isPrimitive()) return true;
+			if (Modifier.isPublic(clazz.getModifiers()) && (clazz.getEnclosingClass() == null || canAccess(clazz.getEnclosingClass())))
+				return true;
+			return host != null && samePackage(clazz, host);
+		}
+	}
+	
+	/**
+	 * Returns the primitive layout class which can be called directly for a field, or null if
+	 * the field has to be written through {@link Layout.Of}.
+	 */
+	private static Class<?> primitiveLayoutClass(Class<?> fieldType, Layout<?> layout) {
+		if (fieldType == boolean.class && layout instanceof Layout.OfBoolean) return Layout.OfBoolean.class;
+		if (fieldType == byte.class    && layout instanceof Layout.OfByte)    return Layout.OfByte.class;
+		if (fieldType == short.class   && layout instanceof Layout.OfShort)   return Layout.OfShort.class;
+		if (fieldType == char.class    && layout instanceof Layout.OfChar)    return Layout.OfChar.class;
+		if (fieldType == int.class     && layout instanceof Layout.OfInt)     return Layout.OfInt.class;
+		if (fieldType == float.class   && layout instanceof Layout.OfFloat)   return Layout.OfFloat.class;
+		if (fieldType == long.class    && layout instanceof Layout.OfLong)    return Layout.OfLong.class;
+		if (fieldType == double.class  && layout instanceof Layout.OfDouble)  return Layout.OfDouble.class;
+		return null;
+	}
+	
+	private static Class<?> erase(Class<?> type) {
+		return type.isPrimitive() ? type : Object.class;
+	}
+	
+	private static MethodType eraseParameters(MethodType type) {
+		for (int i = 0; i < type.parameterCount(); i++) {
+			type = type.changeParameterType(i, erase(type.parameterType(i)));
+		}
+		return type;
+	}
+	
+	private static boolean samePackage(Class<?> a, Class<?> b) {
+		return a.getClassLoader() == b.getClassLoader() && packageName(a).equals(packageName(b));
+	}
+	
+	static String packageName(Class<?> clazz) {
+		String name = clazz.getName();
+		int dot = name.lastIndexOf('.');
+		return dot == -1 ? "" : name.substring(0, dot);
+	}
+	
+	private static Class<?> wrapper(Class<?> primitive) {
+		if (primitive == boolean.class) return Boolean.class;
+		if (primitive == byte.class)    return Byte.class;
+		if (primitive == short.class)   return Short.class;
+		if (primitive == char.class)    return Character.class;
+		if (primitive == int.class)     return Integer.class;
+		if (primitive == float.class)   return Float.class;
+		if (primitive == long.class)    return Long.class;
+		if (primitive == double.class)  return Double.class;
+		throw new AssertionError();
+	}
+	
+	static void box(MethodVisitor mv, Class<?> primitive) {
+		Type type = Type.getType(primitive);
+		String wrapper = Type.getInternalName(wrapper(primitive));
+		mv.visitMethodInsn(INVOKESTATIC, wrapper, "valueOf", "(" + type.getDescriptor() + ")L" + wrapper + ";", false);
+	}
+	
+	static void unbox(MethodVisitor mv, Class<?> primitive) {
+		Type type = Type.getType(primitive);
+		String wrapper = Type.getInternalName(wrapper(primitive));
+		mv.visitTypeInsn(CHECKCAST, wrapper);
+		mv.visitMethodInsn(INVOKEVIRTUAL, wrapper, type.getClassName() + "Value", "()" + type.getDescriptor(), false);
+	}
+	
+	static void pushInt(MethodVisitor mv, int value) {
+		if (value <= 5) mv.visitInsn(ICONST_0 + value);
+		else if (value <= Byte.MAX_VALUE) mv.visitIntInsn(BIPUSH, value);
+		else mv.visitIntInsn(SIPUSH, value);
+	}
+	
+	/**
+	 * Class loader for generated classes on runtimes without hidden classes.
+	 * Each generated class gets its own loader, so it can be unloaded together with the class it serializes.
+	 *
+	 * @since 1.3.0
+	 */
+	static final class DefiningClassLoader extends ClassLoader {
+		DefiningClassLoader(ClassLoader parent) {
+			super(parent);
+		}
+		
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			// the class may come from a loader that can't see the library itself
+			if (name.startsWith("com.ydo4ki.datalayouts."))
+				return Class.forName(name, false, LayoutCompiler.class.getClassLoader());
+			return super.loadClass(name, resolve);
+		}
+		
+		Class<?> define(String name, byte[] bytes) {
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+}
@@ -0,0 +1,495 @@
+package com.ydo4ki.datalayouts;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A scope of layout bindings: the layouts bound to classes, virtually bound to classes, and annotation pragmas.
+ * The static methods of {@link Layout} use the {@linkplain #global() global registry}, which holds the built-in bindings.
+ * 
+ * <p>A registry inherits the bindings of its parent, and its own bindings take precedence over them,
+ * so different protocols or plugins can define the same classes differently.
+ * Layouts of classes without a binding are created by each registry for itself, with the layouts of their fields
+ * taken from it, so they follow its bindings.</p>
+ * 
+ * <p>Bindings are stored with the classes they are bound to (through {@link ClassValue}) when those classes can see
+ * everything the binding refers to, so a registry doesn't keep a plugin's classes from being unloaded:
+ * once a plugin's class loader is unreachable, its classes, their layouts and the layout classes generated for them
+ * can be collected. Bindings that refer to classes of a more specific class loader than the class they are bound to,
+ * such as a plugin's layout virtually bound to {@code Runnable}, or a plugin's pragma for a library annotation,
+ * are kept by the registry itself instead, and are collected with it. Such bindings should therefore be made
+ * in a registry of the plugin, which can be dropped at any time.</p>
+ * 
+ * <p>Registries are thread-safe, and reading from them takes no lock.</p>
+ *
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+public final class LayoutRegistry {
+	/** The registry bindings are inherited from, or null */
+	private final LayoutRegistry parent;
+	private final ClassValue<Bindings> bindings = new ClassValue<Bindings>() {
+		@Override
+		protected Bindings computeValue(Class<?> type) {
+			return new Bindings();
+		}
+	};
+	/**
+	 * Bindings that can't be stored with the class they are bound to, because they refer to classes
+	 * the class can't see; replaced as a whole when a class is added
+	 */
+	private volatile Map<Class<?>, Bindings> localBindings = new HashMap<>();
+	/** The layouts being created, by class */
+	private final Map<Class<?>, Creation> creations = new ConcurrentHashMap<>();
+	/** The creations the threads waiting for one are waiting for, to find cycles before they deadlock */
+	private final Map<Thread, Creation> awaited = new ConcurrentHashMap<>();
+	/** Incremented by every virtual binding, which makes all resolved virtual layouts stale */
+	private final AtomicInteger virtualBindings = new AtomicInteger();
+	private final LongAdder virtualHits = new LongAdder();
+	private final LongAdder virtualMisses = new LongAdder();
+	
+	/**
+	 * Returns the registry used by the static methods of {@link Layout}, with the built-in bindings.
+	 *
+	 * @return The global registry
+	 * @since 1.3.0
+	 */
+	public static LayoutRegistry global() {
+		return Layouts.global;
+	}
+	
+	/**
+	 * Creates a new registry inheriting the bindings of the {@linkplain #global() global registry}.
+	 *
+	 * @since 1.3.0
+	 */
+	public LayoutRegistry() {
+		this(global());
+	}
+	
+	/**
+	 * Creates a new registry inheriting the bindings of the specified registry.
+	 *
+	 * @param parent The registry to inherit bindings from, or null for a registry without any bindings,
+	 *               not even the built-in ones
+	 * @since 1.3.0
+	 */
+	public LayoutRegistry(LayoutRegistry parent) {
+		this.parent = parent;
+	}
+	
+	/**
+	 * Returns the registry this registry inherits bindings from.
+	 *
+	 * @return The parent registry, or null if there is none
+	 * @since 1.3.0
+	 */
+	public LayoutRegistry parent() {
+		return parent;
+	}
+	
+	/**
+	 * Creates a layout for a non-primitive class type with optional annotations, the same way as
+	 * {@link Layout#of(Class, MethodHandles.Lookup, Annotation...)} does with the bindings of this registry.
+	 *
+	 * @param <T> The type of data this layout represents
+	 * @param clazz The class to create a layout for
+	 * @param lookup The method handles lookup to use for accessing fields
+	 * @param annotations Optional annotations to modify the layout behavior
+	 * @return A layout for the specified class
+	 * @throws UnpureClassException If the class is primitive (use {@link #of(Class, Annotation...)} instead)
+	 * @since 1.3.0
+	 */
+	public <T> Layout.Of<T> of(Class<T> clazz, MethodHandles.Lookup lookup, Annotation... annotations) {
+		if (clazz.isPrimitive()) // so it's not null
+			throw new UnpureClassException(clazz, "Use ::of(Class) instead");
+		return applyAnnotations(get(clazz, lookup), annotations, clazz).asObjectLayout();
+	}
+	
+	/**
+	 * Creates a layout for any class type with optional annotations, the same way as
+	 * {@link Layout#of(Class, Annotation...)} does with the bindings of this registry.
+	 *
+	 * @param <T> The type of data this layout represents
+	 * @param clazz The class to create a layout for
+	 * @param annotations Optional annotations to modify the layout behavior
+	 * @return A layout for the specified class
+	 * @since 1.3.0
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> Layout<T> of(Class<T> clazz, Annotation... annotations) {
+		if (clazz.isPrimitive()) {
+			return applyAnnotations((Layout<T>) Layouts.primitiveLayout(clazz), annotations, clazz);
+		}
+		return of(clazz, MethodHandles.publicLookup(), annotations);
+	}
+	
+	/**
+	 * Binds a layout to a class type in this registry.
+	 *
+	 * @param <T> The type of data this layout represents
+	 * @param clazz The class to bind the layout to
+	 * @param layout The layout to bind
+	 * @throws IllegalArgumentException If this registry already has a layout for the class
+	 * @throws UnpureClassException If the class is an interface or abstract
+	 * @see Layout#bindTo(Class, Layout.Of)
+	 * @since 1.3.0
+	 */
+	public <T> void bindTo(Class<T> clazz, Layout.Of<T> layout) {
+		Objects.requireNonNull(layout);
+		if (own(clazz, Bindings::layout) != null || own(clazz, Bindings::created) != null)
+			throw new IllegalArgumentException(clazz + " already has a layout");
+		if (!clazz.isPrimitive() && !clazz.isArray()) if (clazz.isInterface() || (clazz.getModifiers() & Modifier.ABSTRACT) != 0)
+			throw new UnpureClassException(clazz, "not finished classes are not allowed");
+		synchronized (this) { // bound concurrently, possibly in the other storage
+			if (own(clazz, Bindings::layout) != null || !bindings(clazz, layout).layout.compareAndSet(null, layout))
+				throw new IllegalArgumentException(clazz + " already has a layout");
+		}
+	}
+	
+	/**
+	 * Binds a layout to a class type and its subclasses in this registry.
+	 *
+	 * @param <T> The type of data this layout represents
+	 * @param clazz The class to bind the layout to
+	 * @param layout The layout to bind
+	 * @throws IllegalArgumentException If this registry already has a virtual layout for the class
+	 * @see Layout#bindToVirtual(Class, Layout.Of)
+	 * @since 1.3.0
+	 */
+	public <T> void bindToVirtual(Class<T> clazz, Layout.Of<T> layout) {
+		Objects.requireNonNull(layout);
+		synchronized (this) {
+			if (own(clazz, Bindings::virtualLayout) != null || !bindings(clazz, layout).virtualLayout.compareAndSet(null, layout))
+				throw new IllegalArgumentException(clazz + " already has a virtual layout");
+		}
+		virtualBindings.incrementAndGet();
+	}
+	
+	/**
+	 * Returns the number of times the virtual layout of a class was taken from the cache of this registry.
+	 * Virtual layouts are resolved for classes and their supertypes that have no layout bound to them.
+	 *
+	 * @return The number of cache hits
+	 * @since 1.3.0
+	 */
+	public long virtualLookupHits() {
+		return virtualHits.sum();
+	}
+	
+	/**
+	 * Returns the number of times the virtual layout of a class had to be resolved, because it wasn't cached yet
+	 * or because virtual bindings were registered since.
+	 *
+	 * @return The number of cache misses
+	 * @since 1.3.0
+	 */
+	public long virtualLookupMisses() {
+		return virtualMisses.sum();
+	}
+	
+	/**
+	 * Binds an annotation pragma to an annotation type for a specific class type in this registry.
+	 *
+	 * @param <A> The annotation type
+	 * @param <T> The class type the annotation can be applied to
+	 * @param <L> The layout type
+	 * @param annotationType The annotation class
+	 * @param applicableTo The class the annotation can be applied to
+	 * @param pragma The annotation pragma handler
+	 * @throws IllegalArgumentException If this registry already has a pragma for the annotation and the class
+	 * @see Layout#bindAnnotationPragma(Class, Class, AnnotationPragma)
+	 * @since 1.3.0
+	 */
+	public <A extends Annotation, T, L extends Layout<T>> void bindAnnotationPragma(Class<A> annotationType, Class<T> applicableTo, AnnotationPragma<A, T, L> pragma) {
+		Objects.requireNonNull(pragma);
+		synchronized (this) {
+			Bindings local = localBindings.get(annotationType);
+			if (bindings.get(annotationType).pragmas.containsKey(applicableTo) || local != null && local.pragmas.containsKey(applicableTo)
+					|| bindings(annotationType, applicableTo, pragma).pragmas.putIfAbsent(applicableTo, pragma) != null)
+				throw new IllegalArgumentException("This annotation is already registered");
+		}
+	}
+	
+	<T> Layout.Of<T> get(Class<T> clazz, MethodHandles.Lookup lookup) {
+		Layout.Of<T> layout = find(clazz);
+		if (layout != null) return layout;
+		if (clazz.getName().startsWith("java."))
+			throw new IllegalArgumentException("Unbound class from stdlib: " + clazz);
+		
+		// each layout is created once, by the first thread asking for it; the others wait for that one only
+		Creation creation = new Creation();
+		for (Creation current; (current = creations.putIfAbsent(clazz, creation)) != null; ) {
+			await(clazz, current);
+			layout = find(clazz);
+			if (layout != null) return layout;
+			// the creation failed, try it again
+		}
+		try {
+			layout = find(clazz);
+			if (layout != null) return layout;
+			if (clazz.isArray()) {
+				layout = new DynamicArrayLayout<>(clazz, of(clazz.getComponentType()));
+			} else {
+				layout = LayoutCompiler.compile(new ObjectLayout<>(clazz, lookup, this), lookup);
+			}
+			if (!clazz.isArray()) if (clazz.isInterface() || (clazz.getModifiers() & Modifier.ABSTRACT) != 0)
+				throw new UnpureClassException(clazz, "not finished classes are not allowed");
+			synchronized (this) {
+				bindings(clazz, layout).created.set(layout);
+			}
+			return layout;
+		} finally {
+			// only after the layout is bound, so a thread that doesn't find the creation finds the layout
+			creations.remove(clazz, creation);
+			creation.done.countDown();
+		}
+	}
+	
+	/**
+	 * A layout being created by a thread.
+	 */
+	private static final class Creation {
+		final Thread owner = Thread.currentThread();
+		final CountDownLatch done = new CountDownLatch(1);
+	}
+	
+	/**
+	 * Waits until a layout is created by another thread.
+	 *
+	 * @throws UnpureClassException If the layout depends on itself, through the layouts the current thread is creating
+	 */
+	private void await(Class<?> clazz, Creation creation) {
+		Thread thread = Thread.currentThread();
+		awaited.put(thread, creation);
+		try {
+			// the threads form a cycle if the creation, or one that its owner waits for, is owned by this thread.
+			// each thread waits only after looking for the cycle, so at least one of the threads in it finds it.
+			// a cycle of other threads is left to them, hence the bound
+			Creation c = creation;
+			for (int i = awaited.size(); c != null && i >= 0; c = awaited.get(c.owner), i--) {
+				if (c.owner == thread) throw new UnpureClassException(clazz, "the class refers to itself");
+			}
+			boolean interrupted = false;
+			while (true) {
+				try {
+					creation.done.await();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) thread.interrupt();
+		} finally {
+			awaited.remove(thread);
+		}
+	}
+	
+	/**
+	 * Returns the layout bound to a class, or virtually bound to one of its supertypes,
+	 * in this registry or else in its parents, or the layout this registry created for it.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> Layout.Of<T> find(Class<T> clazz) {
+		Layout.Of<?> layout = own(Objects.requireNonNull(clazz), Bindings::created);
+		if (layout != null) return (Layout.Of<T>) layout;
+		for (LayoutRegistry registry = this; registry != null; registry = registry.parent) {
+			layout = registry.own(clazz, Bindings::layout);
+			if (layout == null) layout = registry.findVirtual(clazz);
+			if (layout != null) return (Layout.Of<T>) layout;
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns the layout virtually bound to a class or its nearest supertype, superclasses first, or null.
+	 * Results, including the absence of a layout, are cached for each class until the next virtual binding.
+	 */
+	private Layout.Of<?> findVirtual(Class<?> clazz) {
+		Bindings bindings = this.bindings.get(clazz);
+		int version = virtualBindings.get(); // read first, so a binding made during the walk isn't cached as missing
+		VirtualResolution resolution = bindings.virtualResolution;
+		if (resolution != null && resolution.version == version) {
+			virtualHits.increment();
+			return resolution.layout;
+		}
+		virtualMisses.increment();
+		
+		Layout.Of<?> layout = own(clazz, Bindings::virtualLayout);
+		if (layout == null && clazz.getSuperclass() != null) {
+			layout = findVirtual(clazz.getSuperclass());
+		}
+		if (layout == null) for (Class<?> anInterface : clazz.getInterfaces()) {
+			layout = findVirtual(anInterface);
+			if (layout != null) break;
+		}
+		// not cached if the class can't see the layout, it is then found in the local bindings again
+		if (canSee(clazz, layout)) bindings.virtualResolution = new VirtualResolution(version, layout);
+		return layout;
+	}
+	
+	<T> Layout<T> applyAnnotations(Layout<T> layout, Annotation[] annotations, Class<T> clazz) {
+		for (Annotation annotation : annotations) {
+			@SuppressWarnings("unchecked")
+			AnnotationPragma<Annotation,T,Layout<T>> pragma = (AnnotationPragma<Annotation,T,Layout<T>>) getPragma(annotation.annotationType(), clazz);
+			
+			if (pragma == null) {
+				if (isRegistered(annotation.annotationType())) {
+					throw new IllegalArgumentException("Invalid annotation " + annotation + " for " + clazz.getCanonicalName() + " field");
+				}
+				continue;
+			}
+			layout = pragma.getLayout(layout, annotation, clazz);
+		}
+		return layout;
+	}
+	
+	@SuppressWarnings("unchecked")
+	<A extends Annotation> AnnotationPragma<A,?,?> getPragma(Class<A> annotationType, Class<?> fieldType) {
+		for (LayoutRegistry registry = this; registry != null; registry = registry.parent) {
+			AnnotationPragma<?,?,?> pragma = registry.pragma(annotationType, fieldType);
+			if (pragma == null && fieldType.isArray() && !fieldType.getComponentType().isPrimitive()) {
+				// pragmas for Object[] apply to all arrays of objects
+				pragma = registry.pragma(annotationType, Object[].class);
+			}
+			if (pragma != null) return (AnnotationPragma<A,?,?>) pragma;
+		}
+		return null;
+	}
+	
+	private AnnotationPragma<?,?,?> pragma(Class<? extends Annotation> annotationType, Class<?> fieldType) {
+		AnnotationPragma<?,?,?> pragma = bindings.get(annotationType).pragmas.get(fieldType);
+		if (pragma != null) return pragma;
+		Bindings local = localBindings.get(annotationType);
+		return local == null ? null : local.pragmas.get(fieldType);
+	}
+	
+	/**
+	 * Returns whether an annotation has pragmas for some classes, in this registry or its parents.
+	 */
+	private boolean isRegistered(Class<? extends Annotation> annotationType) {
+		for (LayoutRegistry registry = this; registry != null; registry = registry.parent) {
+			if (!registry.bindings.get(annotationType).pragmas.isEmpty()) return true;
+			Bindings local = registry.localBindings.get(annotationType);
+			if (local != null && !local.pragmas.isEmpty()) return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Returns a binding of a class in this registry, either stored with the class or in the local bindings.
+	 */
+	private Layout.Of<?> own(Class<?> clazz, Function<Bindings, AtomicReference<Layout.Of<?>>> binding) {
+		Layout.Of<?> layout = binding.apply(bindings.get(clazz)).get();
+		if (layout != null) return layout;
+		Bindings local = localBindings.get(clazz);
+		return local == null ? null : binding.apply(local).get();
+	}
+	
+	/**
+	 * Returns the bindings of a class to store values in: the ones stored with the class if it can see all of them,
+	 * or else the local ones of this registry, so that a class shared by plugins doesn't keep the values
+	 * of one of them, and through them its registry, reachable. Must be called while holding the lock of this registry.
+	 */
+	private Bindings bindings(Class<?> clazz, Object... values) {
+		for (Object value : values) {
+			if (!canSee(clazz, value)) {
+				Bindings local = localBindings.get(clazz);
+				if (local == null) {
+					Map<Class<?>, Bindings> copy = new HashMap<>(localBindings);
+					copy.put(clazz, local = new Bindings());
+					localBindings = copy;
+				}
+				return local;
+			}
+		}
+		return bindings.get(clazz);
+	}
+	
+	/**
+	 * Returns whether a value, a class or a layout, only refers to classes that a class can see,
+	 * which then can't be unloaded before the class. Class layouts are checked with the layouts of their fields.
+	 */
+	private static boolean canSee(Class<?> clazz, Object value) {
+		if (value == null) return true;
+		if (value instanceof GeneratedLayout) value = ((GeneratedLayout<?>) value).fallback();
+		if (value instanceof Class) return canSee(clazz, ((Class<?>) value).getClassLoader());
+		if (value instanceof ObjectLayout) {
+			ObjectLayout<?> layout = (ObjectLayout<?>) value;
+			if (!canSee(clazz, layout.type())) return false;
+			for (int i = 0, len = layout.fieldsCount(); i < len; i++) {
+				if (!canSee(clazz, layout.fieldLayout(i))) return false;
+			}
+			return true;
+		}
+		if (value instanceof DynamicArrayLayout) {
+			DynamicArrayLayout<?> layout = (DynamicArrayLayout<?>) value;
+			return canSee(clazz, layout.arrayType) && canSee(clazz, layout.elementLayout());
+		}
+		return canSee(clazz, value.getClass().getClassLoader());
+	}
+	
+	/**
+	 * Returns whether a class loader is the one of a class or one of its parents.
+	 */
+	private static boolean canSee(Class<?> clazz, ClassLoader loader) {
+		if (loader == null) return true;
+		for (ClassLoader l = clazz.getClassLoader(); l != null; l = l.getParent()) {
+			if (l == loader) return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * The bindings of a class in a registry.
+	 */
+	private static final class Bindings {
+		/** The layout bound to the class */
+		final AtomicReference<Layout.Of<?>> layout = new AtomicReference<>();
+		/** The layout the registry created for the class, not inherited by other registries */
+		final AtomicReference<Layout.Of<?>> created = new AtomicReference<>();
+		final AtomicReference<Layout.Of<?>> virtualLayout = new AtomicReference<>();
+		
+		AtomicReference<Layout.Of<?>> layout() {
+			return layout;
+		}
+		
+		AtomicReference<Layout.Of<?>> created() {
+			return created;
+		}
+		
+		AtomicReference<Layout.Of<?>> virtualLayout() {
+			return virtualLayout;
+		}
+		
+		/** Pragmas by the class they apply to, if the class is an annotation type */
+		final Map<Class<?>, AnnotationPragma<?,?,?>> pragmas = new ConcurrentHashMap<>();
+		/** The last result of {@link #findVirtual(Class)} for the class */
+		volatile VirtualResolution virtualResolution;
+	}
+	
+	/**
+	 * A virtual layout resolved for a class, or the absence of one, valid while no virtual bindings are registered.
+	 */
+	private static final class VirtualResolution {
+		/** The number of virtual bindings when the layout was resolved */
+		final int version;
+		/** Null if no supertype has a virtual layout */
+		final Layout.Of<?> layout;
+		
+		VirtualResolution(int version, Layout.Of<?> layout) {
+			this.version = version;
+			this.layout = layout;
+		}
+	}
+}
@@ -4,11 +4,16 @@ import com.ydo4ki.datalayouts.annotation.*;
 
 import java.io.DataInput;
 import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.lang.annotation.Annotation;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
-import java.lang.reflect.Modifier;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Function;
 
 /**
@@ -21,121 +26,46 @@ class Layouts {
 	}
 	
 	
-	private static final Map<Class<?>, Layout.Of<?>> layouts = new HashMap<>();
-	private static final Map<Class<?>, Layout.Of<?>> virtualLayouts = new HashMap<>();
-	private static final Map<AnnotatedFieldType, AnnotationPragma<?,?,?>> annotations = new HashMap<>();
-	private static final Set<Class<? extends Annotation>> registeredAnnotations = new HashSet<>();
-	
-	static <T> Layout<T> applyAnnotations(Layout<T> layout, Annotation[] annotations, Class<T> clazz) {
-		for (Annotation annotation : annotations) {
-			@SuppressWarnings("unchecked")
-			AnnotationPragma<Annotation,T,Layout<T>> pragma = (AnnotationPragma<Annotation,T,Layout<T>>) getPragma(annotation.annotationType(), clazz);
-			
-			if (pragma == null) {
-				if (registeredAnnotations.contains(annotation.annotationType())) {
-					throw new IllegalArgumentException("Invalid annotation " + annotation + " for " + clazz.getCanonicalName() + " field");
-				}
-				continue;
-			}
-			layout = pragma.getLayout(layout, annotation, clazz);
-		}
-		return layout;
-	}
-	
-	@SuppressWarnings("unchecked")
-	private static <T> Layout.Of<T> getLayoutIfExists(Class<T> clazz) {
-		Layout.Of<T> layout = (Layout.Of<T>)layouts.get(Objects.requireNonNull(clazz));
-		if (layout != null) return layout;
-		
-		return (Layout.Of<T>) findLayoutForVirtual(clazz);
-	}
+	/** The registry of {@link Layout}, created before the built-in bindings below */
+	static final LayoutRegistry global = new LayoutRegistry(null);
+	private static final List<InstantiationStrategy> instantiationStrategies = new CopyOnWriteArrayList<>(Arrays.asList(
+			InstantiationStrategy.CANONICAL_CONSTRUCTOR,
+			InstantiationStrategy.ALL_ARGS_CONSTRUCTOR,
+			InstantiationStrategy.NO_ARGS_CONSTRUCTOR,
+			InstantiationStrategy.OBJENESIS
+	));
+	private static int userInstantiationStrategies = 0;
 	
-	private static Layout.Of<?> findLayoutForVirtual(Class<?> clazz) {
-		Layout.Of<?> layout = virtualLayouts.get(clazz);
-		if (layout != null) return layout;
-		
-		if (clazz.getSuperclass() != null) {
-			layout = findLayoutForVirtual(clazz.getSuperclass());
-			if (layout != null) return layout;
-		}
-		
-		for (Class<?> anInterface : clazz.getInterfaces()) {
-			layout = findLayoutForVirtual(anInterface);
-			if (layout != null) return layout;
-		}
-		return layout;
+	/**
+	 * @since 1.3.0
+	 */
+	static synchronized void registerInstantiationStrategy(InstantiationStrategy strategy) {
+		// after the previously registered ones, but before the built-in ones
+		instantiationStrategies.add(userInstantiationStrategies++, Objects.requireNonNull(strategy));
 	}
 	
-	static synchronized <T> Layout.Of<T> get(Class<T> clazz, MethodHandles.Lookup lookup) {
-		Layout.Of<T> layout = getLayoutIfExists(clazz);
-		if (layout == null) {
-			if (clazz.getName().startsWith("java."))
-				throw new IllegalArgumentException("Unbound class from stdlib: " + clazz);
-			if (clazz.isArray()) {
-				layout = new DynamicArrayLayout<>(clazz, Layout.of(clazz.getComponentType()));
-			} else {
-				layout = new ObjectLayout<>(clazz, lookup);
+	/**
+	 * Finds an instantiator for a class with the first applicable instantiation strategy.
+	 * The returned handle is either {@code ()Object} or takes all fields and returns {@code Object}.
+	 *
+	 * @since 1.3.0
+	 */
+	static MethodHandle instantiator(Class<?> clazz, Field[] fields, MethodHandles.Lookup lookup) throws ReflectiveOperationException {
+		for (InstantiationStrategy strategy : instantiationStrategies) {
+			MethodHandle instantiator = strategy.instantiator(clazz, fields, lookup);
+			if (instantiator == null) continue;
+			MethodType type = instantiator.type();
+			if (type.parameterCount() != 0 && type.parameterCount() != fields.length)
+				throw new IllegalStateException(strategy + " returned " + instantiator + " for " + clazz);
+			for (int i = 0; i < type.parameterCount(); i++) {
+				if (type.parameterType(i) != fields[i].getType())
+					throw new IllegalStateException(strategy + " returned " + instantiator + " for " + clazz);
 			}
-			bind(clazz, layout);
-		}
-		return layout;
-	}
-	
-	static <T> void bind(Class<T> clazz, Layout.Of<T> layout) {
-		if (layouts.containsKey(clazz))
-			throw new IllegalArgumentException(clazz + " already has a layout");
-		if (!clazz.isPrimitive() && !clazz.isArray()) if (clazz.isInterface() || (clazz.getModifiers() & Modifier.ABSTRACT) != 0)
-			throw new UnpureClassException(clazz, "not finished classes are not allowed");
-		layouts.put(clazz, layout);
-	}
-	static <T> void bindVirtual(Class<T> clazz, Layout.Of<T> layout) {
-		if (virtualLayouts.containsKey(clazz))
-			throw new IllegalArgumentException(clazz + " already has a virtual layout");
-		virtualLayouts.put(clazz, layout);
-	}
-	
-	// func type = Layout<T>(Class<?> targetType, T annotationItself)
-	static <A extends Annotation> void registerAnnotation(Class<A> annotationType, Class<?> fieldType, AnnotationPragma<A,?,?> pragma) {
-		AnnotatedFieldType type = new AnnotatedFieldType(annotationType, fieldType);
-		
-		if (annotations.containsKey(type))
-			throw new IllegalArgumentException("This annotation is already registered");
-		annotations.put(type, pragma);
-		registeredAnnotations.add(annotationType);
-	}
-	
-	@SuppressWarnings("unchecked")
-	static <A extends Annotation> AnnotationPragma<A,?,?> getPragma(Class<A> annotationType, Class<?> fieldType) {
-		return (AnnotationPragma<A,?,?>) annotations.get(new AnnotatedFieldType(annotationType, fieldType));
-	}
-	
-	private static final class AnnotatedFieldType {
-		final Class<? extends Annotation> annotationType;
-		final Class<?> fieldType;
-		final int hash;
-		
-		private AnnotatedFieldType(Class<? extends Annotation> annotationType, Class<?> fieldType) {
-			this.annotationType = annotationType;
-			this.fieldType = fieldType;
-			this.hash = Objects.hash(annotationType, fieldType);
-		}
-		
-		@Override
-		public boolean equals(Object o) {
-			if (o == null || getClass() != o.getClass()) return false;
-			AnnotatedFieldType that = (AnnotatedFieldType) o;
-			return Objects.equals(annotationType, that.annotationType) && Objects.equals(fieldType, that.fieldType);
-		}
-		
-		@Override
-		public int hashCode() {
-			return hash;
+			return instantiator.asType(type.changeReturnType(Object.class));
 		}
+		throw new UnpureClassException(clazz, "no applicable instantiation strategy");
 	}
 	
-	
-	
-	
 	static Layout<?> primitiveLayout(Class<?> clazz) {
 		assert clazz.isPrimitive();
 		if (clazz == byte.class)    return Layout.ofByte;
@@ -166,6 +96,17 @@ class Layouts {
 			return new UUID(in.readLong(), in.readLong());
 		}
 		
+		@Override
+		public void write(UUID x, ByteBuffer buffer) {
+			buffer.putLong(x.getMostSignificantBits());
+			buffer.putLong(x.getLeastSignificantBits());
+		}
+		
+		@Override
+		public UUID read(ByteBuffer buffer) {
+			return new UUID(buffer.getLong(), buffer.getLong());
+		}
+		
 		@Override
 		public OptionalInt size() {
 			return OptionalInt.of(16);
@@ -194,6 +135,10 @@ class Layouts {
 		Layout.bindAnnotationPragma(NullTerminated.class, String.class, Layouts::getNullTerminatedLayout);
 		Layout.bindAnnotationPragma(UnsignedByte.class, int.class, Layouts::getUnsignedByteLayout);
 		Layout.bindAnnotationPragma(UnsignedShort.class, int.class, Layouts::getUnsignedShortLayout);
+		Layout.bindAnnotationPragma(VarInt.class, int.class, Layouts::getVarIntLayout);
+		Layout.bindAnnotationPragma(VarInt.class, long.class, Layouts::getVarLongLayout);
+		Layout.bindAnnotationPragma(ZigZag.class, int.class, Layouts::getZigZagIntLayout);
+		Layout.bindAnnotationPragma(ZigZag.class, long.class, Layouts::getZigZagLongLayout);
 		
 		Layout.bindAnnotationPragma(Length.class, String.class, Layouts::getStringLengthLayout);
 		
@@ -206,6 +151,27 @@ class Layouts {
 		Layout.bindAnnotationPragma(Length.class, float[].class, Layouts::getArrayLengthLayout);
 		Layout.bindAnnotationPragma(Length.class, long[].class, Layouts::getArrayLengthLayout);
 		Layout.bindAnnotationPragma(Length.class, double[].class, Layouts::getArrayLengthLayout);
+		
+		Layout.bindAnnotationPragma(Columnar.class, Object[].class, Layouts::getColumnarLayout);
+		Layout.bindAnnotationPragma(Interned.class, String.class, Layouts::getInternedLayout);
+		
+		Layout.bindAnnotationPragma(LengthPrefix.class, String.class, Layouts::getStringLengthPrefixLayout);
+		Layout.bindAnnotationPragma(LengthPrefix.class, Object[].class, Layouts::getArrayLengthPrefixLayout);
+		Layout.bindAnnotationPragma(LengthPrefix.class, byte[].class, Layouts::getArrayLengthPrefixLayout);
+		Layout.bindAnnotationPragma(LengthPrefix.class, boolean[].class, Layouts::getArrayLengthPrefixLayout);
+		Layout.bindAnnotationPragma(LengthPrefix.class, short[].class, Layouts::getArrayLengthPrefixLayout);
+		Layout.bindAnnotationPragma(LengthPrefix.class, char[].class, Layouts::getArrayLengthPrefixLayout);
+		Layout.bindAnnotationPragma(LengthPrefix.class, int[].class, Layouts::getArrayLengthPrefixLayout);
+		Layout.bindAnnotationPragma(LengthPrefix.class, float[].class, Layouts::getArrayLengthPrefixLayout);
+		Layout.bindAnnotationPragma(LengthPrefix.class, long[].class, Layouts::getArrayLengthPrefixLayout);
+		Layout.bindAnnotationPragma(LengthPrefix.class, double[].class, Layouts::getArrayLengthPrefixLayout);
+	}
+	
+	static {
+		// layouts generated at compile time; this has to stay the last initializer
+		for (LayoutBinder binder : ServiceLoader.load(LayoutBinder.class)) {
+			binder.bindLayouts();
+		}
 	}
 	
 	private static StringLayout getEncodingLayout(StringLayout l, Encoding encoding, Class<String> cls) {
@@ -234,18 +200,48 @@ class Layouts {
 		throw new IllegalArgumentException("Inappropriate annotation: " + length);
 	}
 	
+	/**
+	 * @since 1.3.0
+	 */
+	private static StringLayout getStringLengthPrefixLayout(StringLayout l, LengthPrefix prefix, Class<String> cls) {
+		if (l instanceof StringLayout.DynamicStringLayout && !((StringLayout.DynamicStringLayout) l).isNullTerminated()) {
+			return ((StringLayout.DynamicStringLayout) l).updateLengthPrefix(LengthPrefixes.of(prefix.value()));
+		}
+		throw new IllegalArgumentException("Inappropriate annotation: " + prefix);
+	}
+	
+	/**
+	 * @since 1.3.0
+	 */
+	private static <T> ArrayLayout<T> getArrayLengthPrefixLayout(Layout<T> l, LengthPrefix prefix, Class<T> cls) {
+		if (l instanceof DynamicArrayLayout && !(l instanceof StaticArrayLayout)) {
+			return ((DynamicArrayLayout<T>) l).withLengthPrefix(LengthPrefixes.of(prefix.value()));
+		}
+		throw new IllegalArgumentException("Inappropriate annotation: " + prefix);
+	}
+	
+	/**
+	 * @since 1.3.0
+	 */
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	private static <T> ArrayLayout<T> getColumnarLayout(Layout<T> l, Columnar columnar, Class<T> cls) {
+		if (l instanceof DynamicArrayLayout && !(l instanceof StaticArrayLayout)
+				&& ObjectLayout.of(((DynamicArrayLayout<T>) l).elementLayout()) != null) {
+			return (ArrayLayout<T>) new ColumnarLayout(((DynamicArrayLayout<T>) l).elementLayout().asObjectLayout());
+		}
+		throw new IllegalArgumentException("Inappropriate annotation: " + columnar);
+	}
+	
+	/**
+	 * @since 1.3.0
+	 */
+	private static Layout<String> getInternedLayout(Layout<String> l, Interned interned, Class<String> cls) {
+		if (l instanceof StringLayout) return new InternedStringLayout((StringLayout) l);
+		throw new IllegalArgumentException("Inappropriate annotation: " + interned);
+	}
+	
 	private static Layout<Integer> getUnsignedByteLayout(Layout<Integer> l, UnsignedByte annotation, Class<Integer> cls) {
-		if (l instanceof Layout.OfInt) return new Layout.OfInt() {
-			@Override
-			public int read(DataInput in) throws IOException {
-				return in.readUnsignedByte();
-			}
-			
-			@Override
-			public void write(int x, DataOutput out) throws IOException {
-				out.writeByte(x);
-			}
-		};
+		if (l instanceof Layout.OfInt) return Layout.ofUnsignedByte;
 		throw new IllegalArgumentException("Incomparable annotation: " + annotation);
 	}
 	
@@ -253,18 +249,147 @@ class Layouts {
 	 * @since 1.1.0
 	 */
 	private static Layout<Integer> getUnsignedShortLayout(Layout<Integer> l, UnsignedShort annotation, Class<Integer> cls) {
-		if (l instanceof Layout.OfInt) return new Layout.OfInt() {
-			@Override
-			public int read(DataInput in) throws IOException {
-				return in.readUnsignedShort();
+		if (l instanceof Layout.OfInt) return Layout.ofUnsignedShort;
+		throw new IllegalArgumentException("Incomparable annotation: " + annotation);
+	}
+	
+	/**
+	 * @since 1.3.0
+	 */
+	private static Layout<Integer> getVarIntLayout(Layout<Integer> l, VarInt annotation, Class<Integer> cls) {
+		if (l instanceof Layout.OfInt) return Layout.ofVarInt;
+		throw new IllegalArgumentException("Incomparable annotation: " + annotation);
+	}
+	
+	/**
+	 * @since 1.3.0
+	 */
+	private static Layout<Long> getVarLongLayout(Layout<Long> l, VarInt annotation, Class<Long> cls) {
+		if (l instanceof Layout.OfLong) return Layout.ofVarLong;
+		throw new IllegalArgumentException("Incomparable annotation: " + annotation);
+	}
+	
+	/**
+	 * @since 1.3.0
+	 */
+	private static Layout<Integer> getZigZagIntLayout(Layout<Integer> l, ZigZag annotation, Class<Integer> cls) {
+		if (l instanceof Layout.OfInt) return Layout.ofZigZagInt;
+		throw new IllegalArgumentException("Incomparable annotation: " + annotation);
+	}
+	
+	/**
+	 * @since 1.3.0
+	 */
+	private static Layout<Long> getZigZagLongLayout(Layout<Long> l, ZigZag annotation, Class<Long> cls) {
+		if (l instanceof Layout.OfLong) return Layout.ofZigZagLong;
+		throw new IllegalArgumentException("Incomparable annotation: " + annotation);
+	}
+	
+	/**
+	 * @since 1.3.0
+	 */
+	static StringEncoding encoding(String name) {
+		StringEncoding encoding = StringEncoding.get(name);
+		if (encoding == null)
+			throw new IllegalArgumentException("Unknown encoding: " + name);
+		return encoding;
+	}
+	
+	/**
+	 * Skips a value of a layout in a byte buffer without creating it, where possible.
+	 * Values with a static size are skipped at once; strings and arrays are skipped using their length
+	 * and the size of their characters or elements; class layouts are skipped field by field.
+	 * Other values are read and discarded.
+	 *
+	 * @since 1.3.0
+	 */
+	static void skip(Layout<?> layout, ByteBuffer buffer) {
+		OptionalInt size = layout.size();
+		if (size.isPresent()) {
+			ByteBufferData.skip(buffer, size.getAsInt());
+		} else if (layout instanceof DynamicArrayLayout) {
+			DynamicArrayLayout<?> array = (DynamicArrayLayout<?>) layout;
+			int length = array instanceof StaticArrayLayout ? ((StaticArrayLayout<?>) array).length() : LengthPrefixes.readLength(array.lengthPrefix(), buffer);
+			OptionalInt elementSize = array.elementLayout().size();
+			if (elementSize.isPresent()) {
+				ByteBufferData.skip(buffer, Math.multiplyExact(length, elementSize.getAsInt()));
+			} else {
+				for (int i = 0; i < length; i++) skip(array.elementLayout(), buffer);
 			}
-			
-			@Override
-			public void write(int x, DataOutput out) throws IOException {
-				out.writeShort(x);
+		} else if ((layout instanceof StringLayout.StaticStringLayout
+				|| layout instanceof StringLayout.DynamicStringLayout && !((StringLayout.DynamicStringLayout) layout).isNullTerminated())
+				&& ((StringLayout) layout).encoding.unitSize().isPresent()) {
+			int length = layout instanceof StringLayout.StaticStringLayout
+					? ((StringLayout.StaticStringLayout) layout).length()
+					: LengthPrefixes.readLength(((StringLayout.DynamicStringLayout) layout).lengthPrefix(), buffer);
+			ByteBufferData.skip(buffer, Math.multiplyExact(length, ((StringLayout) layout).encoding.unitSize().getAsInt()));
+		} else if (ObjectLayout.of(layout) != null) {
+			ObjectLayout<?> object = ObjectLayout.of(layout);
+			for (int i = 0, Len = object.fieldsCount(); i < Len; i++) skip(object.fieldLayout(i), buffer);
+		} else {
+			layout.asObjectLayout().read(buffer);
+		}
+	}
+	
+	/**
+	 * Skips exactly the specified number of bytes, unlike {@link DataInput#skipBytes(int)}.
+	 *
+	 * @throws java.io.EOFException If the end of the stream is reached first
+	 * @since 1.3.0
+	 */
+	static void skipBytes(DataInput in, long bytes) throws IOException {
+		while (bytes > 0) {
+			int skipped = in.skipBytes((int) Math.min(bytes, Integer.MAX_VALUE));
+			if (skipped <= 0) {
+				in.readByte(); // throws at the end of the stream
+				skipped = 1;
 			}
-		};
-		throw new IllegalArgumentException("Incomparable annotation: " + annotation);
+			bytes -= skipped;
+		}
+	}
+	
+	/**
+	 * Returns a data output stream that discards everything written to it and only counts the bytes,
+	 * for measuring objects of layouts that cannot compute their size themselves.
+	 *
+	 * @since 1.3.0
+	 */
+	static DataOutputStream sizeCounter() {
+		return new DataOutputStream(DISCARD);
+	}
+	
+	private static final OutputStream DISCARD = new OutputStream() {
+		@Override
+		public void write(int b) {
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	};
+	
+	/**
+	 * Copies exactly the specified number of bytes from a data input stream to a data output stream.
+	 * Bytes are copied straight from the array of a {@link ByteArrayDataInput},
+	 * and through a per-thread scratch buffer otherwise.
+	 *
+	 * @throws java.io.EOFException If the end of the stream is reached first
+	 * @since 1.3.0
+	 */
+	static void transfer(DataInput in, DataOutput out, long bytes) throws IOException {
+		if (in instanceof ByteArrayDataInput && bytes <= Integer.MAX_VALUE) {
+			ByteArrayDataInput input = (ByteArrayDataInput) in;
+			int len = (int) bytes;
+			out.write(input.array(), input.take(len), len);
+			return;
+		}
+		byte[] buf = PrimitiveArrayCodec.scratch();
+		while (bytes > 0) {
+			int len = (int) Math.min(bytes, buf.length);
+			in.readFully(buf, 0, len);
+			out.write(buf, 0, len);
+			bytes -= len;
+		}
 	}
 	
 	static OptionalInt totalSize(Layout<?>[] layouts) {
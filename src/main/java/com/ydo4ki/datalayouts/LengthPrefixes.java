@@ -0,0 +1,80 @@
+package com.ydo4ki.datalayouts;
+
+import com.ydo4ki.datalayouts.annotation.LengthPrefix;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.OptionalInt;
+
+/**
+ * Layouts the lengths of strings and arrays are written with.
+ *
+ * <p>This class must not refer to {@link Layouts}: string layouts are created while {@link Layout} is initialized,
+ * and initializing {@link Layouts} then would bind the layouts that are not created yet.</p>
+ *
+ * @see LengthPrefix
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+final class LengthPrefixes {
+	private LengthPrefixes() throws InstantiationException {
+		throw new InstantiationException();
+	}
+	
+	/**
+	 * Returns the layout of a length prefix.
+	 */
+	static Layout.OfInt of(LengthPrefix.Type type) {
+		switch (type) {
+			case VARINT: return Layout.ofVarInt;
+			case BYTE:   return Layout.ofUnsignedByte;
+			case SHORT:  return Layout.ofUnsignedShort;
+			case INT:    return Layout.ofInt;
+		}
+		throw new AssertionError(type);
+	}
+	
+	/**
+	 * Returns the greatest length a length prefix can hold: lengths are unsigned,
+	 * and prefixes of less than 4 bytes hold as much as their bytes do.
+	 */
+	static int maxLength(Layout.OfInt lengthPrefix) {
+		OptionalInt size = lengthPrefix.size();
+		return size.isPresent() && size.getAsInt() < 4 ? (1 << (8 * size.getAsInt())) - 1 : Integer.MAX_VALUE;
+	}
+	
+	/**
+	 * Checks that a length fits in a length prefix before it is written.
+	 *
+	 * @throws IllegalArgumentException If the length is greater than the maximum
+	 */
+	static int checkLength(int length, int maxLength) {
+		if (length > maxLength) throw new IllegalArgumentException("Length " + length + " does not fit in the length prefix, the maximum is " + maxLength);
+		return length;
+	}
+	
+	/**
+	 * Reads a length and checks that it is one a length prefix can hold, as lengths are unsigned:
+	 * a negative length would be taken as an empty string or array by the methods that skip or copy them.
+	 *
+	 * @throws StreamCorruptedException If the length is negative or greater than the maximum
+	 */
+	static int readLength(Layout.OfInt lengthPrefix, DataInput in) throws IOException {
+		int length = lengthPrefix.read(in);
+		if (length < 0 || length > maxLength(lengthPrefix)) throw new StreamCorruptedException("Invalid length " + length);
+		return length;
+	}
+	
+	/**
+	 * Reads a length from a byte buffer, the same way as {@link #readLength(Layout.OfInt, DataInput)}.
+	 *
+	 * @throws IllegalArgumentException If the length is negative or greater than the maximum
+	 */
+	static int readLength(Layout.OfInt lengthPrefix, ByteBuffer buffer) {
+		int length = lengthPrefix.read(buffer);
+		if (length < 0 || length > maxLength(lengthPrefix)) throw new IllegalArgumentException("Invalid length " + length);
+		return length;
+	}
+}
@@ -0,0 +1,372 @@
+package com.ydo4ki.datalayouts;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A file of fixed-size records, accessed through memory mapping.
+ * The records are written with a static-size layout one after another after a 16-byte header,
+ * so record {@code N} is at offset {@code 16 + N * size} and can be read or written without touching the others.
+ * The header holds the size of the records and the number of records in the file.
+ *
+ * <p>The file is mapped in segments of up to 1 GiB, each containing a whole number of records,
+ * so files can be larger than 2 GiB. Records are read and written with the {@code ByteBuffer} methods
+ * of the layout, in big-endian byte order unless specified otherwise.</p>
+ *
+ * <p>While the file is open, its length may be larger than the records it contains, because appending
+ * maps space ahead. The number of records in the header is updated by {@link #force()} and {@link #close()},
+ * so a file that was not closed is reopened with the records it had when it was last forced.
+ * The file is truncated to its records by {@link #close()}.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @param <T> The type of the records
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+public final class MappedRecordFile<T> implements Closeable {
+	/** Maximum size of a single mapping */
+	private static final int SEGMENT_BYTES = 1 << 30;
+	/** Space mapped at least at once when the file grows */
+	private static final int GROWTH_BYTES = 1 << 20;
+	/** Header: magic number, record size, number of records */
+	private static final int HEADER_BYTES = 16;
+	private static final int MAGIC = 0x444C5246; // "DLRF"
+	private static final int RECORD_SIZE_OFFSET = 4;
+	private static final int COUNT_OFFSET = 8;
+	
+	private final FileChannel channel;
+	private final Layout.Of<T> layout;
+	private final ByteOrder order;
+	private final boolean readOnly;
+	private final int recordSize;
+	private final int segmentRecords;
+	/** Mapped segments, all but the last one are mapped entirely */
+	private final ArrayList<MappedByteBuffer> segments = new ArrayList<>();
+	/** The mapped header, null if the file is opened only for reading or closed */
+	private MappedByteBuffer header;
+	private long count;
+	
+	private MappedRecordFile(FileChannel channel, Layout.Of<T> layout, ByteOrder order, boolean readOnly) throws IOException {
+		this.channel = channel;
+		this.layout = layout;
+		this.order = order;
+		this.readOnly = readOnly;
+		this.recordSize = layout.size().getAsInt();
+		this.segmentRecords = Math.max(1, SEGMENT_BYTES / recordSize);
+		long length = channel.size();
+		if (length == 0 && !readOnly) {
+			this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+			header.putInt(0, MAGIC).putInt(RECORD_SIZE_OFFSET, recordSize).putLong(COUNT_OFFSET, 0);
+			header.force();
+			return;
+		}
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+		while (header.hasRemaining() && channel.read(header, header.position()) >= 0);
+		if (header.hasRemaining() || header.getInt(0) != MAGIC)
+			throw new StreamCorruptedException("Not a record file");
+		if (header.getInt(RECORD_SIZE_OFFSET) != recordSize)
+			throw new IllegalArgumentException("Record size is " + header.getInt(RECORD_SIZE_OFFSET) + ", the layout has " + recordSize + ": " + layout);
+		this.count = header.getLong(COUNT_OFFSET);
+		if (count < 0 || count > (length - HEADER_BYTES) / recordSize)
+			throw new StreamCorruptedException("Record file has " + count + " records, but only " + (length - HEADER_BYTES) + " bytes");
+		this.header = readOnly ? null : channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+	}
+	
+	/**
+	 * Opens a record file for reading and writing, creating it if it doesn't exist.
+	 * Records are stored in big-endian byte order, the same as in streams.
+	 *
+	 * @param <T> The type of the records
+	 * @param path The path of the file
+	 * @param layout The static-size layout of the records
+	 * @return The opened file
+	 * @throws IllegalArgumentException If the layout has no static size, or its size is not the one of the records in the file
+	 * @throws StreamCorruptedException If the file is not a record file
+	 * @throws IOException If the file can't be opened
+	 * @since 1.3.0
+	 */
+	public static <T> MappedRecordFile<T> open(Path path, Layout.Of<T> layout) throws IOException {
+		return open(path, layout, ByteOrder.BIG_ENDIAN, false);
+	}
+	
+	/**
+	 * Opens a record file.
+	 *
+	 * @param <T> The type of the records
+	 * @param path The path of the file
+	 * @param layout The static-size layout of the records
+	 * @param order The byte order of the records
+	 * @param readOnly Whether the file is opened only for reading; otherwise it is created if it doesn't exist
+	 * @return The opened file
+	 * @throws IllegalArgumentException If the layout has no static size, its size is zero,
+	 * or its size is not the one of the records in the file
+	 * @throws StreamCorruptedException If the file is not a record file
+	 * @throws IOException If the file can't be opened
+	 * @since 1.3.0
+	 */
+	public static <T> MappedRecordFile<T> open(Path path, Layout.Of<T> layout, ByteOrder order, boolean readOnly) throws IOException {
+		Objects.requireNonNull(order, "order is null");
+		if (!layout.size().isPresent() || layout.size().getAsInt() == 0)
+			throw new IllegalArgumentException("Record layout must have a static non-zero size: " + layout);
+		FileChannel channel = readOnly
+				? FileChannel.open(path, StandardOpenOption.READ)
+				: FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+		try {
+			return new MappedRecordFile<>(channel, layout, order, readOnly);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Returns the layout of the records.
+	 *
+	 * @return The layout of the records
+	 * @since 1.3.0
+	 */
+	public Layout.Of<T> layout() {
+		return layout;
+	}
+	
+	/**
+	 * Returns the number of records in the file.
+	 *
+	 * @return The number of records
+	 * @since 1.3.0
+	 */
+	public long size() {
+		return count;
+	}
+	
+	/**
+	 * Reads the record at the specified index.
+	 *
+	 * @param index The index of the record
+	 * @return The read record
+	 * @throws IndexOutOfBoundsException If the index is out of range
+	 * @throws IOException If the file can't be mapped
+	 * @since 1.3.0
+	 */
+	public T get(long index) throws IOException {
+		checkIndex(index);
+		return layout.read(segment(index), position(index));
+	}
+	
+	/**
+	 * Reads a range of records.
+	 *
+	 * @param fromIndex The index of the first record
+	 * @param length The number of records to read
+	 * @return The read records
+	 * @throws IndexOutOfBoundsException If the range is out of bounds
+	 * @throws IOException If the file can't be mapped
+	 * @since 1.3.0
+	 */
+	public List<T> get(long fromIndex, int length) throws IOException {
+		if (fromIndex < 0 || length < 0 || fromIndex > count - length)
+			throw new IndexOutOfBoundsException("range [" + fromIndex + ", " + fromIndex + " + " + length + "), size " + count);
+		List<T> records = new ArrayList<>(length);
+		long index = fromIndex, end = fromIndex + length;
+		while (index < end) {
+			// sequentially through each segment, the records never cross them
+			MappedByteBuffer segment = segment(index);
+			long segmentEnd = Math.min(end, (index / segmentRecords + 1) * segmentRecords);
+			for (int position = position(index); index < segmentEnd; index++, position += recordSize) {
+				records.add(layout.read(segment, position));
+			}
+		}
+		return records;
+	}
+	
+	/**
+	 * Writes the record at the specified index, replacing the previous one.
+	 *
+	 * @param index The index of the record
+	 * @param value The record to write
+	 * @throws IndexOutOfBoundsException If the index is out of range
+	 * @throws java.nio.ReadOnlyBufferException If the file is opened only for reading
+	 * @throws IOException If the file can't be mapped
+	 * @since 1.3.0
+	 */
+	public void set(long index, T value) throws IOException {
+		checkIndex(index);
+		layout.write(value, segment(index), position(index));
+	}
+	
+	/**
+	 * Writes a record after the last one.
+	 *
+	 * @param value The record to write
+	 * @return The index of the written record
+	 * @throws java.nio.ReadOnlyBufferException If the file is opened only for reading
+	 * @throws IOException If the file can't be mapped
+	 * @since 1.3.0
+	 */
+	public long append(T value) throws IOException {
+		if (readOnly) throw new ReadOnlyBufferException();
+		long index = count;
+		layout.write(value, segment(index), position(index));
+		count++;
+		return index;
+	}
+	
+	/**
+	 * Writes all changes of the mapped records to the storage device, then the number of records.
+	 * The records are written first, so that the file never has more records than were written.
+	 *
+	 * @since 1.3.0
+	 */
+	public void force() {
+		for (MappedByteBuffer segment : segments) {
+			segment.force();
+		}
+		if (header != null && header.getLong(COUNT_OFFSET) != count) {
+			header.putLong(COUNT_OFFSET, count);
+			header.force();
+		}
+	}
+	
+	/**
+	 * Writes all changes to the storage device, truncates the file to its records and closes it.
+	 * The file is only truncated if its mappings can be released first, as some systems can't truncate mapped files;
+	 * otherwise its extra length is kept, past the records.
+	 *
+	 * @throws IOException If an I/O error occurs
+	 * @since 1.3.0
+	 */
+	@Override
+	public void close() throws IOException {
+		if (!channel.isOpen()) return;
+		try {
+			if (!readOnly) {
+				force();
+				boolean unmapped = unmap(header);
+				header = null;
+				for (MappedByteBuffer segment : segments) {
+					unmapped &= unmap(segment);
+				}
+				segments.clear();
+				if (unmapped) channel.truncate(HEADER_BYTES + count * recordSize);
+			}
+		} finally {
+			segments.clear();
+			channel.close();
+		}
+	}
+	
+	private void checkIndex(long index) {
+		if (index < 0 || index >= count)
+			throw new IndexOutOfBoundsException("index " + index + ", size " + count);
+	}
+	
+	private int position(long index) {
+		return (int) (index % segmentRecords) * recordSize;
+	}
+	
+	/**
+	 * Returns the segment containing the record at the specified index, mapping it if needed.
+	 * The index may be the one after the last record, for appending.
+	 */
+	private MappedByteBuffer segment(long index) throws IOException {
+		int i = (int) (index / segmentRecords);
+		int end = position(index) + recordSize;
+		if (i < segments.size() && segments.get(i).capacity() >= end) return segments.get(i);
+		
+		// the segments before this one are mapped entirely, this one may become the last one
+		for (int j = Math.max(segments.size() - 1, 0); j < i; j++) {
+			put(j, map(j, segmentRecords * recordSize));
+		}
+		int size;
+		if (readOnly) {
+			size = (int) Math.min(count - (long) i * segmentRecords, segmentRecords) * recordSize;
+		} else {
+			long capacity = i < segments.size() ? segments.get(i).capacity() : 0;
+			long grown = Math.max(end, Math.max(GROWTH_BYTES, capacity * 2));
+			size = (int) Math.min(grown / recordSize, segmentRecords) * recordSize;
+		}
+		MappedByteBuffer segment = map(i, size);
+		put(i, segment);
+		return segment;
+	}
+	
+	private void put(int i, MappedByteBuffer segment) {
+		if (i < segments.size()) segments.set(i, segment);
+		else segments.add(segment);
+	}
+	
+	private MappedByteBuffer map(int i, int size) throws IOException {
+		if (i < segments.size() && segments.get(i).capacity() == size) return segments.get(i);
+		MappedByteBuffer segment = channel.map(readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE,
+				HEADER_BYTES + (long) i * segmentRecords * recordSize, size);
+		segment.order(order);
+		return segment;
+	}
+	
+	/** Releases a mapping, takes the buffer as an argument; null if mappings can't be released before they are collected */
+	private static final MethodHandle UNMAP = unmapper();
+	
+	private static MethodHandle unmapper() {
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		try {
+			// Java 9+
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			return lookup.findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+					.bindTo(theUnsafe.get(null));
+		} catch (ReflectiveOperationException | RuntimeException ignored) {
+		}
+		try {
+			// Java 8
+			Class<?> directBuffer = Class.forName("sun.nio.ch.DirectBuffer");
+			Class<?> cleaner = Class.forName("sun.misc.Cleaner");
+			MethodHandle clean = MethodHandles.filterReturnValue(
+					lookup.findVirtual(directBuffer, "cleaner", MethodType.methodType(cleaner)),
+					lookup.findVirtual(cleaner, "clean", MethodType.methodType(void.class)));
+			return clean.asType(MethodType.methodType(void.class, ByteBuffer.class));
+		} catch (ReflectiveOperationException | RuntimeException ignored) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Releases a mapping, which must not be accessed anymore.
+	 *
+	 * @return Whether the mapping was released
+	 */
+	private static boolean unmap(MappedByteBuffer buffer) {
+		if (buffer == null) return true;
+		if (UNMAP == null) return false;
+		try {
+			UNMAP.invokeExact((ByteBuffer) buffer);
+			return true;
+		} catch (Throwable e) {
+			return false;
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "MappedRecordFile{" +
+				"layout=" + layout +
+				", size=" + count +
+				'}';
+	}
+}
@@ -1,8 +1,5 @@
 package com.ydo4ki.datalayouts;
 
-import org.objenesis.Objenesis;
-import org.objenesis.ObjenesisStd;
-
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
@@ -11,6 +8,7 @@ import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 /**
@@ -21,8 +19,9 @@ import java.util.*;
  * creates layouts for each field, and uses method handles to get and set field values efficiently.
  * It also calculates the total size of the object if all fields have static sizes.</p>
  * 
- * <p>For object instantiation during deserialization, this class uses Objenesis to create instances
- * without calling constructors, allowing for efficient deserialization of objects.</p>
+ * <p>For object instantiation during deserialization, this class uses the first applicable
+ * {@link InstantiationStrategy}: either a constructor taking all field values (so no field has to be set
+ * afterwards), or an empty object created by a no-args constructor or Objenesis, whose fields are then set.</p>
  *
  * @param <T> The type of object this layout represents
  * @since 1.0.0
@@ -30,11 +29,18 @@ import java.util.*;
  */
 class ObjectLayout<T> implements Layout.Of<T> {
 	private final Class<T> clazz;
-	private final Objenesis objenesis;
+	private final Field[] fields;
+	/** Either {@code ()Object} or {@code (F0, ..., Fn)Object}, see {@link #constructs} */
+	private final MethodHandle instantiator;
+	/** Whether the instantiator takes all field values, {@link #instantiator} spread over an {@code Object[]} then */
+	private final boolean constructs;
+	private final MethodHandle spreadInstantiator;
 	private final MethodHandle[] getters;
+	/** Null if the instantiator takes all field values */
 	private final MethodHandle[] setters;
 	private final Layout<?>[] fieldLayouts;
 	private final OptionalInt sizeof;
+	private final FieldTable table;
 	
 	/**
 	 * Returns the number of fields in this object layout.
@@ -53,26 +59,150 @@ class ObjectLayout<T> implements Layout.Of<T> {
 	 *
 	 * @param clazz The class to create a layout for
 	 * @param lookup The method handles lookup to use for accessing fields
+	 * @param registry The registry to take the layouts of the fields from
 	 * @throws RuntimeException If an error occurs during layout creation
 	 * @since 1.0.0
 	 */
-	ObjectLayout(Class<T> clazz, MethodHandles.Lookup lookup) {
+	ObjectLayout(Class<T> clazz, MethodHandles.Lookup lookup, LayoutRegistry registry) {
 		this.clazz = clazz;
 		ArrayList<Field> fields = collectFields(clazz);
+		this.fields = fields.toArray(new Field[0]);
 		try {
 			this.getters = find(fields, lookup, MethodHandles.Lookup::unreflectGetter);
-			this.setters = find(fields, lookup, MethodHandles.Lookup::unreflectSetter);
-			this.objenesis = new ObjenesisStd();
+			this.instantiator = Layouts.instantiator(clazz, this.fields, lookup);
+			this.constructs = instantiator.type().parameterCount() == this.fields.length;
+			if (constructs) {
+				// final fields can't always be set (records), so there are no setters at all
+				this.setters = null;
+				this.spreadInstantiator = instantiator.asSpreader(Object[].class, this.fields.length);
+			} else {
+				this.setters = find(fields, lookup, MethodHandles.Lookup::unreflectSetter);
+				this.spreadInstantiator = null;
+			}
 		} catch (RuntimeException e) {
 			throw e;
 		} catch (Exception e) {
 			throw new RuntimeException(e);
 		}
 		
-		this.fieldLayouts = toLayouts(fields);
+		this.fieldLayouts = toLayouts(fields, registry);
 		
 		
 		this.sizeof = Layouts.totalSize(fieldLayouts);
+		this.table = new FieldTable(this.fields, fieldLayouts);
+	}
+	
+	/**
+	 * Returns the class layout a layout was created from.
+	 *
+	 * @param layout The layout
+	 * @param <T> The type of object the layout represents
+	 * @return The class layout itself or the one a generated layout was compiled from,
+	 * or null if the layout is not a class layout
+	 * @since 1.3.0
+	 */
+	static <T> ObjectLayout<T> of(Layout<T> layout) {
+		if (layout instanceof GeneratedLayout) layout = ((GeneratedLayout<T>) layout).fallback();
+		return layout instanceof ObjectLayout ? (ObjectLayout<T>) layout : null;
+	}
+	
+	/**
+	 * Returns the fields of this layout with their offsets.
+	 *
+	 * @return The field table of this layout
+	 * @since 1.3.0
+	 */
+	FieldTable fieldTable() {
+		return table;
+	}
+	
+	/**
+	 * Creates a decoder that reads only the specified fields.
+	 *
+	 * @param fields The names of the fields to read
+	 * @return A projection of this layout
+	 * @throws IllegalArgumentException If there is no field with one of the names
+	 * @since 1.3.0
+	 */
+	Projection<T> projection(String... fields) {
+		return new Projection<>(this, fields);
+	}
+	
+	/**
+	 * Returns the class this layout was created for.
+	 *
+	 * @return The class of the objects this layout reads and writes
+	 * @since 1.3.0
+	 */
+	Class<T> type() {
+		return clazz;
+	}
+	
+	/**
+	 * Returns the fields of this layout in the order they are written.
+	 *
+	 * @param i The index of the field
+	 * @return The field at the specified index
+	 * @since 1.3.0
+	 */
+	Field field(int i) {
+		return fields[i];
+	}
+	
+	/**
+	 * Returns the layout of the field at the specified index.
+	 *
+	 * @param i The index of the field
+	 * @return The layout of the field
+	 * @since 1.3.0
+	 */
+	Layout<?> fieldLayout(int i) {
+		return fieldLayouts[i];
+	}
+	
+	/**
+	 * Returns the getter method handle of the field at the specified index.
+	 *
+	 * @param i The index of the field
+	 * @return The getter of the field
+	 * @since 1.3.0
+	 */
+	MethodHandle getter(int i) {
+		return getters[i];
+	}
+	
+	/**
+	 * Returns the setter method handle of the field at the specified index.
+	 *
+	 * @param i The index of the field
+	 * @return The setter of the field
+	 * @throws IllegalStateException If the instantiator of this layout takes all field values
+	 * @since 1.3.0
+	 */
+	MethodHandle setter(int i) {
+		if (setters == null) throw new IllegalStateException("Objects of " + clazz + " are created with all their fields");
+		return setters[i];
+	}
+	
+	/**
+	 * Returns the method handle this layout creates objects with.
+	 * It is either {@code ()Object}, or {@code (F0, ..., Fn)Object} if {@link #constructs()} is true.
+	 *
+	 * @return The instantiator of this layout
+	 * @since 1.3.0
+	 */
+	MethodHandle instantiator() {
+		return instantiator;
+	}
+	
+	/**
+	 * Returns whether the instantiator of this layout takes the values of all fields.
+	 *
+	 * @return true if objects are created with all their fields, false if fields are set after creation
+	 * @since 1.3.0
+	 */
+	boolean constructs() {
+		return constructs;
 	}
 	
 	/**
@@ -80,14 +210,15 @@ class ObjectLayout<T> implements Layout.Of<T> {
 	 * This method creates a layout for each field based on its type and annotations.
 	 *
 	 * @param fields The fields to create layouts for
+	 * @param registry The registry to take the layouts from
 	 * @return An array of layouts for the fields
 	 * @since 1.0.0
 	 */
-	private static Layout<?>[] toLayouts(ArrayList<Field> fields) {
+	private static Layout<?>[] toLayouts(ArrayList<Field> fields, LayoutRegistry registry) {
 		Layout<?>[] layouts = new Layout[fields.size()];
 		for (int i = 0; i < fields.size(); i++) {
 			Class<?> type = fields.get(i).getType();
-			layouts[i] = Layout.of(Objects.requireNonNull(type), fields.get(i).getAnnotations());
+			layouts[i] = registry.of(Objects.requireNonNull(type), fields.get(i).getAnnotations());
 		}
 		return layouts;
 	}
@@ -188,8 +319,8 @@ class ObjectLayout<T> implements Layout.Of<T> {
 	
 	/**
 	 * Reads an object from a data input stream.
-	 * This method creates a new instance of the object without calling its constructor,
-	 * then reads all fields from the stream and sets them on the object.
+	 * This method either reads all fields from the stream and passes them to the instantiator,
+	 * or creates a new instance of the object first, then reads all fields and sets them on the object.
 	 *
 	 * @param in The data input stream to read from
 	 * @return The read object
@@ -198,9 +329,18 @@ class ObjectLayout<T> implements Layout.Of<T> {
 	 * @since 1.0.0
 	 */
 	@Override
+	@SuppressWarnings("unchecked")
 	public T read(DataInput in) throws IOException {
 		try {
-			T newInstance = objenesis.newInstance(clazz);
+			if (constructs) {
+				Object[] values = new Object[fieldsCount()];
+				for (int i = 0, Len = values.length; i < Len; i++) {
+					values[i] = read(fieldLayouts[i], in);
+				}
+				return (T) spreadInstantiator.invoke(values);
+			}
+			
+			T newInstance = (T) instantiator.invoke();
 			
 			for (int i = 0, Len = fieldsCount(); i < Len; i++) {
 				read(fieldLayouts[i], newInstance, setters[i], in);
@@ -215,6 +355,73 @@ class ObjectLayout<T> implements Layout.Of<T> {
 	}
 	
 	
+	/**
+	 * Returns the number of bytes an object is written as.
+	 * Fields with a static size are counted by their size, and only the values of the other fields are measured.
+	 *
+	 * @param x The object to measure
+	 * @return The number of bytes the object is written as
+	 * @throws RuntimeException If a field cannot be accessed
+	 * @since 1.3.0
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public int sizeOf(T x) {
+		if (sizeof.isPresent()) return sizeof.getAsInt();
+		int sizeOf = 0;
+		for (int i = 0, Len = fieldsCount(); i < Len; i++) {
+			OptionalInt size = fieldLayouts[i].size();
+			try {
+				sizeOf = Math.addExact(sizeOf, size.isPresent() ? size.getAsInt()
+						: ((Layout.Of<Object>) fieldLayouts[i].asObjectLayout()).sizeOf(getters[i].invoke(x)));
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new RuntimeException(fieldLayouts[i].toString(), e);
+			}
+		}
+		return sizeOf;
+	}
+	
+	/**
+	 * Skips an object in a data input stream without creating it.
+	 * If the size of the object is static, it is skipped at once, otherwise field by field.
+	 *
+	 * @param in The data input stream to skip the object in
+	 * @throws IOException If an I/O error occurs
+	 * @since 1.3.0
+	 */
+	@Override
+	public void skip(DataInput in) throws IOException {
+		if (sizeof.isPresent()) {
+			Layouts.skipBytes(in, sizeof.getAsInt());
+			return;
+		}
+		for (Layout<?> fieldLayout : fieldLayouts) {
+			fieldLayout.asObjectLayout().skip(in);
+		}
+	}
+	
+	/**
+	 * Copies an object from a data input stream to a data output stream without creating it.
+	 * If the size of the object is static, it is copied as a single run of bytes, otherwise field by field.
+	 *
+	 * @param in The data input stream to read the object from
+	 * @param out The data output stream to write the object to
+	 * @throws IOException If an I/O error occurs
+	 * @since 1.3.0
+	 */
+	@Override
+	public void copy(DataInput in, DataOutput out) throws IOException {
+		if (sizeof.isPresent()) {
+			Layouts.transfer(in, out, sizeof.getAsInt());
+			return;
+		}
+		for (Layout<?> fieldLayout : fieldLayouts) {
+			fieldLayout.asObjectLayout().copy(in, out);
+		}
+	}
+	
 	/**
 	 * Writes a field value to a data output stream.
 	 * This method uses the appropriate layout to write the field value to the stream.
@@ -249,6 +456,37 @@ class ObjectLayout<T> implements Layout.Of<T> {
 		}
 	}
 	
+	/**
+	 * Reads a field value from a data input stream.
+	 * This method uses the appropriate layout to read the field value from the stream.
+	 *
+	 * @param layout The layout to use for reading
+	 * @param in The data input stream to read from
+	 * @return The field value, boxed if it's primitive
+	 * @throws IOException If an I/O error occurs
+	 * @since 1.3.0
+	 */
+	static Object read(Layout<?> layout, DataInput in) throws IOException {
+		if (layout instanceof Layout.OfBoolean) {
+			return ((OfBoolean) layout).read(in);
+		} else if (layout instanceof Layout.OfByte) {
+			return ((OfByte) layout).read(in);
+		} else if (layout instanceof Layout.OfShort) {
+			return ((OfShort) layout).read(in);
+		} else if (layout instanceof Layout.OfChar) {
+			return ((OfChar) layout).read(in);
+		} else if (layout instanceof Layout.OfFloat) {
+			return ((OfFloat) layout).read(in);
+		} else if (layout instanceof Layout.OfInt) {
+			return ((OfInt) layout).read(in);
+		} else if (layout instanceof Layout.OfLong) {
+			return ((OfLong) layout).read(in);
+		} else if (layout instanceof Layout.OfDouble) {
+			return ((OfDouble) layout).read(in);
+		}
+		return layout.asObjectLayout().read(in);
+	}
+	
 	/**
 	 * Reads a field value from a data input stream and sets it on an object.
 	 * This method uses the appropriate layout to read the field value from the stream
@@ -285,6 +523,157 @@ class ObjectLayout<T> implements Layout.Of<T> {
 	}
 	
 	
+	/**
+	 * Writes an object to a byte buffer, the same way as {@link #write(Object, DataOutput)}.
+	 *
+	 * @param x The object to write
+	 * @param buffer The buffer to write to
+	 * @throws RuntimeException If an error occurs during serialization
+	 * @since 1.3.0
+	 */
+	@Override
+	public void write(T x, ByteBuffer buffer) {
+		for (int i = 0, Len = fieldsCount(); i < Len; i++) {
+			try {
+				write(fieldLayouts[i], x, getters[i], buffer);
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new RuntimeException(fieldLayouts[i].toString(), e);
+			}
+		}
+	}
+	
+	/**
+	 * Reads an object from a byte buffer, the same way as {@link #read(DataInput)}.
+	 *
+	 * @param buffer The buffer to read from
+	 * @return The read object
+	 * @throws RuntimeException If an error occurs during deserialization
+	 * @since 1.3.0
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public T read(ByteBuffer buffer) {
+		try {
+			if (constructs) {
+				Object[] values = new Object[fieldsCount()];
+				for (int i = 0, Len = values.length; i < Len; i++) {
+					values[i] = read(fieldLayouts[i], buffer);
+				}
+				return (T) spreadInstantiator.invoke(values);
+			}
+			
+			T newInstance = (T) instantiator.invoke();
+			
+			for (int i = 0, Len = fieldsCount(); i < Len; i++) {
+				read(fieldLayouts[i], newInstance, setters[i], buffer);
+			}
+			
+			return newInstance;
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Writes a field value to a byte buffer.
+	 *
+	 * @param layout The layout to use for writing
+	 * @param x The object containing the field
+	 * @param getter The method handle for getting the field value
+	 * @param buffer The buffer to write to
+	 * @throws Throwable If an error occurs during writing
+	 * @since 1.3.0
+	 */
+	private static void write(Layout<?> layout, Object x, MethodHandle getter, ByteBuffer buffer) throws Throwable {
+		if (layout instanceof Layout.OfBoolean) {
+			((OfBoolean) layout).write((boolean)getter.invoke(x), buffer);
+		} else if (layout instanceof Layout.OfByte) {
+			((OfByte) layout).write((byte)getter.invoke(x), buffer);
+		} else if (layout instanceof Layout.OfShort) {
+			((OfShort) layout).write((short)getter.invoke(x), buffer);
+		} else if (layout instanceof Layout.OfChar) {
+			((OfChar) layout).write((char)getter.invoke(x), buffer);
+		} else if (layout instanceof Layout.OfFloat) {
+			((OfFloat) layout).write((float)getter.invoke(x), buffer);
+		} else if (layout instanceof Layout.OfInt) {
+			((OfInt) layout).write((int)getter.invoke(x), buffer);
+		} else if (layout instanceof Layout.OfLong) {
+			((OfLong) layout).write((long)getter.invoke(x), buffer);
+		} else if (layout instanceof Layout.OfDouble) {
+			((OfDouble) layout).write((double)getter.invoke(x), buffer);
+		} else if (layout instanceof Layout.Of) {
+			//noinspection rawtypes,unchecked
+			((Layout.Of)layout).write(getter.invoke(x), buffer);
+		}
+	}
+	
+	/**
+	 * Reads a field value from a byte buffer.
+	 *
+	 * @param layout The layout to use for reading
+	 * @param buffer The buffer to read from
+	 * @return The field value, boxed if it's primitive
+	 * @since 1.3.0
+	 */
+	static Object read(Layout<?> layout, ByteBuffer buffer) {
+		if (layout instanceof Layout.OfBoolean) {
+			return ((OfBoolean) layout).read(buffer);
+		} else if (layout instanceof Layout.OfByte) {
+			return ((OfByte) layout).read(buffer);
+		} else if (layout instanceof Layout.OfShort) {
+			return ((OfShort) layout).read(buffer);
+		} else if (layout instanceof Layout.OfChar) {
+			return ((OfChar) layout).read(buffer);
+		} else if (layout instanceof Layout.OfFloat) {
+			return ((OfFloat) layout).read(buffer);
+		} else if (layout instanceof Layout.OfInt) {
+			return ((OfInt) layout).read(buffer);
+		} else if (layout instanceof Layout.OfLong) {
+			return ((OfLong) layout).read(buffer);
+		} else if (layout instanceof Layout.OfDouble) {
+			return ((OfDouble) layout).read(buffer);
+		}
+		return layout.asObjectLayout().read(buffer);
+	}
+	
+	/**
+	 * Reads a field value from a byte buffer and sets it on an object.
+	 *
+	 * @param layout The layout to use for reading
+	 * @param x The object to set the field value on
+	 * @param setter The method handle for setting the field value
+	 * @param buffer The buffer to read from
+	 * @throws Throwable If an error occurs during reading
+	 * @since 1.3.0
+	 */
+	private static void read(Layout<?> layout, Object x, MethodHandle setter, ByteBuffer buffer) throws Throwable {
+		if (layout instanceof Layout.OfBoolean) {
+			setter.invoke(x, ((OfBoolean) layout).read(buffer));
+		} else if (layout instanceof Layout.OfByte) {
+			setter.invoke(x, ((OfByte) layout).read(buffer));
+		} else if (layout instanceof Layout.OfShort) {
+			setter.invoke(x, ((OfShort) layout).read(buffer));
+		} else if (layout instanceof Layout.OfChar) {
+			setter.invoke(x, ((OfChar) layout).read(buffer));
+		} else if (layout instanceof Layout.OfFloat) {
+			setter.invoke(x, ((OfFloat) layout).read(buffer));
+		} else if (layout instanceof Layout.OfInt) {
+			setter.invoke(x, ((OfInt) layout).read(buffer));
+		} else if (layout instanceof Layout.OfLong) {
+			setter.invoke(x, ((OfLong) layout).read(buffer));
+		} else if (layout instanceof Layout.OfDouble) {
+			setter.invoke(x, ((OfDouble) layout).read(buffer));
+		} else if (layout instanceof Layout.Of) {
+			//noinspection rawtypes
+			setter.invoke(x, ((Layout.Of)layout).read(buffer));
+		}
+	}
+	
+	
 	/**
 	 * Returns the size of this layout in bytes, or null if the size is dynamic.
 	 * The size is calculated as the sum of the sizes of all fields.
@@ -308,6 +697,7 @@ class ObjectLayout<T> implements Layout.Of<T> {
 	public String toString() {
 		return "ClassLayout{" +
 				"clazz=" + clazz +
+				", instantiator=" + instantiator +
 				", getters=" + Arrays.toString(getters) +
 				", setters=" + Arrays.toString(setters) +
 				", fieldLayouts=" + Arrays.toString(fieldLayouts) +
@@ -0,0 +1,309 @@
+package com.ydo4ki.datalayouts;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reads packets prefixed with their id and passes them to the handlers registered for the ids.
+ * Handlers are looked up in an array indexed by the id, so dispatching a packet takes
+ * a single array access and no boxing or hashing.
+ *
+ * <p>A handler either receives the decoded packet, or, if it is registered with {@link #registerRaw},
+ * the bytes of the packet, which are not decoded. The number of packets of each id is counted,
+ * and the time spent decoding them is measured if enabled with {@link #setTimingEnabled(boolean)}.</p>
+ *
+ * <p>Handlers can be registered while packets are dispatched from other threads.</p>
+ *
+ * <pre>
+ * PacketDispatcher dispatcher = new PacketDispatcher();
+ * dispatcher.register(0, Layout.of(LoginPacket.class, MethodHandles.lookup()), this::onLogin);
+ * dispatcher.register(1, Layout.of(ChatPacket.class, MethodHandles.lookup()), this::onChat);
+ * while (true) dispatcher.dispatch(in);
+ * </pre>
+ *
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+public final class PacketDispatcher {
+	/** The greatest id, ids index an array */
+	private static final int MAX_ID = 0xFFFF;
+	
+	/**
+	 * A handler of decoded packets.
+	 *
+	 * @param <T> The type of the packets
+	 * @since 1.3.0
+	 */
+	@FunctionalInterface
+	public interface Handler<T> {
+		/**
+		 * Handles a packet.
+		 *
+		 * @param packet The decoded packet
+		 * @throws IOException If an I/O error occurs
+		 * @since 1.3.0
+		 */
+		void handle(T packet) throws IOException;
+	}
+	
+	/**
+	 * A handler of packets that are not decoded.
+	 *
+	 * @since 1.3.0
+	 */
+	@FunctionalInterface
+	public interface RawHandler {
+		/**
+		 * Handles the bytes of a packet.
+		 *
+		 * @param id The id of the packet
+		 * @param payload The bytes of the packet, without the id, valid only until the handler returns
+		 * @throws IOException If an I/O error occurs
+		 * @since 1.3.0
+		 */
+		void handle(int id, ByteBuffer payload) throws IOException;
+	}
+	
+	private static final class Entry {
+		final Layout.Of<Object> layout;
+		/** The handler of decoded packets, or null if the packets are not decoded */
+		final Handler<Object> handler;
+		final RawHandler rawHandler;
+		final LongAdder count = new LongAdder();
+		final LongAdder nanos = new LongAdder();
+		
+		@SuppressWarnings("unchecked")
+		Entry(Layout.Of<?> layout, Handler<?> handler, RawHandler rawHandler) {
+			this.layout = (Layout.Of<Object>) layout;
+			this.handler = (Handler<Object>) handler;
+			this.rawHandler = rawHandler;
+		}
+	}
+	
+	private final Layout.OfInt idLayout;
+	/** The entries by id, null for unused ids; replaced as a whole on registration */
+	private volatile Entry[] entries = new Entry[0];
+	private volatile boolean timingEnabled;
+	/** The buffer of raw packets of the current thread, or null while a handler of the thread uses it */
+	private final ThreadLocal<ByteArrayDataOutput> rawBuffer = ThreadLocal.withInitial(ByteArrayDataOutput::new);
+	
+	/**
+	 * Creates a new dispatcher for packets prefixed with varint ids.
+	 *
+	 * @since 1.3.0
+	 */
+	public PacketDispatcher() {
+		this(Layout.ofVarInt);
+	}
+	
+	/**
+	 * Creates a new dispatcher for packets prefixed with ids in the specified layout.
+	 *
+	 * @param idLayout The layout of the ids, such as {@link Layout#ofUnsignedByte} or {@link Layout#ofVarInt}
+	 * @since 1.3.0
+	 */
+	public PacketDispatcher(Layout.OfInt idLayout) {
+		this.idLayout = Objects.requireNonNull(idLayout);
+	}
+	
+	/**
+	 * Registers the layout and the handler of the packets with the specified id.
+	 *
+	 * @param <T> The type of the packets
+	 * @param id The id of the packets
+	 * @param layout The layout of the packets
+	 * @param handler The handler of the decoded packets
+	 * @return This dispatcher
+	 * @throws IllegalArgumentException If the id is negative, too big, or already registered
+	 * @since 1.3.0
+	 */
+	public <T> PacketDispatcher register(int id, Layout.Of<T> layout, Handler<? super T> handler) {
+		register(id, new Entry(Objects.requireNonNull(layout), Objects.requireNonNull(handler), null));
+		return this;
+	}
+	
+	/**
+	 * Registers the layout of the packets with the specified id and a handler of their bytes.
+	 * The layout is only used to find where the packets end, they are not decoded.
+	 *
+	 * @param id The id of the packets
+	 * @param layout The layout of the packets
+	 * @param handler The handler of the bytes of the packets
+	 * @return This dispatcher
+	 * @throws IllegalArgumentException If the id is negative, too big, or already registered
+	 * @since 1.3.0
+	 */
+	public PacketDispatcher registerRaw(int id, Layout.Of<?> layout, RawHandler handler) {
+		register(id, new Entry(Objects.requireNonNull(layout), null, Objects.requireNonNull(handler)));
+		return this;
+	}
+	
+	private synchronized void register(int id, Entry entry) {
+		if (id < 0 || id > Math.min(MAX_ID, LengthPrefixes.maxLength(idLayout)))
+			throw new IllegalArgumentException("Packet id " + id + " is out of range");
+		Entry[] entries = this.entries;
+		if (id < entries.length && entries[id] != null)
+			throw new IllegalArgumentException("Packet id " + id + " is already registered");
+		entries = Arrays.copyOf(entries, Math.max(entries.length, id + 1));
+		entries[id] = entry;
+		this.entries = entries;
+	}
+	
+	/**
+	 * Returns the layout of the packets with the specified id.
+	 *
+	 * @param id The id of the packets
+	 * @return The layout of the packets
+	 * @throws IllegalArgumentException If the id is not registered
+	 * @since 1.3.0
+	 */
+	public Layout.Of<?> layout(int id) {
+		Entry entry = entry(id);
+		if (entry == null) throw new IllegalArgumentException("Unknown packet id " + id);
+		return entry.layout;
+	}
+	
+	private Entry entry(int id) {
+		Entry[] entries = this.entries;
+		return id >= 0 && id < entries.length ? entries[id] : null;
+	}
+	
+	/**
+	 * Enables or disables measuring the time spent decoding packets, which is disabled by default.
+	 *
+	 * @param enabled Whether to measure the time
+	 * @see #decodeNanos(int)
+	 * @since 1.3.0
+	 */
+	public void setTimingEnabled(boolean enabled) {
+		this.timingEnabled = enabled;
+	}
+	
+	/**
+	 * Returns the number of packets with the specified id that were dispatched:
+	 * decoded, or read for raw handlers. Packets that failed to be read are not counted.
+	 *
+	 * @param id The id of the packets
+	 * @return The number of packets, 0 if the id is not registered
+	 * @since 1.3.0
+	 */
+	public long decodeCount(int id) {
+		Entry entry = entry(id);
+		return entry == null ? 0 : entry.count.sum();
+	}
+	
+	/**
+	 * Returns the time spent decoding packets with the specified id while timing was enabled, not including the handlers.
+	 * For raw handlers, this is the time spent copying the bytes of the packets.
+	 *
+	 * @param id The id of the packets
+	 * @return The time in nanoseconds, 0 if the id is not registered
+	 * @see #setTimingEnabled(boolean)
+	 * @since 1.3.0
+	 */
+	public long decodeNanos(int id) {
+		Entry entry = entry(id);
+		return entry == null ? 0 : entry.nanos.sum();
+	}
+	
+	/**
+	 * Reads a packet and passes it to its handler.
+	 *
+	 * @param in The data input to read from
+	 * @return The id of the packet
+	 * @throws StreamCorruptedException If the id of the packet is not registered
+	 * @throws IOException If an I/O error occurs, or if the handler throws it
+	 * @since 1.3.0
+	 */
+	public int dispatch(DataInput in) throws IOException {
+		int id = idLayout.read(in);
+		Entry entry = entry(id);
+		if (entry == null) throw new StreamCorruptedException("Unknown packet id " + id);
+		boolean timed = timingEnabled;
+		long start = timed ? System.nanoTime() : 0;
+		if (entry.handler != null) {
+			Object packet = entry.layout.read(in);
+			entry.count.increment();
+			if (timed) entry.nanos.add(System.nanoTime() - start);
+			entry.handler.handle(packet);
+			return id;
+		}
+		if (in instanceof ByteArrayDataInput) {
+			ByteArrayDataInput input = (ByteArrayDataInput) in;
+			int from = input.position();
+			entry.layout.skip(input);
+			ByteBuffer payload = ByteBuffer.wrap(input.array(), from, input.position() - from).slice();
+			entry.count.increment();
+			if (timed) entry.nanos.add(System.nanoTime() - start);
+			entry.rawHandler.handle(id, payload);
+			return id;
+		}
+		ByteArrayDataOutput buffer = rawBuffer.get();
+		if (buffer == null) buffer = new ByteArrayDataOutput(); // taken by a handler that dispatches packets itself
+		else rawBuffer.set(null);
+		try {
+			buffer.reset();
+			entry.layout.copy(in, buffer);
+			ByteBuffer payload = ByteBuffer.wrap(buffer.array(), 0, buffer.size());
+			entry.count.increment();
+			if (timed) entry.nanos.add(System.nanoTime() - start);
+			entry.rawHandler.handle(id, payload);
+		} finally {
+			rawBuffer.set(buffer);
+		}
+		return id;
+	}
+	
+	/**
+	 * Reads a packet from a byte buffer, at its position and in its byte order, and passes it to its handler.
+	 * The position of the buffer is advanced by the size of the packet.
+	 *
+	 * @param buffer The buffer to read from
+	 * @return The id of the packet
+	 * @throws IllegalArgumentException If the id of the packet is not registered, or if the packet is corrupted
+	 * @throws java.nio.BufferUnderflowException If the packet is not complete
+	 * @throws IOException If the handler throws it
+	 * @since 1.3.0
+	 */
+	public int dispatch(ByteBuffer buffer) throws IOException {
+		int id = idLayout.read(buffer);
+		Entry entry = entry(id);
+		if (entry == null) throw new IllegalArgumentException("Unknown packet id " + id);
+		boolean timed = timingEnabled;
+		long start = timed ? System.nanoTime() : 0;
+		if (entry.handler != null) {
+			Object packet = entry.layout.read(buffer);
+			entry.count.increment();
+			if (timed) entry.nanos.add(System.nanoTime() - start);
+			entry.handler.handle(packet);
+			return id;
+		}
+		int from = buffer.position();
+		Layouts.skip(entry.layout, buffer);
+		ByteBuffer payload = ByteBufferData.at(buffer, from);
+		payload.limit(buffer.position());
+		payload = payload.slice().order(buffer.order());
+		entry.count.increment();
+		if (timed) entry.nanos.add(System.nanoTime() - start);
+		entry.rawHandler.handle(id, payload);
+		return id;
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("PacketDispatcher{").append(idLayout).append(", ids=[");
+		Entry[] entries = this.entries;
+		String separator = "";
+		for (int id = 0; id < entries.length; id++) {
+			if (entries[id] == null) continue;
+			builder.append(separator).append(id);
+			separator = ", ";
+		}
+		return builder.append("]}").toString();
+	}
+}
@@ -0,0 +1,472 @@
+package com.ydo4ki.datalayouts;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Bulk reading and writing of primitive arrays for the array layouts.
+ * Instead of going through {@link java.lang.reflect.Array} and the element layout for every element,
+ * elements are converted to bytes in chunks, through a per-thread scratch buffer,
+ * which is then passed to the stream with a single {@code write}/{@code readFully} call.
+ * {@link ByteArrayDataOutput} and {@link ByteArrayDataInput} are accessed directly, without the scratch buffer,
+ * and byte buffers are accessed through their typed views.
+ *
+ * <p>The produced bytes are the same as the ones of the element layouts.</p>
+ *
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+abstract class PrimitiveArrayCodec {
+	private static final int SCRATCH_SIZE = 8192;
+	private static final ThreadLocal<byte[]> scratch = ThreadLocal.withInitial(() -> new byte[SCRATCH_SIZE]);
+	private static final byte[] zeros = new byte[SCRATCH_SIZE];
+	
+	/**
+	 * Returns the scratch buffer of the current thread, also used to relay bytes between streams.
+	 */
+	static byte[] scratch() {
+		return scratch.get();
+	}
+	
+	/** The size of an element in bytes */
+	final int elementSize;
+	
+	private PrimitiveArrayCodec(int elementSize) {
+		this.elementSize = elementSize;
+	}
+	
+	/**
+	 * Returns the codec for arrays of the specified component type.
+	 * Codecs only replace the default primitive layouts, so arrays with any other element layout don't have one.
+	 *
+	 * @param componentType The component type of the array
+	 * @param elementLayout The layout of the array elements
+	 * @return The codec, or null if the elements have to be written by the element layout
+	 * @since 1.3.0
+	 */
+	static PrimitiveArrayCodec of(Class<?> componentType, Layout<?> elementLayout) {
+		if (!componentType.isPrimitive() || elementLayout != Layouts.primitiveLayout(componentType)) return null;
+		if (componentType == byte.class)    return BYTE;
+		if (componentType == boolean.class) return BOOLEAN;
+		if (componentType == short.class)   return SHORT;
+		if (componentType == char.class)    return CHAR;
+		if (componentType == int.class)     return INT;
+		if (componentType == float.class)   return FLOAT;
+		if (componentType == long.class)    return LONG;
+		if (componentType == double.class)  return DOUBLE;
+		throw new AssertionError();
+	}
+	
+	/**
+	 * Converts elements of an array to bytes.
+	 *
+	 * @param array The array to take the elements from
+	 * @param from The index of the first element
+	 * @param count The number of elements
+	 * @param dst The array to store the bytes to
+	 * @param off The index to store the first byte at
+	 */
+	abstract void encode(Object array, int from, int count, byte[] dst, int off);
+	
+	/**
+	 * Converts bytes to elements of an array.
+	 *
+	 * @param src The array to take the bytes from
+	 * @param off The index of the first byte
+	 * @param array The array to store the elements to
+	 * @param from The index to store the first element at
+	 * @param count The number of elements
+	 */
+	abstract void decode(byte[] src, int off, Object array, int from, int count);
+	
+	/**
+	 * Writes elements of an array to a data output stream.
+	 *
+	 * @param array The array to write the elements of
+	 * @param count The number of elements to write, starting from the first one
+	 * @param out The data output stream to write to
+	 * @throws IOException If an I/O error occurs
+	 * @since 1.3.0
+	 */
+	void write(Object array, int count, DataOutput out) throws IOException {
+		if (out instanceof ByteArrayDataOutput) {
+			ByteArrayDataOutput output = (ByteArrayDataOutput) out;
+			int off = output.reserve(Math.multiplyExact(count, elementSize));
+			encode(array, 0, count, output.array(), off);
+			return;
+		}
+		byte[] buf = scratch.get();
+		int chunk = buf.length / elementSize;
+		for (int from = 0; from < count; from += chunk) {
+			int n = Math.min(chunk, count - from);
+			encode(array, from, n, buf, 0);
+			out.write(buf, 0, n * elementSize);
+		}
+	}
+	
+	/**
+	 * Reads elements of an array from a data input stream.
+	 *
+	 * @param array The array to read the elements to
+	 * @param count The number of elements to read, starting from the first one
+	 * @param in The data input stream to read from
+	 * @throws IOException If an I/O error occurs
+	 * @since 1.3.0
+	 */
+	void read(Object array, int count, DataInput in) throws IOException {
+		if (in instanceof ByteArrayDataInput) {
+			ByteArrayDataInput input = (ByteArrayDataInput) in;
+			int off = input.take(Math.multiplyExact(count, elementSize));
+			decode(input.array(), off, array, 0, count);
+			return;
+		}
+		byte[] buf = scratch.get();
+		int chunk = buf.length / elementSize;
+		for (int from = 0; from < count; from += chunk) {
+			int n = Math.min(chunk, count - from);
+			in.readFully(buf, 0, n * elementSize);
+			decode(buf, 0, array, from, n);
+		}
+	}
+	
+	/**
+	 * Writes default (zero) elements to a data output stream.
+	 *
+	 * @param count The number of elements to write
+	 * @param out The data output stream to write to
+	 * @throws IOException If an I/O error occurs
+	 * @since 1.3.0
+	 */
+	void writeZeros(int count, DataOutput out) throws IOException {
+		int bytes = Math.multiplyExact(count, elementSize);
+		if (out instanceof ByteArrayDataOutput) {
+			ByteArrayDataOutput output = (ByteArrayDataOutput) out;
+			int off = output.reserve(bytes);
+			// the array may contain bytes written before a reset
+			Arrays.fill(output.array(), off, off + bytes, (byte) 0);
+			return;
+		}
+		for (; bytes > 0; bytes -= zeros.length) {
+			out.write(zeros, 0, Math.min(bytes, zeros.length));
+		}
+	}
+	/**
+	 * Copies elements of an array to a byte buffer at its position, without moving the position.
+	 * There are enough bytes remaining in the buffer.
+	 *
+	 * @param array The array to take the elements from
+	 * @param count The number of elements, starting from the first one
+	 * @param buffer The buffer to write to, in its byte order
+	 */
+	abstract void put(Object array, int count, ByteBuffer buffer);
+	
+	/**
+	 * Copies elements of an array from a byte buffer at its position, without moving the position.
+	 * There are enough bytes remaining in the buffer.
+	 *
+	 * @param array The array to store the elements to
+	 * @param count The number of elements, starting from the first one
+	 * @param buffer The buffer to read from, in its byte order
+	 */
+	abstract void get(Object array, int count, ByteBuffer buffer);
+	
+	/**
+	 * Writes elements of an array to a byte buffer, in its byte order.
+	 *
+	 * @param array The array to write the elements of
+	 * @param count The number of elements to write, starting from the first one
+	 * @param buffer The buffer to write to
+	 * @throws BufferOverflowException If there is not enough space remaining in the buffer
+	 * @since 1.3.0
+	 */
+	void write(Object array, int count, ByteBuffer buffer) {
+		int bytes = Math.multiplyExact(count, elementSize);
+		if (bytes > buffer.remaining()) throw new BufferOverflowException();
+		put(array, count, buffer);
+		buffer.position(buffer.position() + bytes);
+	}
+	
+	/**
+	 * Reads elements of an array from a byte buffer, in its byte order.
+	 *
+	 * @param array The array to read the elements to
+	 * @param count The number of elements to read, starting from the first one
+	 * @param buffer The buffer to read from
+	 * @throws BufferUnderflowException If there are not enough bytes remaining in the buffer
+	 * @since 1.3.0
+	 */
+	void read(Object array, int count, ByteBuffer buffer) {
+		int bytes = Math.multiplyExact(count, elementSize);
+		if (bytes > buffer.remaining()) throw new BufferUnderflowException();
+		get(array, count, buffer);
+		buffer.position(buffer.position() + bytes);
+	}
+	
+	/**
+	 * Writes default (zero) elements to a byte buffer.
+	 *
+	 * @param count The number of elements to write
+	 * @param buffer The buffer to write to
+	 * @throws BufferOverflowException If there is not enough space remaining in the buffer
+	 * @since 1.3.0
+	 */
+	void writeZeros(int count, ByteBuffer buffer) {
+		int bytes = Math.multiplyExact(count, elementSize);
+		if (bytes > buffer.remaining()) throw new BufferOverflowException();
+		for (; bytes > 0; bytes -= zeros.length) {
+			buffer.put(zeros, 0, Math.min(bytes, zeros.length));
+		}
+	}
+	
+	
+	
+	static final PrimitiveArrayCodec BYTE = new PrimitiveArrayCodec(1) {
+		@Override
+		void encode(Object array, int from, int count, byte[] dst, int off) {
+			System.arraycopy(array, from, dst, off, count);
+		}
+		
+		@Override
+		void decode(byte[] src, int off, Object array, int from, int count) {
+			System.arraycopy(src, off, array, from, count);
+		}
+		
+		// no conversion needed, so no scratch buffer either
+		@Override
+		void write(Object array, int count, DataOutput out) throws IOException {
+			out.write((byte[]) array, 0, count);
+		}
+		
+		@Override
+		void read(Object array, int count, DataInput in) throws IOException {
+			in.readFully((byte[]) array, 0, count);
+		}
+		
+		@Override
+		void put(Object array, int count, ByteBuffer buffer) {
+			buffer.duplicate().put((byte[]) array, 0, count);
+		}
+		
+		@Override
+		void get(Object array, int count, ByteBuffer buffer) {
+			buffer.duplicate().get((byte[]) array, 0, count);
+		}
+		
+		@Override
+		void write(Object array, int count, ByteBuffer buffer) {
+			buffer.put((byte[]) array, 0, count);
+		}
+		
+		@Override
+		void read(Object array, int count, ByteBuffer buffer) {
+			buffer.get((byte[]) array, 0, count);
+		}
+	};
+	
+	static final PrimitiveArrayCodec BOOLEAN = new PrimitiveArrayCodec(1) {
+		@Override
+		void encode(Object array, int from, int count, byte[] dst, int off) {
+			boolean[] a = (boolean[]) array;
+			for (int i = 0; i < count; i++) {
+				dst[off + i] = (byte) (a[from + i] ? 1 : 0);
+			}
+		}
+		
+		@Override
+		void decode(byte[] src, int off, Object array, int from, int count) {
+			boolean[] a = (boolean[]) array;
+			for (int i = 0; i < count; i++) {
+				a[from + i] = src[off + i] != 0;
+			}
+		}
+		
+		@Override
+		void put(Object array, int count, ByteBuffer buffer) {
+			boolean[] a = (boolean[]) array;
+			for (int i = 0, pos = buffer.position(); i < count; i++) {
+				buffer.put(pos + i, (byte) (a[i] ? 1 : 0));
+			}
+		}
+		
+		@Override
+		void get(Object array, int count, ByteBuffer buffer) {
+			boolean[] a = (boolean[]) array;
+			for (int i = 0, pos = buffer.position(); i < count; i++) {
+				a[i] = buffer.get(pos + i) != 0;
+			}
+		}
+	};
+	
+	static final PrimitiveArrayCodec SHORT = new PrimitiveArrayCodec(2) {
+		@Override
+		void encode(Object array, int from, int count, byte[] dst, int off) {
+			short[] a = (short[]) array;
+			for (int i = 0; i < count; i++) {
+				Bits.putShort(dst, off + (i << 1), a[from + i]);
+			}
+		}
+		
+		@Override
+		void decode(byte[] src, int off, Object array, int from, int count) {
+			short[] a = (short[]) array;
+			for (int i = 0; i < count; i++) {
+				a[from + i] = Bits.getShort(src, off + (i << 1));
+			}
+		}
+		
+		@Override
+		void put(Object array, int count, ByteBuffer buffer) {
+			buffer.asShortBuffer().put((short[]) array, 0, count);
+		}
+		
+		@Override
+		void get(Object array, int count, ByteBuffer buffer) {
+			buffer.asShortBuffer().get((short[]) array, 0, count);
+		}
+	};
+	
+	static final PrimitiveArrayCodec CHAR = new PrimitiveArrayCodec(2) {
+		@Override
+		void encode(Object array, int from, int count, byte[] dst, int off) {
+			char[] a = (char[]) array;
+			for (int i = 0; i < count; i++) {
+				Bits.putChar(dst, off + (i << 1), a[from + i]);
+			}
+		}
+		
+		@Override
+		void decode(byte[] src, int off, Object array, int from, int count) {
+			char[] a = (char[]) array;
+			for (int i = 0; i < count; i++) {
+				a[from + i] = Bits.getChar(src, off + (i << 1));
+			}
+		}
+		
+		@Override
+		void put(Object array, int count, ByteBuffer buffer) {
+			buffer.asCharBuffer().put((char[]) array, 0, count);
+		}
+		
+		@Override
+		void get(Object array, int count, ByteBuffer buffer) {
+			buffer.asCharBuffer().get((char[]) array, 0, count);
+		}
+	};
+	
+	static final PrimitiveArrayCodec INT = new PrimitiveArrayCodec(4) {
+		@Override
+		void encode(Object array, int from, int count, byte[] dst, int off) {
+			int[] a = (int[]) array;
+			for (int i = 0; i < count; i++) {
+				Bits.putInt(dst, off + (i << 2), a[from + i]);
+			}
+		}
+		
+		@Override
+		void decode(byte[] src, int off, Object array, int from, int count) {
+			int[] a = (int[]) array;
+			for (int i = 0; i < count; i++) {
+				a[from + i] = Bits.getInt(src, off + (i << 2));
+			}
+		}
+		
+		@Override
+		void put(Object array, int count, ByteBuffer buffer) {
+			buffer.asIntBuffer().put((int[]) array, 0, count);
+		}
+		
+		@Override
+		void get(Object array, int count, ByteBuffer buffer) {
+			buffer.asIntBuffer().get((int[]) array, 0, count);
+		}
+	};
+	
+	static final PrimitiveArrayCodec FLOAT = new PrimitiveArrayCodec(4) {
+		@Override
+		void encode(Object array, int from, int count, byte[] dst, int off) {
+			float[] a = (float[]) array;
+			for (int i = 0; i < count; i++) {
+				Bits.putFloat(dst, off + (i << 2), a[from + i]);
+			}
+		}
+		
+		@Override
+		void decode(byte[] src, int off, Object array, int from, int count) {
+			float[] a = (float[]) array;
+			for (int i = 0; i < count; i++) {
+				a[from + i] = Bits.getFloat(src, off + (i << 2));
+			}
+		}
+		
+		@Override
+		void put(Object array, int count, ByteBuffer buffer) {
+			buffer.asFloatBuffer().put((float[]) array, 0, count);
+		}
+		
+		@Override
+		void get(Object array, int count, ByteBuffer buffer) {
+			buffer.asFloatBuffer().get((float[]) array, 0, count);
+		}
+	};
+	
+	static final PrimitiveArrayCodec LONG = new PrimitiveArrayCodec(8) {
+		@Override
+		void encode(Object array, int from, int count, byte[] dst, int off) {
+			long[] a = (long[]) array;
+			for (int i = 0; i < count; i++) {
+				Bits.putLong(dst, off + (i << 3), a[from + i]);
+			}
+		}
+		
+		@Override
+		void decode(byte[] src, int off, Object array, int from, int count) {
+			long[] a = (long[]) array;
+			for (int i = 0; i < count; i++) {
+				a[from + i] = Bits.getLong(src, off + (i << 3));
+			}
+		}
+		
+		@Override
+		void put(Object array, int count, ByteBuffer buffer) {
+			buffer.asLongBuffer().put((long[]) array, 0, count);
+		}
+		
+		@Override
+		void get(Object array, int count, ByteBuffer buffer) {
+			buffer.asLongBuffer().get((long[]) array, 0, count);
+		}
+	};
+	
+	static final PrimitiveArrayCodec DOUBLE = new PrimitiveArrayCodec(8) {
+		@Override
+		void encode(Object array, int from, int count, byte[] dst, int off) {
+			double[] a = (double[]) array;
+			for (int i = 0; i < count; i++) {
+				Bits.putDouble(dst, off + (i << 3), a[from + i]);
+			}
+		}
+		
+		@Override
+		void decode(byte[] src, int off, Object array, int from, int count) {
+			double[] a = (double[]) array;
+			for (int i = 0; i < count; i++) {
+				a[from + i] = Bits.getDouble(src, off + (i << 3));
+			}
+		}
+		
+		@Override
+		void put(Object array, int count, ByteBuffer buffer) {
+			buffer.asDoubleBuffer().put((double[]) array, 0, count);
+		}
+		
+		@Override
+		void get(Object array, int count, ByteBuffer buffer) {
+			buffer.asDoubleBuffer().get((double[]) array, 0, count);
+		}
+	};
+}
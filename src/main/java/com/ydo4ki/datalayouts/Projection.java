@@ -0,0 +1,175 @@
+package com.ydo4ki.datalayouts;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.OptionalInt;
+
+/**
+ * A decoder that reads only some fields of a class layout.
+ * The other fields are skipped without being decoded: runs of fields with a static size are skipped
+ * at once, and fields with a dynamic size are skipped using their length prefixes where possible.
+ *
+ * <p>The whole object is always consumed, so the stream or buffer is positioned after it.
+ * The fields that were not requested keep their default values ({@code 0}, {@code false} or {@code null}).</p>
+ *
+ * @param <T> The type of object the layout represents
+ * @see Layout#projection(Layout.Of, String...)
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+public final class Projection<T> {
+	private final ObjectLayout<T> layout;
+	private final String[] names;
+	private final Step[] steps;
+	/** Default values of all fields, or null if the fields are set after the object is created */
+	private final Object[] defaults;
+	private final MethodHandle spreadInstantiator;
+	
+	/**
+	 * Skips a number of bytes, then reads or skips a field.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final class Step {
+		/** The number of bytes of static-size fields to skip first */
+		final int skip;
+		/** The field to read or skip after that, or -1 if there is none */
+		final int field;
+		final boolean read;
+		
+		Step(int skip, int field, boolean read) {
+			this.skip = skip;
+			this.field = field;
+			this.read = read;
+		}
+	}
+	
+	Projection(ObjectLayout<T> layout, String... names) {
+		this.layout = layout;
+		this.names = names.clone();
+		FieldTable table = layout.fieldTable();
+		boolean[] requested = new boolean[table.fieldsCount()];
+		for (String name : names) {
+			int i = table.indexOf(name);
+			if (i == -1) throw new IllegalArgumentException("No field " + name + " in " + layout.type());
+			requested[i] = true;
+		}
+		
+		List<Step> steps = new ArrayList<>();
+		int skip = 0;
+		for (int i = 0; i < requested.length; i++) {
+			OptionalInt size = table.layout(i).size();
+			if (!requested[i] && size.isPresent()) {
+				skip += size.getAsInt();
+				continue;
+			}
+			steps.add(new Step(skip, i, requested[i]));
+			skip = 0;
+		}
+		if (skip != 0) steps.add(new Step(skip, -1, false));
+		this.steps = steps.toArray(new Step[0]);
+		
+		if (layout.constructs()) {
+			this.defaults = new Object[requested.length];
+			for (int i = 0; i < requested.length; i++) {
+				Class<?> type = table.type(i);
+				// boxed zero of primitives
+				if (type.isPrimitive()) defaults[i] = Array.get(Array.newInstance(type, 1), 0);
+			}
+			this.spreadInstantiator = layout.instantiator().asSpreader(Object[].class, requested.length);
+		} else {
+			this.defaults = null;
+			this.spreadInstantiator = null;
+		}
+	}
+	
+	/**
+	 * Returns the names of the fields this projection reads.
+	 *
+	 * @return The names of the fields
+	 * @since 1.3.0
+	 */
+	public String[] fields() {
+		return names.clone();
+	}
+	
+	/**
+	 * Reads an object from a data input stream, decoding only the fields of this projection.
+	 *
+	 * @param in The data input stream to read from
+	 * @return The read object
+	 * @throws IOException If an I/O error occurs
+	 * @since 1.3.0
+	 */
+	@SuppressWarnings("unchecked")
+	public T read(DataInput in) throws IOException {
+		try {
+			Object[] values = defaults != null ? defaults.clone() : null;
+			Object instance = defaults != null ? null : layout.instantiator().invoke();
+			for (Step step : steps) {
+				if (step.skip != 0) Layouts.skipBytes(in, step.skip);
+				if (step.field == -1) continue;
+				Layout<?> fieldLayout = layout.fieldLayout(step.field);
+				if (!step.read) {
+					fieldLayout.asObjectLayout().skip(in);
+				} else if (values != null) {
+					values[step.field] = ObjectLayout.read(fieldLayout, in);
+				} else {
+					layout.setter(step.field).invoke(instance, ObjectLayout.read(fieldLayout, in));
+				}
+			}
+			return values != null ? (T) spreadInstantiator.invoke(values) : (T) instance;
+		} catch (IOException | RuntimeException e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Reads an object from a byte buffer, decoding only the fields of this projection.
+	 *
+	 * @param buffer The buffer to read from
+	 * @return The read object
+	 * @throws java.nio.BufferUnderflowException If there are not enough bytes remaining in the buffer
+	 * @since 1.3.0
+	 */
+	@SuppressWarnings("unchecked")
+	public T read(ByteBuffer buffer) {
+		try {
+			Object[] values = defaults != null ? defaults.clone() : null;
+			Object instance = defaults != null ? null : layout.instantiator().invoke();
+			for (Step step : steps) {
+				if (step.skip != 0) ByteBufferData.skip(buffer, step.skip);
+				if (step.field == -1) continue;
+				Layout<?> fieldLayout = layout.fieldLayout(step.field);
+				if (!step.read) {
+					Layouts.skip(fieldLayout, buffer);
+				} else if (values != null) {
+					values[step.field] = ObjectLayout.read(fieldLayout, buffer);
+				} else {
+					layout.setter(step.field).invoke(instance, ObjectLayout.read(fieldLayout, buffer));
+				}
+			}
+			return values != null ? (T) spreadInstantiator.invoke(values) : (T) instance;
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "Projection{" +
+				"type=" + layout.type() +
+				", fields=" + Arrays.toString(names) +
+				'}';
+	}
+}
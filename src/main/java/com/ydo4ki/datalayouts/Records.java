@@ -0,0 +1,61 @@
+package com.ydo4ki.datalayouts;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+
+/**
+ * Record support.
+ * Records only exist since Java 16, so this version finds their canonical constructors through reflection.
+ * The multi-release jar contains a Java 16 version of this class that uses the record API directly;
+ * this one is only used on older runtimes (where there are no records anyway) and in exploded class directories.
+ *
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+final class Records {
+	private Records() throws InstantiationException {
+		throw new InstantiationException();
+	}
+	
+	private static final Method isRecord;
+	private static final Method getRecordComponents;
+	private static final Method getType;
+	
+	static {
+		Method record = null, components = null, type = null;
+		try {
+			record = Class.class.getMethod("isRecord");
+			components = Class.class.getMethod("getRecordComponents");
+			type = Class.forName("java.lang.reflect.RecordComponent").getMethod("getType");
+		} catch (ReflectiveOperationException ignored) {
+			// no records here
+		}
+		isRecord = record;
+		getRecordComponents = components;
+		getType = type;
+	}
+	
+	/**
+	 * Finds the canonical constructor of a record.
+	 *
+	 * @param clazz The class to find the canonical constructor of
+	 * @param lookup The lookup to use for accessing the constructor
+	 * @return A method handle of the canonical constructor, or null if the class is not a record
+	 * @throws ReflectiveOperationException If the constructor can't be accessed
+	 * @since 1.3.0
+	 */
+	static MethodHandle canonicalConstructor(Class<?> clazz, MethodHandles.Lookup lookup) throws ReflectiveOperationException {
+		if (isRecord == null || !(Boolean) isRecord.invoke(clazz)) return null;
+		Object components = getRecordComponents.invoke(clazz);
+		Class<?>[] types = new Class<?>[Array.getLength(components)];
+		for (int i = 0; i < types.length; i++) {
+			types[i] = (Class<?>) getType.invoke(Array.get(components, i));
+		}
+		Constructor<?> constructor = clazz.getDeclaredConstructor(types);
+		constructor.setAccessible(true);
+		return lookup.unreflectConstructor(constructor);
+	}
+}
@@ -0,0 +1,506 @@
+package com.ydo4ki.datalayouts;
+
+import java.io.EOFException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Array;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.OptionalInt;
+import java.util.function.Consumer;
+
+/**
+ * A decoder that reads objects from chunks of bytes as they arrive, for non-blocking input.
+ * Each chunk is taken as a whole; the objects it completes are passed to a consumer, and the rest of its bytes
+ * are kept until the next chunk.
+ *
+ * <p>Objects of class layouts are decoded field by field: once a field is read, its bytes are released and
+ * it is not read again, and fields of nested class layouts are resumed the same way. Arrays are resumed
+ * element by element, and strings character by character, unless their size is known from their length,
+ * in which case they are decoded at once when all of their bytes have arrived. Null-terminated strings
+ * of encodings that count bytes are decoded at once when their terminator has arrived, which is searched
+ * for only in the new bytes of each chunk. A value whose size is known
+ * is not attempted before its bytes are there, and is rejected right away if it exceeds the limit
+ * of buffered bytes. Values of other layouts are decoded as a whole, attempted again on every chunk.</p>
+ *
+ * <p>Decoders keep the state of one stream and are not thread-safe.</p>
+ *
+ * <pre>
+ * ResumableDecoder&lt;Packet&gt; decoder = Layout.decoder(Layout.of(Packet.class, MethodHandles.lookup()));
+ * // when the channel is readable
+ * channel.read(chunk);
+ * chunk.flip();
+ * decoder.decode(chunk, this::handle);
+ * chunk.clear();
+ * </pre>
+ *
+ * @param <T> The type of object the layout represents
+ * @see Layout#decoder(Layout.Of)
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+public final class ResumableDecoder<T> {
+	private final Layout.Of<T> layout;
+	/** The values being decoded part by part, innermost last */
+	private final ArrayList<Frame> frames = new ArrayList<>();
+	/** The bytes received and not consumed yet, from {@link #start} to {@link #end} */
+	private byte[] pending = new byte[256];
+	private int start;
+	private int end;
+	private int maxBufferedBytes = Integer.MAX_VALUE;
+	/** Returned instead of a value while more bytes are needed, as values may be null */
+	private static final Object MORE = new Object();
+	/** Returned instead of a value when the innermost frame is to be resumed */
+	private static final Object RESUME = new Object();
+	
+	/**
+	 * The state of a value decoded part by part.
+	 *
+	 * @since 1.3.0
+	 */
+	private abstract static class Frame {
+		/** Returns whether all parts of the value are read */
+		abstract boolean isComplete();
+		
+		/**
+		 * Reads the next part of the value from the buffered bytes of a decoder.
+		 *
+		 * @return The part, {@link #MORE} if more bytes are needed, or {@link #RESUME} if the innermost frame
+		 * is to be resumed, either this one after taking the part itself or a frame pushed for the part
+		 */
+		abstract Object resume(ResumableDecoder<?> decoder);
+		
+		/** Takes the next part of the value */
+		abstract void accept(Object part);
+		
+		/** Returns the value once all of its parts are read */
+		abstract Object create() throws Throwable;
+	}
+	
+	/**
+	 * The state of an object of a class layout: the values of the fields read so far.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final class ObjectFrame extends Frame {
+		final ObjectLayout<?> layout;
+		final Object[] values;
+		int field;
+		
+		ObjectFrame(ObjectLayout<?> layout) {
+			this.layout = layout;
+			this.values = new Object[layout.fieldsCount()];
+		}
+		
+		@Override
+		boolean isComplete() {
+			return field == values.length;
+		}
+		
+		@Override
+		Object resume(ResumableDecoder<?> decoder) {
+			return decoder.begin(layout.fieldLayout(field));
+		}
+		
+		@Override
+		void accept(Object part) {
+			values[field++] = part;
+		}
+		
+		@Override
+		Object create() throws Throwable {
+			if (layout.constructs()) return layout.instantiator().invokeWithArguments(values);
+			Object instance = layout.instantiator().invoke();
+			for (int i = 0; i < values.length; i++) {
+				layout.setter(i).invoke(instance, values[i]);
+			}
+			return instance;
+		}
+	}
+	
+	/**
+	 * The state of an array whose elements don't have a static size: the elements read so far.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final class ArrayFrame extends Frame {
+		final Layout<?> elementLayout;
+		final Object array;
+		final int length;
+		int index;
+		
+		ArrayFrame(DynamicArrayLayout<?> layout, int length) {
+			this.elementLayout = layout.elementLayout();
+			this.array = Array.newInstance(layout.arrayType.getComponentType(), length);
+			this.length = length;
+		}
+		
+		@Override
+		boolean isComplete() {
+			return index == length;
+		}
+		
+		@Override
+		Object resume(ResumableDecoder<?> decoder) {
+			return decoder.begin(elementLayout);
+		}
+		
+		@Override
+		void accept(Object part) {
+			Array.set(array, index++, part);
+		}
+		
+		@Override
+		Object create() {
+			return array;
+		}
+	}
+	
+	/**
+	 * The state of a string whose size is not known from its length: the characters read so far.
+	 * Only used with encodings that count characters, whose characters can be read one by one.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final class StringFrame extends Frame {
+		final StringEncoding encoding;
+		/** The characters of a length-prefixed string, or null if it is null-terminated */
+		final char[] chars;
+		final StringBuilder builder;
+		int count;
+		boolean terminated;
+		
+		StringFrame(StringEncoding encoding, int length) {
+			this.encoding = encoding;
+			this.chars = length < 0 ? null : new char[length];
+			this.builder = length < 0 ? new StringBuilder() : null;
+		}
+		
+		@Override
+		boolean isComplete() {
+			return chars != null ? count == chars.length : terminated;
+		}
+		
+		@Override
+		Object resume(ResumableDecoder<?> decoder) {
+			return decoder.readChars(this);
+		}
+		
+		@Override
+		void accept(Object part) {
+			char ch = (Character) part;
+			if (chars != null) chars[count++] = ch;
+			else if (ch == '\0') terminated = true;
+			else builder.append(ch);
+		}
+		
+		@Override
+		Object create() {
+			return chars != null ? String.valueOf(chars) : builder.toString();
+		}
+	}
+	
+	/**
+	 * The state of a null-terminated string in an encoding that counts bytes: the number of bytes searched
+	 * for the terminator so far. Such encodings can't decode every character on its own,
+	 * so the string is decoded as a whole once its terminator has arrived.
+	 *
+	 * @since 1.3.0
+	 */
+	private static final class TerminatedFrame extends Frame {
+		final StringEncoding encoding;
+		/** The number of buffered bytes known not to be the terminator */
+		int searched;
+		String value;
+		
+		TerminatedFrame(StringEncoding encoding) {
+			this.encoding = encoding;
+		}
+		
+		@Override
+		boolean isComplete() {
+			return value != null;
+		}
+		
+		@Override
+		Object resume(ResumableDecoder<?> decoder) {
+			return decoder.readTerminated(this);
+		}
+		
+		@Override
+		void accept(Object part) {
+			value = (String) part;
+		}
+		
+		@Override
+		Object create() {
+			return value;
+		}
+	}
+	
+	ResumableDecoder(Layout.Of<T> layout) {
+		this.layout = layout;
+	}
+	
+	/**
+	 * Limits the number of bytes this decoder keeps while waiting for the rest of a value,
+	 * so that a corrupted length can't make it buffer without bound. There is no limit by default.
+	 *
+	 * @param maxBufferedBytes The greatest number of bytes to keep
+	 * @throws IllegalArgumentException If the limit is not positive
+	 * @since 1.3.0
+	 */
+	public void setMaxBufferedBytes(int maxBufferedBytes) {
+		if (maxBufferedBytes <= 0) throw new IllegalArgumentException("Limit must be positive: " + maxBufferedBytes);
+		this.maxBufferedBytes = maxBufferedBytes;
+	}
+	
+	/**
+	 * Returns the number of bytes received and not consumed yet by the objects decoded so far.
+	 *
+	 * @return The number of buffered bytes
+	 * @since 1.3.0
+	 */
+	public int bufferedBytes() {
+		return end - start;
+	}
+	
+	/**
+	 * Returns whether an object has been started and is waiting for more bytes.
+	 *
+	 * @return true if the decoder is in the middle of an object
+	 * @since 1.3.0
+	 */
+	public boolean isPartial() {
+		return end != start || !frames.isEmpty();
+	}
+	
+	/**
+	 * Discards the buffered bytes and the objects in progress, to decode a new stream.
+	 *
+	 * @since 1.3.0
+	 */
+	public void reset() {
+		frames.clear();
+		start = end = 0;
+	}
+	
+	/**
+	 * Takes all remaining bytes of a chunk and decodes as many objects as they complete.
+	 * The position of the chunk is advanced to its limit.
+	 *
+	 * @param chunk The bytes received, read from its position to its limit
+	 * @param action The consumer of the decoded objects
+	 * @return The number of objects decoded
+	 * @throws IllegalArgumentException If a value is corrupted, or if more bytes than allowed
+	 * by {@link #setMaxBufferedBytes(int)} are needed to decode a value
+	 * @since 1.3.0
+	 */
+	@SuppressWarnings("unchecked")
+	public int decode(ByteBuffer chunk, Consumer<? super T> action) {
+		append(chunk);
+		int count = 0;
+		for (Object x; (x = next()) != MORE; count++) {
+			action.accept((T) x);
+		}
+		if (end - start > maxBufferedBytes)
+			throw new IllegalArgumentException(end - start + " bytes are buffered for a single value, the maximum is " + maxBufferedBytes);
+		return count;
+	}
+	
+	private void append(ByteBuffer chunk) {
+		int length = chunk.remaining();
+		if (length > pending.length - end) {
+			int buffered = end - start;
+			byte[] array = pending;
+			if (Math.addExact(buffered, length) > pending.length)
+				array = new byte[Math.max(buffered + length, pending.length << 1)];
+			System.arraycopy(pending, start, array, 0, buffered);
+			pending = array;
+			start = 0;
+			end = buffered;
+		}
+		chunk.get(pending, end, length);
+		end += length;
+	}
+	
+	/**
+	 * Decodes the next object from the buffered bytes.
+	 *
+	 * @return The object, or {@link #MORE} if more bytes are needed
+	 */
+	private Object next() {
+		if (start == end && frames.isEmpty()) return MORE;
+		try {
+			Object value = frames.isEmpty() ? begin(layout) : RESUME;
+			while (true) {
+				if (value == MORE) return MORE;
+				if (value != RESUME) {
+					if (frames.isEmpty()) return value;
+					frames.get(frames.size() - 1).accept(value);
+				}
+				Frame frame = frames.get(frames.size() - 1);
+				if (frame.isComplete()) {
+					frames.remove(frames.size() - 1);
+					value = frame.create();
+				} else {
+					value = frame.resume(this);
+				}
+			}
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Starts decoding a value: reads it at once if its bytes are there, or pushes a frame
+	 * to decode it part by part if it is an object, an array or a string whose size is not known.
+	 *
+	 * @return The value, {@link #MORE} if more bytes are needed, or {@link #RESUME} if a frame was pushed
+	 */
+	private Object begin(Layout<?> layout) {
+		OptionalInt size = layout.size();
+		if (size.isPresent()) return readSized(layout, -1, size.getAsInt());
+		ObjectLayout<?> objectLayout = ObjectLayout.of(layout);
+		if (objectLayout != null) {
+			frames.add(new ObjectFrame(objectLayout));
+			return RESUME;
+		}
+		if (layout instanceof DynamicArrayLayout) {
+			DynamicArrayLayout<?> arrayLayout = (DynamicArrayLayout<?>) layout;
+			ByteBuffer buffer = ByteBuffer.wrap(pending, start, end - start);
+			int length;
+			if (arrayLayout instanceof StaticArrayLayout) length = ((StaticArrayLayout<?>) arrayLayout).length();
+			else if ((length = readLength(arrayLayout.lengthPrefix(), buffer)) < 0) return MORE;
+			OptionalInt elementSize = arrayLayout.elementLayout().size();
+			if (elementSize.isPresent()) {
+				return readSized(layout, buffer.position(), Math.multiplyExact(length, elementSize.getAsInt()));
+			}
+			start = buffer.position();
+			frames.add(new ArrayFrame(arrayLayout, length));
+			return RESUME;
+		}
+		if (layout instanceof StringLayout.DynamicStringLayout) {
+			StringLayout.DynamicStringLayout stringLayout = (StringLayout.DynamicStringLayout) layout;
+			StringEncoding encoding = stringLayout.encoding;
+			if (stringLayout.isNullTerminated()) {
+				frames.add(encoding.countsBytes() ? new TerminatedFrame(encoding) : new StringFrame(encoding, -1));
+				return RESUME;
+			}
+			ByteBuffer buffer = ByteBuffer.wrap(pending, start, end - start);
+			int length = readLength(stringLayout.lengthPrefix(), buffer);
+			if (length < 0) return MORE;
+			OptionalInt unitSize = encoding.unitSize();
+			if (unitSize.isPresent()) {
+				return readSized(layout, buffer.position(), Math.multiplyExact(length, unitSize.getAsInt()));
+			}
+			start = buffer.position();
+			frames.add(new StringFrame(encoding, length));
+			return RESUME;
+		}
+		return read(layout);
+	}
+	
+	/**
+	 * Reads a value of a known size once all of its bytes are there, and releases them.
+	 *
+	 * @param contentStart The position its content starts at after its length prefix,
+	 *                     or -1 if the value is read with the layout from the start of the buffered bytes
+	 * @param contentSize The size of its content after the prefix
+	 * @return The value, or {@link #MORE} if more bytes are needed
+	 * @throws IllegalArgumentException If the value is larger than allowed by {@link #setMaxBufferedBytes(int)}
+	 */
+	private Object readSized(Layout<?> layout, int contentStart, int contentSize) {
+		int from = contentStart < 0 ? start : contentStart;
+		if (from - start + (long) contentSize > maxBufferedBytes)
+			throw new IllegalArgumentException(from - start + (long) contentSize + " bytes are needed for a single value, the maximum is " + maxBufferedBytes);
+		if (end - from < contentSize) return MORE;
+		ByteBuffer buffer = ByteBuffer.wrap(pending, start, end - start);
+		Object value = ObjectLayout.read(layout, buffer);
+		start = buffer.position();
+		return value;
+	}
+	
+	/**
+	 * Reads a length prefix from a buffer, without releasing its bytes.
+	 *
+	 * @return The length, or -1 if more bytes are needed
+	 * @throws IllegalArgumentException If the length is negative or greater than the maximum
+	 */
+	private static int readLength(Layout.OfInt lengthPrefix, ByteBuffer buffer) {
+		try {
+			return LengthPrefixes.readLength(lengthPrefix, buffer);
+		} catch (BufferUnderflowException e) {
+			return -1;
+		}
+	}
+	
+	/**
+	 * Reads the characters of a string that have arrived, releasing the bytes of each character.
+	 *
+	 * @return {@link #RESUME}, or {@link #MORE} if more bytes are needed
+	 */
+	private Object readChars(StringFrame frame) {
+		ByteBuffer buffer = ByteBuffer.wrap(pending, start, end - start);
+		try {
+			while (!frame.isComplete()) {
+				frame.accept(frame.encoding.read(buffer));
+				start = buffer.position();
+			}
+		} catch (BufferUnderflowException e) {
+			return MORE;
+		}
+		return RESUME;
+	}
+	
+	/**
+	 * Searches the bytes that have arrived for the terminator of a string, and decodes it as a whole
+	 * once it is found, releasing its bytes and the terminator.
+	 *
+	 * @return {@link #RESUME}, or {@link #MORE} if more bytes are needed
+	 */
+	private Object readTerminated(TerminatedFrame frame) {
+		for (int i = start + frame.searched; i < end; i++) {
+			if (pending[i] == 0) {
+				ByteBuffer buffer = ByteBuffer.wrap(pending, start, i + 1 - start);
+				frame.accept(frame.encoding.decodeNullTerminated(buffer));
+				start = buffer.position();
+				return RESUME;
+			}
+		}
+		frame.searched = end - start;
+		return MORE;
+	}
+	
+	/**
+	 * Reads a value from the buffered bytes and releases them.
+	 *
+	 * @return The value, or {@link #MORE} if more bytes are needed
+	 */
+	private Object read(Layout<?> layout) {
+		int available = end - start;
+		if (available == 0) return MORE;
+		ByteBuffer buffer = ByteBuffer.wrap(pending, start, available);
+		Object value;
+		try {
+			value = ObjectLayout.read(layout, buffer);
+		} catch (BufferUnderflowException e) {
+			return MORE;
+		} catch (UncheckedIOException e) {
+			if (e.getCause() instanceof EOFException) return MORE;
+			throw e;
+		}
+		start = buffer.position();
+		return value;
+	}
+	
+	@Override
+	public String toString() {
+		return "ResumableDecoder{" +
+				"layout=" + layout +
+				", buffered=" + (end - start) +
+				'}';
+	}
+}
@@ -3,6 +3,7 @@ package com.ydo4ki.datalayouts;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.OptionalInt;
 
 /**
@@ -60,6 +61,74 @@ class SkipLayout implements Layout.Of<Void> {
 		return null;
 	}
 	
+	/**
+	 * Skips exactly the specified number of bytes of a data input stream.
+	 *
+	 * @param in The data input stream to skip the bytes in
+	 * @throws java.io.EOFException If the stream ends before the bytes are skipped
+	 * @throws IOException If an I/O error occurs
+	 * @since 1.3.0
+	 */
+	@Override
+	public void skip(DataInput in) throws IOException {
+		Layouts.skipBytes(in, bytes);
+	}
+	
+	/**
+	 * Copies the specified number of bytes from a data input stream to a data output stream as they are,
+	 * so that the padding is relayed unchanged.
+	 *
+	 * @param in The data input stream to read the bytes from
+	 * @param out The data output stream to write the bytes to
+	 * @throws java.io.EOFException If the stream ends before the bytes are copied
+	 * @throws IOException If an I/O error occurs
+	 * @since 1.3.0
+	 */
+	@Override
+	public void copy(DataInput in, DataOutput out) throws IOException {
+		Layouts.transfer(in, out, bytes);
+	}
+	
+	/**
+	 * Writes zeros for the specified number of bytes to a byte buffer.
+	 *
+	 * @param x The input parameter (ignored)
+	 * @param buffer The buffer to write to
+	 * @since 1.3.0
+	 */
+	@Override
+	public void write(Void x, ByteBuffer buffer) {
+		buffer.put(writeBytes);
+	}
+	
+	/**
+	 * Skips the specified number of bytes of a byte buffer.
+	 *
+	 * @param buffer The buffer to read from
+	 * @return null
+	 * @since 1.3.0
+	 */
+	@Override
+	public Void read(ByteBuffer buffer) {
+		ByteBufferData.skip(buffer, bytes);
+		return null;
+	}
+	
+	/**
+	 * Skips the specified number of bytes of a byte buffer.
+	 * Nothing is read, so this only checks that the bytes are within the buffer.
+	 *
+	 * @param buffer The buffer to read from
+	 * @param index The index to start skipping at
+	 * @return null
+	 * @since 1.3.0
+	 */
+	@Override
+	public Void read(ByteBuffer buffer, int index) {
+		if (index < 0 || bytes > buffer.limit() - index) throw new IndexOutOfBoundsException("index " + index + ", limit " + buffer.limit());
+		return null;
+	}
+	
 	/**
 	 * Returns the size of this layout in bytes.
 	 * This is the number of bytes that will be skipped.
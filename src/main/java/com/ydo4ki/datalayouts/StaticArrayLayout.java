@@ -4,6 +4,7 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
 import java.util.OptionalInt;
 
 /**
@@ -33,10 +34,20 @@ final class StaticArrayLayout<T> extends DynamicArrayLayout<T> {
 		this.length = length;
 	}
 	
+	/**
+	 * Returns the fixed length of the arrays.
+	 *
+	 * @return The number of elements
+	 * @since 1.3.0
+	 */
+	int length() {
+		return length;
+	}
+	
 	/**
 	 * Writes an array to a data output stream.
-	 * If the array is shorter than the specified length, it will be padded.
-	 * If it's longer, it will be truncated.
+	 * If the array is shorter than the specified length, it will be padded with default elements.
+	 * If it's longer, it will be truncated. The array itself is never copied.
 	 *
 	 * @param array The array to write
 	 * @param out The data output stream to write to
@@ -45,30 +56,19 @@ final class StaticArrayLayout<T> extends DynamicArrayLayout<T> {
 	 */
 	@Override
 	public void write(T array, DataOutput out) throws IOException {
-		array = copyOf(array, length);
-		for (int i = 0, Len = Array.getLength(array); i < Len; i++) {
-			elementLayout.asObjectLayout().write(Array.get(array, i), out);
+		int present = Math.min(Array.getLength(array), length);
+		if (codec != null) {
+			codec.write(array, present, out);
+			codec.writeZeros(length - present, out);
+			return;
+		}
+		Layout.Of element = elementLayout.asObjectLayout();
+		for (int i = 0; i < present; i++) {
+			element.write(Array.get(array, i), out);
+		}
+		for (int i = present; i < length; i++) {
+			element.write(null, out);
 		}
-	}
-	
-	/**
-	 * Creates a copy of the array with the specified length.
-	 * If the new length is greater than the original length, the extra elements will be initialized to their default values.
-	 * If the new length is less than the original length, the array will be truncated.
-	 *
-	 * @param array The array to copy
-	 * @param newLength The length of the new array
-	 * @return A new array with the specified length
-	 * @param <T> The array type
-	 * @since 1.0.0
-	 */
-	private static <T> T copyOf(T array, int newLength) {
-		int length = Array.getLength(array);
-		if (length == newLength) return array;
-		T newArray = (T)Array.newInstance(array.getClass().getComponentType(), newLength);
-		//noinspection SuspiciousSystemArraycopy
-		System.arraycopy(array, 0, newArray, 0, Math.min(length, newLength));
-		return newArray;
 	}
 	
 	/**
@@ -85,6 +85,92 @@ final class StaticArrayLayout<T> extends DynamicArrayLayout<T> {
 		return readArray(in, length);
 	}
 	
+	/**
+	 * Returns the number of bytes an array is written as.
+	 * The array is truncated or padded with null elements to the fixed length,
+	 * so if the elements have a static size this is the same for all arrays.
+	 *
+	 * @param array The array to measure
+	 * @return The number of bytes the array is written as
+	 * @since 1.3.0
+	 */
+	@Override
+	public int sizeOf(T array) {
+		OptionalInt size = size();
+		if (size.isPresent()) return size.getAsInt();
+		int present = Math.min(Array.getLength(array), length);
+		int sizeOf = sizeOfElements(array, present);
+		Layout.Of element = elementLayout.asObjectLayout();
+		for (int i = present; i < length; i++) {
+			sizeOf = Math.addExact(sizeOf, element.sizeOf(null));
+		}
+		return sizeOf;
+	}
+	
+	/**
+	 * Skips an array in a data input stream without creating it.
+	 * If the elements have a static size, the whole array is skipped at once.
+	 *
+	 * @param in The data input stream to skip the array in
+	 * @throws IOException If an I/O error occurs
+	 * @since 1.3.0
+	 */
+	@Override
+	public void skip(DataInput in) throws IOException {
+		skipElements(in, length);
+	}
+	
+	/**
+	 * Copies an array from a data input stream to a data output stream without creating it.
+	 * If the elements have a static size, the whole array is copied as a single run of bytes.
+	 *
+	 * @param in The data input stream to read the array from
+	 * @param out The data output stream to write the array to
+	 * @throws IOException If an I/O error occurs
+	 * @since 1.3.0
+	 */
+	@Override
+	public void copy(DataInput in, DataOutput out) throws IOException {
+		copyElements(in, out, length);
+	}
+	
+	/**
+	 * Writes an array to a byte buffer, the same way as {@link #write(Object, DataOutput)}.
+	 *
+	 * @param array The array to write
+	 * @param buffer The buffer to write to
+	 * @since 1.3.0
+	 */
+	@Override
+	public void write(T array, ByteBuffer buffer) {
+		int present = Math.min(Array.getLength(array), length);
+		if (codec != null) {
+			codec.write(array, present, buffer);
+			codec.writeZeros(length - present, buffer);
+			return;
+		}
+		Layout.Of element = elementLayout.asObjectLayout();
+		for (int i = 0; i < present; i++) {
+			element.write(Array.get(array, i), buffer);
+		}
+		for (int i = present; i < length; i++) {
+			element.write(null, buffer);
+		}
+	}
+	
+	/**
+	 * Reads an array from a byte buffer.
+	 * The array will have the fixed length specified in the constructor.
+	 *
+	 * @param buffer The buffer to read from
+	 * @return The read array
+	 * @since 1.3.0
+	 */
+	@Override
+	public T read(ByteBuffer buffer) {
+		return readArray(buffer, length);
+	}
+	
 	/**
 	 * Returns the size of this layout in bytes, or null if the size is dynamic.
 	 * The size is calculated as the element size multiplied by the fixed length.
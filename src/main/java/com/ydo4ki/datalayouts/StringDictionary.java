@@ -0,0 +1,103 @@
+package com.ydo4ki.datalayouts;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A bounded table of strings, evicting the least recently used one when it is full.
+ *
+ * <p>The encoding and the decoding side of a connection each keep one, and update them the same way:
+ * a string is used when its index is written or read, and added when it is written or read in full.
+ * Both tables then assign the same index to every string. Only the encoding side looks strings up.</p>
+ *
+ * @see DictionaryDataOutput
+ * @see DictionaryDataInput
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+final class StringDictionary {
+	private final String[] strings;
+	/** Neighbours of the entries in the order of use, the most recently used one is {@link #head} */
+	private final int[] prev, next;
+	private int head = -1, tail = -1;
+	private int size;
+	/** Indices of the strings, only on the encoding side */
+	private final Map<String, Integer> indices;
+	
+	StringDictionary(int capacity, boolean encoding) {
+		if (capacity <= 0) throw new IllegalArgumentException("Non-positive capacity: " + capacity);
+		this.strings = new String[capacity];
+		this.prev = new int[capacity];
+		this.next = new int[capacity];
+		this.indices = encoding ? new HashMap<>() : null;
+	}
+	
+	/**
+	 * Returns the index of a string and marks it as used, or -1 if the table doesn't contain it.
+	 */
+	int indexOf(String x) {
+		Integer index = indices.get(x);
+		if (index == null) return -1;
+		use(index);
+		return index;
+	}
+	
+	/**
+	 * Returns the string at an index and marks it as used.
+	 *
+	 * @throws IllegalArgumentException If there is no string at the index
+	 */
+	String get(int index) {
+		if (index < 0 || index >= size) throw new IllegalArgumentException("No string at index " + index + " of the dictionary");
+		use(index);
+		return strings[index];
+	}
+	
+	/**
+	 * Adds a string, replacing the least recently used one if the table is full, and returns its index.
+	 */
+	int add(String x) {
+		int index;
+		if (size < strings.length) {
+			index = size++;
+		} else {
+			index = tail;
+			unlink(index);
+			if (indices != null) indices.remove(strings[index]);
+		}
+		strings[index] = x;
+		if (indices != null) indices.put(x, index);
+		linkFirst(index);
+		return index;
+	}
+	
+	/**
+	 * Removes all strings.
+	 */
+	void clear() {
+		Arrays.fill(strings, 0, size, null);
+		if (indices != null) indices.clear();
+		head = tail = -1;
+		size = 0;
+	}
+	
+	private void use(int index) {
+		if (index == head) return;
+		unlink(index);
+		linkFirst(index);
+	}
+	
+	private void unlink(int index) {
+		int p = prev[index], n = next[index];
+		if (p == -1) head = n; else next[p] = n;
+		if (n == -1) tail = p; else prev[n] = p;
+	}
+	
+	private void linkFirst(int index) {
+		prev[index] = -1;
+		next[index] = head;
+		if (head == -1) tail = index; else prev[head] = index;
+		head = index;
+	}
+}
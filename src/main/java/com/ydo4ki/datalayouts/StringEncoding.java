@@ -2,10 +2,18 @@ package com.ydo4ki.datalayouts;
 
 import java.io.DataInput;
 import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.util.HashMap;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Abstract base class for string character encodings.
@@ -21,7 +29,7 @@ import java.util.OptionalInt;
  */
 public abstract class StringEncoding extends Layout.OfChar {
 	@SuppressWarnings("SpellCheckingInspection")
-	private static final Map<String, StringEncoding> encoDingsLirens = new HashMap<>();
+	private static final Map<String, StringEncoding> encoDingsLirens = new ConcurrentHashMap<>();
 	
 	/**
 	 * Registers a string encoding with the specified name.
@@ -36,9 +44,8 @@ public abstract class StringEncoding extends Layout.OfChar {
 	 */
 	public static <T extends StringEncoding> T registerEncoding(T encoding, String name) {
 		// idk
-		if (encoDingsLirens.containsKey(name))
+		if (encoDingsLirens.putIfAbsent(name, encoding) != null)
 			throw new IllegalArgumentException("This encoding is already already");
-		encoDingsLirens.put(name, encoding);
 		return encoding;
 	}
 	
@@ -64,15 +71,179 @@ public abstract class StringEncoding extends Layout.OfChar {
 	@Override
 	public abstract OptionalInt size();
 	
+	/**
+	 * Returns the number of bytes the characters of a string are encoded as,
+	 * without a length prefix or a null terminator.
+	 * If the encoding has a static size, this is the length of the string times that size,
+	 * otherwise the characters are encoded and the bytes counted.
+	 *
+	 * @param x The string to measure
+	 * @return The number of bytes the characters are encoded as
+	 * @since 1.3.0
+	 */
+	public int sizeOf(String x) {
+		OptionalInt size = size();
+		if (size.isPresent()) return Math.multiplyExact(x.length(), size.getAsInt());
+		DataOutputStream counter = Layouts.sizeCounter();
+		try {
+			for (int i = 0, Len = x.length(); i < Len; i++) {
+				write(x.charAt(i), counter);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return counter.size();
+	}
+	
+	/**
+	 * Writes the characters of a string to a data output stream, without a length prefix or a null terminator.
+	 * The default implementation writes the characters one by one with {@link #write(char, DataOutput)};
+	 * the built-in encodings convert whole runs of characters at once.
+	 *
+	 * @param x The string to write
+	 * @param out The data output stream to write to
+	 * @throws IOException If an I/O error occurs
+	 * @since 1.3.0
+	 */
+	public void encode(String x, DataOutput out) throws IOException {
+		for (int i = 0, Len = x.length(); i < Len; i++) {
+			write(x.charAt(i), out);
+		}
+	}
+	
+	/**
+	 * Reads the specified number of characters from a data input stream
+	 * (or bytes, for encodings that count the lengths of strings in bytes, like {@link #UTF8_STANDARD}).
+	 * The default implementation reads the characters one by one with {@link #read(DataInput)};
+	 * the built-in encodings convert whole runs of characters at once.
+	 *
+	 * @param in The data input stream to read from
+	 * @param length The number of characters (or bytes) to read
+	 * @return The read string
+	 * @throws IOException If an I/O error occurs
+	 * @since 1.3.0
+	 */
+	public String decode(DataInput in, int length) throws IOException {
+		char[] data = new char[length];
+		for (int i = 0; i < length; i++) {
+			data[i] = read(in);
+		}
+		return String.valueOf(data);
+	}
+	
+	/**
+	 * Writes the characters of a string to a byte buffer, the same way as {@link #encode(String, DataOutput)}.
+	 *
+	 * @param x The string to write
+	 * @param buffer The buffer to write to
+	 * @since 1.3.0
+	 */
+	public void encode(String x, ByteBuffer buffer) {
+		for (int i = 0, Len = x.length(); i < Len; i++) {
+			write(x.charAt(i), buffer);
+		}
+	}
+	
+	/**
+	 * Reads the specified number of characters from a byte buffer, the same way as {@link #decode(DataInput, int)}.
+	 *
+	 * @param buffer The buffer to read from
+	 * @param length The number of characters to read
+	 * @return The read string
+	 * @since 1.3.0
+	 */
+	public String decode(ByteBuffer buffer, int length) {
+		char[] data = new char[length];
+		for (int i = 0; i < length; i++) {
+			data[i] = read(buffer);
+		}
+		return String.valueOf(data);
+	}
+	
+	/**
+	 * Returns whether the lengths of strings in this encoding (in length prefixes and static lengths)
+	 * are counted in bytes rather than in characters. Encodings that count bytes encode {@code '\0'} as a single zero byte.
+	 *
+	 * @since 1.3.0
+	 */
+	boolean countsBytes() {
+		return false;
+	}
+	
+	/**
+	 * Returns the number of bytes a unit of the lengths of strings takes, if it is static.
+	 *
+	 * @since 1.3.0
+	 */
+	final OptionalInt unitSize() {
+		return countsBytes() ? OptionalInt.of(1) : size();
+	}
+	
+	/**
+	 * Returns the length of a string, in the units of {@link #decode(DataInput, int)}.
+	 *
+	 * @since 1.3.0
+	 */
+	final int lengthOf(String x) {
+		return countsBytes() ? sizeOf(x) : x.length();
+	}
+	
+	/**
+	 * Returns the number of characters at the start of a string that fit in the specified length.
+	 *
+	 * @since 1.3.0
+	 */
+	int fit(String x, int length) {
+		return Math.min(x.length(), length);
+	}
+	
+	/**
+	 * Reads characters until a null character, which is read but not included in the string.
+	 *
+	 * @since 1.3.0
+	 */
+	String decodeNullTerminated(DataInput in) throws IOException {
+		StringBuilder builder = new StringBuilder();
+		char ch = read(in);
+		while (ch != '\0') {
+			builder.append(ch);
+			ch = read(in);
+		}
+		return builder.toString();
+	}
+	
+	/**
+	 * Reads characters until a null character, the same way as {@link #decodeNullTerminated(DataInput)}.
+	 *
+	 * @since 1.3.0
+	 */
+	String decodeNullTerminated(ByteBuffer buffer) {
+		StringBuilder builder = new StringBuilder();
+		char ch = read(buffer);
+		while (ch != '\0') {
+			builder.append(ch);
+			ch = read(buffer);
+		}
+		return builder.toString();
+	}
+	
 	static {
 		registerEncoding(new UTF8(), "utf-8");
 		registerEncoding(new UTF16(), "utf-16");
+		registerEncoding(new StandardUTF8(), "utf-8-standard");
 	}
 	
-	/** The name of the UTF-8 encoding */
+	/** The name of the UTF-8 encoding that writes 1 byte per character, see {@link #UTF8_STANDARD} for full UTF-8 */
 	public static final String UTF8 = "utf-8";
 	/** The name of the UTF-16 encoding */
 	public static final String UTF16 = "utf-16";
+	/**
+	 * The name of the standard UTF-8 encoding, with 1 to 4 bytes per code point.
+	 * The lengths of strings in this encoding are counted in bytes.
+	 *
+	 * @since 1.3.0
+	 */
+	public static final String UTF8_STANDARD = "utf-8-standard";
 	
 	/**
 	 * Implementation of StringEncoding for UTF-16 encoding.
@@ -93,6 +264,80 @@ public abstract class StringEncoding extends Layout.OfChar {
 		public OptionalInt size() {
 			return OptionalInt.of(2);
 		}
+		
+		@Override
+		public void write(char x, ByteBuffer buffer) {
+			buffer.putChar(x);
+		}
+		
+		@Override
+		public char read(ByteBuffer buffer) {
+			return buffer.getChar();
+		}
+		
+		@Override
+		public void write(char x, ByteBuffer buffer, int index) {
+			buffer.putChar(index, x);
+		}
+		
+		@Override
+		public char read(ByteBuffer buffer, int index) {
+			return buffer.getChar(index);
+		}
+		
+		@Override
+		public void encode(String x, DataOutput out) throws IOException {
+			int length = x.length();
+			if (out instanceof ByteArrayDataOutput) {
+				ByteArrayDataOutput output = (ByteArrayDataOutput) out;
+				int len = Math.multiplyExact(length, 2);
+				int pos = output.reserve(len); // may replace the array
+				ByteBuffer.wrap(output.array(), pos, len).asCharBuffer().put(x);
+				return;
+			}
+			byte[] buf = PrimitiveArrayCodec.scratch();
+			CharBuffer chars = ByteBuffer.wrap(buf).asCharBuffer();
+			for (int from = 0; from < length; from += chars.capacity()) {
+				int to = Math.min(length, from + chars.capacity());
+				chars.clear();
+				chars.put(x, from, to);
+				out.write(buf, 0, (to - from) * 2);
+			}
+		}
+		
+		@Override
+		public String decode(DataInput in, int length) throws IOException {
+			char[] data = new char[length];
+			if (in instanceof ByteArrayDataInput) {
+				ByteArrayDataInput input = (ByteArrayDataInput) in;
+				int len = Math.multiplyExact(length, 2);
+				ByteBuffer.wrap(input.array(), input.take(len), len).asCharBuffer().get(data);
+				return String.valueOf(data);
+			}
+			byte[] buf = PrimitiveArrayCodec.scratch();
+			CharBuffer chars = ByteBuffer.wrap(buf).asCharBuffer();
+			for (int from = 0; from < length; from += chars.capacity()) {
+				int n = Math.min(length - from, chars.capacity());
+				in.readFully(buf, 0, n * 2);
+				chars.clear();
+				chars.get(data, from, n);
+			}
+			return String.valueOf(data);
+		}
+		
+		@Override
+		public void encode(String x, ByteBuffer buffer) {
+			buffer.asCharBuffer().put(x);
+			buffer.position(buffer.position() + x.length() * 2);
+		}
+		
+		@Override
+		public String decode(ByteBuffer buffer, int length) {
+			char[] data = new char[length];
+			buffer.asCharBuffer().get(data);
+			buffer.position(buffer.position() + length * 2);
+			return String.valueOf(data);
+		}
 	}
 	
 	/**
@@ -146,5 +391,365 @@ public abstract class StringEncoding extends Layout.OfChar {
 		public char read(DataInput in) throws IOException {
 			return (char)in.readUnsignedByte();
 		}
+		
+		@Override
+		public void write(char x, ByteBuffer buffer) {
+			buffer.put((byte)x);
+		}
+		
+		@Override
+		public char read(ByteBuffer buffer) {
+			return (char)(buffer.get() & 0xFF);
+		}
+		
+		@Override
+		public void write(char x, ByteBuffer buffer, int index) {
+			buffer.put(index, (byte)x);
+		}
+		
+		@Override
+		public char read(ByteBuffer buffer, int index) {
+			return (char)(buffer.get(index) & 0xFF);
+		}
+		
+		/**
+		 * Writes the lower 8 bits of each character of a string, like {@link #write(char, DataOutput)} does,
+		 * converting whole runs of characters with {@link String#getBytes(int, int, byte[], int)}.
+		 */
+		@Override
+		@SuppressWarnings("deprecation") // getBytes(int, int, byte[], int) drops the high bytes, which is exactly what we want
+		public void encode(String x, DataOutput out) throws IOException {
+			int length = x.length();
+			if (out instanceof ByteArrayDataOutput) {
+				ByteArrayDataOutput output = (ByteArrayDataOutput) out;
+				int pos = output.reserve(length); // may replace the array
+				x.getBytes(0, length, output.array(), pos);
+				return;
+			}
+			byte[] buf = PrimitiveArrayCodec.scratch();
+			for (int from = 0; from < length; from += buf.length) {
+				int to = Math.min(length, from + buf.length);
+				x.getBytes(from, to, buf, 0);
+				out.write(buf, 0, to - from);
+			}
+		}
+		
+		@Override
+		public String decode(DataInput in, int length) throws IOException {
+			if (in instanceof ByteArrayDataInput) {
+				ByteArrayDataInput input = (ByteArrayDataInput) in;
+				return new String(input.array(), input.take(length), length, StandardCharsets.ISO_8859_1);
+			}
+			byte[] buf = PrimitiveArrayCodec.scratch();
+			if (length > buf.length) buf = new byte[length];
+			in.readFully(buf, 0, length);
+			return new String(buf, 0, length, StandardCharsets.ISO_8859_1);
+		}
+		
+		@Override
+		@SuppressWarnings("deprecation")
+		public void encode(String x, ByteBuffer buffer) {
+			int length = x.length();
+			if (buffer.remaining() < length) throw new BufferOverflowException();
+			if (buffer.hasArray()) {
+				x.getBytes(0, length, buffer.array(), buffer.arrayOffset() + buffer.position());
+				buffer.position(buffer.position() + length);
+				return;
+			}
+			byte[] buf = PrimitiveArrayCodec.scratch();
+			for (int from = 0; from < length; from += buf.length) {
+				int to = Math.min(length, from + buf.length);
+				x.getBytes(from, to, buf, 0);
+				buffer.put(buf, 0, to - from);
+			}
+		}
+		
+		@Override
+		public String decode(ByteBuffer buffer, int length) {
+			if (buffer.remaining() < length) throw new BufferUnderflowException();
+			if (buffer.hasArray()) {
+				String x = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.ISO_8859_1);
+				buffer.position(buffer.position() + length);
+				return x;
+			}
+			byte[] buf = PrimitiveArrayCodec.scratch();
+			if (length > buf.length) buf = new byte[length];
+			buffer.get(buf, 0, length);
+			return new String(buf, 0, length, StandardCharsets.ISO_8859_1);
+		}
+	}
+	
+	/**
+	 * Implementation of StringEncoding for standard UTF-8 encoding.
+	 * Characters are encoded as 1 to 3 bytes, and surrogate pairs as 4 bytes.
+	 * Unpaired surrogates are written as {@code '?'} and malformed input is read as {@code '\uFFFD'}, like {@link String} does.
+	 *
+	 * <p>Whole strings are encoded with a fast path that copies runs of ASCII characters in bulk,
+	 * and decoded by {@link String} itself. Single characters can also be written and read,
+	 * but supplementary characters only exist as surrogate pairs, which have to be encoded together:
+	 * the {@code read} methods of single characters return {@code '\uFFFD'} for them, so strings
+	 * must be decoded as a whole with {@link #decode(DataInput, int)} or {@link #decode(ByteBuffer, int)}.</p>
+	 *
+	 * @since 1.3.0
+	 * @author Sulphuris
+	 */
+	private static final class StandardUTF8 extends StringEncoding {
+		/** The greatest number of bytes a character is encoded as, surrogate pairs take less per character */
+		private static final int MAX_BYTES_PER_CHAR = 3;
+		
+		@Override
+		public OptionalInt size() {
+			return OptionalInt.empty();
+		}
+		
+		@Override
+		boolean countsBytes() {
+			return true;
+		}
+		
+		/**
+		 * Returns the number of bytes a string is encoded as, without encoding it.
+		 */
+		@Override
+		public int sizeOf(String x) {
+			int length = x.length();
+			long size = length;
+			for (int i = 0; i < length; i++) {
+				char c = x.charAt(i);
+				if (c < 0x80) continue;
+				if (c < 0x800) {
+					size += 1;
+				} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(x.charAt(i + 1))) {
+					size += 2;
+					i++;
+				} else if (!Character.isSurrogate(c)) {
+					size += 2;
+				}
+			}
+			return Math.toIntExact(size);
+		}
+		
+		@Override
+		int fit(String x, int length) {
+			int size = 0;
+			for (int i = 0, Len = x.length(); i < Len; i++) {
+				char c = x.charAt(i);
+				boolean pair = Character.isHighSurrogate(c) && i + 1 < Len && Character.isLowSurrogate(x.charAt(i + 1));
+				int n = c < 0x80 ? 1 : c < 0x800 ? 2 : pair ? 4 : Character.isSurrogate(c) ? 1 : 3;
+				if (size + n > length) return i;
+				size += n;
+				if (pair) i++;
+			}
+			return x.length();
+		}
+		
+		/**
+		 * Encodes the characters from {@code from} to {@code to} into the array, which must have enough space,
+		 * and returns the index after the last written byte.
+		 * Runs of ASCII characters are copied with {@link String#getBytes(int, int, byte[], int)}.
+		 */
+		@SuppressWarnings("deprecation") // getBytes(int, int, byte[], int) is exact for ASCII
+		private static int encode(String x, int from, int to, byte[] dst, int pos) {
+			int i = from;
+			while (i < to) {
+				int ascii = i;
+				while (ascii < to && x.charAt(ascii) < 0x80) ascii++;
+				if (ascii > i) {
+					x.getBytes(i, ascii, dst, pos);
+					pos += ascii - i;
+					i = ascii;
+					if (i == to) break;
+				}
+				char c = x.charAt(i++);
+				if (c < 0x800) {
+					dst[pos++] = (byte) (0xC0 | c >> 6);
+					dst[pos++] = (byte) (0x80 | c & 0x3F);
+				} else if (Character.isHighSurrogate(c) && i < to && Character.isLowSurrogate(x.charAt(i))) {
+					int cp = Character.toCodePoint(c, x.charAt(i++));
+					dst[pos++] = (byte) (0xF0 | cp >> 18);
+					dst[pos++] = (byte) (0x80 | cp >> 12 & 0x3F);
+					dst[pos++] = (byte) (0x80 | cp >> 6 & 0x3F);
+					dst[pos++] = (byte) (0x80 | cp & 0x3F);
+				} else if (Character.isSurrogate(c)) {
+					dst[pos++] = '?';
+				} else {
+					dst[pos++] = (byte) (0xE0 | c >> 12);
+					dst[pos++] = (byte) (0x80 | c >> 6 & 0x3F);
+					dst[pos++] = (byte) (0x80 | c & 0x3F);
+				}
+			}
+			return pos;
+		}
+		
+		/**
+		 * Returns the end of the next run of characters to encode into the scratch buffer, which never splits a surrogate pair.
+		 */
+		private static int chunkEnd(String x, int from, int bufferSize) {
+			int to = Math.min(x.length(), from + bufferSize / MAX_BYTES_PER_CHAR);
+			if (to < x.length() && Character.isHighSurrogate(x.charAt(to - 1))) to--;
+			return to;
+		}
+		
+		@Override
+		public void encode(String x, DataOutput out) throws IOException {
+			if (out instanceof ByteArrayDataOutput) {
+				ByteArrayDataOutput output = (ByteArrayDataOutput) out;
+				int pos = output.reserve(sizeOf(x)); // may replace the array
+				encode(x, 0, x.length(), output.array(), pos);
+				return;
+			}
+			byte[] buf = PrimitiveArrayCodec.scratch();
+			for (int from = 0, Len = x.length(); from < Len; ) {
+				int to = chunkEnd(x, from, buf.length);
+				out.write(buf, 0, encode(x, from, to, buf, 0));
+				from = to;
+			}
+		}
+		
+		@Override
+		public String decode(DataInput in, int length) throws IOException {
+			if (in instanceof ByteArrayDataInput) {
+				ByteArrayDataInput input = (ByteArrayDataInput) in;
+				return new String(input.array(), input.take(length), length, StandardCharsets.UTF_8);
+			}
+			byte[] buf = PrimitiveArrayCodec.scratch();
+			if (length > buf.length) buf = new byte[length];
+			in.readFully(buf, 0, length);
+			return new String(buf, 0, length, StandardCharsets.UTF_8);
+		}
+		
+		@Override
+		public void encode(String x, ByteBuffer buffer) {
+			int size = sizeOf(x);
+			if (buffer.remaining() < size) throw new BufferOverflowException();
+			if (buffer.hasArray()) {
+				encode(x, 0, x.length(), buffer.array(), buffer.arrayOffset() + buffer.position());
+				buffer.position(buffer.position() + size);
+				return;
+			}
+			byte[] buf = PrimitiveArrayCodec.scratch();
+			for (int from = 0, Len = x.length(); from < Len; ) {
+				int to = chunkEnd(x, from, buf.length);
+				buffer.put(buf, 0, encode(x, from, to, buf, 0));
+				from = to;
+			}
+		}
+		
+		@Override
+		public String decode(ByteBuffer buffer, int length) {
+			if (buffer.remaining() < length) throw new BufferUnderflowException();
+			if (buffer.hasArray()) {
+				String x = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+				buffer.position(buffer.position() + length);
+				return x;
+			}
+			byte[] buf = PrimitiveArrayCodec.scratch();
+			if (length > buf.length) buf = new byte[length];
+			buffer.get(buf, 0, length);
+			return new String(buf, 0, length, StandardCharsets.UTF_8);
+		}
+		
+		@Override
+		String decodeNullTerminated(DataInput in) throws IOException {
+			byte[] buf = PrimitiveArrayCodec.scratch();
+			int length = 0;
+			for (byte b = in.readByte(); b != 0; b = in.readByte()) {
+				if (length == buf.length) buf = Arrays.copyOf(buf, length * 2); // the scratch buffer is left as is
+				buf[length++] = b;
+			}
+			return new String(buf, 0, length, StandardCharsets.UTF_8);
+		}
+		
+		@Override
+		String decodeNullTerminated(ByteBuffer buffer) {
+			int start = buffer.position();
+			int end = start;
+			for (int limit = buffer.limit(); end < limit && buffer.get(end) != 0; ) end++;
+			if (end == buffer.limit()) throw new BufferUnderflowException();
+			String x = decode(buffer, end - start);
+			buffer.get();
+			return x;
+		}
+		
+		/**
+		 * Encodes a character on its own into the scratch buffer and returns the number of bytes.
+		 */
+		private static int encodeChar(char x, byte[] buf) {
+			return encode(String.valueOf(x), 0, 1, buf, 0);
+		}
+		
+		@Override
+		public void write(char x, DataOutput out) throws IOException {
+			if (x < 0x80) {
+				out.writeByte(x);
+			} else {
+				byte[] buf = PrimitiveArrayCodec.scratch();
+				out.write(buf, 0, encodeChar(x, buf));
+			}
+		}
+		
+		@Override
+		public char read(DataInput in) throws IOException {
+			int b = in.readUnsignedByte();
+			if (b < 0x80) return (char) b;
+			int n = b >= 0xF0 ? 3 : b >= 0xE0 ? 2 : b >= 0xC0 ? 1 : 0;
+			byte[] buf = PrimitiveArrayCodec.scratch();
+			buf[0] = (byte) b;
+			in.readFully(buf, 1, n);
+			return decodeChar(buf, 0, n + 1);
+		}
+		
+		@Override
+		public void write(char x, ByteBuffer buffer) {
+			if (x < 0x80) {
+				buffer.put((byte) x);
+			} else {
+				byte[] buf = PrimitiveArrayCodec.scratch();
+				buffer.put(buf, 0, encodeChar(x, buf));
+			}
+		}
+		
+		@Override
+		public char read(ByteBuffer buffer) {
+			if (!buffer.hasRemaining()) throw new BufferUnderflowException();
+			char x = read(buffer, buffer.position()); // checks the bytes after the first one
+			buffer.position(buffer.position() + bytesOf(buffer.get(buffer.position())));
+			return x;
+		}
+		
+		@Override
+		public void write(char x, ByteBuffer buffer, int index) {
+			byte[] buf = PrimitiveArrayCodec.scratch();
+			int n = encodeChar(x, buf);
+			for (int i = 0; i < n; i++) buffer.put(index + i, buf[i]);
+		}
+		
+		@Override
+		public char read(ByteBuffer buffer, int index) {
+			int b = buffer.get(index) & 0xFF;
+			if (b < 0x80) return (char) b;
+			int n = bytesOf((byte) b);
+			if (index + n > buffer.limit()) throw new BufferUnderflowException();
+			byte[] buf = PrimitiveArrayCodec.scratch();
+			for (int i = 0; i < n; i++) buf[i] = buffer.get(index + i);
+			return decodeChar(buf, 0, n);
+		}
+		
+		/**
+		 * Returns the number of bytes of a character from its first byte.
+		 */
+		private static int bytesOf(byte first) {
+			int b = first & 0xFF;
+			return b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : b >= 0xC0 ? 2 : 1;
+		}
+		
+		/**
+		 * Decodes a single character, returning {@code '\uFFFD'} for malformed and supplementary characters,
+		 * which can't be represented by a single {@code char}.
+		 */
+		private static char decodeChar(byte[] buf, int off, int len) {
+			String x = new String(buf, off, len, StandardCharsets.UTF_8);
+			return x.length() == 1 ? x.charAt(0) : '\uFFFD';
+		}
 	}
 }
@@ -3,7 +3,7 @@ package com.ydo4ki.datalayouts;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
 import java.util.OptionalInt;
 
 /**
@@ -62,6 +62,36 @@ public abstract class StringLayout implements Layout.Of<String> {
 	 */
 	public abstract StringLayout toStaticLen(int length);
 	
+	/**
+	 * Skips the specified number of characters (or bytes, if the encoding counts them)
+	 * without decoding them, if the encoding has a static size.
+	 *
+	 * @since 1.3.0
+	 */
+	void skipChars(DataInput in, int count) throws IOException {
+		OptionalInt size = encoding.unitSize();
+		if (size.isPresent()) {
+			Layouts.skipBytes(in, (long) count * size.getAsInt());
+		} else {
+			for (int i = 0; i < count; i++) encoding.read(in);
+		}
+	}
+	
+	/**
+	 * Copies the specified number of characters (or bytes, if the encoding counts them)
+	 * without decoding them, if the encoding has a static size.
+	 *
+	 * @since 1.3.0
+	 */
+	void copyChars(DataInput in, DataOutput out, int count) throws IOException {
+		OptionalInt size = encoding.unitSize();
+		if (size.isPresent()) {
+			Layouts.transfer(in, out, (long) count * size.getAsInt());
+		} else {
+			for (int i = 0; i < count; i++) encoding.write(encoding.read(in), out);
+		}
+	}
+	
 	/**
 	 * Implementation of StringLayout for strings with dynamic length.
 	 * This class provides serialization and deserialization support for strings where the length
@@ -74,6 +104,10 @@ public abstract class StringLayout implements Layout.Of<String> {
 	static final class DynamicStringLayout extends StringLayout {
 		/** Whether the string is null-terminated */
 		private final boolean nullTerminated;
+		/** The layout the length of strings is written with, if they are not null-terminated */
+		private final Layout.OfInt lengthPrefix;
+		/** The greatest length the prefix can hold */
+		private final int maxLength;
 		
 		/**
 		 * Returns whether this layout uses null termination.
@@ -93,8 +127,32 @@ public abstract class StringLayout implements Layout.Of<String> {
 		 * @since 1.0.0
 		 */
 		public DynamicStringLayout(StringEncoding encoding, boolean nullTerminated) {
+			this(encoding, nullTerminated, Layout.ofInt);
+		}
+		
+		/**
+		 * Creates a new dynamic string layout with the specified encoding, null termination setting and length prefix.
+		 *
+		 * @param encoding The encoding to use for string serialization and deserialization
+		 * @param nullTerminated Whether the string is null-terminated
+		 * @param lengthPrefix The layout to write the length of strings with, if they are not null-terminated
+		 * @since 1.3.0
+		 */
+		DynamicStringLayout(StringEncoding encoding, boolean nullTerminated, Layout.OfInt lengthPrefix) {
 			super(encoding);
 			this.nullTerminated = nullTerminated;
+			this.lengthPrefix = lengthPrefix;
+			this.maxLength = LengthPrefixes.maxLength(lengthPrefix);
+		}
+		
+		/**
+		 * Returns the layout the length of strings is written with, if they are not null-terminated.
+		 *
+		 * @return The layout of the length prefix
+		 * @since 1.3.0
+		 */
+		Layout.OfInt lengthPrefix() {
+			return lengthPrefix;
 		}
 		
 		/**
@@ -105,7 +163,7 @@ public abstract class StringLayout implements Layout.Of<String> {
 		 * @since 1.0.0
 		 */
 		public StringLayout updateEncoding(StringEncoding encoding) {
-			return new DynamicStringLayout(encoding, nullTerminated);
+			return new DynamicStringLayout(encoding, nullTerminated, lengthPrefix);
 		}
 		
 		/**
@@ -128,13 +186,25 @@ public abstract class StringLayout implements Layout.Of<String> {
 		 * @since 1.0.0
 		 */
 		public StringLayout updateNullTerminated(boolean nullTerminated) {
-			return new DynamicStringLayout(encoding, nullTerminated);
+			return new DynamicStringLayout(encoding, nullTerminated, lengthPrefix);
+		}
+		
+		/**
+		 * Creates a new dynamic string layout with the specified length prefix, preserving the other settings.
+		 *
+		 * @param lengthPrefix The layout to write the length of strings with
+		 * @return A new dynamic string layout with the specified length prefix
+		 * @since 1.3.0
+		 */
+		public StringLayout updateLengthPrefix(Layout.OfInt lengthPrefix) {
+			return new DynamicStringLayout(encoding, nullTerminated, lengthPrefix);
 		}
 		
 		/**
 		 * Writes a string to a data output stream.
-		 * If the layout is not null-terminated, the length of the string is written first as an integer.
-		 * Then each character is written using the specified encoding.
+		 * If the layout is not null-terminated, the length of the string is written first with the length prefix
+		 * (as an integer by default), in characters, or in bytes if the encoding counts them.
+		 * Then the characters are written using the specified encoding.
 		 * If the layout is null-terminated, a null character is written at the end.
 		 *
 		 * @param x The string to write
@@ -144,17 +214,15 @@ public abstract class StringLayout implements Layout.Of<String> {
 		 */
 		@Override
 		public void write(String x, DataOutput out) throws IOException {
-			if (!nullTerminated) out.writeInt(x.length());
-			for (char c : x.toCharArray()) {
-				encoding.write(c, out);
-			}
+			if (!nullTerminated) lengthPrefix.write(LengthPrefixes.checkLength(encoding.lengthOf(x), maxLength), out);
+			encoding.encode(x, out);
 			if (nullTerminated) encoding.write('\0', out);
 		}
 		
 		/**
 		 * Reads a string from a data input stream.
 		 * If the layout is null-terminated, characters are read until a null character is encountered.
-		 * Otherwise, the length of the string is read first as an integer, then that many characters are read.
+		 * Otherwise, the length of the string is read first with the length prefix, then that many characters are read.
 		 *
 		 * @param in The data input stream to read from
 		 * @return The read string
@@ -163,23 +231,96 @@ public abstract class StringLayout implements Layout.Of<String> {
 		 */
 		@Override
 		public String read(DataInput in) throws IOException {
-			if (nullTerminated) {
-				StringBuilder builder = new StringBuilder();
-				char ch = encoding.read(in);
-				while (ch != '\0') {
-					builder.append(ch);
+			return nullTerminated ? encoding.decodeNullTerminated(in) : encoding.decode(in, LengthPrefixes.readLength(lengthPrefix, in));
+		}
+		
+		/**
+		 * Returns the number of bytes a string is written as: its encoded characters,
+		 * plus either the length prefix or the null terminator.
+		 *
+		 * @param x The string to measure
+		 * @return The number of bytes the string is written as
+		 * @since 1.3.0
+		 */
+		@Override
+		public int sizeOf(String x) {
+			return Math.addExact(encoding.sizeOf(x), nullTerminated ? encoding.sizeOf("\0") : lengthPrefix.sizeOf(encoding.lengthOf(x)));
+		}
+		
+		/**
+		 * Skips a string in a data input stream without creating it.
+		 * Length-prefixed strings are skipped at once if the encoding has a static size.
+		 *
+		 * @param in The data input stream to skip the string in
+		 * @throws IOException If an I/O error occurs
+		 * @since 1.3.0
+		 */
+		@Override
+		public void skip(DataInput in) throws IOException {
+			if (nullTerminated && encoding.countsBytes()) {
+				while (in.readByte() != 0);
+			} else if (nullTerminated) {
+				while (encoding.read(in) != '\0');
+			} else {
+				skipChars(in, LengthPrefixes.readLength(lengthPrefix, in));
+			}
+		}
+		
+		/**
+		 * Copies a string from a data input stream to a data output stream without creating it.
+		 * Length-prefixed strings are copied as a single run of bytes if the encoding has a static size.
+		 *
+		 * @param in The data input stream to read the string from
+		 * @param out The data output stream to write the string to
+		 * @throws IOException If an I/O error occurs
+		 * @since 1.3.0
+		 */
+		@Override
+		public void copy(DataInput in, DataOutput out) throws IOException {
+			if (nullTerminated && encoding.countsBytes()) {
+				byte b;
+				do {
+					b = in.readByte();
+					out.writeByte(b);
+				} while (b != 0);
+			} else if (nullTerminated) {
+				char ch;
+				do {
 					ch = encoding.read(in);
-				}
-				return builder.toString();
+					encoding.write(ch, out);
+				} while (ch != '\0');
 			} else {
-				int len = in.readInt();
-				char[] data = new char[len];
-				for (int i = 0; i < data.length; i++) {
-					data[i] = encoding.read(in);
-				}
-				return String.valueOf(data);
+				int len = LengthPrefixes.readLength(lengthPrefix, in);
+				lengthPrefix.write(len, out);
+				copyChars(in, out, len);
 			}
 		}
+		
+		/**
+		 * Writes a string to a byte buffer, the same way as {@link #write(String, DataOutput)}.
+		 *
+		 * @param x The string to write
+		 * @param buffer The buffer to write to
+		 * @since 1.3.0
+		 */
+		@Override
+		public void write(String x, ByteBuffer buffer) {
+			if (!nullTerminated) lengthPrefix.write(LengthPrefixes.checkLength(encoding.lengthOf(x), maxLength), buffer);
+			encoding.encode(x, buffer);
+			if (nullTerminated) encoding.write('\0', buffer);
+		}
+		
+		/**
+		 * Reads a string from a byte buffer, the same way as {@link #read(DataInput)}.
+		 *
+		 * @param buffer The buffer to read from
+		 * @return The read string
+		 * @since 1.3.0
+		 */
+		@Override
+		public String read(ByteBuffer buffer) {
+			return nullTerminated ? encoding.decodeNullTerminated(buffer) : encoding.decode(buffer, LengthPrefixes.readLength(lengthPrefix, buffer));
+		}
 	}
 	
 	/**
@@ -207,6 +348,16 @@ public abstract class StringLayout implements Layout.Of<String> {
 			this.length = length;
 		}
 		
+		/**
+		 * Returns the fixed length of the strings.
+		 *
+		 * @return The number of characters
+		 * @since 1.3.0
+		 */
+		int length() {
+			return length;
+		}
+		
 		/**
 		 * Creates a new static string layout with the specified encoding, preserving the fixed length.
 		 *
@@ -245,7 +396,7 @@ public abstract class StringLayout implements Layout.Of<String> {
 		/**
 		 * Writes a string to a data output stream.
 		 * If the string is shorter than the fixed length, it is padded with null characters.
-		 * If it is longer, it is truncated.
+		 * If it is longer, it is truncated. Encodings that count bytes truncate it on a code point boundary.
 		 *
 		 * @param x The string to write
 		 * @param out The data output stream to write to
@@ -254,12 +405,10 @@ public abstract class StringLayout implements Layout.Of<String> {
 		 */
 		@Override
 		public void write(String x, DataOutput out) throws IOException {
-			int actualLen = Math.min(x.length(), length);
-			int i;
-			for (i = 0; i < actualLen; i++) {
-				encoding.write(x.charAt(i), out);
-			}
-			for (; i < length; i++) {
+			int actualLen = encoding.fit(x, length);
+			String actual = actualLen == x.length() ? x : x.substring(0, actualLen);
+			encoding.encode(actual, out);
+			for (int i = encoding.lengthOf(actual); i < length; i++) {
 				encoding.write('\0', out);
 			}
 		}
@@ -275,15 +424,88 @@ public abstract class StringLayout implements Layout.Of<String> {
 		 */
 		@Override
 		public String read(DataInput in) throws IOException {
-			char[] data = new char[length];
-			int lastSymbol = -1;
-			for (int i = 0; i < length; i++) {
-				char ch = encoding.read(in);
-				data[i] = ch;
-				if (ch != '\0') lastSymbol = i;
+			return trimNulls(encoding.decode(in, length));
+		}
+		
+		/**
+		 * Returns the number of bytes a string is written as.
+		 * The string is truncated or padded with null characters to the fixed length,
+		 * so for encodings with a static size this is the same for all strings.
+		 *
+		 * @param x The string to measure
+		 * @return The number of bytes the string is written as
+		 * @since 1.3.0
+		 */
+		@Override
+		public int sizeOf(String x) {
+			OptionalInt size = encoding.unitSize();
+			if (size.isPresent()) return Math.multiplyExact(length, size.getAsInt());
+			String actual = x.substring(0, encoding.fit(x, length));
+			int padding = Math.multiplyExact(length - encoding.lengthOf(actual), encoding.sizeOf("\0"));
+			return Math.addExact(encoding.sizeOf(actual), padding);
+		}
+		
+		/**
+		 * Skips a string in a data input stream without creating it.
+		 *
+		 * @param in The data input stream to skip the string in
+		 * @throws IOException If an I/O error occurs
+		 * @since 1.3.0
+		 */
+		@Override
+		public void skip(DataInput in) throws IOException {
+			skipChars(in, length);
+		}
+		
+		/**
+		 * Copies a string from a data input stream to a data output stream without creating it.
+		 *
+		 * @param in The data input stream to read the string from
+		 * @param out The data output stream to write the string to
+		 * @throws IOException If an I/O error occurs
+		 * @since 1.3.0
+		 */
+		@Override
+		public void copy(DataInput in, DataOutput out) throws IOException {
+			copyChars(in, out, length);
+		}
+		
+		/**
+		 * Writes a string to a byte buffer, the same way as {@link #write(String, DataOutput)}.
+		 *
+		 * @param x The string to write
+		 * @param buffer The buffer to write to
+		 * @since 1.3.0
+		 */
+		@Override
+		public void write(String x, ByteBuffer buffer) {
+			int actualLen = encoding.fit(x, length);
+			String actual = actualLen == x.length() ? x : x.substring(0, actualLen);
+			encoding.encode(actual, buffer);
+			for (int i = encoding.lengthOf(actual); i < length; i++) {
+				encoding.write('\0', buffer);
 			}
-			data = Arrays.copyOf(data, lastSymbol + 1);
-			return String.valueOf(data);
+		}
+		
+		/**
+		 * Reads a string from a byte buffer, the same way as {@link #read(DataInput)}.
+		 *
+		 * @param buffer The buffer to read from
+		 * @return The read string
+		 * @since 1.3.0
+		 */
+		@Override
+		public String read(ByteBuffer buffer) {
+			return trimNulls(encoding.decode(buffer, length));
+		}
+		
+		/**
+		 * Removes the null characters the string was padded with.
+		 */
+		private static String trimNulls(String x) {
+			int end = x.length();
+			while (end > 0 && x.charAt(end - 1) == '\0') end--;
+			return x.substring(0, end);
 		}
 	}
 }
@@ -0,0 +1,255 @@
+package com.ydo4ki.datalayouts;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.OptionalInt;
+
+/**
+ * A layout for a class hierarchy that writes the tag of the subtype of each object, followed by the object
+ * in the layout of that subtype (a tagged union). Tags are written as varints by default, see {@link #withTagLayout}.
+ *
+ * <p>Tags are indices into an array of subtype layouts, so reading dispatches with a single array access.
+ * The tag of the class of an object is looked up once per class and cached: objects of unregistered subclasses of
+ * a registered subtype are written with the tag and the layout of the nearest registered superclass.</p>
+ *
+ * <p>Union layouts are immutable, every {@code with} method returns a new layout. To use a union for fields
+ * of the base type, bind it with {@link Layout#bindToVirtual(Class, Layout.Of)}.</p>
+ *
+ * <pre>
+ * UnionLayout&lt;Packet&gt; packets = Layout.union(Packet.class)
+ *         .with(0, Login.class, MethodHandles.lookup())
+ *         .with(1, Chat.class, MethodHandles.lookup());
+ * </pre>
+ *
+ * @param <T> The base type of the hierarchy
+ * @see Layout#union(Class)
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+public final class UnionLayout<T> implements Layout.Of<T> {
+	/** The greatest tag, tags index an array */
+	private static final int MAX_TAG = 0xFFFF;
+	
+	private final Class<T> baseType;
+	private final Layout.OfInt tagLayout;
+	/** The registered subtypes by tag, null for unused tags */
+	private final Class<?>[] subtypes;
+	/** The layouts of the subtypes by tag, null for unused tags */
+	private final Layout.Of<?>[] layouts;
+	private final OptionalInt size;
+	/** The variant objects of a class are written as, null if neither the class nor its superclasses are registered */
+	private final ClassValue<Variant> variants = new ClassValue<Variant>() {
+		@Override
+		protected Variant computeValue(Class<?> type) {
+			for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+				for (int tag = 0; tag < subtypes.length; tag++) {
+					if (subtypes[tag] == c) return new Variant(tag, layouts[tag]);
+				}
+			}
+			return null;
+		}
+	};
+	
+	private static final class Variant {
+		final int tag;
+		final Layout.Of<Object> layout;
+		
+		@SuppressWarnings("unchecked")
+		Variant(int tag, Layout.Of<?> layout) {
+			this.tag = tag;
+			this.layout = (Layout.Of<Object>) layout;
+		}
+	}
+	
+	UnionLayout(Class<T> baseType) {
+		this(baseType, Layout.ofVarInt, new Class<?>[0], new Layout.Of<?>[0]);
+	}
+	
+	private UnionLayout(Class<T> baseType, Layout.OfInt tagLayout, Class<?>[] subtypes, Layout.Of<?>[] layouts) {
+		this.baseType = Objects.requireNonNull(baseType);
+		this.tagLayout = Objects.requireNonNull(tagLayout);
+		this.subtypes = subtypes;
+		this.layouts = layouts;
+		this.size = staticSize(tagLayout, layouts);
+	}
+	
+	/**
+	 * Returns the size of all objects, if the tags and the layouts of all subtypes have the same static size.
+	 */
+	private static OptionalInt staticSize(Layout.OfInt tagLayout, Layout.Of<?>[] layouts) {
+		OptionalInt tagSize = tagLayout.size();
+		OptionalInt size = OptionalInt.empty();
+		for (Layout.Of<?> layout : layouts) {
+			if (layout == null) continue;
+			OptionalInt variantSize = layout.size();
+			if (!tagSize.isPresent() || !variantSize.isPresent() || size.isPresent() && size.getAsInt() != variantSize.getAsInt())
+				return OptionalInt.empty();
+			size = variantSize;
+		}
+		return size.isPresent() ? OptionalInt.of(tagSize.getAsInt() + size.getAsInt()) : OptionalInt.empty();
+	}
+	
+	/**
+	 * Creates a new union layout with the same subtypes, writing the tags with the specified layout.
+	 *
+	 * @param tagLayout The layout of the tags, such as {@link Layout#ofUnsignedByte} or {@link Layout#ofVarInt}
+	 * @return A new union layout with the specified tag layout
+	 * @throws IllegalArgumentException If a registered tag doesn't fit in the layout
+	 * @since 1.3.0
+	 */
+	public UnionLayout<T> withTagLayout(Layout.OfInt tagLayout) {
+		int maxTag = LengthPrefixes.maxLength(tagLayout);
+		if (subtypes.length - 1 > maxTag)
+			throw new IllegalArgumentException("Tag " + (subtypes.length - 1) + " does not fit in " + tagLayout);
+		return new UnionLayout<>(baseType, tagLayout, subtypes, layouts);
+	}
+	
+	/**
+	 * Creates a new union layout with an additional subtype, written with the specified layout.
+	 *
+	 * @param <S> The subtype
+	 * @param tag The tag of the subtype
+	 * @param subtype The subtype
+	 * @param layout The layout of the subtype
+	 * @return A new union layout with the subtype
+	 * @throws IllegalArgumentException If the tag is negative, too big, or already used, or if the subtype is already registered
+	 * @since 1.3.0
+	 */
+	public <S extends T> UnionLayout<T> with(int tag, Class<S> subtype, Layout.Of<S> layout) {
+		if (!baseType.isAssignableFrom(subtype))
+			throw new IllegalArgumentException(subtype + " is not a subtype of " + baseType);
+		if (tag < 0 || tag > Math.min(MAX_TAG, LengthPrefixes.maxLength(tagLayout)))
+			throw new IllegalArgumentException("Tag " + tag + " is out of range");
+		if (tag < subtypes.length && subtypes[tag] != null)
+			throw new IllegalArgumentException("Tag " + tag + " is already used by " + subtypes[tag]);
+		if (Arrays.asList(subtypes).contains(subtype))
+			throw new IllegalArgumentException(subtype + " is already registered");
+		int length = Math.max(subtypes.length, tag + 1);
+		Class<?>[] subtypes = Arrays.copyOf(this.subtypes, length);
+		Layout.Of<?>[] layouts = Arrays.copyOf(this.layouts, length);
+		subtypes[tag] = subtype;
+		layouts[tag] = Objects.requireNonNull(layout);
+		return new UnionLayout<>(baseType, tagLayout, subtypes, layouts);
+	}
+	
+	/**
+	 * Creates a new union layout with an additional subtype, written with its class layout.
+	 * The class layout is created for the union, and is not taken from virtual bindings,
+	 * which may include this union itself.
+	 *
+	 * @param <S> The subtype
+	 * @param tag The tag of the subtype
+	 * @param subtype The subtype, which must not be abstract
+	 * @param lookup The method handles lookup to use for accessing the fields of the subtype
+	 * @return A new union layout with the subtype
+	 * @throws IllegalArgumentException If the tag is negative, too big, or already used, or if the subtype is already registered
+	 * @since 1.3.0
+	 */
+	public <S extends T> UnionLayout<T> with(int tag, Class<S> subtype, MethodHandles.Lookup lookup) {
+		return with(tag, subtype, LayoutCompiler.compile(new ObjectLayout<>(subtype, lookup, LayoutRegistry.global()), lookup));
+	}
+	
+	/**
+	 * Returns the tag objects of a class are written with.
+	 *
+	 * @param type The class of the objects
+	 * @return The tag of the class or its nearest registered superclass
+	 * @throws IllegalArgumentException If neither the class nor its superclasses are registered
+	 * @since 1.3.0
+	 */
+	public int tagOf(Class<?> type) {
+		return variant(type).tag;
+	}
+	
+	private Variant variant(Class<?> type) {
+		Variant variant = variants.get(type);
+		if (variant == null) throw new IllegalArgumentException("No tag for " + type + " in " + this);
+		return variant;
+	}
+	
+	/** Returns the layout of a tag, or null if the tag is unknown */
+	@SuppressWarnings("unchecked")
+	private Layout.Of<T> layoutOf(int tag) {
+		return tag >= 0 && tag < layouts.length ? (Layout.Of<T>) layouts[tag] : null;
+	}
+	
+	private Layout.Of<T> layout(int tag) throws IOException {
+		Layout.Of<T> layout = layoutOf(tag);
+		if (layout == null) throw new StreamCorruptedException("Unknown tag " + tag + " of " + baseType.getName());
+		return layout;
+	}
+	
+	@Override
+	public OptionalInt size() {
+		return size;
+	}
+	
+	@Override
+	public void write(T x, DataOutput out) throws IOException {
+		Variant variant = variant(x.getClass());
+		tagLayout.write(variant.tag, out);
+		variant.layout.write(x, out);
+	}
+	
+	@Override
+	public T read(DataInput in) throws IOException {
+		return layout(tagLayout.read(in)).read(in);
+	}
+	
+	@Override
+	public void write(T x, ByteBuffer buffer) {
+		Variant variant = variant(x.getClass());
+		tagLayout.write(variant.tag, buffer);
+		variant.layout.write(x, buffer);
+	}
+	
+	@Override
+	public T read(ByteBuffer buffer) {
+		int tag = tagLayout.read(buffer);
+		Layout.Of<T> layout = layoutOf(tag);
+		if (layout == null) throw new IllegalArgumentException("Unknown tag " + tag + " of " + baseType.getName());
+		return layout.read(buffer);
+	}
+	
+	@Override
+	public int sizeOf(T x) {
+		if (size.isPresent()) return size.getAsInt();
+		Variant variant = variant(x.getClass());
+		return Math.addExact(tagLayout.sizeOf(variant.tag), variant.layout.sizeOf(x));
+	}
+	
+	@Override
+	public void skip(DataInput in) throws IOException {
+		if (size.isPresent()) {
+			Layouts.skipBytes(in, size.getAsInt());
+			return;
+		}
+		layout(tagLayout.read(in)).skip(in);
+	}
+	
+	@Override
+	public void copy(DataInput in, DataOutput out) throws IOException {
+		if (size.isPresent()) {
+			Layouts.transfer(in, out, size.getAsInt());
+			return;
+		}
+		int tag = tagLayout.read(in);
+		tagLayout.write(tag, out);
+		layout(tag).copy(in, out);
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("UnionLayout{").append(baseType.getName());
+		for (int tag = 0; tag < subtypes.length; tag++) {
+			if (subtypes[tag] != null) builder.append(", ").append(tag).append(": ").append(subtypes[tag].getName());
+		}
+		return builder.append('}').toString();
+	}
+}
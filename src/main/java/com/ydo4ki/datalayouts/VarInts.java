@@ -0,0 +1,283 @@
+package com.ydo4ki.datalayouts;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.OptionalInt;
+
+/**
+ * Variable-length encoding of integers: 7 bits per byte, least significant group first,
+ * with the high bit of every byte but the last one set (the LEB128 / protobuf varint format).
+ * Values below 128 take a single byte, any {@code int} takes at most 5 bytes and any {@code long} at most 10.
+ *
+ * <p>Negative numbers always take the maximum number of bytes. ZigZag encoding maps numbers of small magnitude
+ * to small unsigned numbers first ({@code 0, -1, 1, -2, 2, ...} to {@code 0, 1, 2, 3, 4, ...}).</p>
+ *
+ * @see com.ydo4ki.datalayouts.annotation.VarInt
+ * @see com.ydo4ki.datalayouts.annotation.ZigZag
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+final class VarInts {
+	private VarInts() throws InstantiationException {
+		throw new InstantiationException();
+	}
+	
+	static int zigZag(int x) {
+		return (x << 1) ^ (x >> 31);
+	}
+	
+	static int unZigZag(int x) {
+		return (x >>> 1) ^ -(x & 1);
+	}
+	
+	static long zigZag(long x) {
+		return (x << 1) ^ (x >> 63);
+	}
+	
+	static long unZigZag(long x) {
+		return (x >>> 1) ^ -(x & 1);
+	}
+	
+	/** Returns the number of bytes an {@code int} is encoded as */
+	static int sizeOf(int x) {
+		return (31 - Integer.numberOfLeadingZeros(x | 1)) / 7 + 1;
+	}
+	
+	/** Returns the number of bytes a {@code long} is encoded as */
+	static int sizeOf(long x) {
+		return (63 - Long.numberOfLeadingZeros(x | 1)) / 7 + 1;
+	}
+	
+	static void write(int x, DataOutput out) throws IOException {
+		while ((x & ~0x7F) != 0) {
+			out.writeByte(x & 0x7F | 0x80);
+			x >>>= 7;
+		}
+		out.writeByte(x);
+	}
+	
+	static int readInt(DataInput in) throws IOException {
+		int x = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.readUnsignedByte();
+			x |= (b & 0x7F) << shift;
+			if (b < 0x80) return x;
+		}
+		throw new StreamCorruptedException("VarInt is longer than 5 bytes");
+	}
+	
+	static void write(long x, DataOutput out) throws IOException {
+		while ((x & ~0x7FL) != 0) {
+			out.writeByte((int) x & 0x7F | 0x80);
+			x >>>= 7;
+		}
+		out.writeByte((int) x);
+	}
+	
+	static long readLong(DataInput in) throws IOException {
+		long x = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			x |= (long) (b & 0x7F) << shift;
+			if (b < 0x80) return x;
+		}
+		throw new StreamCorruptedException("VarLong is longer than 10 bytes");
+	}
+	
+	static void write(int x, ByteBuffer buffer) {
+		while ((x & ~0x7F) != 0) {
+			buffer.put((byte) (x & 0x7F | 0x80));
+			x >>>= 7;
+		}
+		buffer.put((byte) x);
+	}
+	
+	static int readInt(ByteBuffer buffer) {
+		int x = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = buffer.get() & 0xFF;
+			x |= (b & 0x7F) << shift;
+			if (b < 0x80) return x;
+		}
+		throw new IllegalArgumentException("VarInt is longer than 5 bytes");
+	}
+	
+	static void write(long x, ByteBuffer buffer) {
+		while ((x & ~0x7FL) != 0) {
+			buffer.put((byte) (x & 0x7F | 0x80));
+			x >>>= 7;
+		}
+		buffer.put((byte) x);
+	}
+	
+	static long readLong(ByteBuffer buffer) {
+		long x = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = buffer.get() & 0xFF;
+			x |= (long) (b & 0x7F) << shift;
+			if (b < 0x80) return x;
+		}
+		throw new IllegalArgumentException("VarLong is longer than 10 bytes");
+	}
+	
+	static void write(int x, ByteBuffer buffer, int index) {
+		while ((x & ~0x7F) != 0) {
+			buffer.put(index++, (byte) (x & 0x7F | 0x80));
+			x >>>= 7;
+		}
+		buffer.put(index, (byte) x);
+	}
+	
+	static int readInt(ByteBuffer buffer, int index) {
+		int x = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = buffer.get(index++) & 0xFF;
+			x |= (b & 0x7F) << shift;
+			if (b < 0x80) return x;
+		}
+		throw new IllegalArgumentException("VarInt is longer than 5 bytes");
+	}
+	
+	static void write(long x, ByteBuffer buffer, int index) {
+		while ((x & ~0x7FL) != 0) {
+			buffer.put(index++, (byte) (x & 0x7F | 0x80));
+			x >>>= 7;
+		}
+		buffer.put(index, (byte) x);
+	}
+	
+	static long readLong(ByteBuffer buffer, int index) {
+		long x = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = buffer.get(index++) & 0xFF;
+			x |= (long) (b & 0x7F) << shift;
+			if (b < 0x80) return x;
+		}
+		throw new IllegalArgumentException("VarLong is longer than 10 bytes");
+	}
+	
+	/**
+	 * Layout for int values encoded as varints, optionally ZigZag-encoded first.
+	 *
+	 * @since 1.3.0
+	 */
+	static final class OfInt extends Layout.OfInt {
+		private final boolean zigZag;
+		
+		OfInt(boolean zigZag) {
+			this.zigZag = zigZag;
+		}
+		
+		@Override
+		public OptionalInt size() {
+			return OptionalInt.empty();
+		}
+		
+		@Override
+		public int sizeOf(int x) {
+			return VarInts.sizeOf(zigZag ? zigZag(x) : x);
+		}
+		
+		@Override
+		public void write(int x, DataOutput out) throws IOException {
+			VarInts.write(zigZag ? zigZag(x) : x, out);
+		}
+		
+		@Override
+		public int read(DataInput in) throws IOException {
+			int x = readInt(in);
+			return zigZag ? unZigZag(x) : x;
+		}
+		
+		@Override
+		public void write(int x, ByteBuffer buffer) {
+			VarInts.write(zigZag ? zigZag(x) : x, buffer);
+		}
+		
+		@Override
+		public int read(ByteBuffer buffer) {
+			int x = readInt(buffer);
+			return zigZag ? unZigZag(x) : x;
+		}
+		
+		@Override
+		public void write(int x, ByteBuffer buffer, int index) {
+			VarInts.write(zigZag ? zigZag(x) : x, buffer, index);
+		}
+		
+		@Override
+		public int read(ByteBuffer buffer, int index) {
+			int x = readInt(buffer, index);
+			return zigZag ? unZigZag(x) : x;
+		}
+		
+		@Override
+		public String toString() {
+			return zigZag ? "ZigZagIntLayout" : "VarIntLayout";
+		}
+	}
+	
+	/**
+	 * Layout for long values encoded as varints, optionally ZigZag-encoded first.
+	 *
+	 * @since 1.3.0
+	 */
+	static final class OfLong extends Layout.OfLong {
+		private final boolean zigZag;
+		
+		OfLong(boolean zigZag) {
+			this.zigZag = zigZag;
+		}
+		
+		@Override
+		public OptionalInt size() {
+			return OptionalInt.empty();
+		}
+		
+		@Override
+		public int sizeOf(long x) {
+			return VarInts.sizeOf(zigZag ? zigZag(x) : x);
+		}
+		
+		@Override
+		public void write(long x, DataOutput out) throws IOException {
+			VarInts.write(zigZag ? zigZag(x) : x, out);
+		}
+		
+		@Override
+		public long read(DataInput in) throws IOException {
+			long x = readLong(in);
+			return zigZag ? unZigZag(x) : x;
+		}
+		
+		@Override
+		public void write(long x, ByteBuffer buffer) {
+			VarInts.write(zigZag ? zigZag(x) : x, buffer);
+		}
+		
+		@Override
+		public long read(ByteBuffer buffer) {
+			long x = readLong(buffer);
+			return zigZag ? unZigZag(x) : x;
+		}
+		
+		@Override
+		public void write(long x, ByteBuffer buffer, int index) {
+			VarInts.write(zigZag ? zigZag(x) : x, buffer, index);
+		}
+		
+		@Override
+		public long read(ByteBuffer buffer, int index) {
+			long x = readLong(buffer, index);
+			return zigZag ? unZigZag(x) : x;
+		}
+		
+		@Override
+		public String toString() {
+			return zigZag ? "ZigZagLongLayout" : "VarLongLayout";
+		}
+	}
+}
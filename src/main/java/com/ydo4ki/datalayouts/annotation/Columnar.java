@@ -0,0 +1,32 @@
+package com.ydo4ki.datalayouts.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation for writing arrays of objects column by column.
+ * This annotation can be applied to fields that are arrays of classes with a class layout.
+ * 
+ * <p>Instead of writing the elements one after another, the length of the array is written first,
+ * followed by the values of the first field of all elements, then the values of the second field
+ * of all elements, and so on. Columns of primitives are written and read in bulk, and
+ * the elements are created again from the columns when reading.</p>
+ * 
+ * <p>Example usage:</p>
+ * <pre>
+ * public class Example {
+ *     &#64;Columnar
+ *     private Trade[] trades; // all prices, then all quantities, then all timestamps
+ * }
+ * </pre>
+ *
+ * @since 1.3.0
+ * @author Sulphuris
+ * @see com.ydo4ki.datalayouts.ColumnarLayout
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Columnar {
+}
@@ -0,0 +1,42 @@
+package com.ydo4ki.datalayouts.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation for classes whose layout should be generated at compile time.
+ * When the {@code DataStreamLayouts-processor} annotation processor is on the annotation processor path,
+ * it generates a {@code Layout.Of} implementation named {@code <ClassName>_Layout} (or {@code <Outer>_<Nested>_Layout})
+ * next to the annotated class,
+ * which accesses fields directly instead of through reflection, and binds it when the library is initialized.
+ * 
+ * <p>The generated layout writes exactly the same data as the layout created by {@code Layout.of} at runtime,
+ * including the {@link Encoding}, {@link Length}, {@link NullTerminated}, {@link UnsignedByte} and
+ * {@link UnsignedShort} annotations. Fields must not be private, and the class must either have a constructor
+ * taking all fields in their order (with the same names), or a non-private no-args constructor and no final fields.</p>
+ * 
+ * <p>Example usage:</p>
+ * <pre>
+ * &#64;GenerateLayout
+ * public class Example {
+ *     final int id;
+ *     &#64;NullTerminated
+ *     final String name;
+ *     
+ *     Example(int id, String name) {
+ *         this.id = id;
+ *         this.name = name;
+ *     }
+ * }
+ * </pre>
+ *
+ * @since 1.3.0
+ * @author Sulphuris
+ * @see com.ydo4ki.datalayouts.LayoutBinder
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface GenerateLayout {
+}
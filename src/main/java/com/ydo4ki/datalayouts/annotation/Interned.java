@@ -0,0 +1,37 @@
+package com.ydo4ki.datalayouts.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation for sending repeated strings as indices into a dictionary of the connection.
+ * This annotation can be applied to String fields, after any other annotations of the field.
+ * 
+ * <p>Each string is written as a varint: 0 followed by the string itself if the dictionary doesn't contain it,
+ * which then adds it, or the index of the string plus one otherwise. The dictionary holds a bounded number
+ * of strings and forgets the least recently used one when it is full. Reading returns the same
+ * {@code String} instance for every occurrence of a string held by the dictionary.</p>
+ * 
+ * <p>Such fields can only be written to a {@link com.ydo4ki.datalayouts.DictionaryDataOutput}
+ * and read from a {@link com.ydo4ki.datalayouts.DictionaryDataInput}, which keep the dictionaries.
+ * Their classes can't be written to or read from byte buffers, so they don't work with
+ * {@code FrameCodec}, {@code ResumableDecoder} or the {@code ByteBuffer} methods of {@code PacketDispatcher},
+ * and their size can't be computed in advance with {@code sizeOf}.</p>
+ * 
+ * <p>Example usage:</p>
+ * <pre>
+ * public class Example {
+ *     &#64;Interned
+ *     private String playerName; // an index after the first time
+ * }
+ * </pre>
+ *
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Interned {
+}
@@ -0,0 +1,38 @@
+package com.ydo4ki.datalayouts.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation for marking the constructor that class layouts should use to create objects.
+ * The constructor must take the values of all fields in the order the layout writes them
+ * (fields of the class itself first, then fields of its superclasses).
+ * 
+ * <p>Objects created through a constructor don't need their fields to be set afterwards,
+ * which is faster and keeps final fields final. Without this annotation, such a constructor is
+ * only used if the class is compiled with {@code -parameters} and the parameter names match the field names.</p>
+ * 
+ * <p>Example usage:</p>
+ * <pre>
+ * public class Example {
+ *     private final int id;
+ *     private final String name;
+ *     
+ *     &#64;LayoutConstructor
+ *     public Example(int id, String name) {
+ *         this.id = id;
+ *         this.name = name;
+ *     }
+ * }
+ * </pre>
+ *
+ * @since 1.3.0
+ * @author Sulphuris
+ * @see com.ydo4ki.datalayouts.InstantiationStrategy#ALL_ARGS_CONSTRUCTOR
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.CONSTRUCTOR)
+public @interface LayoutConstructor {
+}
@@ -0,0 +1,57 @@
+package com.ydo4ki.datalayouts.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation for specifying how the length of a string or an array is written.
+ * By default, the length of strings (that are not null-terminated) and arrays (that have no fixed length)
+ * is written as a 4-byte int before the characters or elements.
+ * 
+ * <p>Writing a string or an array that is too long for the prefix throws an {@link IllegalArgumentException}.</p>
+ * 
+ * <p>Example usage:</p>
+ * <pre>
+ * public class Example {
+ *     &#64;LengthPrefix(LengthPrefix.Type.VARINT)
+ *     private String name; // A single byte for names up to 127 characters
+ *     
+ *     &#64;LengthPrefix(LengthPrefix.Type.BYTE)
+ *     private int[] values; // Up to 255 elements
+ * }
+ * </pre>
+ *
+ * @since 1.3.0
+ * @author Sulphuris
+ * @see com.ydo4ki.datalayouts.StringLayout.DynamicStringLayout
+ * @see com.ydo4ki.datalayouts.DynamicArrayLayout
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface LengthPrefix {
+	/**
+	 * The way to write the length.
+	 *
+	 * @return The type of the length prefix
+	 * @since 1.3.0
+	 */
+	Type value();
+	
+	/**
+	 * The ways a length can be written.
+	 *
+	 * @since 1.3.0
+	 */
+	enum Type {
+		/** A {@link VarInt}, 1 to 5 bytes */
+		VARINT,
+		/** An unsigned byte, lengths up to 255 */
+		BYTE,
+		/** An unsigned short, lengths up to 65535 */
+		SHORT,
+		/** An int, 4 bytes */
+		INT
+	}
+}
@@ -0,0 +1,34 @@
+package com.ydo4ki.datalayouts.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation for specifying that an int or long field should be serialized as a varint.
+ * 
+ * <p>A varint stores 7 bits of the value per byte, least significant bits first, and sets the high bit
+ * of every byte except the last one. Values from 0 to 127 take a single byte, values up to 16383 take two,
+ * and so on; an int takes at most 5 bytes and a long at most 10.</p>
+ * 
+ * <p>Negative values always take the maximum number of bytes, so for fields that are often negative
+ * use {@link ZigZag} instead.</p>
+ * 
+ * <p>Example usage:</p>
+ * <pre>
+ * public class Example {
+ *     &#64;VarInt
+ *     private int count; // Usually a single byte
+ * }
+ * </pre>
+ *
+ * @since 1.3.0
+ * @author Sulphuris
+ * @see com.ydo4ki.datalayouts.Layout#ofVarInt
+ * @see com.ydo4ki.datalayouts.Layout#ofVarLong
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface VarInt {
+}
@@ -0,0 +1,30 @@
+package com.ydo4ki.datalayouts.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation for specifying that an int or long field should be serialized as a ZigZag-encoded varint.
+ * 
+ * <p>ZigZag encoding interleaves negative and positive values ({@code 0, -1, 1, -2, 2, ...} become
+ * {@code 0, 1, 2, 3, 4, ...}), which are then stored as a {@link VarInt}. Values from -64 to 63 take a single byte.</p>
+ * 
+ * <p>Example usage:</p>
+ * <pre>
+ * public class Example {
+ *     &#64;ZigZag
+ *     private long delta; // Small deltas of both signs take a byte or two
+ * }
+ * </pre>
+ *
+ * @since 1.3.0
+ * @author Sulphuris
+ * @see com.ydo4ki.datalayouts.Layout#ofZigZagInt
+ * @see com.ydo4ki.datalayouts.Layout#ofZigZagLong
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface ZigZag {
+}
@@ -0,0 +1,40 @@
+package com.ydo4ki.datalayouts;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.RecordComponent;
+
+/**
+ * Record support.
+ * Java 16+ version of this class, records' canonical constructors are found through the record API.
+ *
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+final class Records {
+	private Records() throws InstantiationException {
+		throw new InstantiationException();
+	}
+	
+	/**
+	 * Finds the canonical constructor of a record.
+	 *
+	 * @param clazz The class to find the canonical constructor of
+	 * @param lookup The lookup to use for accessing the constructor
+	 * @return A method handle of the canonical constructor, or null if the class is not a record
+	 * @throws ReflectiveOperationException If the constructor can't be accessed
+	 * @since 1.3.0
+	 */
+	static MethodHandle canonicalConstructor(Class<?> clazz, MethodHandles.Lookup lookup) throws ReflectiveOperationException {
+		if (!clazz.isRecord()) return null;
+		RecordComponent[] components = clazz.getRecordComponents();
+		Class<?>[] types = new Class<?>[components.length];
+		for (int i = 0; i < types.length; i++) {
+			types[i] = components[i].getType();
+		}
+		Constructor<?> constructor = clazz.getDeclaredConstructor(types);
+		constructor.setAccessible(true);
+		return lookup.unreflectConstructor(constructor);
+	}
+}
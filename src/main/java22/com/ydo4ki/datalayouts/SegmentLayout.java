@@ -0,0 +1,568 @@
+package com.ydo4ki.datalayouts;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+import java.util.OptionalInt;
+
+/**
+ * Reads and writes objects of a {@link Layout.Of} directly from and to a {@link MemorySegment}, on or off heap,
+ * without intermediate copies and without {@code Unsafe}. All accesses are bounds-checked by the segment.
+ *
+ * <p>Class layouts with a static size whose fields are primitives are accessed with {@link ValueLayout}s
+ * at offsets computed when this layout is created. Fields of other types (nested objects, fixed-length strings
+ * and arrays and so on) and all other layouts are accessed through a {@link ByteBuffer} view of the segment,
+ * with the {@code ByteBuffer} methods of the layout.</p>
+ *
+ * <p>This class only exists in the Java 22+ part of the multi-release jar.</p>
+ *
+ * @param <T> The type of data this layout represents
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+public final class SegmentLayout<T> {
+	private final Layout.Of<T> layout;
+	private final ByteOrder order;
+	private final OptionalInt size;
+	/** Null if the layout is not a static-size class layout */
+	private final Fields<T> fields;
+	
+	private SegmentLayout(Layout.Of<T> layout, ByteOrder order) {
+		this.layout = Objects.requireNonNull(layout, "layout is null");
+		this.order = Objects.requireNonNull(order, "order is null");
+		this.size = layout.size();
+		this.fields = Fields.of(layout, order);
+	}
+	
+	/**
+	 * Creates a segment layout that reads and writes values in big-endian byte order,
+	 * so the bytes are the same as the ones written to a {@link java.io.DataOutput}.
+	 *
+	 * @param <T> The type of data the layout represents
+	 * @param layout The layout to read and write values with
+	 * @return A segment layout for the specified layout
+	 * @since 1.3.0
+	 */
+	public static <T> SegmentLayout<T> of(Layout.Of<T> layout) {
+		return new SegmentLayout<>(layout, ByteOrder.BIG_ENDIAN);
+	}
+	
+	/**
+	 * Creates a segment layout that reads and writes values in the specified byte order.
+	 *
+	 * @param <T> The type of data the layout represents
+	 * @param layout The layout to read and write values with
+	 * @param order The byte order of primitive values
+	 * @return A segment layout for the specified layout
+	 * @since 1.3.0
+	 */
+	public static <T> SegmentLayout<T> of(Layout.Of<T> layout, ByteOrder order) {
+		return new SegmentLayout<>(layout, order);
+	}
+	
+	/**
+	 * Returns the layout values are read and written with.
+	 *
+	 * @return The layout
+	 * @since 1.3.0
+	 */
+	public Layout.Of<T> layout() {
+		return layout;
+	}
+	
+	/**
+	 * Returns the byte order of primitive values.
+	 *
+	 * @return The byte order
+	 * @since 1.3.0
+	 */
+	public ByteOrder order() {
+		return order;
+	}
+	
+	/**
+	 * Returns the size of the layout in bytes, or empty if the size is dynamic.
+	 *
+	 * @return The size in bytes, or empty if the size is dynamic
+	 * @since 1.3.0
+	 */
+	public OptionalInt size() {
+		return size;
+	}
+	
+	/**
+	 * Writes an object to a memory segment at the specified offset.
+	 *
+	 * @param x The object to write
+	 * @param segment The segment to write to
+	 * @param offset The offset in the segment to start writing at
+	 * @return The number of bytes written
+	 * @throws IndexOutOfBoundsException If the object does not fit in the segment at the offset
+	 * @throws UnsupportedOperationException If the segment is read-only
+	 * @since 1.3.0
+	 */
+	public long write(T x, MemorySegment segment, long offset) {
+		if (size.isPresent()) {
+			// fail before anything is written
+			Objects.checkFromIndexSize(offset, size.getAsInt(), segment.byteSize());
+			if (fields != null) {
+				fields.write(x, segment, offset);
+				return size.getAsInt();
+			}
+		}
+		ByteBuffer buffer = view(segment, offset);
+		try {
+			layout.write(x, buffer);
+		} catch (BufferOverflowException e) {
+			throw new IndexOutOfBoundsException("Out of bounds of " + segment + " at offset " + offset);
+		}
+		return buffer.position();
+	}
+	
+	/**
+	 * Reads an object from a memory segment at the specified offset.
+	 *
+	 * @param segment The segment to read from
+	 * @param offset The offset in the segment to start reading at
+	 * @return The read object
+	 * @throws IndexOutOfBoundsException If the object does not fit in the segment at the offset
+	 * @since 1.3.0
+	 */
+	public T read(MemorySegment segment, long offset) {
+		if (size.isPresent()) {
+			Objects.checkFromIndexSize(offset, size.getAsInt(), segment.byteSize());
+			if (fields != null) return fields.read(segment, offset);
+		}
+		try {
+			return layout.read(view(segment, offset));
+		} catch (BufferUnderflowException e) {
+			throw new IndexOutOfBoundsException("Out of bounds of " + segment + " at offset " + offset);
+		}
+	}
+	
+	/**
+	 * Returns a byte buffer view of a segment starting at the offset, limited by the static size if there is one.
+	 * Buffers are indexed by int, so at most {@link Integer#MAX_VALUE} bytes are visible.
+	 */
+	private ByteBuffer view(MemorySegment segment, long offset) {
+		long length = size.isPresent() ? size.getAsInt() : Math.min(segment.byteSize() - offset, Integer.MAX_VALUE);
+		return segment.asSlice(offset, length).asByteBuffer().order(order);
+	}
+	
+	@Override
+	public String toString() {
+		return "SegmentLayout{" +
+				"layout=" + layout +
+				", order=" + order +
+				'}';
+	}
+	
+	
+	/**
+	 * Fields of a static-size class layout at precomputed offsets.
+	 *
+	 * @param <T> The type of object the layout represents
+	 * @since 1.3.0
+	 */
+	private static final class Fields<T> {
+		private final ObjectLayout<T> layout;
+		private final FieldAccess[] access;
+		/** Either {@code ()Object} or {@code (Object[])Object}, if the layout constructs objects with all their fields */
+		private final MethodHandle instantiator;
+		
+		private Fields(ObjectLayout<T> layout, FieldAccess[] access) {
+			this.layout = layout;
+			this.access = access;
+			MethodHandle instantiator = layout.instantiator();
+			this.instantiator = layout.constructs()
+					? instantiator.asSpreader(Object[].class, access.length).asType(MethodType.methodType(Object.class, Object[].class))
+					: instantiator.asType(MethodType.methodType(Object.class));
+		}
+		
+		/**
+		 * Returns the fields of a class layout, or null if the layout is not a class layout or has no static size.
+		 */
+		static <T> Fields<T> of(Layout.Of<T> layout, ByteOrder order) {
+			if (layout instanceof GeneratedLayout) layout = ((GeneratedLayout<T>) layout).fallback();
+			if (!(layout instanceof ObjectLayout) || !layout.size().isPresent()) return null;
+			ObjectLayout<T> objectLayout = (ObjectLayout<T>) layout;
+			int count = objectLayout.fieldsCount();
+			FieldAccess[] access = new FieldAccess[count];
+			long offset = 0;
+			for (int i = 0; i < count; i++) {
+				MethodHandle getter = objectLayout.getter(i);
+				MethodHandle setter = objectLayout.constructs() ? null : objectLayout.setter(i);
+				access[i] = FieldAccess.of(objectLayout.fieldLayout(i), offset, order,
+						getter.asType(getter.type().changeParameterType(0, Object.class)),
+						setter == null ? null : setter.asType(setter.type().changeParameterType(0, Object.class)));
+				offset += objectLayout.fieldLayout(i).size().getAsInt();
+			}
+			return new Fields<>(objectLayout, access);
+		}
+		
+		void write(T x, MemorySegment segment, long offset) {
+			try {
+				for (FieldAccess field : access) {
+					field.write(x, segment, offset);
+				}
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new RuntimeException(layout.toString(), e);
+			}
+		}
+		
+		@SuppressWarnings("unchecked")
+		T read(MemorySegment segment, long offset) {
+			try {
+				if (layout.constructs()) {
+					Object[] values = new Object[access.length];
+					for (int i = 0; i < values.length; i++) {
+						values[i] = access[i].read(segment, offset);
+					}
+					return (T) instantiator.invokeExact(values);
+				}
+				
+				Object newInstance = instantiator.invokeExact();
+				for (FieldAccess field : access) {
+					field.read(newInstance, segment, offset);
+				}
+				return (T) newInstance;
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new RuntimeException(layout.toString(), e);
+			}
+		}
+	}
+	
+	/**
+	 * Access to a single field of an object in a segment.
+	 * The getter is {@code (Object)F}, and the setter is {@code (Object, F)void} or null if the object
+	 * is created with all its fields.
+	 *
+	 * @since 1.3.0
+	 */
+	private abstract static class FieldAccess {
+		final long offset;
+		final MethodHandle getter;
+		final MethodHandle setter;
+		
+		FieldAccess(long offset, MethodHandle getter, MethodHandle setter) {
+			this.offset = offset;
+			this.getter = getter;
+			this.setter = setter;
+		}
+		
+		/** Writes the field of an object to the segment */
+		abstract void write(Object x, MemorySegment segment, long base) throws Throwable;
+		
+		/** Reads the field from the segment, boxed if it's primitive */
+		abstract Object read(MemorySegment segment, long base) throws Throwable;
+		
+		/** Reads the field from the segment and sets it on an object */
+		abstract void read(Object x, MemorySegment segment, long base) throws Throwable;
+		
+		static FieldAccess of(Layout<?> layout, long offset, ByteOrder order, MethodHandle getter, MethodHandle setter) {
+			// subclasses of the primitive layouts may change the format, so only the exact classes are mapped
+			Class<?> type = layout.getClass();
+			if (type == Layout.OfByte.class)    return new OfByte(offset, getter, setter);
+			if (type == Layout.OfBoolean.class) return new OfBoolean(offset, getter, setter);
+			if (type == Layout.OfShort.class)   return new OfShort(offset, order, getter, setter);
+			if (type == Layout.OfChar.class)    return new OfChar(offset, order, getter, setter);
+			if (type == Layout.OfInt.class)     return new OfInt(offset, order, getter, setter);
+			if (type == Layout.OfFloat.class)   return new OfFloat(offset, order, getter, setter);
+			if (type == Layout.OfLong.class)    return new OfLong(offset, order, getter, setter);
+			if (type == Layout.OfDouble.class)  return new OfDouble(offset, order, getter, setter);
+			if (layout == Layout.ofUnsignedByte)  return new OfUnsignedByte(offset, getter, setter);
+			if (layout == Layout.ofUnsignedShort) return new OfUnsignedShort(offset, order, getter, setter);
+			return new OfObject(layout.asObjectLayout(), offset, order, getter, setter);
+		}
+	}
+	
+	private static final class OfByte extends FieldAccess {
+		OfByte(long offset, MethodHandle getter, MethodHandle setter) {
+			super(offset, getter.asType(MethodType.methodType(byte.class, Object.class)),
+					setter == null ? null : setter.asType(MethodType.methodType(void.class, Object.class, byte.class)));
+		}
+		
+		@Override
+		void write(Object x, MemorySegment segment, long base) throws Throwable {
+			segment.set(ValueLayout.JAVA_BYTE, base + offset, (byte) getter.invokeExact(x));
+		}
+		
+		@Override
+		Object read(MemorySegment segment, long base) {
+			return segment.get(ValueLayout.JAVA_BYTE, base + offset);
+		}
+		
+		@Override
+		void read(Object x, MemorySegment segment, long base) throws Throwable {
+			setter.invokeExact(x, segment.get(ValueLayout.JAVA_BYTE, base + offset));
+		}
+	}
+	
+	private static final class OfBoolean extends FieldAccess {
+		OfBoolean(long offset, MethodHandle getter, MethodHandle setter) {
+			super(offset, getter.asType(MethodType.methodType(boolean.class, Object.class)),
+					setter == null ? null : setter.asType(MethodType.methodType(void.class, Object.class, boolean.class)));
+		}
+		
+		// same as DataOutput: one byte, and everything but zero is true
+		@Override
+		void write(Object x, MemorySegment segment, long base) throws Throwable {
+			segment.set(ValueLayout.JAVA_BYTE, base + offset, (boolean) getter.invokeExact(x) ? (byte) 1 : (byte) 0);
+		}
+		
+		@Override
+		Object read(MemorySegment segment, long base) {
+			return segment.get(ValueLayout.JAVA_BYTE, base + offset) != 0;
+		}
+		
+		@Override
+		void read(Object x, MemorySegment segment, long base) throws Throwable {
+			setter.invokeExact(x, segment.get(ValueLayout.JAVA_BYTE, base + offset) != 0);
+		}
+	}
+	
+	private static final class OfUnsignedByte extends FieldAccess {
+		OfUnsignedByte(long offset, MethodHandle getter, MethodHandle setter) {
+			super(offset, getter.asType(MethodType.methodType(int.class, Object.class)),
+					setter == null ? null : setter.asType(MethodType.methodType(void.class, Object.class, int.class)));
+		}
+		
+		@Override
+		void write(Object x, MemorySegment segment, long base) throws Throwable {
+			segment.set(ValueLayout.JAVA_BYTE, base + offset, (byte) (int) getter.invokeExact(x));
+		}
+		
+		@Override
+		Object read(MemorySegment segment, long base) {
+			return segment.get(ValueLayout.JAVA_BYTE, base + offset) & 0xFF;
+		}
+		
+		@Override
+		void read(Object x, MemorySegment segment, long base) throws Throwable {
+			setter.invokeExact(x, segment.get(ValueLayout.JAVA_BYTE, base + offset) & 0xFF);
+		}
+	}
+	
+	private static final class OfShort extends FieldAccess {
+		private final ValueLayout.OfShort value;
+		
+		OfShort(long offset, ByteOrder order, MethodHandle getter, MethodHandle setter) {
+			super(offset, getter.asType(MethodType.methodType(short.class, Object.class)),
+					setter == null ? null : setter.asType(MethodType.methodType(void.class, Object.class, short.class)));
+			this.value = ValueLayout.JAVA_SHORT_UNALIGNED.withOrder(order);
+		}
+		
+		@Override
+		void write(Object x, MemorySegment segment, long base) throws Throwable {
+			segment.set(value, base + offset, (short) getter.invokeExact(x));
+		}
+		
+		@Override
+		Object read(MemorySegment segment, long base) {
+			return segment.get(value, base + offset);
+		}
+		
+		@Override
+		void read(Object x, MemorySegment segment, long base) throws Throwable {
+			setter.invokeExact(x, segment.get(value, base + offset));
+		}
+	}
+	
+	private static final class OfUnsignedShort extends FieldAccess {
+		private final ValueLayout.OfShort value;
+		
+		OfUnsignedShort(long offset, ByteOrder order, MethodHandle getter, MethodHandle setter) {
+			super(offset, getter.asType(MethodType.methodType(int.class, Object.class)),
+					setter == null ? null : setter.asType(MethodType.methodType(void.class, Object.class, int.class)));
+			this.value = ValueLayout.JAVA_SHORT_UNALIGNED.withOrder(order);
+		}
+		
+		@Override
+		void write(Object x, MemorySegment segment, long base) throws Throwable {
+			segment.set(value, base + offset, (short) (int) getter.invokeExact(x));
+		}
+		
+		@Override
+		Object read(MemorySegment segment, long base) {
+			return segment.get(value, base + offset) & 0xFFFF;
+		}
+		
+		@Override
+		void read(Object x, MemorySegment segment, long base) throws Throwable {
+			setter.invokeExact(x, segment.get(value, base + offset) & 0xFFFF);
+		}
+	}
+	
+	private static final class OfChar extends FieldAccess {
+		private final ValueLayout.OfChar value;
+		
+		OfChar(long offset, ByteOrder order, MethodHandle getter, MethodHandle setter) {
+			super(offset, getter.asType(MethodType.methodType(char.class, Object.class)),
+					setter == null ? null : setter.asType(MethodType.methodType(void.class, Object.class, char.class)));
+			this.value = ValueLayout.JAVA_CHAR_UNALIGNED.withOrder(order);
+		}
+		
+		@Override
+		void write(Object x, MemorySegment segment, long base) throws Throwable {
+			segment.set(value, base + offset, (char) getter.invokeExact(x));
+		}
+		
+		@Override
+		Object read(MemorySegment segment, long base) {
+			return segment.get(value, base + offset);
+		}
+		
+		@Override
+		void read(Object x, MemorySegment segment, long base) throws Throwable {
+			setter.invokeExact(x, segment.get(value, base + offset));
+		}
+	}
+	
+	private static final class OfInt extends FieldAccess {
+		private final ValueLayout.OfInt value;
+		
+		OfInt(long offset, ByteOrder order, MethodHandle getter, MethodHandle setter) {
+			super(offset, getter.asType(MethodType.methodType(int.class, Object.class)),
+					setter == null ? null : setter.asType(MethodType.methodType(void.class, Object.class, int.class)));
+			this.value = ValueLayout.JAVA_INT_UNALIGNED.withOrder(order);
+		}
+		
+		@Override
+		void write(Object x, MemorySegment segment, long base) throws Throwable {
+			segment.set(value, base + offset, (int) getter.invokeExact(x));
+		}
+		
+		@Override
+		Object read(MemorySegment segment, long base) {
+			return segment.get(value, base + offset);
+		}
+		
+		@Override
+		void read(Object x, MemorySegment segment, long base) throws Throwable {
+			setter.invokeExact(x, segment.get(value, base + offset));
+		}
+	}
+	
+	private static final class OfFloat extends FieldAccess {
+		private final ValueLayout.OfInt value;
+		
+		OfFloat(long offset, ByteOrder order, MethodHandle getter, MethodHandle setter) {
+			super(offset, getter.asType(MethodType.methodType(float.class, Object.class)),
+					setter == null ? null : setter.asType(MethodType.methodType(void.class, Object.class, float.class)));
+			this.value = ValueLayout.JAVA_INT_UNALIGNED.withOrder(order);
+		}
+		
+		// not JAVA_FLOAT: same as DataOutputStream, NaNs are collapsed
+		@Override
+		void write(Object x, MemorySegment segment, long base) throws Throwable {
+			segment.set(value, base + offset, Float.floatToIntBits((float) getter.invokeExact(x)));
+		}
+		
+		@Override
+		Object read(MemorySegment segment, long base) {
+			return Float.intBitsToFloat(segment.get(value, base + offset));
+		}
+		
+		@Override
+		void read(Object x, MemorySegment segment, long base) throws Throwable {
+			setter.invokeExact(x, Float.intBitsToFloat(segment.get(value, base + offset)));
+		}
+	}
+	
+	private static final class OfLong extends FieldAccess {
+		private final ValueLayout.OfLong value;
+		
+		OfLong(long offset, ByteOrder order, MethodHandle getter, MethodHandle setter) {
+			super(offset, getter.asType(MethodType.methodType(long.class, Object.class)),
+					setter == null ? null : setter.asType(MethodType.methodType(void.class, Object.class, long.class)));
+			this.value = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(order);
+		}
+		
+		@Override
+		void write(Object x, MemorySegment segment, long base) throws Throwable {
+			segment.set(value, base + offset, (long) getter.invokeExact(x));
+		}
+		
+		@Override
+		Object read(MemorySegment segment, long base) {
+			return segment.get(value, base + offset);
+		}
+		
+		@Override
+		void read(Object x, MemorySegment segment, long base) throws Throwable {
+			setter.invokeExact(x, segment.get(value, base + offset));
+		}
+	}
+	
+	private static final class OfDouble extends FieldAccess {
+		private final ValueLayout.OfLong value;
+		
+		OfDouble(long offset, ByteOrder order, MethodHandle getter, MethodHandle setter) {
+			super(offset, getter.asType(MethodType.methodType(double.class, Object.class)),
+					setter == null ? null : setter.asType(MethodType.methodType(void.class, Object.class, double.class)));
+			this.value = ValueLayout.JAVA_LONG_UNALIGNED.withOrder(order);
+		}
+		
+		@Override
+		void write(Object x, MemorySegment segment, long base) throws Throwable {
+			segment.set(value, base + offset, Double.doubleToLongBits((double) getter.invokeExact(x)));
+		}
+		
+		@Override
+		Object read(MemorySegment segment, long base) {
+			return Double.longBitsToDouble(segment.get(value, base + offset));
+		}
+		
+		@Override
+		void read(Object x, MemorySegment segment, long base) throws Throwable {
+			setter.invokeExact(x, Double.longBitsToDouble(segment.get(value, base + offset)));
+		}
+	}
+	
+	/**
+	 * A field of any other static-size layout, accessed through a byte buffer view of its bytes.
+	 */
+	private static final class OfObject extends FieldAccess {
+		private final Layout.Of<Object> layout;
+		private final int size;
+		private final ByteOrder order;
+		
+		@SuppressWarnings("unchecked")
+		OfObject(Layout.Of<?> layout, long offset, ByteOrder order, MethodHandle getter, MethodHandle setter) {
+			super(offset, getter.asType(MethodType.methodType(Object.class, Object.class)),
+					setter == null ? null : setter.asType(MethodType.methodType(void.class, Object.class, Object.class)));
+			this.layout = (Layout.Of<Object>) layout;
+			this.size = layout.size().getAsInt();
+			this.order = order;
+		}
+		
+		private ByteBuffer view(MemorySegment segment, long base) {
+			return segment.asSlice(base + offset, size).asByteBuffer().order(order);
+		}
+		
+		@Override
+		void write(Object x, MemorySegment segment, long base) throws Throwable {
+			layout.write((Object) getter.invokeExact(x), view(segment, base));
+		}
+		
+		@Override
+		Object read(MemorySegment segment, long base) {
+			return layout.read(view(segment, base));
+		}
+		
+		@Override
+		void read(Object x, MemorySegment segment, long base) throws Throwable {
+			setter.invokeExact(x, layout.read(view(segment, base)));
+		}
+	}
+}
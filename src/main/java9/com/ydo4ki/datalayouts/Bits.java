@@ -0,0 +1,73 @@
+package com.ydo4ki.datalayouts;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Big-endian primitive access to byte arrays, in the format of {@link java.io.DataOutput}.
+ * Java 9+ version of this class, values are accessed through byte array view {@code VarHandle}s,
+ * which are compiled to single (byte-swapped) loads and stores.
+ *
+ * @since 1.3.0
+ * @author Sulphuris
+ */
+final class Bits {
+	private Bits() throws InstantiationException {
+		throw new InstantiationException();
+	}
+	
+	private static final VarHandle SHORT = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle CHAR = MethodHandles.byteArrayViewVarHandle(char[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+	
+	static short getShort(byte[] b, int off) {
+		return (short) SHORT.get(b, off);
+	}
+	
+	static char getChar(byte[] b, int off) {
+		return (char) CHAR.get(b, off);
+	}
+	
+	static int getInt(byte[] b, int off) {
+		return (int) INT.get(b, off);
+	}
+	
+	static long getLong(byte[] b, int off) {
+		return (long) LONG.get(b, off);
+	}
+	
+	static float getFloat(byte[] b, int off) {
+		return Float.intBitsToFloat((int) INT.get(b, off));
+	}
+	
+	static double getDouble(byte[] b, int off) {
+		return Double.longBitsToDouble((long) LONG.get(b, off));
+	}
+	
+	static void putShort(byte[] b, int off, short x) {
+		SHORT.set(b, off, x);
+	}
+	
+	static void putChar(byte[] b, int off, char x) {
+		CHAR.set(b, off, x);
+	}
+	
+	static void putInt(byte[] b, int off, int x) {
+		INT.set(b, off, x);
+	}
+	
+	static void putLong(byte[] b, int off, long x) {
+		LONG.set(b, off, x);
+	}
+	
+	// not the float[] view: same as DataOutputStream, NaNs are collapsed
+	static void putFloat(byte[] b, int off, float x) {
+		INT.set(b, off, Float.floatToIntBits(x));
+	}
+	
+	static void putDouble(byte[] b, int off, double x) {
+		LONG.set(b, off, Double.doubleToLongBits(x));
+	}
+}
@@ -0,0 +1,150 @@
+package com.ydo4ki.datalayouts;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Writing and reading runs of objects, which must produce and consume the same bytes as one object at a time.
+ *
+ * @author Sulphuris
+ */
+class BatchTest {
+	/** 12 bytes, so the objects do not line up with the end of the batch buffer */
+	public static class Vertex {
+		public float x, y, z;
+		
+		public Vertex() {
+		}
+		
+		Vertex(int i) {
+			x = i;
+			y = -i;
+			z = i * 0.5f;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Vertex)) return false;
+			Vertex v = (Vertex) o;
+			return x == v.x && y == v.y && z == v.z;
+		}
+		
+		@Override
+		public int hashCode() {
+			return Float.floatToIntBits(x) * 31 + Float.floatToIntBits(z);
+		}
+	}
+	
+	private final Layout.Of<Vertex> vertices = new LayoutRegistry().of(Vertex.class, MethodHandles.lookup());
+	
+	private static <T> byte[] oneByOne(Layout.Of<T> layout, List<T> xs) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		for (T x : xs) layout.write(x, out);
+		return bytes.toByteArray();
+	}
+	
+	@Test
+	void runsOfStaticObjectsAreTheBytesOfTheObjects() throws IOException {
+		List<Vertex> mesh = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) mesh.add(new Vertex(i));
+		byte[] expected = oneByOne(vertices, mesh);
+		
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		vertices.writeAll(mesh, new DataOutputStream(stream));
+		assertArrayEquals(expected, stream.toByteArray());
+		
+		// written straight into the array, after what is already there
+		ByteArrayDataOutput direct = new ByteArrayDataOutput();
+		direct.writeShort(7);
+		vertices.writeAll(mesh.toArray(new Vertex[0]), direct);
+		assertArrayEquals(expected, Arrays.copyOfRange(direct.toByteArray(), 2, direct.size()));
+		
+		Vertex[] read = new Vertex[2001];
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(stream.toByteArray()));
+		vertices.readAll(2000, in, read);
+		assertEquals(mesh, Arrays.asList(read).subList(0, 2000));
+		assertNull(read[2000]);
+		assertEquals(-1, in.read());
+		
+		ByteArrayDataInput input = new ByteArrayDataInput(direct.toByteArray());
+		assertEquals(7, input.readShort());
+		List<Vertex> consumed = new ArrayList<>();
+		vertices.readAll(1500, input, consumed::add);
+		assertEquals(mesh.subList(0, 1500), consumed);
+		assertEquals(mesh.get(1500), vertices.read(input), "the input is positioned after the run");
+	}
+	
+	@Test
+	void dynamicAndLargeObjectsAreWrittenOneByOne() throws IOException {
+		List<String> names = Arrays.asList("", "north", "south-east", "été");
+		byte[] expected = oneByOne(Layout.ofString, names);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Layout.ofString.writeAll(names, new DataOutputStream(bytes));
+		assertArrayEquals(expected, bytes.toByteArray());
+		String[] back = new String[4];
+		Layout.ofString.readAll(4, new ByteArrayDataInput(expected), back);
+		assertEquals(names, Arrays.asList(back));
+		
+		// larger than half of the batch buffer
+		ArrayLayout<long[]> block = Layout.array(long[].class, 600);
+		List<long[]> blocks = Arrays.asList(new long[600], new long[]{1, 2, 3}, new long[600]);
+		blocks.get(2)[599] = -1;
+		ByteArrayDataOutput out = new ByteArrayDataOutput();
+		block.writeAll(blocks, out);
+		assertArrayEquals(oneByOne(block, blocks), out.toByteArray());
+		List<long[]> read = new ArrayList<>();
+		block.readAll(3, new DataInputStream(new ByteArrayInputStream(out.toByteArray())), read::add);
+		assertEquals(3, read.get(1)[2]);
+		assertEquals(-1, read.get(2)[599]);
+	}
+	
+	@Test
+	void consumersMayReadRunsThemselves() throws IOException {
+		ByteArrayOutputStream outer = new ByteArrayOutputStream();
+		ByteArrayOutputStream inner = new ByteArrayOutputStream();
+		List<Vertex> mesh = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) mesh.add(new Vertex(i));
+		vertices.writeAll(mesh, new DataOutputStream(outer));
+		vertices.writeAll(mesh, new DataOutputStream(inner));
+		
+		DataInputStream innerIn = new DataInputStream(new ByteArrayInputStream(inner.toByteArray()));
+		List<Vertex> pairs = new ArrayList<>();
+		vertices.readAll(1000, new DataInputStream(new ByteArrayInputStream(outer.toByteArray())), v -> {
+			pairs.add(v);
+			try {
+				vertices.readAll(1, innerIn, pairs::add);
+			} catch (IOException e) {
+				throw new AssertionError(e);
+			}
+		});
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(mesh.get(i), pairs.get(2 * i));
+			assertEquals(mesh.get(i), pairs.get(2 * i + 1));
+		}
+	}
+	
+	@Test
+	void countsAreChecked() throws IOException {
+		Vertex[] two = new Vertex[2];
+		ByteArrayDataOutput out = new ByteArrayDataOutput();
+		vertices.writeAll(new Vertex[]{new Vertex(1), new Vertex(2)}, out);
+		byte[] bytes = out.toByteArray();
+		assertThrows(IndexOutOfBoundsException.class, () -> vertices.readAll(3, new ByteArrayDataInput(bytes), two));
+		assertThrows(IndexOutOfBoundsException.class, () -> vertices.readAll(-1, new ByteArrayDataInput(bytes), two));
+		assertThrows(IllegalArgumentException.class, () -> vertices.readAll(-1, new ByteArrayDataInput(bytes), v -> {}));
+		assertThrows(EOFException.class, () -> vertices.readAll(3, new DataInputStream(new ByteArrayInputStream(bytes)), v -> {}));
+	}
+}
@@ -0,0 +1,49 @@
+package com.ydo4ki.datalayouts;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Bounds of {@link ByteArrayDataInput} and {@link ByteArrayDataOutput}.
+ *
+ * @author Sulphuris
+ */
+class ByteArrayDataTest {
+	@Test
+	void roundTrip() throws IOException {
+		ByteArrayDataOutput out = new ByteArrayDataOutput(0);
+		out.writeInt(42);
+		out.writeLong(-1);
+		out.writeUTF("héllo");
+		ByteArrayDataInput in = new ByteArrayDataInput(out.toByteArray());
+		assertEquals(42, in.readInt());
+		assertEquals(-1, in.readLong());
+		assertEquals("héllo", in.readUTF());
+		assertEquals(0, in.remaining());
+	}
+	
+	@Test
+	void negativeLengthDoesNotMoveBackwards() throws IOException {
+		ByteArrayDataInput in = new ByteArrayDataInput(new byte[16]);
+		in.readLong();
+		assertThrows(StreamCorruptedException.class, () -> in.take(-8));
+		assertEquals(8, in.position());
+		assertThrows(EOFException.class, () -> in.take(9));
+		assertEquals(8, in.position());
+	}
+	
+	@Test
+	void reserveChecksOverflowBeforeGrowing() {
+		ByteArrayDataOutput out = new ByteArrayDataOutput();
+		out.writeLong(0);
+		out.writeLong(0);
+		assertThrows(OutOfMemoryError.class, () -> out.reserve(Integer.MAX_VALUE));
+		assertThrows(IllegalArgumentException.class, () -> out.reserve(-1));
+		assertEquals(16, out.size());
+	}
+}
@@ -0,0 +1,176 @@
+package com.ydo4ki.datalayouts;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.OptionalInt;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Reading and writing layouts directly from and to byte buffers.
+ *
+ * @author Sulphuris
+ */
+class ByteBufferLayoutTest {
+	public static class Sensor {
+		public UUID id;
+		public short kind;
+		public String name;
+		public float[] calibration;
+	}
+	
+	/** Only implements the stream methods, so its buffer methods go through the adapters */
+	private static final Layout.Of<Long> timestamp = new Layout.Of<Long>() {
+		@Override
+		public void write(Long x, DataOutput out) throws IOException {
+			out.writeInt((int) (x >>> 32));
+			out.writeInt((int) (long) x);
+		}
+		
+		@Override
+		public Long read(DataInput in) throws IOException {
+			return (long) in.readInt() << 32 | in.readInt() & 0xFFFFFFFFL;
+		}
+		
+		@Override
+		public OptionalInt size() {
+			return OptionalInt.of(8);
+		}
+	};
+	
+	@Test
+	void primitivesUseTheByteOrderOfTheBuffer() {
+		for (ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+			ByteBuffer actual = ByteBuffer.allocate(64).order(order);
+			ByteBuffer expected = ByteBuffer.allocate(64).order(order);
+			Layout.ofInt.write(0x01020304, actual);
+			expected.putInt(0x01020304);
+			Layout.ofShort.write((short) -2, actual);
+			expected.putShort((short) -2);
+			Layout.ofChar.write('€', actual);
+			expected.putChar('€');
+			Layout.ofLong.write(Long.MIN_VALUE + 5, actual);
+			expected.putLong(Long.MIN_VALUE + 5);
+			Layout.ofFloat.write(3.5f, actual);
+			expected.putFloat(3.5f);
+			Layout.ofDouble.write(-0.125, actual);
+			expected.putDouble(-0.125);
+			Layout.ofUnsignedShort.write(0xFFFE, actual);
+			expected.putShort((short) 0xFFFE);
+			Layout.ofBoolean.write(true, actual);
+			expected.put((byte) 1);
+			assertArrayEquals(expected.array(), actual.array(), order::toString);
+			
+			actual.flip();
+			assertEquals(0x01020304, Layout.ofInt.read(actual));
+			assertEquals(-2, Layout.ofShort.read(actual));
+			assertEquals('€', Layout.ofChar.read(actual));
+			assertEquals(Long.MIN_VALUE + 5, Layout.ofLong.read(actual));
+			assertEquals(3.5f, Layout.ofFloat.read(actual));
+			assertEquals(-0.125, Layout.ofDouble.read(actual));
+			assertEquals(0xFFFE, Layout.ofUnsignedShort.read(actual));
+			assertTrue(Layout.ofBoolean.read(actual));
+			assertFalse(actual.hasRemaining());
+		}
+	}
+	
+	@Test
+	void absoluteIndicesLeaveThePositionAlone() {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(32).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.position(3);
+		Layout.ofLong.write(0x1122334455667788L, buffer, 10);
+		Layout.ofByte.write((byte) 7, buffer, 0);
+		timestamp.write(42L << 32 | 9, buffer, 20);
+		assertEquals(3, buffer.position());
+		assertEquals(0x88, buffer.get(10) & 0xFF);
+		assertEquals(0x1122334455667788L, Layout.ofLong.read(buffer, 10));
+		assertEquals(7, Layout.ofByte.read(buffer, 0));
+		assertEquals(42L << 32 | 9, (long) timestamp.read(buffer, 20));
+		assertEquals(9, buffer.getInt(24), "the adapters also write in the order of the buffer");
+		assertEquals(3, buffer.position());
+		
+		assertThrows(IndexOutOfBoundsException.class, () -> timestamp.read(buffer, 33));
+		assertThrows(BufferUnderflowException.class, () -> timestamp.read(buffer, 28));
+		assertThrows(BufferOverflowException.class, () -> timestamp.write(0L, buffer, 28));
+	}
+	
+	@Test
+	void objectsWriteWhatTheyWriteToStreams() throws IOException {
+		Layout.Of<Sensor> layout = new LayoutRegistry().of(Sensor.class, MethodHandles.lookup());
+		Sensor sensor = new Sensor();
+		sensor.id = new UUID(0x0123456789ABCDEFL, -1);
+		sensor.kind = 12;
+		sensor.name = "hygrometer";
+		sensor.calibration = new float[]{0.5f, -1, 1e-3f};
+		ByteArrayDataOutput out = new ByteArrayDataOutput();
+		layout.write(sensor, out);
+		byte[] bytes = out.toByteArray();
+		
+		ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 8);
+		buffer.putInt(-1);
+		layout.write(sensor, buffer);
+		assertEquals(4 + bytes.length, buffer.position());
+		byte[] written = new byte[bytes.length];
+		((ByteBuffer) buffer.duplicate().position(4)).get(written);
+		assertArrayEquals(bytes, written);
+		
+		Sensor back = layout.read(buffer, 4);
+		assertEquals(sensor.id, back.id);
+		assertEquals(12, back.kind);
+		assertEquals("hygrometer", back.name);
+		assertArrayEquals(sensor.calibration, back.calibration);
+		
+		buffer.flip().position(4);
+		buffer.limit(buffer.limit() - 1);
+		assertThrows(BufferUnderflowException.class, () -> layout.read(buffer));
+		assertThrows(BufferOverflowException.class, () -> layout.write(sensor, ByteBuffer.allocate(bytes.length - 1)));
+	}
+	
+	@Test
+	void skippedBytesAreZerosInBuffers() {
+		Layout.Of<Void> gap = Layout.skip(5);
+		ByteBuffer buffer = ByteBuffer.allocate(8);
+		buffer.put(new byte[]{9, 9, 9, 9, 9, 9, 9, 9}).clear();
+		buffer.put((byte) 1);
+		gap.write(null, buffer);
+		assertEquals(6, buffer.position());
+		assertArrayEquals(new byte[]{1, 0, 0, 0, 0, 0, 9, 9}, buffer.array());
+		buffer.position(1);
+		assertNull(gap.read(buffer));
+		assertEquals(6, buffer.position());
+		assertThrows(BufferUnderflowException.class, () -> gap.read(buffer));
+	}
+	
+	@Test
+	void streamFailuresAreUnchecked() {
+		Layout.Of<String> failing = new Layout.Of<String>() {
+			@Override
+			public void write(String x, DataOutput out) throws IOException {
+				throw new IOException(x);
+			}
+			
+			@Override
+			public String read(DataInput in) throws IOException {
+				throw new IOException("read");
+			}
+			
+			@Override
+			public OptionalInt size() {
+				return OptionalInt.empty();
+			}
+		};
+		UncheckedIOException e = assertThrows(UncheckedIOException.class, () -> failing.write("write", ByteBuffer.allocate(4)));
+		assertEquals("write", e.getCause().getMessage());
+		assertThrows(UncheckedIOException.class, () -> failing.read(ByteBuffer.allocate(4)));
+	}
+}
@@ -0,0 +1,152 @@
+package com.ydo4ki.datalayouts;
+
+import com.ydo4ki.datalayouts.annotation.Columnar;
+import com.ydo4ki.datalayouts.annotation.LayoutConstructor;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.lang.invoke.MethodHandles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Arrays of objects written column by column.
+ *
+ * @author Sulphuris
+ */
+class ColumnarLayoutTest {
+	public static class Trade {
+		public long price;
+		public int quantity;
+		public String venue;
+	}
+	
+	/** Created through its constructor, from one value of each column */
+	public static class Fix {
+		public final double lat;
+		public final double lon;
+		public final boolean valid;
+		
+		@LayoutConstructor
+		public Fix(double lat, double lon, boolean valid) {
+			this.lat = lat;
+			this.lon = lon;
+			this.valid = valid;
+		}
+	}
+	
+	public static class Track {
+		public String name;
+		@Columnar
+		public Fix[] fixes;
+		public int checksum;
+	}
+	
+	private static Trade trade(long price, int quantity, String venue) {
+		Trade trade = new Trade();
+		trade.price = price;
+		trade.quantity = quantity;
+		trade.venue = venue;
+		return trade;
+	}
+	
+	@Test
+	void fieldsAreWrittenColumnByColumn() throws IOException {
+		ColumnarLayout<Trade> layout = Layout.columnar(Layout.of(Trade.class, MethodHandles.lookup()));
+		Trade[] trades = {trade(101, 5, "XLON"), trade(-7, 0, ""), trade(Long.MAX_VALUE, 1 << 20, "XNYS")};
+		ByteArrayDataOutput expected = new ByteArrayDataOutput();
+		expected.writeInt(3);
+		for (Trade trade : trades) expected.writeLong(trade.price);
+		for (Trade trade : trades) expected.writeInt(trade.quantity);
+		for (Trade trade : trades) Layout.ofString.write(trade.venue, expected);
+		byte[] bytes = expected.toByteArray();
+		
+		ByteArrayDataOutput out = new ByteArrayDataOutput();
+		layout.write(trades, out);
+		assertArrayEquals(bytes, out.toByteArray());
+		assertEquals(bytes.length, layout.sizeOf(trades));
+		
+		Trade[] back = layout.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+		assertEquals(3, back.length);
+		for (int i = 0; i < 3; i++) {
+			assertEquals(trades[i].price, back[i].price);
+			assertEquals(trades[i].quantity, back[i].quantity);
+			assertEquals(trades[i].venue, back[i].venue);
+		}
+		
+		ByteArrayDataOutput copy = new ByteArrayDataOutput();
+		ByteArrayDataInput in = new ByteArrayDataInput(bytes);
+		layout.copy(in, copy);
+		assertArrayEquals(bytes, copy.toByteArray());
+		in = new ByteArrayDataInput(bytes);
+		layout.skip(in);
+		assertEquals(0, in.remaining());
+		
+		out.reset();
+		layout.write(new Trade[0], out);
+		assertEquals(0, layout.read(new ByteArrayDataInput(out.toByteArray())).length);
+	}
+	
+	@Test
+	void columnsAreReadWithoutCreatingTheElements() throws IOException {
+		ColumnarLayout<Trade> layout = Layout.columnar(Layout.of(Trade.class, MethodHandles.lookup()));
+		ByteArrayDataOutput out = new ByteArrayDataOutput();
+		layout.write(new Trade[]{trade(1, 10, "a"), trade(2, 20, "b")}, out);
+		out.writeShort(0x7EEF);
+		
+		ByteArrayDataInput in = new ByteArrayDataInput(out.toByteArray());
+		ColumnarLayout.Columns columns = layout.readColumns(in);
+		assertEquals(0x7EEF, in.readShort());
+		assertEquals(2, columns.length());
+		assertEquals(3, columns.columnsCount());
+		assertEquals("quantity", columns.name(1));
+		assertArrayEquals(new long[]{1, 2}, columns.column("price", long[].class));
+		assertArrayEquals(new int[]{10, 20}, (int[]) columns.column(1));
+		assertArrayEquals(new String[]{"a", "b"}, columns.column("venue", String[].class));
+		assertThrows(ClassCastException.class, () -> columns.column("price", int[].class));
+		assertThrows(IllegalArgumentException.class, () -> columns.column("side", byte[].class));
+	}
+	
+	@Test
+	void annotatedFieldsAreColumnar() throws IOException {
+		Layout.Of<Track> layout = new LayoutRegistry().of(Track.class, MethodHandles.lookup());
+		Track track = new Track();
+		track.name = "ridge";
+		track.fixes = new Fix[]{new Fix(45.5, 6.25, true), new Fix(45.75, 6.5, false)};
+		track.checksum = 99;
+		ByteArrayDataOutput out = new ByteArrayDataOutput();
+		layout.write(track, out);
+		
+		ByteArrayDataInput in = new ByteArrayDataInput(out.toByteArray());
+		Layout.ofString.skip(in);
+		assertEquals(2, in.readInt());
+		assertEquals(45.5, in.readDouble(), "all latitudes come first");
+		assertEquals(45.75, in.readDouble());
+		
+		Track back = layout.read(new ByteArrayDataInput(out.toByteArray()));
+		assertEquals("ridge", back.name);
+		assertEquals(6.5, back.fixes[1].lon);
+		assertTrue(back.fixes[0].valid);
+		assertFalse(back.fixes[1].valid);
+		assertEquals(99, back.checksum);
+		assertEquals(out.size(), layout.sizeOf(track));
+		
+		assertThrows(IllegalArgumentException.class, () -> Layout.columnar(Layout.ofString));
+	}
+	
+	@Test
+	void negativeLengthsAreRejected() throws IOException {
+		ColumnarLayout<Trade> layout = Layout.columnar(Layout.of(Trade.class, MethodHandles.lookup()));
+		ByteArrayDataOutput out = new ByteArrayDataOutput();
+		out.writeInt(-2);
+		out.write(new byte[16]); // would be taken as the next value
+		byte[] bytes = out.toByteArray();
+		assertThrows(StreamCorruptedException.class, () -> layout.read(new DataInputStream(new ByteArrayInputStream(bytes))));
+		assertThrows(StreamCorruptedException.class, () -> layout.readColumns(new ByteArrayDataInput(bytes)));
+		assertThrows(StreamCorruptedException.class, () -> layout.skip(new DataInputStream(new ByteArrayInputStream(bytes))));
+		assertThrows(StreamCorruptedException.class, () -> layout.copy(new ByteArrayDataInput(bytes), new ByteArrayDataOutput()));
+	}
+}
@@ -0,0 +1,73 @@
+package com.ydo4ki.datalayouts;
+
+import com.ydo4ki.datalayouts.annotation.UnsignedByte;
+import com.ydo4ki.datalayouts.annotation.UnsignedShort;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Generated {@link Flyweight} views.
+ *
+ * @author Sulphuris
+ */
+public class FlyweightTest {
+	public static class Order {
+		public long price;
+		@UnsignedByte
+		public int flags;
+		@UnsignedShort
+		public int quantity;
+	}
+	
+	public interface OrderView extends Flyweight {
+		long price();
+		void price(long price);
+		int getFlags();
+		void setFlags(int flags);
+		int quantity();
+		void quantity(int quantity);
+	}
+	
+	private static final Layout.Of<Order> layout = Layout.of(Order.class, MethodHandles.lookup());
+	
+	@Test
+	void viewsMatchTheLayout() {
+		OrderView view = Flyweight.factory(OrderView.class, layout).get();
+		ByteBuffer buffer = ByteBuffer.allocate(2 * view.size());
+		assertEquals(11, view.size());
+		view.wrap(buffer, view.size());
+		view.price(-5);
+		view.setFlags(200);
+		view.quantity(60000);
+		Order order = layout.read(buffer, view.size());
+		assertEquals(-5, order.price);
+		assertEquals(200, order.flags);
+		assertEquals(60000, order.quantity);
+		assertEquals(200, view.getFlags());
+		assertEquals(60000, view.quantity());
+	}
+	
+	@Test
+	void unsignedValuesAreTruncated() {
+		OrderView view = Flyweight.factory(OrderView.class, layout).get();
+		ByteBuffer buffer = ByteBuffer.allocate(view.size() + 2);
+		view.wrap(buffer, 0);
+		view.setFlags(0x1FF);
+		view.quantity(0x12345);
+		assertEquals(0xFF, view.getFlags());
+		assertEquals(0x2345, view.quantity());
+		assertEquals(0, buffer.getShort(view.size()));
+	}
+	
+	@Test
+	void implementationIsGeneratedOnce() {
+		OrderView first = Flyweight.factory(OrderView.class, layout).get();
+		OrderView second = Flyweight.factory(OrderView.class, layout).get();
+		assertNotSame(first, second);
+		assertSame(first.getClass(), second.getClass());
+	}
+}
@@ -0,0 +1,198 @@
+package com.ydo4ki.datalayouts;
+
+import com.ydo4ki.datalayouts.annotation.LengthPrefix;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Round trips of {@link FrameCodec} over loopback channels.
+ *
+ * @author Sulphuris
+ */
+class FrameCodecTest {
+	public static class Msg {
+		public int id;
+		public String text;
+	}
+	
+	private static final Layout.Of<Msg> layout = Layout.of(Msg.class, MethodHandles.lookup());
+	private static final int COUNT = 200;
+	
+	/** Messages of 8 to 208 bytes, so that they fit any length prefix */
+	private static Msg msg(int i) {
+		Msg msg = new Msg();
+		msg.id = i;
+		StringBuilder text = new StringBuilder();
+		for (int j = 0; j < i * 37 % 101; j++) text.append((char) ('a' + j % 26));
+		msg.text = text.toString();
+		return msg;
+	}
+	
+	private static void assertMsg(int i, Msg msg) {
+		assertEquals(i, msg.id);
+		assertEquals(msg(i).text, msg.text);
+	}
+	
+	private static Future<?> inBackground(Callable<?> task) {
+		FutureTask<?> future = new FutureTask<>(task);
+		Thread thread = new Thread(future);
+		thread.setDaemon(true);
+		thread.start();
+		return future;
+	}
+	
+	@ParameterizedTest
+	@EnumSource(LengthPrefix.Type.class)
+	void blockingSocketRoundTrip(LengthPrefix.Type prefix) throws Exception {
+		FrameCodec<Msg> frames = Layout.frames(layout).withLengthPrefix(prefix);
+		try (ServerSocketChannel server = ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		     SocketChannel client = SocketChannel.open(server.getLocalAddress());
+		     SocketChannel peer = server.accept()) {
+			Future<?> writer = inBackground(() -> {
+				for (int i = 0; i < COUNT; i++) frames.write(msg(i), client);
+				return null;
+			});
+			for (int i = 0; i < COUNT; i++) assertMsg(i, frames.read(peer));
+			writer.get(30, TimeUnit.SECONDS);
+		}
+	}
+	
+	@ParameterizedTest
+	@EnumSource(LengthPrefix.Type.class)
+	void partialReadsAndWrites(LengthPrefix.Type prefix) throws Exception {
+		FrameCodec<Msg> frames = Layout.frames(layout).withLengthPrefix(prefix);
+		Pipe pipe = Pipe.open();
+		WritableByteChannel sink = new Trickle(pipe.sink(), 3);
+		ReadableByteChannel source = new Trickle(pipe.source(), 2);
+		Future<?> writer = inBackground(() -> {
+			for (int i = 0; i < COUNT; i++) frames.write(msg(i), sink);
+			pipe.sink().close();
+			return null;
+		});
+		for (int i = 0; i < COUNT; i++) assertMsg(i, frames.read(source));
+		assertThrows(EOFException.class, () -> frames.read(source));
+		writer.get(30, TimeUnit.SECONDS);
+		pipe.source().close();
+	}
+	
+	@ParameterizedTest
+	@EnumSource(LengthPrefix.Type.class)
+	void selectorRoundTrip(LengthPrefix.Type prefix) throws Exception {
+		FrameCodec<Msg> frames = Layout.frames(layout).withLengthPrefix(prefix);
+		try (ServerSocketChannel server = ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+		     SocketChannel client = SocketChannel.open(server.getLocalAddress());
+		     SocketChannel peer = server.accept();
+		     Selector selector = Selector.open()) {
+			ByteBuffer out = ByteBuffer.allocate(64 * 1024);
+			for (int i = 0; i < COUNT; i++) frames.encode(msg(i), out);
+			out.flip();
+			Future<?> writer = inBackground(() -> {
+				while (out.hasRemaining()) {
+					ByteBuffer part = out.duplicate();
+					part.limit(Math.min(out.limit(), out.position() + 5));
+					out.position(out.position() + client.write(part));
+				}
+				client.close();
+				return null;
+			});
+			
+			peer.configureBlocking(false);
+			peer.register(selector, SelectionKey.OP_READ);
+			ByteBuffer in = ByteBuffer.allocate(512);
+			List<Msg> received = new ArrayList<>();
+			for (boolean open = true; open; ) {
+				selector.select();
+				selector.selectedKeys().clear();
+				if (peer.read(in) < 0) open = false;
+				in.flip();
+				frames.decodeAll(in, received::add);
+				in.compact();
+			}
+			writer.get(30, TimeUnit.SECONDS);
+			assertEquals(0, in.position());
+			assertEquals(COUNT, received.size());
+			for (int i = 0; i < COUNT; i++) assertMsg(i, received.get(i));
+		}
+	}
+	
+	@Test
+	void incompleteFrameLeavesBufferUnchanged() {
+		FrameCodec<Msg> frames = Layout.frames(layout);
+		ByteBuffer buffer = ByteBuffer.allocate(256);
+		int size = frames.encode(msg(5), buffer);
+		buffer.flip();
+		for (int limit = 0; limit < size; limit++) {
+			buffer.limit(limit);
+			assertNull(frames.nextFrame(buffer));
+			assertEquals(0, buffer.position());
+		}
+		buffer.limit(size);
+		assertMsg(5, frames.decode(frames.nextFrame(buffer)));
+		assertEquals(size, buffer.position());
+	}
+	
+	@Test
+	void framesOverTheMaximumAreRejected() {
+		FrameCodec<Msg> frames = Layout.frames(layout).withMaxFrameSize(16);
+		ByteBuffer buffer = ByteBuffer.allocate(256);
+		assertThrows(IllegalArgumentException.class, () -> frames.encode(msg(50), buffer));
+		assertEquals(0, buffer.position());
+		assertThrows(IllegalArgumentException.class, () -> frames.nextFrame(ByteBuffer.wrap(new byte[] {0, 0, 1, 0})));
+		assertEquals(255, Layout.frames(layout).withLengthPrefix(LengthPrefix.Type.BYTE).maxFrameSize());
+	}
+	
+	/**
+	 * A channel that reads or writes at most a few bytes at a time.
+	 */
+	private static final class Trickle implements ReadableByteChannel, WritableByteChannel {
+		private final Channel channel;
+		private final int max;
+		
+		Trickle(Channel channel, int max) {
+			this.channel = channel;
+			this.max = max;
+		}
+		
+		@Override
+		public int read(ByteBuffer dst) throws IOException {
+			ByteBuffer part = dst.duplicate();
+			part.limit(Math.min(dst.limit(), dst.position() + max));
+			int n = ((ReadableByteChannel) channel).read(part);
+			if (n > 0) dst.position(dst.position() + n);
+			return n;
+		}
+		
+		@Override
+		public int write(ByteBuffer src) throws IOException {
+			ByteBuffer part = src.duplicate();
+			part.limit(Math.min(src.limit(), src.position() + max));
+			int n = ((WritableByteChannel) channel).write(part);
+			src.position(src.position() + n);
+			return n;
+		}
+		
+		@Override
+		public boolean isOpen() {
+			return channel.isOpen();
+		}
+		
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,179 @@
+package com.ydo4ki.datalayouts;
+
+import com.ydo4ki.datalayouts.annotation.LayoutConstructor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * How class layouts create the objects they read.
+ *
+ * @author Sulphuris
+ */
+class InstantiationStrategyTest {
+	public static class Tagged {
+		public final String tag;
+		
+		Tagged(String tag) {
+			this.tag = tag;
+		}
+	}
+	
+	/** Its own fields come first, then the ones of its superclass */
+	public static class Sample extends Tagged {
+		static int constructed;
+		public final double value;
+		
+		@LayoutConstructor
+		public Sample(double value, String tag) {
+			super(tag);
+			if (value < 0) throw new IllegalArgumentException("negative sample");
+			this.value = value;
+			constructed++;
+		}
+	}
+	
+	public static class Counter {
+		static int constructed;
+		public long hits;
+		
+		public Counter() {
+			constructed++;
+		}
+	}
+	
+	/** No usable constructor, so only Objenesis can create it */
+	public static class Sealed {
+		public final int code;
+		
+		private Sealed() {
+			throw new AssertionError("never called");
+		}
+		
+		private Sealed(int code, boolean unused) {
+			this.code = code;
+		}
+	}
+	
+	/** Created through a factory by a strategy registered for it, not through its no-args constructor */
+	public static class Money {
+		public long cents;
+		public String currency;
+		
+		static Money of(long cents, String currency) {
+			Money money = new Money();
+			money.cents = cents;
+			money.currency = currency.toUpperCase();
+			return money;
+		}
+	}
+	
+	private static <T> T roundTrip(Layout.Of<T> layout, T x) throws IOException {
+		ByteArrayDataOutput out = new ByteArrayDataOutput();
+		layout.write(x, out);
+		return layout.read(new ByteArrayDataInput(out.toByteArray()));
+	}
+	
+	@Test
+	void annotatedConstructorsReceiveAllFields() throws IOException {
+		Layout.Of<Sample> layout = new LayoutRegistry().of(Sample.class, MethodHandles.lookup());
+		int constructed = Sample.constructed;
+		Sample back = roundTrip(layout, new Sample(2.5, "probe"));
+		assertEquals(2.5, back.value);
+		assertEquals("probe", back.tag);
+		assertEquals(constructed + 2, Sample.constructed);
+		
+		// the constructor validates what is read
+		ByteBuffer buffer = ByteBuffer.allocate(64);
+		layout.write(new Sample(1, "x"), buffer);
+		buffer.flip();
+		buffer.putDouble(0, -1);
+		assertThrows(IllegalArgumentException.class, () -> layout.read(buffer));
+	}
+	
+	@Test
+	void publicClassesWithoutFinalFieldsUseTheirNoArgsConstructor() throws IOException {
+		Layout.Of<Counter> layout = new LayoutRegistry().of(Counter.class, MethodHandles.lookup());
+		Counter counter = new Counter();
+		counter.hits = 41;
+		int constructed = Counter.constructed;
+		assertEquals(41, roundTrip(layout, counter).hits);
+		assertEquals(constructed + 1, Counter.constructed);
+	}
+	
+	@Test
+	void otherClassesAreCreatedWithoutConstructors() throws IOException {
+		Layout.Of<Sealed> layout = new LayoutRegistry().of(Sealed.class, MethodHandles.lookup());
+		assertEquals(404, roundTrip(layout, new Sealed(404, false)).code);
+	}
+	
+	@Test
+	void registeredStrategiesComeFirst() throws IOException {
+		Layout.registerInstantiationStrategy((clazz, fields, lookup) -> clazz != Money.class ? null
+				: lookup.findStatic(Money.class, "of", MethodType.methodType(Money.class, long.class, String.class)));
+		Layout.Of<Money> layout = new LayoutRegistry().of(Money.class, MethodHandles.lookup());
+		Money money = new Money();
+		money.cents = 1999;
+		money.currency = "eur";
+		Money back = roundTrip(layout, money);
+		assertEquals(1999, back.cents);
+		assertEquals("EUR", back.currency);
+	}
+	
+	@TempDir
+	Path dir;
+	
+	@Test
+	@SuppressWarnings("unchecked")
+	void recordsUseTheirCanonicalConstructor() throws Exception {
+		String version = System.getProperty("java.specification.version");
+		assumeTrue(!version.startsWith("1.") && Integer.parseInt(version) >= 16, "no records before Java 16");
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		assumeTrue(compiler != null, "no Java compiler");
+		Path source = dir.resolve("geo/Place.java");
+		Files.createDirectories(source.getParent());
+		Files.write(source, String.join("\n",
+				"package geo;",
+				"",
+				"public record Place(String name, int floor) {",
+				"    public Place {",
+				"        name = name.trim();",
+				"    }",
+				"",
+				"    public static java.lang.invoke.MethodHandles.Lookup lookup() {",
+				"        return java.lang.invoke.MethodHandles.lookup();",
+				"    }",
+				"}",
+				"").getBytes(StandardCharsets.UTF_8));
+		String classpath = new File(Layout.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+		assertEquals(0, compiler.run(null, null, null, "-classpath", classpath, "-d", dir.toString(), source.toString()));
+		
+		try (URLClassLoader loader = new URLClassLoader(new URL[]{dir.toUri().toURL()}, getClass().getClassLoader())) {
+			Class<Object> place = (Class<Object>) loader.loadClass("geo.Place");
+			Layout.Of<Object> layout = new LayoutRegistry().of(place, (MethodHandles.Lookup) place.getMethod("lookup").invoke(null));
+			Object x = place.getConstructor(String.class, int.class).newInstance("lobby", 0);
+			assertEquals(x, roundTrip(layout, x));
+			
+			// written with spaces, trimmed by the canonical constructor
+			ByteArrayDataOutput out = new ByteArrayDataOutput();
+			((Layout.Of<String>) ObjectLayout.of(layout).fieldLayout(0)).write("  roof ", out);
+			out.writeInt(9);
+			assertEquals(place.getConstructor(String.class, int.class).newInstance("roof", 9), layout.read(new ByteArrayDataInput(out.toByteArray())));
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package com.ydo4ki.datalayouts;
+
+import com.ydo4ki.datalayouts.annotation.Interned;
+import com.ydo4ki.datalayouts.annotation.LengthPrefix;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Strings sent through the dictionary of a connection.
+ *
+ * @author Sulphuris
+ */
+class InternedStringLayoutTest {
+	public static class Chat {
+		@Interned
+		public String player;
+		public String text;
+	}
+	
+	private static final Layout.Of<Chat> layout = Layout.of(Chat.class, MethodHandles.lookup());
+	
+	private static Chat chat(String player, String text) {
+		Chat chat = new Chat();
+		chat.player = player;
+		chat.text = text;
+		return chat;
+	}
+	
+	@Test
+	void repeatedStringsAreSentAsIndices() throws IOException {
+		ByteArrayDataOutput bytes = new ByteArrayDataOutput();
+		DictionaryDataOutput out = new DictionaryDataOutput(bytes, 2);
+		layout.write(chat("alice", "hi"), out);
+		int first = bytes.size();
+		layout.write(chat("alice", "hi"), out);
+		assertTrue(bytes.size() - first < first);
+		layout.write(chat("bob", "hey"), out);
+		layout.write(chat("carol", "yo"), out); // evicts alice
+		layout.write(chat("alice", "back"), out);
+		
+		DictionaryDataInput in = new DictionaryDataInput(new ByteArrayDataInput(bytes.toByteArray()), 2);
+		Chat a = layout.read(in);
+		Chat b = layout.read(in);
+		assertEquals("alice", a.player);
+		assertSame(a.player, b.player);
+		assertEquals("bob", layout.read(in).player);
+		assertEquals("carol", layout.read(in).player);
+		Chat back = layout.read(in);
+		assertEquals("alice", back.player);
+		assertEquals("back", back.text);
+	}
+	
+	@Test
+	void sizeIsNotReported() {
+		// the same string is written in full or as an index depending on the dictionary
+		assertThrows(IllegalArgumentException.class, () -> layout.sizeOf(chat("alice", "hi")));
+		// frames with varint prefixes measure the object before writing it
+		FrameCodec<Chat> frames = Layout.frames(layout).withLengthPrefix(LengthPrefix.Type.VARINT);
+		assertThrows(IllegalArgumentException.class, () -> frames.encode(chat("alice", "hi"), ByteBuffer.allocate(64)));
+	}
+	
+	@Test
+	void byteBuffersAreRejected() {
+		ByteBuffer buffer = ByteBuffer.allocate(64);
+		assertThrows(IllegalArgumentException.class, () -> layout.write(chat("alice", "hi"), buffer));
+		assertThrows(IllegalArgumentException.class, () -> layout.read(ByteBuffer.allocate(64)));
+		assertThrows(IllegalArgumentException.class, () -> Layout.frames(layout).encode(chat("alice", "hi"), ByteBuffer.allocate(64)));
+	}
+}
@@ -0,0 +1,147 @@
+package com.ydo4ki.datalayouts;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Generated layouts, which must write exactly what the reflective layouts write.
+ * Also run with {@code -Dcom.ydo4ki.datalayouts.codegen=false}, see the pom.
+ *
+ * @author Sulphuris
+ */
+class LayoutCompilerTest {
+	private static final boolean codegen = Boolean.parseBoolean(System.getProperty("com.ydo4ki.datalayouts.codegen", "true"));
+	
+	/** Fields of every kind and access, only accessible directly to a nestmate */
+	static class Invoice {
+		private int number;
+		protected long issued;
+		double total;
+		public boolean paid;
+		private byte currency;
+		private short lines;
+		private char grade;
+		private float discount;
+		private String customer;
+		private int[] quantities;
+		private Address address;
+	}
+	
+	/** Only public fields of a public class, so it is also compiled without a private lookup */
+	public static class Address {
+		public String street;
+		public int zip;
+	}
+	
+	private static Invoice invoice() {
+		Invoice invoice = new Invoice();
+		invoice.number = -17;
+		invoice.issued = 1_700_000_000_000L;
+		invoice.total = 99.5;
+		invoice.paid = true;
+		invoice.currency = (byte) 0xE8;
+		invoice.lines = 3;
+		invoice.grade = 'É';
+		invoice.discount = 0.25f;
+		invoice.customer = "ACME €";
+		invoice.quantities = new int[]{1, 20, 300};
+		invoice.address = new Address();
+		invoice.address.street = "Main";
+		invoice.address.zip = 12345;
+		return invoice;
+	}
+	
+	private static void assertSameInvoice(Invoice expected, Invoice actual) {
+		assertEquals(expected.number, actual.number);
+		assertEquals(expected.issued, actual.issued);
+		assertEquals(expected.total, actual.total);
+		assertEquals(expected.paid, actual.paid);
+		assertEquals(expected.currency, actual.currency);
+		assertEquals(expected.lines, actual.lines);
+		assertEquals(expected.grade, actual.grade);
+		assertEquals(expected.discount, actual.discount);
+		assertEquals(expected.customer, actual.customer);
+		assertArrayEquals(expected.quantities, actual.quantities);
+		assertEquals(expected.address.street, actual.address.street);
+		assertEquals(expected.address.zip, actual.address.zip);
+	}
+	
+	private static <T> byte[] write(Layout.Of<T> layout, T x) throws IOException {
+		ByteArrayDataOutput out = new ByteArrayDataOutput();
+		layout.write(x, out);
+		return out.toByteArray();
+	}
+	
+	private static <T> byte[] write(Layout.Of<T> layout, T x, ByteBuffer buffer) {
+		layout.write(x, buffer);
+		byte[] bytes = new byte[buffer.position()];
+		((ByteBuffer) buffer.flip()).get(bytes);
+		buffer.flip();
+		return bytes;
+	}
+	
+	@Test
+	void compiledLayoutsWriteTheSameBytesAsReflectiveOnes() throws IOException {
+		LayoutRegistry registry = new LayoutRegistry();
+		Layout.Of<Invoice> compiled = registry.of(Invoice.class, MethodHandles.lookup());
+		Layout.Of<Invoice> reflective = new ObjectLayout<>(Invoice.class, MethodHandles.lookup(), registry);
+		assertEquals(codegen, compiled instanceof GeneratedLayout, compiled::toString);
+		
+		Invoice invoice = invoice();
+		byte[] bytes = write(reflective, invoice);
+		assertArrayEquals(bytes, write(compiled, invoice));
+		assertEquals(bytes.length, compiled.sizeOf(invoice));
+		assertSameInvoice(invoice, compiled.read(new ByteArrayDataInput(bytes)));
+		
+		for (ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+			ByteBuffer heap = ByteBuffer.allocate(256).order(order);
+			ByteBuffer direct = ByteBuffer.allocateDirect(256).order(order);
+			byte[] expected = write(reflective, invoice, heap);
+			assertArrayEquals(expected, write(compiled, invoice, direct), order::toString);
+			assertSameInvoice(invoice, compiled.read(heap));
+			assertSameInvoice(invoice, reflective.read(direct));
+		}
+	}
+	
+	@Test
+	void classesAreCompiledWithoutAPrivateLookup() throws IOException {
+		// the generated class can't be a nestmate, and is defined by its own class loader
+		Layout.Of<Address> compiled = new LayoutRegistry().of(Address.class, MethodHandles.publicLookup());
+		Layout.Of<Address> reflective = ObjectLayout.of(compiled);
+		assertEquals(codegen, compiled != reflective);
+		Address address = new Address();
+		address.street = "Elm";
+		address.zip = -1;
+		byte[] bytes = write(reflective, address);
+		assertArrayEquals(bytes, write(compiled, address));
+		Address back = compiled.read(new ByteArrayDataInput(bytes));
+		assertEquals("Elm", back.street);
+		assertEquals(-1, back.zip);
+	}
+	
+	@Test
+	void measuringSkippingAndCopyingFallBackToTheReflectiveLayout() throws IOException {
+		Layout.Of<Invoice> compiled = new LayoutRegistry().of(Invoice.class, MethodHandles.lookup());
+		ObjectLayout<Invoice> reflective = ObjectLayout.of(compiled);
+		if (codegen) assertSame(reflective, ((GeneratedLayout<Invoice>) compiled).fallback());
+		assertEquals(compiled.size(), reflective.size());
+		
+		Invoice invoice = invoice();
+		byte[] bytes = write(compiled, invoice);
+		ByteArrayDataOutput twice = new ByteArrayDataOutput();
+		twice.write(bytes);
+		twice.write(bytes);
+		ByteArrayDataInput in = new ByteArrayDataInput(twice.toByteArray());
+		compiled.skip(in);
+		ByteArrayDataOutput copy = new ByteArrayDataOutput();
+		compiled.copy(in, copy);
+		assertArrayEquals(bytes, copy.toByteArray());
+		assertEquals(reflective.sizeOf(invoice), compiled.sizeOf(invoice));
+	}
+}
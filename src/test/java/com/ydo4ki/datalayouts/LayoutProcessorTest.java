@@ -0,0 +1,195 @@
+package com.ydo4ki.datalayouts;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.lang.invoke.MethodHandles;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Layouts generated by the annotation processor of the {@code processor} module,
+ * which must write the same bytes as the reflective layouts.
+ *
+ * @author Sulphuris
+ */
+class LayoutProcessorTest {
+	private static final Path PROCESSOR_SOURCES = Paths.get("processor", "src", "main", "java");
+	
+	private static final String READING = String.join("\n",
+			"package station;",
+			"",
+			"import com.ydo4ki.datalayouts.annotation.*;",
+			"",
+			"@GenerateLayout",
+			"public class Reading {",
+			"    @UnsignedByte public int channel;",
+			"    @UnsignedShort public int port;",
+			"    @VarInt public long sequence;",
+			"    public float celsius;",
+			"    @Encoding(\"utf-16\") public String unit;",
+			"    @NullTerminated public String tag;",
+			"    @Length(4) public String code;",
+			"    @Length(3) public int[] samples;",
+			"    @Length(2) public String[] labels;",
+			"    public double[] history;",
+			"    public Span span;",
+			"}",
+			"");
+	
+	/** Created through its constructor, its fields are final */
+	private static final String SPAN = String.join("\n",
+			"package station;",
+			"",
+			"@com.ydo4ki.datalayouts.annotation.GenerateLayout",
+			"public final class Span {",
+			"    public final long from;",
+			"    public final long to;",
+			"",
+			"    public Span(long from, long to) {",
+			"        this.from = from;",
+			"        this.to = to;",
+			"    }",
+			"}",
+			"");
+	
+	@TempDir
+	Path dir;
+	
+	/** Compiles the processor, then the sources with it, and returns the diagnostics, or null if they compiled */
+	private String compile(String... sources) throws Exception {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		assumeTrue(compiler != null, "no Java compiler");
+		assumeTrue(Files.isDirectory(PROCESSOR_SOURCES), "no processor sources");
+		
+		Path processor = Files.createDirectories(dir.resolve("processor"));
+		List<String> args = new ArrayList<>();
+		args.add("-d");
+		args.add(processor.toString());
+		try (Stream<Path> files = Files.walk(PROCESSOR_SOURCES)) {
+			args.addAll(files.filter(f -> f.toString().endsWith(".java")).map(Path::toString).collect(Collectors.toList()));
+		}
+		assertEquals(0, compiler.run(null, null, null, args.toArray(new String[0])));
+		
+		args.clear();
+		args.add("-classpath");
+		args.add(new File(Layout.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath());
+		args.add("-processorpath");
+		args.add(processor.toString());
+		args.add("-processor");
+		args.add("com.ydo4ki.datalayouts.processor.LayoutProcessor");
+		args.add("-d");
+		args.add(Files.createDirectories(dir.resolve("classes")).toString());
+		args.add("-s");
+		args.add(Files.createDirectories(dir.resolve("generated")).toString());
+		for (int i = 0; i < sources.length; i += 2) {
+			Path source = dir.resolve("src").resolve(sources[i]);
+			Files.createDirectories(source.getParent());
+			Files.write(source, sources[i + 1].getBytes(StandardCharsets.UTF_8));
+			args.add(source.toString());
+		}
+		ByteArrayOutputStream diagnostics = new ByteArrayOutputStream();
+		int status = compiler.run(null, null, diagnostics, args.toArray(new String[0]));
+		return status == 0 ? null : diagnostics.toString("UTF-8");
+	}
+	
+	private static void set(Object x, String field, Object value) throws ReflectiveOperationException {
+		x.getClass().getField(field).set(x, value);
+	}
+	
+	@Test
+	@SuppressWarnings("unchecked")
+	void generatedLayoutsWriteWhatReflectiveLayoutsWrite() throws Exception {
+		assertNull(compile("station/Reading.java", READING, "station/Span.java", SPAN));
+		assertTrue(Files.exists(dir.resolve("generated/station/Reading_Layout.java")));
+		List<String> binders = Files.readAllLines(dir.resolve("classes/META-INF/services/" + LayoutBinder.class.getName()));
+		assertEquals(Arrays.asList("station.Reading_Layout", "station.Span_Layout"), binders);
+		
+		try (URLClassLoader loader = new URLClassLoader(new URL[]{dir.resolve("classes").toUri().toURL()}, getClass().getClassLoader())) {
+			Class<Object> reading = (Class<Object>) loader.loadClass("station.Reading");
+			Class<Object> span = (Class<Object>) loader.loadClass("station.Span");
+			Layout.Of<Object> generated = (Layout.Of<Object>) loader.loadClass("station.Reading_Layout").getField("INSTANCE").get(null);
+			Layout.Of<Object> reflective = new ObjectLayout<>(reading, MethodHandles.publicLookup(), new LayoutRegistry());
+			
+			Object x = reading.getConstructor().newInstance();
+			set(x, "channel", 250);
+			set(x, "port", 65000);
+			set(x, "sequence", 1L << 40);
+			set(x, "celsius", -12.5f);
+			set(x, "unit", "°C");
+			set(x, "tag", "roof");
+			set(x, "code", "ab"); // padded to 4 bytes
+			set(x, "samples", new int[]{7, 8, 9});
+			set(x, "labels", new String[]{"min", "max"});
+			set(x, "history", new double[]{0.5, 1.5, 2.5, 3.5});
+			set(x, "span", span.getConstructor(long.class, long.class).newInstance(10L, 20L));
+			
+			ByteArrayDataOutput out = new ByteArrayDataOutput();
+			reflective.write(x, out);
+			byte[] bytes = out.toByteArray();
+			ByteArrayDataOutput generatedOut = new ByteArrayDataOutput();
+			generated.write(x, generatedOut);
+			assertArrayEquals(bytes, generatedOut.toByteArray());
+			assertEquals(250, bytes[0] & 0xFF);
+			
+			ByteBuffer buffer = ByteBuffer.allocate(bytes.length);
+			generated.write(x, buffer);
+			assertArrayEquals(bytes, buffer.array());
+			buffer.flip();
+			
+			// what is read back is written the same way again
+			Object back = generated.read(new ByteArrayDataInput(bytes));
+			out.reset();
+			reflective.write(back, out);
+			assertArrayEquals(bytes, out.toByteArray());
+			assertEquals("ab", reading.getField("code").get(generated.read(buffer)));
+			assertEquals(20L, span.getField("to").get(reading.getField("span").get(back)));
+			
+			Layout.Of<Object> spans = (Layout.Of<Object>) loader.loadClass("station.Span_Layout").getField("INSTANCE").get(null);
+			assertEquals(16, spans.size().getAsInt());
+			assertFalse(generated.size().isPresent());
+			
+			((LayoutBinder) generated).bindLayouts();
+			assertSame(generated, Layout.of(reading, MethodHandles.publicLookup()));
+		}
+	}
+	
+	@Test
+	void unsupportedClassesAreCompileErrors() throws Exception {
+		String diagnostics = compile("station/Hidden.java", String.join("\n",
+				"package station;",
+				"",
+				"@com.ydo4ki.datalayouts.annotation.GenerateLayout",
+				"public class Hidden {",
+				"    private int secret;",
+				"}",
+				""), "station/Wide.java", String.join("\n",
+				"package station;",
+				"",
+				"@com.ydo4ki.datalayouts.annotation.GenerateLayout",
+				"public class Wide {",
+				"    @com.ydo4ki.datalayouts.annotation.UnsignedByte public long value;",
+				"}",
+				""));
+		assertNotNull(diagnostics);
+		assertTrue(diagnostics.contains("private fields are not supported by @GenerateLayout"), diagnostics);
+		assertTrue(diagnostics.contains("@UnsignedByte is only applicable to int fields"), diagnostics);
+	}
+}
@@ -0,0 +1,223 @@
+package com.ydo4ki.datalayouts;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.lang.invoke.MethodHandles;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Bindings of {@link LayoutRegistry} and the classes they keep reachable.
+ *
+ * @author Sulphuris
+ */
+class LayoutRegistryTest {
+	public static class Base {
+		public int id;
+	}
+	
+	public static class Derived extends Base {
+		public long time;
+	}
+	
+	public static class Parent {
+		public Child child;
+	}
+	
+	public static class Child {
+		public Parent parent;
+	}
+	
+	/** A plugin binding its own classes to classes shared with the library and the JDK */
+	private static final String PLUGIN = String.join("\n",
+			"package plugin;",
+			"",
+			"import com.ydo4ki.datalayouts.Layout;",
+			"import com.ydo4ki.datalayouts.LayoutRegistry;",
+			"import com.ydo4ki.datalayouts.annotation.Length;",
+			"import java.lang.invoke.MethodHandles;",
+			"",
+			"@SuppressWarnings({\"rawtypes\", \"unchecked\"})",
+			"public class Plugin implements Runnable {",
+			"    public int x;",
+			"    public String name;",
+			"",
+			"    public static class Task implements Runnable {",
+			"        public void run() {",
+			"        }",
+			"    }",
+			"",
+			"    public static class Message {",
+			"        @Length(4)",
+			"        public Plugin plugin;",
+			"        public Runnable task;",
+			"    }",
+			"",
+			"    static final LayoutRegistry registry = new LayoutRegistry();",
+			"",
+			"    static {",
+			"        registry.bindToVirtual(Runnable.class, (Layout.Of) registry.of(Plugin.class, MethodHandles.lookup()));",
+			"        registry.bindAnnotationPragma(Length.class, Plugin.class, (layout, annotation, type) -> layout);",
+			"        registry.of(Task.class, MethodHandles.lookup());",
+			"        registry.of(Message.class, MethodHandles.lookup());",
+			"    }",
+			"",
+			"    public void run() {",
+			"    }",
+			"}",
+			"");
+	
+	@TempDir
+	Path dir;
+	
+	@Test
+	void pluginClassLoaderIsCollected() throws Exception {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		assumeTrue(compiler != null, "no Java compiler");
+		Path source = dir.resolve("plugin/Plugin.java");
+		Files.createDirectories(source.getParent());
+		Files.write(source, PLUGIN.getBytes(StandardCharsets.UTF_8));
+		String classpath = new File(LayoutRegistry.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+		assertEquals(0, compiler.run(null, null, null, "-classpath", classpath, "-d", dir.toString(), source.toString()));
+		
+		WeakReference<ClassLoader> loader = loadPlugin();
+		List<byte[]> garbage = new ArrayList<>();
+		for (int i = 0; i < 100 && loader.get() != null; i++) {
+			garbage.add(new byte[1 << 20]);
+			if (garbage.size() > 16) garbage.clear();
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull(loader.get(), "plugin class loader was not collected");
+	}
+	
+	private WeakReference<ClassLoader> loadPlugin() throws Exception {
+		try (URLClassLoader loader = new URLClassLoader(new URL[]{dir.toUri().toURL()}, LayoutRegistryTest.class.getClassLoader())) {
+			Class<?> plugin = Class.forName("plugin.Plugin", true, loader);
+			assertSame(loader, plugin.getClassLoader());
+			return new WeakReference<>(loader);
+		}
+	}
+	
+	@Test
+	void virtualBindingsApplyToSubclasses() {
+		LayoutRegistry registry = new LayoutRegistry();
+		Layout.Of<Base> base = registry.of(Base.class, MethodHandles.lookup());
+		registry.bindToVirtual(Base.class, base);
+		assertSame(base, registry.of(Derived.class, MethodHandles.lookup()));
+		assertNotSame(base, new LayoutRegistry().of(Derived.class, MethodHandles.lookup()));
+		assertThrows(IllegalArgumentException.class, () -> registry.bindToVirtual(Base.class, base));
+	}
+	
+	@Test
+	void virtualResolutionsAreCachedUntilTheNextVirtualBinding() {
+		LayoutRegistry registry = new LayoutRegistry();
+		Layout.Of<Base> base = registry.of(Base.class, MethodHandles.lookup());
+		registry.bindToVirtual(Base.class, base);
+		long misses = registry.virtualLookupMisses();
+		assertSame(base, registry.of(Derived.class, MethodHandles.lookup()));
+		assertTrue(registry.virtualLookupMisses() > misses);
+		
+		misses = registry.virtualLookupMisses();
+		long hits = registry.virtualLookupHits();
+		for (int i = 0; i < 3; i++) assertSame(base, registry.of(Derived.class, MethodHandles.lookup()));
+		assertEquals(hits + 3, registry.virtualLookupHits());
+		assertEquals(misses, registry.virtualLookupMisses());
+		
+		// a nearer binding replaces the resolved one
+		Layout.Of<Derived> derived = new LayoutRegistry().of(Derived.class, MethodHandles.lookup());
+		registry.bindToVirtual(Derived.class, derived);
+		assertSame(derived, registry.of(Derived.class, MethodHandles.lookup()));
+		assertEquals(misses + 1, registry.virtualLookupMisses());
+	}
+	
+	@Test
+	void theAbsenceOfAVirtualLayoutIsCachedToo() {
+		LayoutRegistry parent = new LayoutRegistry();
+		Layout.Of<Base> base = parent.of(Base.class, MethodHandles.lookup());
+		parent.bindToVirtual(Base.class, base);
+		LayoutRegistry child = new LayoutRegistry(parent);
+		assertSame(base, child.of(Derived.class, MethodHandles.lookup()));
+		
+		// the child has nothing for Derived, and remembers it before asking its parent
+		long misses = child.virtualLookupMisses(), hits = child.virtualLookupHits();
+		long parentHits = parent.virtualLookupHits();
+		assertSame(base, child.of(Derived.class, MethodHandles.lookup()));
+		assertEquals(misses, child.virtualLookupMisses());
+		assertEquals(hits + 1, child.virtualLookupHits());
+		assertEquals(parentHits + 1, parent.virtualLookupHits());
+		
+		Layout.Of<Base> own = new LayoutRegistry().of(Base.class, MethodHandles.lookup());
+		child.bindToVirtual(Base.class, own);
+		assertSame(own, child.of(Derived.class, MethodHandles.lookup()));
+		assertSame(base, parent.of(Derived.class, MethodHandles.lookup()));
+	}
+	
+	@Test
+	void layoutsAreCreatedOnceForAllThreads() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			for (int round = 0; round < 50; round++) {
+				LayoutRegistry registry = new LayoutRegistry();
+				CyclicBarrier start = new CyclicBarrier(8);
+				List<Future<Layout.Of<Derived>>> layouts = new ArrayList<>();
+				for (int i = 0; i < 8; i++) layouts.add(executor.submit(() -> {
+					start.await();
+					return registry.of(Derived.class, MethodHandles.lookup());
+				}));
+				for (Future<Layout.Of<Derived>> layout : layouts) assertSame(layouts.get(0).get(), layout.get());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	@Test
+	void classesReferringToEachOtherFailInsteadOfDeadlocking() {
+		LayoutRegistry alone = new LayoutRegistry();
+		assertThrows(UnpureClassException.class, () -> alone.of(Parent.class, MethodHandles.lookup()));
+		assertThrows(UnpureClassException.class, () -> alone.of(Child.class, MethodHandles.lookup()));
+		
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+				for (int round = 0; round < 200; round++) {
+					LayoutRegistry registry = new LayoutRegistry();
+					CyclicBarrier start = new CyclicBarrier(2);
+					Future<?> parent = executor.submit(() -> {
+						start.await();
+						return registry.of(Parent.class, MethodHandles.lookup());
+					});
+					Future<?> child = executor.submit(() -> {
+						start.await();
+						return registry.of(Child.class, MethodHandles.lookup());
+					});
+					for (Future<?> future : new Future<?>[]{parent, child}) {
+						Exception e = assertThrows(Exception.class, future::get);
+						assertInstanceOf(UnpureClassException.class, e.getCause());
+					}
+				}
+			});
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
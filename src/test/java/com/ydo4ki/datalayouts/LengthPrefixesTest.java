@@ -0,0 +1,67 @@
+package com.ydo4ki.datalayouts;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Validation of the lengths of strings and arrays read from streams and buffers.
+ *
+ * @author Sulphuris
+ */
+class LengthPrefixesTest {
+	public static class Point {
+		public int x, y;
+		public String label;
+	}
+	
+	/** A length of -2, followed by a few bytes that would be taken as the next value */
+	private static byte[] negativeLength(Layout.OfInt lengthPrefix) throws IOException {
+		ByteArrayDataOutput out = new ByteArrayDataOutput();
+		lengthPrefix.write(-2, out);
+		out.write(new byte[16]);
+		return out.toByteArray();
+	}
+	
+	private static DataInputStream stream(byte[] bytes) {
+		return new DataInputStream(new ByteArrayInputStream(bytes));
+	}
+	
+	private static void assertRejected(Layout<?> layout, Layout.OfInt lengthPrefix) throws IOException {
+		Layout.Of<?> of = layout.asObjectLayout();
+		byte[] bytes = negativeLength(lengthPrefix);
+		assertThrows(StreamCorruptedException.class, () -> of.read(stream(bytes)), layout::toString);
+		assertThrows(StreamCorruptedException.class, () -> of.skip(stream(bytes)), layout::toString);
+		assertThrows(StreamCorruptedException.class, () -> of.copy(stream(bytes), new ByteArrayDataOutput()), layout::toString);
+		assertThrows(StreamCorruptedException.class, () -> of.skip(new ByteArrayDataInput(bytes)), layout::toString);
+		assertThrows(StreamCorruptedException.class, () -> of.copy(new ByteArrayDataInput(bytes), new ByteArrayDataOutput()), layout::toString);
+		assertThrows(IllegalArgumentException.class, () -> of.read(ByteBuffer.wrap(bytes)), layout::toString);
+		assertThrows(IllegalArgumentException.class, () -> Layouts.skip(layout, ByteBuffer.wrap(bytes)), layout::toString);
+	}
+	
+	@Test
+	void negativeStringLengthsAreRejected() throws IOException {
+		for (String encoding : Arrays.asList("utf-8", "utf-16", "utf-8-standard")) {
+			StringLayout.DynamicStringLayout layout = (StringLayout.DynamicStringLayout) Layout.string(encoding, false);
+			assertRejected(layout, layout.lengthPrefix());
+			StringLayout.DynamicStringLayout intPrefixed = (StringLayout.DynamicStringLayout) layout.updateLengthPrefix(Layout.ofInt);
+			assertRejected(intPrefixed, Layout.ofInt);
+		}
+	}
+	
+	@Test
+	void negativeArrayLengthsAreRejected() throws IOException {
+		for (Class<?> arrayType : Arrays.<Class<?>>asList(int[].class, long[].class, String[].class, Point[].class)) {
+			DynamicArrayLayout<?> layout = (DynamicArrayLayout<?>) Layout.of(arrayType);
+			assertRejected(layout, layout.lengthPrefix());
+			assertRejected(layout.withLengthPrefix(Layout.ofInt), Layout.ofInt);
+		}
+	}
+}
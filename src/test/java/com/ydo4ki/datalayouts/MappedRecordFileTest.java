@@ -0,0 +1,83 @@
+package com.ydo4ki.datalayouts;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Persistence of the records of {@link MappedRecordFile}.
+ *
+ * @author Sulphuris
+ */
+class MappedRecordFileTest {
+	public static class Sample {
+		public long time;
+		public double value;
+	}
+	
+	public static class Point {
+		public int x, y;
+	}
+	
+	private static final Layout.Of<Sample> layout = Layout.of(Sample.class, MethodHandles.lookup());
+	
+	private static Sample sample(int i) {
+		Sample sample = new Sample();
+		sample.time = i;
+		sample.value = i / 2.0;
+		return sample;
+	}
+	
+	@TempDir
+	Path dir;
+	
+	@Test
+	void reopenAfterForceHasOnlyTheForcedRecords() throws IOException {
+		Path path = dir.resolve("samples.bin");
+		MappedRecordFile<Sample> file = MappedRecordFile.open(path, layout);
+		try {
+			for (int i = 0; i < 10; i++) file.append(sample(i));
+			file.force();
+			file.append(sample(10));
+			// not closed, the file still has the space mapped ahead
+			assertTrue(Files.size(path) > 16 + 11 * 16);
+			try (MappedRecordFile<Sample> reopened = MappedRecordFile.open(path, layout, ByteOrder.BIG_ENDIAN, true)) {
+				assertEquals(10, reopened.size());
+				assertEquals(9, reopened.get(9).time);
+			}
+		} finally {
+			file.close();
+		}
+		assertEquals(16 + 11 * 16, Files.size(path));
+		try (MappedRecordFile<Sample> reopened = MappedRecordFile.open(path, layout)) {
+			assertEquals(11, reopened.size());
+			for (int i = 0; i < 11; i++) assertEquals(i / 2.0, reopened.get(i).value);
+		}
+	}
+	
+	@Test
+	void closeIsIdempotent() throws IOException {
+		MappedRecordFile<Sample> file = MappedRecordFile.open(dir.resolve("samples.bin"), layout);
+		file.append(sample(1));
+		file.close();
+		file.close();
+		file.force();
+	}
+	
+	@Test
+	void otherFilesAreRejected() throws IOException {
+		Path path = dir.resolve("other.bin");
+		Files.write(path, new byte[64]);
+		assertThrows(IOException.class, () -> MappedRecordFile.open(path, layout).close());
+		Path records = dir.resolve("samples.bin");
+		MappedRecordFile.open(records, layout).close();
+		assertThrows(IllegalArgumentException.class, () -> MappedRecordFile.open(records, Layout.of(Point.class, MethodHandles.lookup())).close());
+	}
+}
@@ -0,0 +1,189 @@
+package com.ydo4ki.datalayouts;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Dispatching of decoded and raw packets.
+ *
+ * @author Sulphuris
+ */
+class PacketDispatcherTest {
+	public static class Chat {
+		public int channel;
+		public String text;
+	}
+	
+	public static class Ping {
+		public long time;
+	}
+	
+	private static final byte[] GARBAGE = {(byte) 0xEE, (byte) 0xEE, (byte) 0xEE};
+	
+	private static byte[] bytesOf(ByteBuffer payload) {
+		byte[] bytes = new byte[payload.remaining()];
+		payload.duplicate().get(bytes);
+		return bytes;
+	}
+	
+	@Test
+	void rawPayloadsSpanExactlyThePacket() throws IOException {
+		Layout.Of<Chat> chat = Layout.of(Chat.class, MethodHandles.lookup());
+		Layout.Of<Ping> ping = Layout.of(Ping.class, MethodHandles.lookup());
+		
+		// garbage on both sides of the packets, which must not leak into the payloads
+		ByteArrayDataOutput out = new ByteArrayDataOutput();
+		out.write(GARBAGE);
+		List<byte[]> expected = new ArrayList<>();
+		for (String text : new String[]{"first", "", "third one"}) {
+			Chat packet = new Chat();
+			packet.channel = text.length();
+			packet.text = text;
+			ByteArrayDataOutput body = new ByteArrayDataOutput();
+			chat.write(packet, body);
+			expected.add(body.toByteArray());
+			Layout.ofVarInt.write(7, out);
+			out.write(body.toByteArray());
+			Ping between = new Ping();
+			between.time = text.hashCode();
+			Layout.ofVarInt.write(300, out);
+			ping.write(between, out);
+		}
+		out.write(GARBAGE);
+		byte[] bytes = out.toByteArray();
+		int length = bytes.length - 2 * GARBAGE.length;
+		
+		List<byte[]> payloads = new ArrayList<>();
+		List<Long> times = new ArrayList<>();
+		PacketDispatcher dispatcher = new PacketDispatcher()
+				.registerRaw(7, chat, (id, payload) -> {
+					assertEquals(7, id);
+					assertEquals(0, payload.position());
+					payloads.add(bytesOf(payload));
+				})
+				.register(300, ping, packet -> times.add(packet.time));
+		
+		DataInput[] inputs = {
+				new ByteArrayDataInput(bytes, GARBAGE.length, length),
+				new DataInputStream(new ByteArrayInputStream(bytes, GARBAGE.length, length)),
+		};
+		for (DataInput in : inputs) {
+			payloads.clear();
+			times.clear();
+			for (int i = 0; i < 6; i++) dispatcher.dispatch(in);
+			assertEquals(expected.size(), payloads.size(), in.getClass().getSimpleName());
+			for (int i = 0; i < expected.size(); i++)
+				assertArrayEquals(expected.get(i), payloads.get(i), in.getClass().getSimpleName());
+			assertEquals(Arrays.asList((long) "first".hashCode(), 0L, (long) "third one".hashCode()), times);
+		}
+		
+		payloads.clear();
+		ByteBuffer buffer = ByteBuffer.wrap(bytes, GARBAGE.length, length);
+		while (buffer.hasRemaining()) dispatcher.dispatch(buffer);
+		assertEquals(bytes.length - GARBAGE.length, buffer.position());
+		for (int i = 0; i < expected.size(); i++) assertArrayEquals(expected.get(i), payloads.get(i));
+		
+		assertEquals(9, dispatcher.decodeCount(7));
+		assertEquals(9, dispatcher.decodeCount(300));
+	}
+	
+	@Test
+	void rawHandlersMayDispatchPacketsThemselves() throws IOException {
+		Layout.Of<Chat> chat = Layout.of(Chat.class, MethodHandles.lookup());
+		ByteArrayDataOutput out = new ByteArrayDataOutput();
+		String[] texts = {"outer", "inner, which is longer than the outer packet", "after"};
+		for (String text : texts) {
+			Chat packet = new Chat();
+			packet.text = text;
+			out.writeByte(1);
+			chat.write(packet, out);
+		}
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+		
+		List<String> handled = new ArrayList<>();
+		PacketDispatcher dispatcher = new PacketDispatcher(Layout.ofUnsignedByte);
+		dispatcher.registerRaw(1, chat, (id, payload) -> {
+			byte[] before = bytesOf(payload);
+			// the first packet reads the second one while its own payload is still in use
+			if (handled.isEmpty()) {
+				handled.add(null);
+				dispatcher.dispatch(in);
+			}
+			assertArrayEquals(before, bytesOf(payload), "the payload was overwritten by the nested packet");
+			handled.add(chat.read(payload).text);
+		});
+		for (int i = 0; i < 2; i++) dispatcher.dispatch(in);
+		assertEquals(Arrays.asList(null, texts[1], texts[0], texts[2]), handled);
+		assertEquals(3, dispatcher.decodeCount(1));
+	}
+	
+	@Test
+	void onlyPacketsThatWereReadAreCounted() throws IOException {
+		Layout.Of<Chat> chat = Layout.of(Chat.class, MethodHandles.lookup());
+		PacketDispatcher dispatcher = new PacketDispatcher(Layout.ofUnsignedByte)
+				.register(1, chat, packet -> {})
+				.registerRaw(2, chat, (id, payload) -> {});
+		
+		Chat good = new Chat();
+		good.text = "ok";
+		List<byte[]> packets = new ArrayList<>();
+		for (int id = 1; id <= 2; id++) {
+			ByteArrayDataOutput out = new ByteArrayDataOutput();
+			out.writeByte(id);
+			chat.write(good, out);
+			packets.add(out.toByteArray());
+		}
+		for (byte[] packet : packets) {
+			dispatcher.dispatch(new ByteArrayDataInput(packet));
+			dispatcher.dispatch(new DataInputStream(new ByteArrayInputStream(packet)));
+			dispatcher.dispatch(ByteBuffer.wrap(packet));
+		}
+		assertEquals(3, dispatcher.decodeCount(1));
+		assertEquals(3, dispatcher.decodeCount(2));
+		assertEquals(0, dispatcher.decodeNanos(1), "timing is disabled by default");
+		
+		// a string with a negative length
+		Layout.OfInt lengthPrefix = ((StringLayout.DynamicStringLayout) ObjectLayout.of(chat).fieldLayout(1)).lengthPrefix();
+		for (int id = 1; id <= 2; id++) {
+			ByteArrayDataOutput out = new ByteArrayDataOutput();
+			out.writeByte(id);
+			out.writeInt(0);
+			lengthPrefix.write(-2, out);
+			out.write(new byte[16]);
+			byte[] packet = out.toByteArray();
+			assertThrows(StreamCorruptedException.class, () -> dispatcher.dispatch(new ByteArrayDataInput(packet)));
+			assertThrows(StreamCorruptedException.class, () -> dispatcher.dispatch(new DataInputStream(new ByteArrayInputStream(packet))));
+			assertThrows(IllegalArgumentException.class, () -> dispatcher.dispatch(ByteBuffer.wrap(packet)));
+			// and a truncated packet
+			byte[] truncated = Arrays.copyOf(packets.get(id - 1), packets.get(id - 1).length - 1);
+			assertThrows(IOException.class, () -> dispatcher.dispatch(new DataInputStream(new ByteArrayInputStream(truncated))));
+			assertThrows(RuntimeException.class, () -> dispatcher.dispatch(ByteBuffer.wrap(truncated)));
+		}
+		assertThrows(IllegalArgumentException.class, () -> dispatcher.dispatch(ByteBuffer.wrap(new byte[]{3})));
+		assertEquals(3, dispatcher.decodeCount(1));
+		assertEquals(3, dispatcher.decodeCount(2));
+		assertEquals(0, dispatcher.decodeCount(3));
+		
+		dispatcher.setTimingEnabled(true);
+		for (int i = 0; i < 1000; i++) {
+			dispatcher.dispatch(ByteBuffer.wrap(packets.get(0)));
+			dispatcher.dispatch(new DataInputStream(new ByteArrayInputStream(packets.get(1))));
+		}
+		assertEquals(1003, dispatcher.decodeCount(1));
+		assertEquals(1003, dispatcher.decodeCount(2));
+		assertTrue(dispatcher.decodeNanos(1) > 0);
+		assertTrue(dispatcher.decodeNanos(2) > 0);
+	}
+}
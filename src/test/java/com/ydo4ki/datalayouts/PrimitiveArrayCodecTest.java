@@ -0,0 +1,160 @@
+package com.ydo4ki.datalayouts;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Primitive arrays read and written in bulk, which must produce the bytes of their element layouts.
+ *
+ * @author Sulphuris
+ */
+class PrimitiveArrayCodecTest {
+	private static final Class<?>[] COMPONENTS = {
+			byte.class, boolean.class, short.class, char.class, int.class, float.class, long.class, double.class
+	};
+	
+	/** Longer than the scratch buffer for every element size, and not a multiple of it */
+	private static final int LENGTH = 8192 + 77;
+	
+	private static Object randomArray(Class<?> component, int length, Random random) {
+		Object array = Array.newInstance(component, length);
+		for (int i = 0; i < length; i++) {
+			long bits = random.nextLong();
+			if (component == byte.class) Array.setByte(array, i, (byte) bits);
+			else if (component == boolean.class) Array.setBoolean(array, i, (bits & 1) != 0);
+			else if (component == short.class) Array.setShort(array, i, (short) bits);
+			else if (component == char.class) Array.setChar(array, i, (char) bits);
+			else if (component == int.class) Array.setInt(array, i, (int) bits);
+			else if (component == float.class) Array.setFloat(array, i, (float) random.nextGaussian() * 1e6f);
+			else if (component == long.class) Array.setLong(array, i, bits);
+			else Array.setDouble(array, i, random.nextGaussian() * 1e12);
+		}
+		return array;
+	}
+	
+	/** Writes the elements one by one with the element layout, as the array layouts did before */
+	@SuppressWarnings("unchecked")
+	private static byte[] elementByElement(ArrayLayout<?> layout, Object array, int count) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		Layout.Of<Object> element = (Layout.Of<Object>) layout.elementLayout().asObjectLayout();
+		for (int i = 0; i < count; i++) element.write(Array.get(array, i), out);
+		return bytes.toByteArray();
+	}
+	
+	private static void assertArraysEqual(Object expected, Object actual, String message) {
+		assertTrue(Arrays.deepEquals(new Object[]{expected}, new Object[]{actual}), message);
+	}
+	
+	@Test
+	@SuppressWarnings("unchecked")
+	void bulkBytesAreTheBytesOfTheElements() throws IOException {
+		Random random = new Random(5);
+		for (Class<?> component : COMPONENTS) {
+			Object array = randomArray(component, LENGTH, random);
+			DynamicArrayLayout<Object> layout = (DynamicArrayLayout<Object>) Layout.of(array.getClass());
+			String name = component.getName();
+			
+			ByteArrayDataOutput prefix = new ByteArrayDataOutput();
+			layout.lengthPrefix().write(LENGTH, prefix);
+			byte[] elements = elementByElement(layout, array, LENGTH);
+			byte[] expected = new byte[prefix.size() + elements.length];
+			System.arraycopy(prefix.toByteArray(), 0, expected, 0, prefix.size());
+			System.arraycopy(elements, 0, expected, prefix.size(), elements.length);
+			
+			// through the scratch buffer, and straight into the array of the output
+			ByteArrayOutputStream stream = new ByteArrayOutputStream();
+			layout.write(array, new DataOutputStream(stream));
+			assertArrayEquals(expected, stream.toByteArray(), name);
+			ByteArrayDataOutput direct = new ByteArrayDataOutput();
+			layout.write(array, direct);
+			assertArrayEquals(expected, direct.toByteArray(), name);
+			assertEquals(expected.length, layout.sizeOf(array), name);
+			
+			assertArraysEqual(array, layout.read(new DataInputStream(new ByteArrayInputStream(expected))), name);
+			assertArraysEqual(array, layout.read(new ByteArrayDataInput(expected)), name);
+			
+			ByteBuffer buffer = ByteBuffer.allocateDirect(expected.length);
+			layout.write(array, buffer);
+			buffer.flip();
+			byte[] written = new byte[buffer.remaining()];
+			buffer.duplicate().get(written);
+			assertArrayEquals(expected, written, name);
+			assertArraysEqual(array, layout.read(buffer), name);
+		}
+	}
+	
+	@Test
+	@SuppressWarnings("unchecked")
+	void buffersKeepTheirByteOrder() {
+		Random random = new Random(11);
+		for (Class<?> component : COMPONENTS) {
+			Object array = randomArray(component, 300, random);
+			DynamicArrayLayout<Object> layout = (DynamicArrayLayout<Object>) Layout.of(array.getClass());
+			ByteBuffer little = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+			layout.write(array, little);
+			little.flip();
+			assertArraysEqual(array, layout.read(little), component.getName());
+			
+			// the same elements, each one in little endian
+			little.rewind();
+			layout.lengthPrefix().read(little);
+			ByteBuffer element = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+			Layout.Of<Object> elementLayout = (Layout.Of<Object>) layout.elementLayout().asObjectLayout();
+			for (int i = 0; i < 300; i++) {
+				element.clear();
+				elementLayout.write(Array.get(array, i), element);
+				element.flip();
+				while (element.hasRemaining()) assertEquals(element.get(), little.get(), component.getName() + " element " + i);
+			}
+		}
+	}
+	
+	@Test
+	@SuppressWarnings("unchecked")
+	void staticArraysArePaddedAndTruncated() throws IOException {
+		Random random = new Random(17);
+		for (Class<?> component : COMPONENTS) {
+			Object full = randomArray(component, 5000, random);
+			ArrayLayout<Object> layout = Layout.array((Class<Object>) full.getClass(), 3000);
+			int elementSize = layout.elementLayout().size().getAsInt();
+			String name = component.getName();
+			assertEquals(3000 * elementSize, layout.size().getAsInt(), name);
+			
+			ByteArrayOutputStream truncated = new ByteArrayOutputStream();
+			layout.write(full, new DataOutputStream(truncated));
+			assertArrayEquals(elementByElement(layout, full, 3000), truncated.toByteArray(), name);
+			
+			Object shorter = Array.newInstance(component, 10);
+			System.arraycopy(full, 0, shorter, 0, 10);
+			ByteArrayDataOutput padded = new ByteArrayDataOutput();
+			layout.write(shorter, padded);
+			byte[] bytes = padded.toByteArray();
+			assertEquals(3000 * elementSize, bytes.length, name);
+			assertArrayEquals(elementByElement(layout, shorter, 10), Arrays.copyOf(bytes, 10 * elementSize), name);
+			for (int i = 10 * elementSize; i < bytes.length; i++) assertEquals(0, bytes[i], name);
+			
+			Object back = layout.read(new ByteArrayDataInput(bytes));
+			assertEquals(3000, Array.getLength(back), name);
+			Object expected = Array.newInstance(component, 3000);
+			System.arraycopy(shorter, 0, expected, 0, 10);
+			assertArraysEqual(expected, back, name);
+			
+			ByteBuffer buffer = ByteBuffer.allocate(bytes.length);
+			layout.write(shorter, buffer);
+			assertArrayEquals(bytes, buffer.array(), name);
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package com.ydo4ki.datalayouts;
+
+import com.ydo4ki.datalayouts.annotation.LayoutConstructor;
+import com.ydo4ki.datalayouts.annotation.NullTerminated;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.util.OptionalInt;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Field offset tables of class layouts, and projections that only decode some of the fields.
+ *
+ * @author Sulphuris
+ */
+class ProjectionTest {
+	public static class Trade {
+		public long id;
+		public int quantity;
+		public String symbol;
+		public double price;
+		public byte flags;
+		@NullTerminated
+		public String note;
+		public int[] fills;
+	}
+	
+	/** Created through its constructor, so the fields that are not read are passed as defaults */
+	public static class Quote {
+		public final String venue;
+		public final double bid;
+		public final double ask;
+		public final boolean firm;
+		
+		@LayoutConstructor
+		public Quote(String venue, double bid, double ask, boolean firm) {
+			this.venue = venue;
+			this.bid = bid;
+			this.ask = ask;
+			this.firm = firm;
+		}
+	}
+	
+	public static class Base {
+		public int version;
+		public short revision;
+	}
+	
+	/** Hides the version of its superclass */
+	public static class Revised extends Base {
+		public long version;
+	}
+	
+	private final LayoutRegistry registry = new LayoutRegistry();
+	
+	private Trade trade(long id, String symbol, double price) {
+		Trade trade = new Trade();
+		trade.id = id;
+		trade.quantity = 100;
+		trade.symbol = symbol;
+		trade.price = price;
+		trade.flags = 3;
+		trade.note = "block";
+		trade.fills = new int[]{40, 60};
+		return trade;
+	}
+	
+	@Test
+	void offsetsAreKnownUpToTheFirstDynamicField() {
+		FieldTable table = Layout.fieldTable(registry.of(Trade.class, MethodHandles.lookup()));
+		assertEquals(7, table.fieldsCount());
+		assertEquals(2, table.staticPrefix());
+		assertEquals(OptionalInt.of(0), table.offset(0));
+		assertEquals(OptionalInt.of(8), table.offset(1));
+		assertEquals(OptionalInt.of(12), table.offset(2), "the first dynamic field still has an offset");
+		assertEquals(OptionalInt.empty(), table.offset(3));
+		assertEquals(OptionalInt.empty(), table.offset(6));
+		assertEquals(3, table.indexOf("price"));
+		assertEquals(double.class, table.type(3));
+		assertEquals("note", table.name(5));
+		assertEquals(-1, table.indexOf("nope"));
+		assertEquals("FieldTable{id@0, quantity@8, symbol@12, price@?, flags@?, note@?, fills@?}", table.toString());
+		
+		FieldTable revised = Layout.fieldTable(registry.of(Revised.class, MethodHandles.lookup()));
+		assertEquals(3, revised.staticPrefix());
+		assertEquals(long.class, revised.type(revised.indexOf("version")));
+		// its own long, then the hidden int of the superclass
+		assertEquals(OptionalInt.of(12), revised.offset(revised.indexOf("revision")));
+		
+		assertThrows(IllegalArgumentException.class, () -> Layout.fieldTable(Layout.ofString));
+	}
+	
+	@Test
+	void onlyTheRequestedFieldsAreRead() throws IOException {
+		Layout.Of<Trade> layout = registry.of(Trade.class, MethodHandles.lookup());
+		Projection<Trade> prices = Layout.projection(layout, "symbol", "price", "note");
+		assertArrayEquals(new String[]{"symbol", "price", "note"}, prices.fields());
+		ByteArrayDataOutput out = new ByteArrayDataOutput();
+		layout.write(trade(1, "ABC", 10.25), out);
+		layout.write(trade(2, "XYZ", 99.5), out);
+		byte[] bytes = out.toByteArray();
+		
+		// the whole object is consumed, so the next one starts where the first one ended
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+		Trade first = prices.read(in);
+		Trade second = prices.read(in);
+		assertEquals(-1, in.read());
+		assertEquals("ABC", first.symbol);
+		assertEquals(10.25, first.price);
+		assertEquals("block", first.note);
+		assertEquals(0, first.id);
+		assertEquals(0, first.quantity);
+		assertEquals(0, first.flags);
+		assertNull(first.fills);
+		assertEquals("XYZ", second.symbol);
+		
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		Projection<Trade> fills = Layout.projection(layout, "fills");
+		assertArrayEquals(new int[]{40, 60}, fills.read(buffer).fills);
+		Trade last = fills.read(buffer);
+		assertArrayEquals(new int[]{40, 60}, last.fills);
+		assertNull(last.symbol);
+		assertFalse(buffer.hasRemaining());
+		
+		assertThrows(IllegalArgumentException.class, () -> Layout.projection(layout, "price", "volume"));
+	}
+	
+	@Test
+	void constructedClassesReceiveDefaultsForTheOtherFields() throws IOException {
+		Layout.Of<Quote> layout = registry.of(Quote.class, MethodHandles.lookup());
+		ByteArrayDataOutput out = new ByteArrayDataOutput();
+		layout.write(new Quote("LSE", 1.5, 1.75, true), out);
+		out.writeInt(0xCAFE);
+		
+		ByteArrayDataInput in = new ByteArrayDataInput(out.toByteArray());
+		Quote quote = Layout.projection(layout, "ask").read(in);
+		assertEquals(1.75, quote.ask);
+		assertEquals(0, quote.bid);
+		assertFalse(quote.firm);
+		assertNull(quote.venue);
+		assertEquals(0xCAFE, in.readInt());
+		
+		Quote venue = Layout.projection(layout, "venue").read(ByteBuffer.wrap(out.toByteArray()));
+		assertEquals("LSE", venue.venue);
+		assertEquals(0, venue.ask);
+	}
+}
@@ -0,0 +1,131 @@
+package com.ydo4ki.datalayouts;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Decoding of values split across many chunks.
+ *
+ * @author Sulphuris
+ */
+class ResumableDecoderTest {
+	public static class Batch {
+		public int id;
+		public String[] names;
+		public long[] stamps;
+		public String note;
+	}
+	
+	private static final Layout.Of<Batch> layout = Layout.of(Batch.class, MethodHandles.lookup());
+	
+	private static Batch batch(int id, int count) {
+		Batch batch = new Batch();
+		batch.id = id;
+		batch.names = new String[count];
+		batch.stamps = new long[count];
+		StringBuilder note = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			batch.names[i] = "name" + i;
+			batch.stamps[i] = (long) i * id;
+			note.append((char) ('a' + i % 26));
+		}
+		batch.note = note.toString();
+		return batch;
+	}
+	
+	/** Feeds the bytes to a decoder one at a time */
+	private static <T> List<T> decodeBytewise(ResumableDecoder<T> decoder, byte[] bytes) {
+		List<T> decoded = new ArrayList<>();
+		ByteBuffer chunk = ByteBuffer.allocate(1);
+		for (byte b : bytes) {
+			chunk.clear();
+			chunk.put(b).flip();
+			decoder.decode(chunk, decoded::add);
+		}
+		return decoded;
+	}
+	
+	@Test
+	void largeArraysAndStringsAreResumed() throws IOException {
+		ByteArrayDataOutput out = new ByteArrayDataOutput();
+		Batch[] batches = {batch(1, 50_000), batch(2, 0), batch(3, 7)};
+		for (Batch batch : batches) layout.write(batch, out);
+		byte[] bytes = out.toByteArray();
+		// decoding every array and string again on each byte would take hours
+		List<Batch> decoded = assertTimeoutPreemptively(Duration.ofSeconds(20), () -> decodeBytewise(Layout.decoder(layout), bytes));
+		assertEquals(batches.length, decoded.size());
+		for (int i = 0; i < batches.length; i++) {
+			assertEquals(batches[i].id, decoded.get(i).id);
+			assertArrayEquals(batches[i].names, decoded.get(i).names);
+			assertArrayEquals(batches[i].stamps, decoded.get(i).stamps);
+			assertEquals(batches[i].note, decoded.get(i).note);
+		}
+	}
+	
+	@Test
+	void nullTerminatedStringsAreSplitAtEveryByte() throws IOException {
+		for (String name : Arrays.asList(StringEncoding.UTF8, StringEncoding.UTF16, StringEncoding.UTF8_STANDARD)) {
+			Layout.Of<String> string = Layout.string(name, true);
+			// the 1-byte encoding only holds the first 256 characters
+			String text = name.equals(StringEncoding.UTF8) ? "h\u00e9llo" : "h\u00e9llo \u20ac \ud83d\ude00";
+			ByteArrayDataOutput out = new ByteArrayDataOutput();
+			string.write(text, out);
+			string.write("", out);
+			byte[] bytes = out.toByteArray();
+			List<String> expected = Arrays.asList(text, "");
+			
+			for (int split = 0; split <= bytes.length; split++) {
+				ResumableDecoder<String> decoder = Layout.decoder(string);
+				List<String> decoded = new ArrayList<>();
+				decoder.decode(ByteBuffer.wrap(bytes, 0, split), decoded::add);
+				decoder.decode(ByteBuffer.wrap(bytes, split, bytes.length - split), decoded::add);
+				assertEquals(expected, decoded, name + " split at " + split);
+				assertFalse(decoder.isPartial());
+			}
+			assertEquals(expected, decodeBytewise(Layout.decoder(string), bytes), name);
+		}
+	}
+	
+	@Test
+	void oversizedValuesAreRejectedBeforeTheirBytesArrive() throws IOException {
+		DynamicArrayLayout<long[]> array = (DynamicArrayLayout<long[]>) Layout.of(long[].class);
+		ResumableDecoder<long[]> decoder = Layout.decoder(array);
+		decoder.setMaxBufferedBytes(1024);
+		ByteBuffer prefix = ByteBuffer.allocate(16);
+		array.lengthPrefix().write(1_000_000, prefix);
+		prefix.flip();
+		assertThrows(IllegalArgumentException.class, () -> decoder.decode(prefix, x -> fail()));
+		
+		ResumableDecoder<long[]> small = Layout.decoder(array);
+		small.setMaxBufferedBytes(1024);
+		ByteArrayDataOutput out = new ByteArrayDataOutput();
+		array.write(new long[100], out);
+		assertEquals(1, decodeBytewise(small, out.toByteArray()).size());
+	}
+	
+	@Test
+	void negativeLengthsAreRejected() throws IOException {
+		// the id, then the length of the names
+		ByteArrayDataOutput out = new ByteArrayDataOutput();
+		out.writeInt(1);
+		DynamicArrayLayout<?> names = (DynamicArrayLayout<?>) ObjectLayout.of(layout).fieldLayout(1);
+		names.lengthPrefix().write(-1, out);
+		out.write(new byte[16]);
+		byte[] bytes = out.toByteArray();
+		assertThrows(IllegalArgumentException.class, () -> Layout.decoder(layout).decode(ByteBuffer.wrap(bytes), x -> fail()));
+		
+		Layout.Of<String> string = Layout.string(StringEncoding.UTF16, false);
+		ByteArrayDataOutput prefix = new ByteArrayDataOutput();
+		((StringLayout.DynamicStringLayout) string).lengthPrefix().write(-3, prefix);
+		assertThrows(IllegalArgumentException.class, () -> decodeBytewise(Layout.decoder(string), prefix.toByteArray()));
+	}
+}
@@ -0,0 +1,146 @@
+package com.ydo4ki.datalayouts;
+
+import com.ydo4ki.datalayouts.annotation.Encoding;
+import com.ydo4ki.datalayouts.annotation.Length;
+import com.ydo4ki.datalayouts.annotation.LengthPrefix;
+import com.ydo4ki.datalayouts.annotation.NullTerminated;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import java.util.OptionalInt;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Exact encoded sizes, which must be the number of bytes actually written.
+ *
+ * @author Sulphuris
+ */
+class SizeOfTest {
+	/** One string field per kind of string layout */
+	public static class Strings {
+		public String utf16;
+		@Encoding(StringEncoding.UTF8)
+		public String narrow;
+		@Encoding(StringEncoding.UTF8_STANDARD)
+		public String standard;
+		@NullTerminated
+		public String terminated;
+		@NullTerminated
+		@Encoding(StringEncoding.UTF8_STANDARD)
+		public String terminatedStandard;
+		@LengthPrefix(LengthPrefix.Type.VARINT)
+		@Encoding(StringEncoding.UTF8_STANDARD)
+		public String varint;
+		@LengthPrefix(LengthPrefix.Type.BYTE)
+		public String bytePrefix;
+		@Length(4)
+		public String fixed;
+		@Length(6)
+		@Encoding(StringEncoding.UTF8_STANDARD)
+		public String fixedStandard;
+	}
+	
+	public static class Point {
+		public int x, y;
+	}
+	
+	public static class Route {
+		public String name;
+		public Point[] stops;
+		public long[] times;
+		@Length(2)
+		public String[] ends;
+		public Point origin;
+	}
+	
+	private static final String[] SAMPLES = {
+			"", "a", "plain ascii", "é", "€uro", "𝄞 clef", "mixed é€𝄞", repeat('x', 130), repeat('€', 70)
+	};
+	
+	private static String repeat(char c, int count) {
+		char[] chars = new char[count];
+		Arrays.fill(chars, c);
+		return new String(chars);
+	}
+	
+	private static <T> void assertExact(Layout.Of<T> layout, T x) throws IOException {
+		ByteArrayDataOutput out = new ByteArrayDataOutput();
+		layout.write(x, out);
+		assertEquals(out.size(), layout.sizeOf(x), () -> layout + ": " + x);
+	}
+	
+	@Test
+	@SuppressWarnings("unchecked")
+	void stringsCountTheirPrefixesTerminatorsAndPadding() throws IOException {
+		FieldTable table = Layout.fieldTable(new LayoutRegistry().of(Strings.class, MethodHandles.lookup()));
+		for (int i = 0; i < table.fieldsCount(); i++) {
+			Layout.Of<String> layout = (Layout.Of<String>) table.layout(i).asObjectLayout();
+			for (String sample : SAMPLES) assertExact(layout, sample);
+		}
+		
+		Layout.Of<String> terminated = (Layout.Of<String>) table.layout(table.indexOf("terminatedStandard"));
+		assertEquals(3 + 3 + 1, terminated.sizeOf("€uro"), "3 bytes for €, 1 for each other character, and the terminator");
+		Layout.Of<String> varint = (Layout.Of<String>) table.layout(table.indexOf("varint"));
+		assertEquals(1 + 127, varint.sizeOf(repeat('x', 127)));
+		assertEquals(2 + 128, varint.sizeOf(repeat('x', 128)));
+		Layout.Of<String> fixed = (Layout.Of<String>) table.layout(table.indexOf("fixedStandard"));
+		assertEquals(6, fixed.sizeOf("é€€"), "truncated to é€, then padded");
+		assertEquals(OptionalInt.empty(), fixed.size());
+	}
+	
+	@Test
+	void arraysAndObjectsAddUpTheirParts() throws IOException {
+		Layout.Of<Route> layout = new LayoutRegistry().of(Route.class, MethodHandles.lookup());
+		Route route = new Route();
+		route.name = "night bus";
+		route.stops = new Point[3];
+		for (int i = 0; i < route.stops.length; i++) {
+			route.stops[i] = new Point();
+			route.stops[i].x = i;
+		}
+		route.times = new long[]{1, 2, 3, 4, 5};
+		route.ends = new String[]{"depot", "airport"};
+		route.origin = route.stops[0];
+		assertExact(layout, route);
+		
+		route.stops = new Point[0];
+		route.ends = new String[]{"", "x"};
+		assertExact(layout, route);
+		
+		Layout.Of<int[]> ints = Layout.of(int[].class).asObjectLayout();
+		assertEquals(4 + 4 * 1000, ints.sizeOf(new int[1000]));
+		Layout.Of<String[]> strings = Layout.of(String[].class).asObjectLayout();
+		assertExact(strings, SAMPLES);
+		assertEquals(2 * 8, Layout.array(Point[].class, 2).sizeOf(new Point[]{route.origin}), "static arrays are their static size");
+	}
+	
+	@Test
+	void customLayoutsCountWhatTheyWrite() throws IOException {
+		Layout.Of<int[]> runs = new Layout.Of<int[]>() {
+			@Override
+			public void write(int[] x, DataOutput out) throws IOException {
+				for (int run : x) {
+					out.writeByte(run);
+					if (run > 0) out.write(new byte[run]);
+				}
+			}
+			
+			@Override
+			public int[] read(DataInput in) {
+				throw new UnsupportedOperationException();
+			}
+			
+			@Override
+			public OptionalInt size() {
+				return OptionalInt.empty();
+			}
+		};
+		assertEquals(3 + 5 + 7, runs.sizeOf(new int[]{5, 0, 7}));
+		assertEquals(0, runs.sizeOf(new int[0]));
+	}
+}
@@ -0,0 +1,125 @@
+package com.ydo4ki.datalayouts;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The standard UTF-8 encoding, which counts the lengths of strings in bytes.
+ *
+ * @author Sulphuris
+ */
+class StandardUTF8Test {
+	private static final StringEncoding encoding = StringEncoding.get(StringEncoding.UTF8_STANDARD);
+	
+	/** ASCII, then characters of 2, 3 and 4 bytes, alone and mixed */
+	private static final String[] STRINGS = {
+			"", "plain ascii", "héllo", "€100", "😀", "aé€😀z\u0000end"
+	};
+	
+	@Test
+	void stringsRoundTripThroughStreamsAndBuffers() throws IOException {
+		for (boolean nullTerminated : new boolean[]{false, true}) {
+			Layout.Of<String> layout = Layout.string(StringEncoding.UTF8_STANDARD, nullTerminated);
+			for (String x : STRINGS) {
+				if (nullTerminated && x.indexOf('\0') >= 0) continue;
+				byte[] utf8 = x.getBytes(StandardCharsets.UTF_8);
+				assertEquals(utf8.length, encoding.sizeOf(x), x);
+				
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				layout.write(x, new DataOutputStream(bytes));
+				byte[] written = bytes.toByteArray();
+				assertEquals(layout.sizeOf(x), written.length, x);
+				int contentStart = nullTerminated ? 0 : written.length - utf8.length;
+				assertArrayEquals(utf8, Arrays.copyOfRange(written, contentStart, contentStart + utf8.length), x);
+				assertEquals(x, layout.read(new DataInputStream(new ByteArrayInputStream(written))));
+				assertEquals(x, layout.read(new ByteArrayDataInput(written)));
+				
+				for (ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.allocate(64), ByteBuffer.allocateDirect(64)}) {
+					layout.write(x, buffer);
+					assertEquals(written.length, buffer.position(), x);
+					buffer.flip();
+					assertEquals(x, layout.read(buffer));
+					assertFalse(buffer.hasRemaining());
+				}
+			}
+		}
+	}
+	
+	@Test
+	void unpairedSurrogatesAreWrittenAsQuestionMarks() {
+		for (String x : new String[]{"a\ud800b", "\udc00", "\ud83d", "x\ude00\ud83d"}) {
+			ByteBuffer buffer = ByteBuffer.allocate(16);
+			encoding.encode(x, buffer);
+			assertEquals(x.length(), buffer.position(), x);
+			assertEquals(encoding.sizeOf(x), buffer.position(), x);
+			buffer.flip();
+			assertEquals(x.replaceAll("[\ud800-\udfff]", "?"), encoding.decode(buffer, buffer.remaining()));
+		}
+	}
+	
+	@Test
+	void staticLengthsTruncateOnCodePointBoundaries() throws IOException {
+		Layout.Of<String> layout = Layout.string(StringEncoding.UTF8_STANDARD, 5);
+		String[][] cases = {
+				{"ab😀c", "ab"}, // the pair doesn't fit in 3 bytes, and is not split
+				{"é€!", "é€"}, // exactly 5 bytes
+				{"abcdef", "abcde"},
+				{"€€", "€"},
+				{"x", "x"},
+		};
+		for (String[] c : cases) {
+			ByteArrayDataOutput out = new ByteArrayDataOutput();
+			layout.write(c[0], out);
+			assertEquals(5, out.size(), c[0]);
+			assertEquals(5, layout.sizeOf(c[0]), c[0]);
+			assertEquals(c[1], layout.read(new ByteArrayDataInput(out.toByteArray())));
+			ByteBuffer buffer = ByteBuffer.allocateDirect(5);
+			layout.write(c[0], buffer);
+			buffer.flip();
+			assertEquals(c[1], layout.read(buffer));
+		}
+	}
+	
+	@Test
+	void truncatedInputUnderflows() throws IOException {
+		byte[] euro = "€".getBytes(StandardCharsets.UTF_8);
+		for (int length = 1; length < euro.length; length++) {
+			ByteBuffer truncated = ByteBuffer.wrap(euro, 0, length);
+			assertThrows(BufferUnderflowException.class, () -> encoding.read(truncated));
+			assertThrows(BufferUnderflowException.class, () -> encoding.read(truncated, 0));
+			assertEquals(0, truncated.position());
+		}
+		assertThrows(BufferUnderflowException.class, () -> encoding.read(ByteBuffer.allocate(0)));
+		
+		Layout.Of<String> nullTerminated = Layout.string(StringEncoding.UTF8_STANDARD, true);
+		assertThrows(BufferUnderflowException.class, () -> nullTerminated.read(ByteBuffer.wrap("abc".getBytes(StandardCharsets.UTF_8))));
+		
+		Layout.Of<String> prefixed = Layout.string(StringEncoding.UTF8_STANDARD, false);
+		ByteArrayDataOutput out = new ByteArrayDataOutput();
+		prefixed.write("héllo", out);
+		byte[] written = out.toByteArray();
+		assertThrows(BufferUnderflowException.class, () -> prefixed.read(ByteBuffer.wrap(written, 0, written.length - 1)));
+	}
+	
+	@Test
+	void encodingDoesNotWritePartOfAString() {
+		String x = "€€€"; // 9 bytes
+		for (ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.allocate(8), ByteBuffer.allocateDirect(8)}) {
+			assertThrows(BufferOverflowException.class, () -> encoding.encode(x, buffer));
+			assertEquals(0, buffer.position());
+			assertEquals(0, buffer.get(0));
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package com.ydo4ki.datalayouts;
+
+import com.ydo4ki.datalayouts.annotation.Encoding;
+import com.ydo4ki.datalayouts.annotation.Length;
+import com.ydo4ki.datalayouts.annotation.NullTerminated;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.OptionalInt;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Whole strings encoded and decoded at once, which must produce the bytes of their characters.
+ *
+ * @author Sulphuris
+ */
+class StringEncodingTest {
+	/** A custom encoding with only the per-character methods, so strings fall back to them */
+	static final class Inverted extends StringEncoding {
+		static final Inverted INSTANCE = StringEncoding.registerEncoding(new Inverted(), "test-inverted");
+		int written;
+		
+		@Override
+		public OptionalInt size() {
+			return OptionalInt.of(1);
+		}
+		
+		@Override
+		public void write(char x, DataOutput out) throws IOException {
+			written++;
+			out.writeByte(~x);
+		}
+		
+		@Override
+		public char read(DataInput in) throws IOException {
+			return (char) (~in.readByte() & 0xFF);
+		}
+	}
+	
+	public static class Label {
+		@Encoding("test-inverted")
+		public String text;
+		@Encoding("test-inverted")
+		@NullTerminated
+		public String terminated;
+		@Encoding("test-inverted")
+		@Length(3)
+		public String code;
+	}
+	
+	/** A string longer than the scratch buffer, in characters and in bytes */
+	private static String text(int length, int maxChar) {
+		Random random = new Random(length);
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++) chars[i] = (char) (1 + random.nextInt(maxChar));
+		return new String(chars);
+	}
+	
+	private static byte[] charByChar(StringEncoding encoding, String x) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		for (int i = 0; i < x.length(); i++) encoding.write(x.charAt(i), out);
+		return bytes.toByteArray();
+	}
+	
+	@Test
+	void builtInEncodingsConvertWholeStrings() throws IOException {
+		for (String name : new String[]{StringEncoding.UTF8, StringEncoding.UTF16}) {
+			StringEncoding encoding = StringEncoding.get(name);
+			String x = text(8192 * 2 + 3, name.equals(StringEncoding.UTF8) ? 0xFF : 0xFFFD);
+			byte[] expected = charByChar(encoding, x);
+			assertEquals(expected.length, encoding.sizeOf(x), name);
+			
+			ByteArrayOutputStream stream = new ByteArrayOutputStream();
+			encoding.encode(x, new DataOutputStream(stream));
+			assertArrayEquals(expected, stream.toByteArray(), name);
+			ByteArrayDataOutput direct = new ByteArrayDataOutput();
+			direct.writeByte(1);
+			encoding.encode(x, direct);
+			assertEquals(expected.length + 1, direct.size(), name);
+			
+			assertEquals(x, encoding.decode(new DataInputStream(new ByteArrayInputStream(expected)), x.length()), name);
+			ByteArrayDataInput input = new ByteArrayDataInput(direct.toByteArray());
+			input.readByte();
+			assertEquals(x, encoding.decode(input, x.length()), name);
+			
+			for (ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.allocate(expected.length), ByteBuffer.allocateDirect(expected.length)}) {
+				encoding.encode(x, buffer);
+				assertFalse(buffer.hasRemaining());
+				buffer.flip();
+				byte[] written = new byte[expected.length];
+				buffer.duplicate().get(written);
+				assertArrayEquals(expected, written, name);
+				assertEquals(x, encoding.decode(buffer, x.length()), name);
+				assertFalse(buffer.hasRemaining());
+			}
+		}
+	}
+	
+	@Test
+	void utf16KeepsTheByteOrderOfBuffers() {
+		StringEncoding utf16 = StringEncoding.get(StringEncoding.UTF16);
+		ByteBuffer buffer = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.put((byte) 0);
+		utf16.encode("Añ€", buffer);
+		assertEquals(7, buffer.position());
+		assertEquals('A', buffer.get(1));
+		assertEquals(0, buffer.get(2));
+		assertEquals('€', buffer.getChar(5));
+		buffer.position(1);
+		assertEquals("Añ€", utf16.decode(buffer, 3));
+		assertEquals(7, buffer.position());
+	}
+	
+	@Test
+	void customEncodingsAreUsedCharacterByCharacter() throws IOException {
+		Inverted inverted = Inverted.INSTANCE;
+		assertSame(inverted, StringEncoding.get("test-inverted"));
+		assertThrows(IllegalArgumentException.class, () -> StringEncoding.registerEncoding(new Inverted(), "test-inverted"));
+		
+		ByteArrayDataOutput out = new ByteArrayDataOutput();
+		int written = inverted.written;
+		inverted.encode("hi!", out);
+		assertEquals(written + 3, inverted.written);
+		assertArrayEquals(new byte[]{~'h', ~'i', ~'!'}, out.toByteArray());
+		assertEquals("hi!", inverted.decode(new ByteArrayDataInput(out.toByteArray()), 3));
+		ByteBuffer buffer = ByteBuffer.allocate(3);
+		inverted.encode("hi!", buffer);
+		assertArrayEquals(out.toByteArray(), buffer.array());
+		buffer.flip();
+		assertEquals("hi!", inverted.decode(buffer, 3));
+		
+		// and by the string layouts of fields
+		Layout.Of<Label> layout = new LayoutRegistry().of(Label.class, MethodHandles.lookup());
+		Label label = new Label();
+		label.text = "total";
+		label.terminated = "net";
+		label.code = "EU";
+		out.reset();
+		layout.write(label, out);
+		byte[] bytes = out.toByteArray();
+		assertEquals(4 + 5 + 3 + 1 + 3, bytes.length);
+		assertEquals((byte) ~'t', bytes[4]);
+		assertEquals((byte) ~0, bytes[4 + 5 + 3], "the terminator is a null character in the encoding");
+		assertEquals(bytes.length, layout.sizeOf(label));
+		Label back = layout.read(ByteBuffer.wrap(bytes));
+		assertEquals("total", back.text);
+		assertEquals("net", back.terminated);
+		assertEquals("EU", back.code);
+	}
+}
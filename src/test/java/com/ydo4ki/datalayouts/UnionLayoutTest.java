@@ -0,0 +1,161 @@
+package com.ydo4ki.datalayouts;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Class hierarchies written as a tag followed by the subtype.
+ *
+ * @author Sulphuris
+ */
+class UnionLayoutTest {
+	public static abstract class Shape {
+	}
+	
+	public static class Circle extends Shape {
+		public double radius;
+	}
+	
+	public static class Square extends Shape {
+		public double side;
+	}
+	
+	/** Not registered, written as a circle */
+	public static class Ring extends Circle {
+		public double inner;
+	}
+	
+	public static class Label extends Shape {
+		public String text;
+	}
+	
+	public static class Cell extends Shape {
+		public int x, y;
+	}
+	
+	public static class Tile extends Shape {
+		public short x, y;
+	}
+	
+	private static UnionLayout<Shape> shapes() {
+		return Layout.union(Shape.class)
+				.with(0, Circle.class, MethodHandles.lookup())
+				.with(3, Square.class, MethodHandles.lookup());
+	}
+	
+	@Test
+	void tagsSelectTheSubtype() throws IOException {
+		UnionLayout<Shape> layout = shapes().with(200, Label.class, MethodHandles.lookup());
+		Circle circle = new Circle();
+		circle.radius = 1.5;
+		Square square = new Square();
+		square.side = -2;
+		Label label = new Label();
+		label.text = "origin";
+		
+		ByteArrayDataOutput out = new ByteArrayDataOutput();
+		layout.write(circle, out);
+		layout.write(square, out);
+		layout.write(label, out);
+		byte[] bytes = out.toByteArray();
+		assertEquals(0, bytes[0]);
+		assertEquals(3, bytes[9]);
+		assertEquals(layout.sizeOf(circle) + layout.sizeOf(square) + layout.sizeOf(label), bytes.length);
+		assertEquals(2, Layout.ofVarInt.sizeOf(layout.tagOf(Label.class)));
+		
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+		assertEquals(1.5, ((Circle) layout.read(in)).radius);
+		assertEquals(-2, ((Square) layout.read(in)).side);
+		assertEquals("origin", ((Label) layout.read(in)).text);
+		
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		assertInstanceOf(Circle.class, layout.read(buffer));
+		assertInstanceOf(Square.class, layout.read(buffer));
+		assertInstanceOf(Label.class, layout.read(buffer));
+		assertFalse(buffer.hasRemaining());
+		
+		// skipping and copying go through the tags as well
+		ByteArrayDataInput skipped = new ByteArrayDataInput(bytes);
+		ByteArrayDataOutput copy = new ByteArrayDataOutput();
+		layout.skip(skipped);
+		layout.copy(skipped, copy);
+		layout.copy(skipped, copy);
+		assertArrayEquals(Arrays.copyOfRange(bytes, 9, bytes.length), copy.toByteArray());
+	}
+	
+	@Test
+	void unregisteredSubclassesTakeTheNearestRegisteredSuperclass() throws IOException {
+		UnionLayout<Shape> layout = shapes();
+		assertEquals(0, layout.tagOf(Ring.class));
+		Ring ring = new Ring();
+		ring.radius = 4;
+		ring.inner = 3;
+		ByteArrayDataOutput out = new ByteArrayDataOutput();
+		layout.write(ring, out);
+		assertEquals(9, out.size(), "the fields of the subclass are not written");
+		Shape back = layout.read(new ByteArrayDataInput(out.toByteArray()));
+		assertSame(Circle.class, back.getClass());
+		assertEquals(4, ((Circle) back).radius);
+		
+		assertThrows(IllegalArgumentException.class, () -> layout.tagOf(Label.class));
+		Label label = new Label();
+		assertThrows(IllegalArgumentException.class, () -> layout.write(label, new ByteArrayDataOutput()));
+		assertThrows(IllegalArgumentException.class, () -> layout.write(label, ByteBuffer.allocate(16)));
+	}
+	
+	@Test
+	void theSizeIsStaticIfAllVariantsAndTheTagAre() {
+		assertFalse(shapes().size().isPresent(), "varint tags");
+		UnionLayout<Shape> bytes = shapes().withTagLayout(Layout.ofUnsignedByte);
+		assertEquals(9, bytes.size().getAsInt());
+		assertEquals(9, bytes.sizeOf(new Square()));
+		assertFalse(bytes.with(1, Label.class, MethodHandles.lookup()).size().isPresent(), "a variant of dynamic size");
+		
+		// variants with different fields, but of the same size
+		UnionLayout<Shape> mixed = Layout.union(Shape.class)
+				.withTagLayout(Layout.ofUnsignedByte)
+				.with(0, Circle.class, MethodHandles.lookup())
+				.with(1, Cell.class, MethodHandles.lookup());
+		assertEquals(9, mixed.size().getAsInt());
+		assertFalse(mixed.with(2, Tile.class, MethodHandles.lookup()).size().isPresent(), "a variant of another size");
+	}
+	
+	@Test
+	void unknownTagsAreCorruptStreamsButInvalidBuffers() throws IOException {
+		UnionLayout<Shape> layout = shapes();
+		for (int tag : new int[]{1, 4, 1000}) {
+			ByteArrayDataOutput out = new ByteArrayDataOutput();
+			Layout.ofVarInt.write(tag, out);
+			out.write(new byte[8]);
+			byte[] bytes = out.toByteArray();
+			assertThrows(StreamCorruptedException.class, () -> layout.read(new DataInputStream(new ByteArrayInputStream(bytes))));
+			assertThrows(StreamCorruptedException.class, () -> layout.skip(new ByteArrayDataInput(bytes)));
+			assertThrows(StreamCorruptedException.class, () -> layout.copy(new ByteArrayDataInput(bytes), new ByteArrayDataOutput()));
+			assertThrows(IllegalArgumentException.class, () -> layout.read(ByteBuffer.wrap(bytes)));
+		}
+	}
+	
+	@Test
+	void tagsMustFitTheTagLayout() {
+		UnionLayout<Shape> layout = shapes().withTagLayout(Layout.ofUnsignedByte);
+		assertThrows(IllegalArgumentException.class, () -> layout.with(256, Label.class, MethodHandles.lookup()));
+		assertThrows(IllegalArgumentException.class, () -> layout.with(-1, Label.class, MethodHandles.lookup()));
+		layout.with(255, Label.class, MethodHandles.lookup());
+		
+		UnionLayout<Shape> wide = shapes().with(256, Label.class, MethodHandles.lookup());
+		assertThrows(IllegalArgumentException.class, () -> wide.withTagLayout(Layout.ofUnsignedByte));
+		assertThrows(IllegalArgumentException.class, () -> shapes().with(0x10000, Label.class, MethodHandles.lookup()));
+		
+		assertThrows(IllegalArgumentException.class, () -> shapes().with(3, Label.class, MethodHandles.lookup()), "tag in use");
+		assertThrows(IllegalArgumentException.class, () -> shapes().with(4, Circle.class, MethodHandles.lookup()), "subtype registered");
+	}
+}
@@ -0,0 +1,99 @@
+package com.ydo4ki.datalayouts;
+
+import com.ydo4ki.datalayouts.annotation.UnsignedByte;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteOrder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link SegmentLayout} on heap and off heap, compared with the stream format.
+ *
+ * @author Sulphuris
+ */
+class SegmentLayoutTest {
+	public static class Point {
+		public int x;
+		public long y;
+		public double z;
+		public boolean flag;
+		@UnsignedByte
+		public int level;
+	}
+	
+	public static class Named {
+		public int id;
+		public String name;
+	}
+	
+	private static Point point() {
+		Point p = new Point();
+		p.x = -7;
+		p.y = 1L << 40;
+		p.z = 2.5;
+		p.flag = true;
+		p.level = 200;
+		return p;
+	}
+	
+	private static void assertPoint(Point p) {
+		assertEquals(-7, p.x);
+		assertEquals(1L << 40, p.y);
+		assertEquals(2.5, p.z);
+		assertTrue(p.flag);
+		assertEquals(200, p.level);
+	}
+	
+	@Test
+	void staticSizeMatchesStreamFormat() throws IOException {
+		Layout.Of<Point> layout = Layout.of(Point.class, MethodHandles.lookup());
+		SegmentLayout<Point> segmentLayout = SegmentLayout.of(layout);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		layout.write(point(), new DataOutputStream(bytes));
+		try (Arena arena = Arena.ofConfined()) {
+			MemorySegment segment = arena.allocate(64);
+			assertEquals(bytes.size(), segmentLayout.write(point(), segment, 3));
+			assertArrayEquals(bytes.toByteArray(), segment.asSlice(3, bytes.size()).toArray(ValueLayout.JAVA_BYTE));
+			assertPoint(segmentLayout.read(segment, 3));
+		}
+	}
+	
+	@Test
+	void littleEndianRoundTrip() {
+		SegmentLayout<Point> segmentLayout = SegmentLayout.of(Layout.of(Point.class, MethodHandles.lookup()), ByteOrder.LITTLE_ENDIAN);
+		MemorySegment segment = MemorySegment.ofArray(new byte[64]);
+		segmentLayout.write(point(), segment, 0);
+		assertEquals(-7, segment.get(ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN), 0));
+		assertPoint(segmentLayout.read(segment, 0));
+	}
+	
+	@Test
+	void dynamicSizeGoesThroughBuffers() {
+		SegmentLayout<Named> segmentLayout = SegmentLayout.of(Layout.of(Named.class, MethodHandles.lookup()));
+		Named named = new Named();
+		named.id = 5;
+		named.name = "segment";
+		MemorySegment segment = MemorySegment.ofArray(new byte[64]);
+		long written = segmentLayout.write(named, segment, 8);
+		Named copy = segmentLayout.read(segment, 8);
+		assertEquals(5, copy.id);
+		assertEquals("segment", copy.name);
+		assertThrows(IndexOutOfBoundsException.class, () -> segmentLayout.read(segment.asSlice(0, 8 + written - 1), 8));
+	}
+	
+	@Test
+	void writesOutOfBoundsLeaveTheSegmentUnchanged() {
+		SegmentLayout<Point> segmentLayout = SegmentLayout.of(Layout.of(Point.class, MethodHandles.lookup()));
+		MemorySegment segment = MemorySegment.ofArray(new byte[16]);
+		assertThrows(IndexOutOfBoundsException.class, () -> segmentLayout.write(point(), segment, 0));
+		assertArrayEquals(new byte[16], segment.toArray(ValueLayout.JAVA_BYTE));
+	}
+}